@@ -10,9 +10,11 @@ import com.budhash.cliche.Shell;
 import com.budhash.cliche.ShellFactory;
 import com.budhash.cliche.util.ArrayHashMultiMap;
 import com.budhash.cliche.util.MultiMap;
+import de.martindreier.airtwitch.airplay.DeviceConnections;
 import de.martindreier.airtwitch.cli.commands.HelpCommands;
 import de.martindreier.airtwitch.cli.commands.MainCommands;
 import de.martindreier.airtwitch.cli.devices.DeviceList;
+import de.martindreier.airtwitch.http.HttpTransport;
 
 /**
  * Air Twitch CLI.
@@ -42,8 +44,20 @@ public class AirTwitch
 			exception.printStackTrace();
 		}
 
-		// Terminate device listener
+		// Terminate device listener and close device connections
 		DeviceList.getInstance().shutdown();
+		DeviceConnections.getInstance().closeAll();
+
+		// Close recorded or replayed HTTP archives
+		try
+		{
+			HttpTransport.close();
+		}
+		catch (IOException exception)
+		{
+			System.out.println("Error while closing HTTP archive");
+			exception.printStackTrace();
+		}
 	}
 
 }
@@ -5,8 +5,14 @@
  */
 package de.martindreier.airtwitch.cli.commands;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import com.budhash.cliche.Command;
 import com.budhash.cliche.Param;
+import de.martindreier.airtwitch.airplay.ConnectionStatistics;
+import de.martindreier.airtwitch.airplay.DeviceConnections;
 import de.martindreier.airtwitch.airplay.DeviceInfo;
 import de.martindreier.airtwitch.cli.devices.DeviceList;
 
@@ -20,9 +26,15 @@ public class DeviceCommands
 {
 
 	/**
-	 * Index of the currently selected device.
+	 * Key of the currently selected device. The key stays valid when other
+	 * devices appear or disappear.
 	 */
-	private int selectedDeviceIndex = -1;
+	private String							selectedDeviceKey;
+
+	/**
+	 * Keys of the devices in the playback group.
+	 */
+	private final Set<String>	groupDeviceKeys	= new LinkedHashSet<>();
 
 	/**
 	 * List all devices.
@@ -33,6 +45,24 @@ public class DeviceCommands
 		DeviceList.getInstance().printDeviceList();
 	}
 
+	/**
+	 * List all devices ordered by health.
+	 */
+	@Command(name = "health", description = "List all devices ordered by health, best first")
+	public void listHealth()
+	{
+		DeviceList.getInstance().printHealth();
+	}
+
+	/**
+	 * List the discovery statistics of all network interfaces.
+	 */
+	@Command(name = "interfaces", description = "List discovery statistics per network interface")
+	public void listInterfaces()
+	{
+		DeviceList.getInstance().printInterfaceStatistics();
+	}
+
 	/**
 	 * Select device with given index.
 	 *
@@ -50,29 +80,89 @@ public class DeviceCommands
 		}
 		else
 		{
-			selectedDeviceIndex = index;
+			selectedDeviceKey = device.getKey();
 			printSelectedDevice();
 		}
 	}
 
+	/**
+	 * Add a device to the playback group, or remove it if it is a member.
+	 *
+	 * @param index
+	 *          Device index.
+	 */
+	@Command(name = "group", description = "Add a device to the playback group, or remove it")
+	public void toggleGroupMember(@Param(name = "index", description = "Index of the device") int index)
+	{
+		DeviceInfo device = DeviceList.getInstance().getDevice(index);
+		if (device == null)
+		{
+			System.out.println(String.format("No device with index %s available", index));
+			return;
+		}
+		if (!groupDeviceKeys.remove(device.getKey()))
+		{
+			groupDeviceKeys.add(device.getKey());
+		}
+		printGroup();
+	}
+
+	/**
+	 * Print the members of the playback group.
+	 */
+	@Command(name = "members", description = "List the devices of the playback group")
+	public void printGroup()
+	{
+		System.out.println("Playback group");
+		getGroupMembers().forEach(member -> System.out.println(member.getName()));
+	}
+
+	/**
+	 * Get the devices of the playback group.
+	 *
+	 * @return Available group members.
+	 */
+	public List<DeviceInfo> getGroupMembers()
+	{
+		List<DeviceInfo> members = new ArrayList<>();
+		for (String key : groupDeviceKeys)
+		{
+			DeviceInfo device = DeviceList.getInstance().getDeviceByKey(key);
+			if (device != null)
+			{
+				members.add(device);
+			}
+		}
+		return members;
+	}
+
+	/**
+	 * Print the connection statistics of the selected device.
+	 */
+	@Command(name = "connection", description = "Print connection reuse statistics of the selected device")
+	public void printConnectionStatistics()
+	{
+		DeviceInfo device = getSelectedDevice();
+		if (device == null)
+		{
+			System.out.println("No device selected");
+			return;
+		}
+		System.out.println(DeviceConnections.getInstance().getStatistics(device).map(ConnectionStatistics::toString)
+						.orElse("No connection to the device yet"));
+	}
+
 	public void printSelectedDevice()
 	{
-		if (selectedDeviceIndex < 0)
+		DeviceInfo device = getSelectedDevice();
+		if (device == null)
 		{
 			System.out.println("No device selected");
 		}
 		else
 		{
-			DeviceInfo device = DeviceList.getInstance().getDevice(selectedDeviceIndex);
-			if (device == null)
-			{
-				System.out.println("No device selected");
-			}
-			else
-			{
-				System.out.print("Selected device: ");
-				System.out.println(device.getName());
-			}
+			System.out.print("Selected device: ");
+			System.out.println(device.getName());
 		}
 	}
 
@@ -83,7 +173,7 @@ public class DeviceCommands
 	 */
 	public DeviceInfo getSelectedDevice()
 	{
-		return DeviceList.getInstance().getDevice(selectedDeviceIndex);
+		return selectedDeviceKey == null ? null : DeviceList.getInstance().getDeviceByKey(selectedDeviceKey);
 	}
 
 }
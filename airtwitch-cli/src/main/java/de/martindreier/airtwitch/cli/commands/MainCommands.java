@@ -5,13 +5,37 @@
  */
 package de.martindreier.airtwitch.cli.commands;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import com.budhash.cliche.Command;
+import com.budhash.cliche.Param;
 import com.budhash.cliche.Shell;
 import com.budhash.cliche.ShellDependent;
 import com.budhash.cliche.ShellFactory;
 import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.BulkCommandDispatcher;
+import de.martindreier.airtwitch.airplay.BulkReport;
+import de.martindreier.airtwitch.airplay.DeviceGroup;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.airplay.PlaybackMonitor;
 import de.martindreier.airtwitch.airplay.StreamControl;
+import de.martindreier.airtwitch.cli.devices.DeviceList;
+import de.martindreier.airtwitch.hls.HlsServer;
+import de.martindreier.airtwitch.hls.VariantPolicy;
+import de.martindreier.airtwitch.session.AudioOnlyPlayback;
+import de.martindreier.airtwitch.session.ChannelZapper;
+import de.martindreier.airtwitch.session.LatencyMeter;
+import de.martindreier.airtwitch.session.PlaySession;
+import de.martindreier.airtwitch.session.SessionSupervisor;
+import de.martindreier.airtwitch.session.ZapResult;
+import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveEdge;
 
 /**
  * Handler for CLI main menu.
@@ -27,6 +51,31 @@ public class MainCommands implements ShellDependent
 
 	private final StreamCommands	streams	= new StreamCommands();
 
+	/**
+	 * Playback state monitor, created on first playback.
+	 */
+	private PlaybackMonitor				monitor;
+
+	/**
+	 * Dispatcher for commands to all devices, created on first use.
+	 */
+	private BulkCommandDispatcher	dispatcher;
+
+	/**
+	 * Channel zapper for the selected device.
+	 */
+	private ChannelZapper					zapper;
+
+	/**
+	 * Device the zapper plays to.
+	 */
+	private DeviceInfo						zapperDevice;
+
+	/**
+	 * <code>true</code> to start playback at the live edge.
+	 */
+	private boolean								lowLatency	= LiveEdge.isEnabled();
+
 	@Override
 	public void cliSetShell(Shell theShell)
 	{
@@ -100,9 +149,22 @@ public class MainCommands implements ShellDependent
 			{
 				StreamControl streamControl = getDevice().getSelectedDevice()
 								.createStream(getStream().getSelectedStream().getStreamUri());
+				streamControl.setStartPosition(getStartPosition());
 				streamControl.play();
-				System.out.println("Playback started, press <enter> to stop");
-				System.in.read();
+				getMonitor().watch(streamControl, event -> System.out.println("Playback " + event.getState()));
+				try (LatencyMeter meter = new LatencyMeter(getStream().getSelectedChannel(),
+								getStream().getSelectedStream(), streamControl))
+				{
+					meter.start();
+					System.out.println("Playback started, press <enter> to show the latency, q <enter> to stop");
+					BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+					String line;
+					while ((line = input.readLine()) != null && !line.trim().equalsIgnoreCase("q"))
+					{
+						System.out.println("Latency: " + meter);
+					}
+				}
+				getMonitor().unwatch(streamControl);
 				streamControl.stop();
 			}
 			catch (AirTwitchException | IOException exception)
@@ -112,4 +174,446 @@ public class MainCommands implements ShellDependent
 			}
 		}
 	}
+
+	@Command(name = "playadaptive", description = "Play the selected channel to the selected device with all variants the device supports, the device picks the quality")
+	public void playAdaptive()
+	{
+		Channel channel = getStream().getSelectedChannel();
+		DeviceInfo target = getDevice().getSelectedDevice();
+		if (channel == null || target == null)
+		{
+			System.out.println("Select a channel and a device first");
+			return;
+		}
+		try
+		{
+			System.out.println("Variants: " + VariantPolicy.forDevice(target));
+			StreamControl streamControl = target.createStream(HlsServer.getInstance().publish(channel, target));
+			streamControl.play();
+			getMonitor().watch(streamControl, event -> System.out.println("Playback " + event.getState()));
+			System.out.println("Playback started, press <enter> to stop");
+			System.in.read();
+			getMonitor().unwatch(streamControl);
+			streamControl.stop();
+		}
+		catch (AirTwitchException | IOException exception)
+		{
+			System.out.println("Could not start stream");
+			exception.printStackTrace();
+		}
+	}
+
+	@Command(name = "playrelay", description = "Play the selected channel to the selected device through the local relay, which loads each segment from Twitch once for all devices")
+	public void playRelay()
+	{
+		Channel channel = getStream().getSelectedChannel();
+		DeviceInfo target = getDevice().getSelectedDevice();
+		if (channel == null || target == null)
+		{
+			System.out.println("Select a channel and a device first");
+			return;
+		}
+		try
+		{
+			System.out.println("Variants: " + VariantPolicy.forDevice(target));
+			StreamControl streamControl = target.createStream(HlsServer.getInstance().publishRelay(channel, target));
+			streamControl.play();
+			getMonitor().watch(streamControl, event -> System.out.println("Playback " + event.getState()));
+			System.out.println("Playback started, press <enter> to stop");
+			System.in.read();
+			getMonitor().unwatch(streamControl);
+			streamControl.stop();
+		}
+		catch (AirTwitchException | IOException exception)
+		{
+			System.out.println("Could not start stream");
+			exception.printStackTrace();
+		}
+	}
+
+	@Command(name = "relaystats", description = "Show the segment cache of the relay")
+	public void relayStats()
+	{
+		System.out.println("Segment cache: " + HlsServer.getInstance().getSegmentCache());
+	}
+
+	@Command(name = "playaudio", description = "Play only the sound of the selected channel, on the selected device or the receiver best suited for audio")
+	public void playAudio()
+	{
+		Channel channel = getStream().getSelectedChannel();
+		if (channel == null)
+		{
+			System.out.println("Select a channel first");
+			return;
+		}
+		DeviceInfo target = getDevice().getSelectedDevice();
+		if (target == null)
+		{
+			List<DeviceInfo> ranked = AudioOnlyPlayback.rankDevices(DeviceList.getInstance().getDevices());
+			if (ranked.isEmpty())
+			{
+				System.out.println("No devices available");
+				return;
+			}
+			target = ranked.get(0);
+			System.out.println("Playing on " + target.getName());
+		}
+		try
+		{
+			AudioOnlyPlayback playback = AudioOnlyPlayback.resolve(channel);
+			System.out.println(playback);
+			StreamControl streamControl = playback.play(target);
+			getMonitor().watch(streamControl, event -> System.out.println("Playback " + event.getState()));
+			System.out.println("Playback started, press <enter> to stop");
+			System.in.read();
+			getMonitor().unwatch(streamControl);
+			streamControl.stop();
+		}
+		catch (AirTwitchException | IOException exception)
+		{
+			System.out.println("Could not start stream: " + exception.getLocalizedMessage());
+		}
+	}
+
+	@Command(name = "lowlatency", description = "Switch between starting playback at the live edge and at the default position")
+	public void toggleLowLatency()
+	{
+		lowLatency = !lowLatency;
+		System.out.println(lowLatency ? "Playback starts at the live edge" : "Playback starts at the default position");
+	}
+
+	/**
+	 * Get the start position for the selected stream. In low latency mode, this
+	 * is the live edge of the stream.
+	 *
+	 * @return Start position in seconds. <code>0</code> for the default position
+	 *         of the device, also if the live edge cannot be determined.
+	 */
+	private double getStartPosition()
+	{
+		Channel channel = getStream().getSelectedChannel();
+		if (!lowLatency || channel == null)
+		{
+			return 0;
+		}
+		try
+		{
+			LiveEdge edge = channel.getLiveEdge(getStream().getSelectedStream());
+			System.out.println(edge);
+			return edge.getStartPosition();
+		}
+		catch (AirTwitchException exception)
+		{
+			System.out.println("Could not determine live edge: " + exception.getLocalizedMessage());
+			return 0;
+		}
+	}
+
+	@Command(name = "groupplay", description = "Play the selected stream on all devices of the playback group")
+	public void groupPlay()
+	{
+		getStream().printSelectedStream();
+		List<DeviceInfo> members = getDevice().getGroupMembers();
+		if (getStream().getSelectedStream() == null || members.isEmpty())
+		{
+			System.out.println("Select a stream and add devices to the playback group first");
+			return;
+		}
+		DeviceGroup group = new DeviceGroup(members);
+		try
+		{
+			// The group starts all devices at the same position near the live edge
+			group.play(getStream().getSelectedStream().getStreamUri()).get();
+		}
+		catch (ExecutionException exception)
+		{
+			System.out.println("Not all devices started: " + exception.getCause().getLocalizedMessage());
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+			return;
+		}
+		try
+		{
+			System.out.println("Playback started, press <enter> to measure the skew, q <enter> to stop");
+			BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+			String line;
+			while ((line = input.readLine()) != null && !line.trim().equalsIgnoreCase("q"))
+			{
+				System.out.println(group.measureSkew().join());
+			}
+		}
+		catch (IOException exception)
+		{
+			exception.printStackTrace();
+		}
+		group.stop().exceptionally(exception -> {
+			System.out.println("Could not stop all devices: " + exception.getLocalizedMessage());
+			return null;
+		}).join();
+	}
+
+	@Command(name = "fanout", description = "Play the selected stream on all devices at once and report throughput and latency")
+	public void fanOut()
+	{
+		getStream().printSelectedStream();
+		List<DeviceInfo> devices = DeviceList.getInstance().getDevices();
+		if (getStream().getSelectedStream() == null || devices.isEmpty())
+		{
+			System.out.println("Select a stream and wait for devices first");
+			return;
+		}
+		try
+		{
+			List<StreamControl> streamControls = new ArrayList<>(devices.size());
+			for (DeviceInfo target : devices)
+			{
+				streamControls.add(target.createStream(getStream().getSelectedStream().getStreamUri()));
+			}
+			printReport(getDispatcher().dispatch(streamControls, Collections.singletonList(StreamControl.Command.PLAY))
+							.join());
+			System.out.println("Playback started, press <enter> to stop");
+			System.in.read();
+			printReport(getDispatcher().dispatch(streamControls, Collections.singletonList(StreamControl.Command.STOP))
+							.join());
+		}
+		catch (AirTwitchException | IOException exception)
+		{
+			System.out.println("Could not start stream");
+			exception.printStackTrace();
+		}
+	}
+
+	@Command(description = "Play the selected channel on the selected device and recover from stalls")
+	public void supervise()
+	{
+		supervise(null);
+	}
+
+	@Command(description = "Play the selected channel on the selected device, recover from stalls and move to a backup device if the device keeps failing")
+	public void supervise(@Param(name = "backup", description = "Index of the backup device") int backupIndex)
+	{
+		DeviceInfo backup = DeviceList.getInstance().getDevice(backupIndex);
+		if (backup == null)
+		{
+			System.out.println(String.format("No device with index %s available", backupIndex));
+			return;
+		}
+		supervise(backup);
+	}
+
+	/**
+	 * Supervise playback of the selected channel until the user stops it.
+	 *
+	 * @param backup
+	 *          Backup device, may be <code>null</code>.
+	 */
+	private void supervise(DeviceInfo backup)
+	{
+		Channel channel = getStream().getSelectedChannel();
+		DeviceInfo target = getDevice().getSelectedDevice();
+		if (channel == null || target == null)
+		{
+			System.out.println("Select a channel and a device first");
+			return;
+		}
+		String preferredStream = getStream().getSelectedStream() == null ? null
+						: getStream().getSelectedStream().getTitle();
+		try (SessionSupervisor supervisor = new SessionSupervisor(channel, target, preferredStream))
+		{
+			supervisor.setBackupDevice(backup);
+			supervisor.addListener(System.out::println);
+			supervisor.start();
+			System.out.println("Supervising playback, press <enter> to stop");
+			System.in.read();
+			supervisor.getDevice().createStream(supervisor.getStream().getStreamUri()).stop();
+		}
+		catch (AirTwitchException | IOException exception)
+		{
+			System.out.println("Could not supervise playback: " + exception.getLocalizedMessage());
+		}
+	}
+
+	@Command(description = "Play the selected channel on the selected device and resume after the device or the network drops")
+	public void resume()
+	{
+		Channel channel = getStream().getSelectedChannel();
+		DeviceInfo target = getDevice().getSelectedDevice();
+		if (channel == null || target == null)
+		{
+			System.out.println("Select a channel and a device first");
+			return;
+		}
+		String preferredStream = getStream().getSelectedStream() == null ? null
+						: getStream().getSelectedStream().getTitle();
+		PlaySession session = new PlaySession(target.getKey(), channel, preferredStream);
+		session.addListener(changed -> {
+			if (changed.getState() == PlaySession.State.PLAYING && changed.getLastRecoveryMillis().isPresent())
+			{
+				System.out.println(String.format("Resumed %s after %d ms", changed.getStream().getTitle(),
+								changed.getLastRecoveryMillis().getAsLong()));
+			}
+			else
+			{
+				System.out.println("Session " + changed.getState().name().toLowerCase());
+			}
+		});
+		try
+		{
+			session.start();
+			System.out.println("Playing, press <enter> to stop");
+			System.in.read();
+			System.out.println(String.format("Recovered %d times", session.getRecoveries()));
+		}
+		catch (AirTwitchException | IOException exception)
+		{
+			System.out.println("Could not play channel: " + exception.getLocalizedMessage());
+		}
+		finally
+		{
+			session.stop();
+		}
+	}
+
+	/**
+	 * Print the outcome of a fan-out.
+	 *
+	 * @param report
+	 *          The outcome.
+	 */
+	private void printReport(BulkReport report)
+	{
+		System.out.println(report);
+		report.getFailures().forEach(System.out::println);
+	}
+
+	/**
+	 * Get the bulk command dispatcher.
+	 *
+	 * @return The dispatcher.
+	 * @throws AirTwitchException
+	 *           The dispatcher could not be started.
+	 */
+	private BulkCommandDispatcher getDispatcher() throws AirTwitchException
+	{
+		if (dispatcher == null)
+		{
+			dispatcher = new BulkCommandDispatcher();
+		}
+		return dispatcher;
+	}
+
+	/**
+	 * Get the playback monitor.
+	 *
+	 * @return The monitor.
+	 * @throws AirTwitchException
+	 *           The monitor could not be started.
+	 */
+	private PlaybackMonitor getMonitor() throws AirTwitchException
+	{
+		if (monitor == null)
+		{
+			monitor = new PlaybackMonitor();
+		}
+		return monitor;
+	}
+
+	@Command(description = "Switch to a channel of the last search result on the selected device")
+	public void zap(@Param(name = "index", description = "Index of the channel in the last search result") int index)
+	{
+		List<Channel> channels = getStream().getSearchResult();
+		if (index < 0 || index >= channels.size())
+		{
+			System.out.println(String.format("No channel with index %s in the last search result", index));
+			return;
+		}
+		getZapper().ifPresent(channelZapper -> printZap(() -> channelZapper.zapTo(channels.get(index))));
+	}
+
+	@Command(description = "Switch to the next channel of the last search result")
+	public void next()
+	{
+		getZapper().ifPresent(channelZapper -> printZap(channelZapper::next));
+	}
+
+	@Command(description = "Switch to the previous channel of the last search result")
+	public void previous()
+	{
+		getZapper().ifPresent(channelZapper -> printZap(channelZapper::previous));
+	}
+
+	@Command(description = "Keep the selected channel ready for zapping")
+	public void favourite()
+	{
+		Channel channel = getStream().getSelectedChannel();
+		if (channel == null)
+		{
+			System.out.println("No channel selected");
+			return;
+		}
+		getZapper().ifPresent(channelZapper -> {
+			channelZapper.addFavourite(channel);
+			System.out.print("Added favourite ");
+			System.out.println(channel.getName());
+		});
+	}
+
+	/**
+	 * Get the zapper for the selected device. A new zapper is created when the
+	 * selected device changed. The lineup is updated from the last search result.
+	 *
+	 * @return The zapper, or empty if no device is selected.
+	 */
+	private Optional<ChannelZapper> getZapper()
+	{
+		DeviceInfo device = getDevice().getSelectedDevice();
+		if (device == null)
+		{
+			System.out.println("No device selected");
+			return Optional.empty();
+		}
+		if (zapper == null || !device.equals(zapperDevice))
+		{
+			if (zapper != null)
+			{
+				zapper.close();
+			}
+			String preferredStream = getStream().getSelectedStream() == null ? null
+							: getStream().getSelectedStream().getTitle();
+			zapper = new ChannelZapper(device, preferredStream);
+			zapperDevice = device;
+		}
+		zapper.setLineup(getStream().getSearchResult());
+		return Optional.of(zapper);
+	}
+
+	/**
+	 * Run a channel switch and print the result.
+	 *
+	 * @param zap
+	 *          The switch.
+	 */
+	private void printZap(Zap zap)
+	{
+		try
+		{
+			ZapResult result = zap.run();
+			System.out.println(result);
+		}
+		catch (AirTwitchException exception)
+		{
+			System.out.println("Could not switch channel: " + exception.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * A channel switch.
+	 */
+	@FunctionalInterface
+	private interface Zap
+	{
+		ZapResult run() throws AirTwitchException;
+	}
 }
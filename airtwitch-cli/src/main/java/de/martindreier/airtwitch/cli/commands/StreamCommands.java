@@ -8,6 +8,8 @@ package de.martindreier.airtwitch.cli.commands;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
@@ -16,6 +18,7 @@ import com.budhash.cliche.Param;
 import de.martindreier.airtwitch.AirTwitchException;
 import de.martindreier.airtwitch.twitch.Channel;
 import de.martindreier.airtwitch.twitch.LiveStream;
+import de.martindreier.airtwitch.twitch.StreamPrefetcher;
 import de.martindreier.airtwitch.twitch.Twitch;
 
 /**
@@ -30,6 +33,14 @@ public class StreamCommands
 	 * Twitch API instance.
 	 */
 	private Twitch			twitch;
+	/**
+	 * Speculative stream resolution for search results.
+	 */
+	private final StreamPrefetcher	prefetcher	= new StreamPrefetcher();
+	/**
+	 * Channels found by the last search.
+	 */
+	private List<Channel>	searchResult	= Collections.emptyList();
 	private Channel			selectedChannel;
 	private LiveStream	selectedStream;
 
@@ -44,6 +55,7 @@ public class StreamCommands
 		try
 		{
 			twitch = new Twitch();
+			twitch.warmUp();
 		}
 		catch (AirTwitchException exception)
 		{
@@ -64,6 +76,27 @@ public class StreamCommands
 		return selectedStream;
 	}
 
+	/**
+	 * Get the currently selected channel.
+	 *
+	 * @return The selected channel, or <code>null</code> if no channel is
+	 *         selected.
+	 */
+	public Channel getSelectedChannel()
+	{
+		return selectedChannel;
+	}
+
+	/**
+	 * Get the channels found by the last search.
+	 *
+	 * @return The search result. May be empty but never <code>null</code>.
+	 */
+	public List<Channel> getSearchResult()
+	{
+		return searchResult;
+	}
+
 	/**
 	 * Print the currently selected stream to the console.
 	 */
@@ -108,6 +141,8 @@ public class StreamCommands
 				System.out.println(queryString);
 				return;
 			}
+			searchResult = new ArrayList<>(channels);
+			prefetcher.prefetch(channels);
 			selectChannel(channels).ifPresent(this::selectStream);
 		}
 		catch (AirTwitchException | IOException exception)
@@ -142,7 +177,6 @@ public class StreamCommands
 	{
 		try
 		{
-			channel.requestChannelToken();
 			if (!channel.isLive())
 			{
 				System.out.print("Channel ");
@@ -150,7 +184,7 @@ public class StreamCommands
 				System.out.println(" is not live");
 				return;
 			}
-			List<LiveStream> streams = channel.getLiveStreams();
+			List<LiveStream> streams = prefetcher.getLiveStreams(channel);
 			if (streams.isEmpty())
 			{
 				System.out.print("Channel ");
@@ -6,11 +6,14 @@
 package de.martindreier.airtwitch.cli.devices;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import de.martindreier.airtwitch.AirTwitchException;
 import de.martindreier.airtwitch.airplay.AirPlayServiceDiscovery;
+import de.martindreier.airtwitch.airplay.DeviceHealth;
+import de.martindreier.airtwitch.airplay.DeviceHealthMonitor;
 import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.airplay.DeviceRegistry;
+import de.martindreier.airtwitch.airplay.InterfaceStatistics;
 
 /**
  * List of mDNS devices.
@@ -40,31 +43,11 @@ public class DeviceList
 		return listInstance;
 	}
 
-	/**
-	 * Internal list of known devices.
-	 */
-	private final List<DeviceInfo>				devices						= new ArrayList<>(5);
-
 	/**
 	 * Service discovery instance.
 	 */
 	private final AirPlayServiceDiscovery	serviceDiscovery	= new AirPlayServiceDiscovery();
 
-	/**
-	 * Add a new device to the internal list.
-	 *
-	 * @param device
-	 *          Device object.
-	 */
-	protected void addDevice(DeviceInfo device)
-	{
-		if (device == null)
-		{
-			throw new IllegalArgumentException("Device may not be null");
-		}
-		devices.add(device);
-	}
-
 	/**
 	 * Initialize the device list.
 	 */
@@ -72,7 +55,7 @@ public class DeviceList
 	{
 		try
 		{
-			serviceDiscovery.registerListener(this::addDevice);
+			serviceDiscovery.start();
 		}
 		catch (AirTwitchException exception)
 		{
@@ -88,14 +71,74 @@ public class DeviceList
 	{
 		System.out.println("Discovered devices");
 		int index = 0;
-		for (DeviceInfo device : devices)
+		for (DeviceInfo device : getDevices())
 		{
 			System.out.print(index);
 			System.out.print(": ");
-			System.out.println(device.getName());
+			System.out.print(device.getName());
+			System.out.print(device.isProbable() ? " (cached) " : " ");
+			System.out.print(device.getCapabilities().getCapabilities());
+			DeviceHealth health = DeviceHealthMonitor.getInstance().getHealth(device);
+			if (health.getStatus() != DeviceHealth.Status.HEALTHY)
+			{
+				System.out.print(" [" + health.getStatus() + "]");
+			}
+			System.out.println();
+			index++;
+		}
+	}
+
+	/**
+	 * Print the devices ordered by health to standard out. The index is the
+	 * index in the device list.
+	 */
+	public void printHealth()
+	{
+		System.out.println("Devices by health");
+		List<DeviceInfo> devices = getDevices();
+		for (DeviceInfo device : DeviceHealthMonitor.getInstance().getRankedDevices())
+		{
+			System.out.println(String.format("%d: %s %s", devices.indexOf(device), device.getName(),
+							DeviceHealthMonitor.getInstance().getHealth(device)));
 		}
 	}
 
+	/**
+	 * Print the discovery statistics per network interface to standard out.
+	 */
+	public void printInterfaceStatistics()
+	{
+		System.out.println("Discovery interfaces");
+		for (InterfaceStatistics statistics : serviceDiscovery.getInterfaceStatistics())
+		{
+			System.out.println(statistics);
+			statistics.getResolutionMillis().forEach((device, millis) -> System.out
+							.println(String.format("  %s resolved after %d ms", device, millis)));
+		}
+	}
+
+	/**
+	 * Get all discovered devices.
+	 *
+	 * @return Current device list, in discovery order.
+	 */
+	public List<DeviceInfo> getDevices()
+	{
+		return DeviceRegistry.getInstance().getSnapshot().getDevices();
+	}
+
+	/**
+	 * Get a discovered device by key.
+	 *
+	 * @param key
+	 *          Device key.
+	 * @return The device, or <code>null</code> if the device is not available.
+	 */
+	public DeviceInfo getDeviceByKey(String key)
+	{
+		return DeviceRegistry.getInstance().getSnapshot().getByKey(key).orElse(null);
+	}
+
 	/**
 	 * Get registered device at selected index.
 	 * 
@@ -103,6 +146,7 @@ public class DeviceList
 	 */
 	public DeviceInfo getDevice(int index)
 	{
+		List<DeviceInfo> devices = getDevices();
 		if (index < 0 || index >= devices.size())
 		{
 			return null;
@@ -7,27 +7,62 @@ package de.martindreier.airtwitch.airplay;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.jmdns.JmDNS;
 import de.martindreier.airtwitch.AirTwitchException;
 
 /**
- * Discover AirPlay services.
+ * Discover AirPlay services. Discovery runs on every suitable network
+ * interface at the same time, one JmDNS instance per interface. Devices seen
+ * on several interfaces are merged by the {@link DeviceRegistry}.
+ * <p>
+ * The interfaces can be restricted with the Java system property
+ * <code>airtwitch.mdns.interfaces</code>, a comma separated list of interface
+ * names.
  *
  * @author Martin Dreier <martin@martindreier.de>
  *
  */
 public class AirPlayServiceDiscovery implements Closeable
 {
-	public static final String	AIRPLAY_SERVICE_TYPE	= "_airplay._tcp.local.";
+	public static final String							AIRPLAY_SERVICE_TYPE	= "_airplay._tcp.local.";
 
 	/**
-	 * JmDNS instance.
+	 * Java system property: interfaces to use for discovery.
 	 */
-	private JmDNS								jmdns;
+	public static final String							PROP_INTERFACES				= "airtwitch.mdns.interfaces";
 
 	/**
-	 * Initialize the JmDNS instance.
+	 * Logging instance.
+	 */
+	private static final Logger							log										= Logger
+					.getLogger(AirPlayServiceDiscovery.class.getName());
+
+	/**
+	 * JmDNS instances with the statistics of their interface.
+	 */
+	private Map<JmDNS, InterfaceStatistics>	jmdns;
+
+	/**
+	 * Initialize the JmDNS instances. The instances for all interfaces are
+	 * created in parallel.
 	 *
 	 * @throws AirTwitchException
 	 */
@@ -35,17 +70,131 @@ public class AirPlayServiceDiscovery implements Closeable
 	{
 		if (jmdns == null)
 		{
-			try
+			long start = System.nanoTime();
+			Map<NetworkInterface, InetAddress> interfaces = findInterfaces();
+			Map<JmDNS, InterfaceStatistics> instances = new LinkedHashMap<>();
+			if (interfaces.isEmpty())
 			{
-				jmdns = JmDNS.create();
+				log.info("No suitable network interface found, using default interface");
+				InterfaceStatistics statistics = new InterfaceStatistics("default", null, start);
+				try
+				{
+					instances.put(JmDNS.create(), statistics);
+					statistics.started();
+				}
+				catch (IOException exception)
+				{
+					throw new AirTwitchException("Cannot register service listener", exception);
+				}
 			}
-			catch (IOException exception)
+			else
 			{
-				throw new AirTwitchException("Cannot register service listener", exception);
+				// JmDNS.create blocks while probing the network, so use one thread per
+				// interface
+				ExecutorService executor = Executors.newFixedThreadPool(interfaces.size());
+				List<CompletableFuture<Map.Entry<JmDNS, InterfaceStatistics>>> creations = new ArrayList<>();
+				interfaces.forEach((networkInterface, address) -> creations
+								.add(CompletableFuture.supplyAsync(() -> create(networkInterface, address, start), executor)));
+				executor.shutdown();
+				for (CompletableFuture<Map.Entry<JmDNS, InterfaceStatistics>> creation : creations)
+				{
+					try
+					{
+						Map.Entry<JmDNS, InterfaceStatistics> instance = creation.join();
+						instances.put(instance.getKey(), instance.getValue());
+					}
+					catch (CompletionException exception)
+					{
+						log.log(Level.WARNING, "Discovery not available on interface", exception.getCause());
+					}
+				}
+				if (instances.isEmpty())
+				{
+					throw new AirTwitchException("Cannot start discovery on any of the interfaces %s", interfaces.keySet());
+				}
 			}
+			jmdns = instances;
+		}
+	}
+
+	/**
+	 * Create the JmDNS instance for an interface.
+	 */
+	private Map.Entry<JmDNS, InterfaceStatistics> create(NetworkInterface networkInterface, InetAddress address,
+					long start)
+	{
+		InterfaceStatistics statistics = new InterfaceStatistics(networkInterface.getName(), address, start);
+		try
+		{
+			JmDNS instance = JmDNS.create(address, networkInterface.getName());
+			statistics.started();
+			log.info(() -> String.format("Discovery started on %s", statistics));
+			return new AbstractMap.SimpleImmutableEntry<>(instance, statistics);
+		}
+		catch (IOException exception)
+		{
+			throw new CompletionException(new AirTwitchException("Cannot start discovery on interface %s", exception,
+							networkInterface.getName()));
 		}
 	}
 
+	/**
+	 * Find the interfaces to run the discovery on, with the address to bind to.
+	 * IPv4 addresses are preferred.
+	 */
+	private Map<NetworkInterface, InetAddress> findInterfaces() throws AirTwitchException
+	{
+		String selection = System.getProperty(PROP_INTERFACES);
+		List<String> selected = selection == null ? null : Arrays.asList(selection.split("\\s*,\\s*"));
+		Map<NetworkInterface, InetAddress> interfaces = new LinkedHashMap<>();
+		try
+		{
+			for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces()))
+			{
+				if (!networkInterface.isUp() || networkInterface.isLoopback() || networkInterface.isPointToPoint()
+								|| !networkInterface.supportsMulticast()
+								|| (selected != null && !selected.contains(networkInterface.getName())))
+				{
+					continue;
+				}
+				InetAddress chosen = null;
+				for (InetAddress address : Collections.list(networkInterface.getInetAddresses()))
+				{
+					if (chosen == null || (address instanceof Inet4Address && !(chosen instanceof Inet4Address)))
+					{
+						chosen = address;
+					}
+				}
+				if (chosen != null)
+				{
+					interfaces.put(networkInterface, chosen);
+				}
+			}
+		}
+		catch (SocketException exception)
+		{
+			throw new AirTwitchException("Cannot list network interfaces", exception);
+		}
+		return interfaces;
+	}
+
+	/**
+	 * Start the discovery. Discovered devices are available from the
+	 * {@link DeviceRegistry}. Devices from the {@link DeviceCache} are available
+	 * immediately, before the network discovery is running. All devices are
+	 * probed by the {@link DeviceHealthMonitor}.
+	 *
+	 * @throws AirTwitchException
+	 */
+	public void start() throws AirTwitchException
+	{
+		DeviceHealthMonitor.getInstance().start();
+		DeviceCache.getInstance().restore(DeviceRegistry.getInstance());
+		registerListener(device -> {
+			// Devices are tracked by the registry
+		});
+	}
+
 	/**
 	 * Register a listener for device information.
 	 *
@@ -56,7 +205,18 @@ public class AirPlayServiceDiscovery implements Closeable
 	public void registerListener(Consumer<DeviceInfo> deviceResolutionCallback) throws AirTwitchException
 	{
 		initialize();
-		jmdns.addServiceListener(AIRPLAY_SERVICE_TYPE, new AirPlayServiceListener(deviceResolutionCallback));
+		jmdns.forEach((instance, statistics) -> instance.addServiceListener(AIRPLAY_SERVICE_TYPE,
+						new AirPlayServiceListener(DeviceRegistry.getInstance(), deviceResolutionCallback, statistics)));
+	}
+
+	/**
+	 * Get the discovery statistics of all interfaces.
+	 *
+	 * @return Statistics per interface. Empty if the discovery is not running.
+	 */
+	public synchronized List<InterfaceStatistics> getInterfaceStatistics()
+	{
+		return jmdns == null ? Collections.emptyList() : new ArrayList<>(jmdns.values());
 	}
 
 	/**
@@ -69,7 +229,23 @@ public class AirPlayServiceDiscovery implements Closeable
 	{
 		if (jmdns != null)
 		{
-			jmdns.close();
+			IOException failure = null;
+			for (JmDNS instance : jmdns.keySet())
+			{
+				try
+				{
+					instance.close();
+				}
+				catch (IOException exception)
+				{
+					failure = exception;
+				}
+			}
+			jmdns = null;
+			if (failure != null)
+			{
+				throw failure;
+			}
 		}
 	}
 }
@@ -5,11 +5,11 @@
  */
 package de.martindreier.airtwitch.airplay;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 import javax.jmdns.ServiceEvent;
+import javax.jmdns.ServiceInfo;
 import javax.jmdns.ServiceListener;
 
 /**
@@ -23,29 +23,74 @@ public class AirPlayServiceListener implements ServiceListener
 	/**
 	 * Log instance.
 	 */
-	private static final Logger		log							= Logger.getLogger(AirPlayServiceListener.class.getName());
+	private static final Logger									log											= Logger.getLogger(AirPlayServiceListener.class.getName());
 	/**
 	 * Listener for resolved devices.
 	 */
-	private Consumer<DeviceInfo>	deviceResolvedListener;
+	private Consumer<DeviceInfo>								deviceResolvedListener;
 	/**
-	 * Already resolved devices to prevent double resolution.
+	 * Registry of resolved devices.
 	 */
-	private Set<DeviceInfo>				resolvedDevices	= new HashSet<>();
+	private final DeviceRegistry								registry;
+	/**
+	 * Discovery statistics of the interface this listener is registered on.
+	 */
+	private final Optional<InterfaceStatistics>	statistics;
+	/**
+	 * Name of the interface this listener is registered on, the source of the
+	 * devices in the registry.
+	 */
+	private final String												source;
+	/**
+	 * Resolves announced services.
+	 */
+	private final ServiceResolver								resolver								= new ServiceResolver(this::resolved);
 
 	/**
 	 * Create a new listener.
 	 *
 	 * @param deviceResolvedListener
-	 *          Callback will be called when a device (service) is resolved.
+	 *          Callback will be called when a new device (service) is resolved.
 	 */
 	public AirPlayServiceListener(Consumer<DeviceInfo> deviceResolvedListener)
 	{
-		if (deviceResolvedListener == null)
+		this(DeviceRegistry.getInstance(), deviceResolvedListener);
+	}
+
+	/**
+	 * Create a new listener.
+	 *
+	 * @param registry
+	 *          Registry receiving the resolved and removed devices.
+	 * @param deviceResolvedListener
+	 *          Callback will be called when a new device (service) is resolved.
+	 */
+	public AirPlayServiceListener(DeviceRegistry registry, Consumer<DeviceInfo> deviceResolvedListener)
+	{
+		this(registry, deviceResolvedListener, null);
+	}
+
+	/**
+	 * Create a new listener for the discovery on one network interface.
+	 *
+	 * @param registry
+	 *          Registry receiving the resolved and removed devices.
+	 * @param deviceResolvedListener
+	 *          Callback will be called when a new device (service) is resolved.
+	 * @param statistics
+	 *          Statistics of the interface. May be <code>null</code>.
+	 */
+	public AirPlayServiceListener(DeviceRegistry registry, Consumer<DeviceInfo> deviceResolvedListener,
+					InterfaceStatistics statistics)
+	{
+		if (registry == null || deviceResolvedListener == null)
 		{
-			throw new IllegalArgumentException("Device listener must not be null");
+			throw new IllegalArgumentException("Registry and device listener must not be null");
 		}
+		this.registry = registry;
 		this.deviceResolvedListener = deviceResolvedListener;
+		this.statistics = Optional.ofNullable(statistics);
+		this.source = this.statistics.map(InterfaceStatistics::getInterfaceName).orElse(DeviceRegistry.NO_INTERFACE);
 	}
 
 	/**
@@ -56,6 +101,8 @@ public class AirPlayServiceListener implements ServiceListener
 	{
 		log.entering(this.getClass().getName(), "serviceAdded", event);
 		log.fine(() -> String.format("Service added: name %s; type %s", event.getName(), event.getType()));
+		// Resolve at once instead of waiting for JmDNS
+		resolver.resolve(event.getDNS(), event.getType(), event.getName());
 		log.exiting(this.getClass().getName(), "serviceAdded");
 	}
 
@@ -64,6 +111,19 @@ public class AirPlayServiceListener implements ServiceListener
 	{
 		log.entering(this.getClass().getName(), "serviceRemoved", event);
 		log.fine(() -> String.format("Service removed: name %s; type %s", event.getName(), event.getType()));
+		// Other interfaces may still see the device
+		registry.remove(source, event.getInfo().getKey()).ifPresent(change -> {
+			if (change.isRemoval())
+			{
+				log.info(() -> String.format("Device removed: %s", change.getDevice().getName()));
+			}
+			else
+			{
+				log.info(() -> String.format("Device no longer seen on %s: %s", source, change.getDevice()));
+			}
+			// Reconnect to the remaining addresses, if any
+			DeviceConnections.getInstance().close(change.getDevice());
+		});
 		log.exiting(this.getClass().getName(), "serviceRemoved");
 	}
 
@@ -72,16 +132,42 @@ public class AirPlayServiceListener implements ServiceListener
 	{
 		log.entering(this.getClass().getName(), "serviceResolved", event);
 		log.fine(() -> String.format("Service resolved: name %s; type %s", event.getName(), event.getType()));
-		DeviceInfo info = new DeviceInfo(event.getInfo());
-		if (resolvedDevices.contains(info))
+		resolved(event.getInfo());
+		log.exiting(this.getClass().getName(), "serviceResolved");
+	}
+
+	/**
+	 * Handle a resolved service, resolved either by the {@link ServiceResolver}
+	 * or by JmDNS.
+	 *
+	 * @param serviceInfo
+	 *          The resolved service.
+	 */
+	private void resolved(ServiceInfo serviceInfo)
+	{
+		resolver.resolved(serviceInfo).ifPresent(millis -> {
+			log.fine(() -> String.format("Resolved %s %d ms after announcement", serviceInfo.getName(), millis));
+			statistics.ifPresent(interfaceStatistics -> interfaceStatistics.resolutionTime(serviceInfo.getName(), millis));
+		});
+		statistics.filter(InterfaceStatistics::resolved)
+						.ifPresent(interfaceStatistics -> log.info(() -> String.format("First device on %s", interfaceStatistics)));
+		DeviceInfo info = new DeviceInfo(serviceInfo);
+		Optional<DeviceEvent> change = registry.register(source, info);
+		if (!change.isPresent())
 		{
 			log.fine(() -> String.format("Known device resolved: %s", info.toString()));
 			return;
 		}
+		if (change.get().getType() == DeviceEvent.Type.UPDATED)
+		{
+			log.info(() -> String.format("Device changed: %s", info.toString()));
+			// Reconnect to the new endpoint
+			DeviceConnections.getInstance().close(info);
+			return;
+		}
 		log.info(() -> String.format("New device resolved: %s", info.toString()));
-		resolvedDevices.add(info);
+		// Probe in the background, so capability checks are answered from the cache
+		DeviceCapabilityProbe.getInstance().probe(info);
 		deviceResolvedListener.accept(info);
-		log.exiting(this.getClass().getName(), "serviceResolved");
 	}
-
 }
@@ -0,0 +1,778 @@
+/**
+ * BulkCommandDispatcher.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.http.NameValuePair;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.StreamControl.Command;
+
+/**
+ * Sends commands to a large number of devices at once. Instead of one blocking
+ * client thread per device, all connections are handled by a few selector
+ * threads using non-blocking I/O. Each device is served by one selector
+ * thread, which keeps the connections to the device open for the next
+ * fan-out.
+ * <p>
+ * The number of devices served at the same time is bounded by two windows:
+ * one for all devices, and one per device. Devices waiting for a free slot
+ * are served in turn. The outcome per device, together with the throughput
+ * and latency of the fan-out, is collected in a {@link BulkReport}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class BulkCommandDispatcher implements Closeable
+{
+	/**
+	 * Java system property: number of selector threads.
+	 */
+	public static final String						PROP_THREADS											= "airtwitch.bulk.threads";
+
+	/**
+	 * Java system property: maximum number of command batches in flight for all
+	 * devices.
+	 */
+	public static final String						PROP_MAX_IN_FLIGHT								= "airtwitch.bulk.maxInFlight";
+
+	/**
+	 * Java system property: maximum number of command batches in flight for a
+	 * single device. Batches to the same device may complete out of order if
+	 * this is greater than <code>1</code>.
+	 */
+	public static final String						PROP_MAX_IN_FLIGHT_PER_DEVICE		= "airtwitch.bulk.maxInFlightPerDevice";
+
+	/**
+	 * Default maximum number of batches in flight for all devices.
+	 */
+	private static final int							DEFAULT_MAX_IN_FLIGHT						= 64;
+
+	/**
+	 * Length of a timer wheel tick in milliseconds.
+	 */
+	private static final long							TICK_MILLIS												= 50;
+
+	/**
+	 * Time an unused connection is kept open in milliseconds.
+	 */
+	private static final long							IDLE_MILLIS												= 30_000;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger						log																= Logger
+					.getLogger(BulkCommandDispatcher.class.getName());
+
+	/**
+	 * Selector threads.
+	 */
+	private final Worker[]								workers;
+
+	/**
+	 * Maximum number of batches in flight for all devices.
+	 */
+	private final int											maxInFlight;
+
+	/**
+	 * Maximum number of batches in flight per device.
+	 */
+	private final int											maxInFlightPerDevice;
+
+	/**
+	 * Waiting and running batches by device key. Guarded by <code>this</code>.
+	 */
+	private final Map<String, DeviceQueue>	queues														= new HashMap<>();
+
+	/**
+	 * Devices with waiting batches and a free slot in their window, served in
+	 * turn. Guarded by <code>this</code>.
+	 */
+	private final Queue<DeviceQueue>			ready															= new ArrayDeque<>();
+
+	/**
+	 * Number of batches in flight. Guarded by <code>this</code>.
+	 */
+	private int														inFlight;
+
+	/**
+	 * <code>true</code> once the dispatcher is closed. Guarded by
+	 * <code>this</code>.
+	 */
+	private boolean												closed;
+
+	/**
+	 * Create a dispatcher configured by system properties.
+	 *
+	 * @throws AirTwitchException
+	 *           The selectors could not be opened.
+	 * @see #PROP_THREADS
+	 * @see #PROP_MAX_IN_FLIGHT
+	 * @see #PROP_MAX_IN_FLIGHT_PER_DEVICE
+	 */
+	public BulkCommandDispatcher() throws AirTwitchException
+	{
+		this(Integer.getInteger(PROP_THREADS, Math.min(4, Runtime.getRuntime().availableProcessors())),
+						Integer.getInteger(PROP_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT),
+						Integer.getInteger(PROP_MAX_IN_FLIGHT_PER_DEVICE, 1));
+	}
+
+	/**
+	 * Create a dispatcher.
+	 *
+	 * @param threads
+	 *          Number of selector threads.
+	 * @param maxInFlight
+	 *          Maximum number of command batches in flight for all devices.
+	 * @param maxInFlightPerDevice
+	 *          Maximum number of command batches in flight for a single device.
+	 * @throws AirTwitchException
+	 *           The selectors could not be opened.
+	 */
+	public BulkCommandDispatcher(int threads, int maxInFlight, int maxInFlightPerDevice) throws AirTwitchException
+	{
+		if (threads < 1 || maxInFlight < 1 || maxInFlightPerDevice < 1)
+		{
+			throw new IllegalArgumentException("Thread count and in-flight windows must be positive");
+		}
+		this.maxInFlight = maxInFlight;
+		this.maxInFlightPerDevice = maxInFlightPerDevice;
+		workers = new Worker[threads];
+		try
+		{
+			for (int index = 0; index < threads; index++)
+			{
+				workers[index] = new Worker(index);
+			}
+		}
+		catch (IOException exception)
+		{
+			for (Worker worker : workers)
+			{
+				if (worker != null)
+				{
+					worker.close();
+				}
+			}
+			throw new AirTwitchException("Could not open selector for bulk commands", exception);
+		}
+	}
+
+	/**
+	 * Send commands to all streams, using the default command timeout.
+	 *
+	 * @param streams
+	 *          Target streams.
+	 * @param commands
+	 *          Commands to send to each stream, in order.
+	 * @return Future completed when all devices answered or failed.
+	 * @see StreamControl#PROP_COMMAND_TIMEOUT
+	 */
+	public CompletableFuture<BulkReport> dispatch(Collection<StreamControl> streams, List<Command> commands)
+	{
+		return dispatch(streams, commands, StreamControl.getDefaultTimeoutMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Send commands to all streams. The commands for one stream are sent one
+	 * after another on the same connection; if a command fails, the remaining
+	 * commands for the stream are skipped.
+	 *
+	 * @param streams
+	 *          Target streams.
+	 * @param commands
+	 *          Commands to send to each stream, in order.
+	 * @param timeout
+	 *          Deadline for each single command.
+	 * @param unit
+	 *          Time unit of the deadline.
+	 * @return Future completed when all devices answered or failed. Never
+	 *         completes exceptionally; failures are listed in the report.
+	 */
+	public CompletableFuture<BulkReport> dispatch(Collection<StreamControl> streams, List<Command> commands,
+					long timeout, TimeUnit unit)
+	{
+		long start = System.nanoTime();
+		List<Command> batch = new ArrayList<>(commands);
+		List<Job> jobs = new ArrayList<>(streams.size());
+		for (StreamControl stream : streams)
+		{
+			jobs.add(new Job(stream, batch, Math.max(1, unit.toMillis(timeout))));
+		}
+		CompletableFuture<BulkReport> report = CompletableFuture
+						.allOf(jobs.stream().map(job -> job.result).toArray(CompletableFuture[]::new))
+						.thenApply(ignored -> {
+							List<BulkReport.DeviceResult> results = new ArrayList<>(jobs.size());
+							jobs.forEach(job -> results.add(job.result.join()));
+							return new BulkReport(results, batch.size(),
+											TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+						});
+		report.thenAccept(result -> log.info(result::toString));
+		synchronized (this)
+		{
+			for (Job job : jobs)
+			{
+				if (closed)
+				{
+					job.fail(new AirTwitchException("Bulk command dispatcher is closed"));
+				}
+				else
+				{
+					DeviceQueue queue = queues.computeIfAbsent(job.device.getKey(), key -> new DeviceQueue());
+					queue.waiting.add(job);
+					markReady(queue);
+				}
+			}
+		}
+		startWaiting();
+		return report;
+	}
+
+	/**
+	 * Stop all selector threads. Waiting and running batches fail.
+	 */
+	@Override
+	public void close()
+	{
+		List<Job> waiting = new ArrayList<>();
+		synchronized (this)
+		{
+			closed = true;
+			queues.values().forEach(queue -> waiting.addAll(queue.waiting));
+			queues.clear();
+			ready.clear();
+		}
+		waiting.forEach(job -> job.fail(new AirTwitchException("Bulk command dispatcher is closed")));
+		for (Worker worker : workers)
+		{
+			worker.close();
+		}
+	}
+
+	/**
+	 * Queue a device for service if it has waiting batches and a free slot.
+	 */
+	private void markReady(DeviceQueue queue)
+	{
+		if (!queue.ready && !queue.waiting.isEmpty() && queue.inFlight < maxInFlightPerDevice)
+		{
+			queue.ready = true;
+			ready.add(queue);
+		}
+	}
+
+	/**
+	 * Start waiting batches while the global window has free slots.
+	 */
+	private void startWaiting()
+	{
+		List<Job> started = new ArrayList<>();
+		synchronized (this)
+		{
+			while (inFlight < maxInFlight && !ready.isEmpty())
+			{
+				DeviceQueue queue = ready.poll();
+				queue.ready = false;
+				started.add(queue.waiting.poll());
+				queue.inFlight++;
+				inFlight++;
+				// Back to the end of the line, so all devices get their turn
+				markReady(queue);
+			}
+		}
+		started.forEach(job -> workers[Math.floorMod(job.device.getKey().hashCode(), workers.length)].submit(job));
+	}
+
+	/**
+	 * Release the slots of a finished batch and start the next ones.
+	 */
+	private void finished(Job job)
+	{
+		synchronized (this)
+		{
+			DeviceQueue queue = queues.get(job.device.getKey());
+			inFlight--;
+			if (queue != null)
+			{
+				queue.inFlight--;
+				if (queue.inFlight == 0 && queue.waiting.isEmpty())
+				{
+					queues.remove(job.device.getKey());
+				}
+				else
+				{
+					markReady(queue);
+				}
+			}
+		}
+		startWaiting();
+	}
+
+	/**
+	 * Waiting and running batches of one device.
+	 */
+	private static class DeviceQueue
+	{
+		private final Queue<Job>	waiting	= new ArrayDeque<>();
+		private int								inFlight;
+		private boolean						ready;
+	}
+
+	/**
+	 * The commands for one stream.
+	 */
+	private class Job
+	{
+		private final StreamControl														stream;
+		private final DeviceInfo															device;
+		private final List<Command>														commands;
+		private final long																		timeoutMillis;
+		private final long																		queued		= System.nanoTime();
+		private final CompletableFuture<BulkReport.DeviceResult>	result		= new CompletableFuture<>();
+		private long																					started;
+		private InetSocketAddress															address;
+		/**
+		 * Index of the command in progress.
+		 */
+		private int																						next;
+		/**
+		 * Incremented for each request, to match timeouts with requests.
+		 */
+		private int																						sequence;
+		/**
+		 * <code>true</code> if a request failed on a reused connection and was
+		 * repeated on a new one.
+		 */
+		private boolean																				retried;
+
+		Job(StreamControl stream, List<Command> commands, long timeoutMillis)
+		{
+			this.stream = stream;
+			this.device = stream.getDeviceInfo();
+			this.commands = commands;
+			this.timeoutMillis = timeoutMillis;
+		}
+
+		Command current()
+		{
+			return commands.get(next);
+		}
+
+		void succeed()
+		{
+			complete(null);
+		}
+
+		void fail(AirTwitchException exception)
+		{
+			log.log(Level.FINE, exception.getLocalizedMessage(), exception);
+			complete(exception);
+		}
+
+		private void complete(AirTwitchException failure)
+		{
+			long now = System.nanoTime();
+			long start = started == 0 ? now : started;
+			int sent = failure == null ? commands.size() : Math.min(next + 1, commands.size());
+			if (result.complete(new BulkReport.DeviceResult(stream, started == 0 ? 0 : sent,
+							TimeUnit.NANOSECONDS.toMillis(start - queued), TimeUnit.NANOSECONDS.toMillis(now - start), failure))
+							&& started != 0)
+			{
+				finished(this);
+			}
+		}
+	}
+
+	/**
+	 * A selector thread with its connections.
+	 */
+	private class Worker
+	{
+		private final SelectorLoop													loop;
+		private final ByteBuffer														readBuffer	= ByteBuffer.allocateDirect(16 * 1024);
+		/**
+		 * Open connections without a request, by device address.
+		 */
+		private final Map<InetSocketAddress, Deque<Connection>>	idle				= new HashMap<>();
+		/**
+		 * All open connections.
+		 */
+		private final Set<Connection>												connections	= new HashSet<>();
+
+		Worker(int index) throws IOException
+		{
+			loop = new SelectorLoop("Bulk commands " + index, TICK_MILLIS);
+			loop.start(this::handle, () -> new ArrayList<>(connections)
+							.forEach(connection -> connection.failed(new IOException("Bulk command dispatcher is closed"))));
+		}
+
+		/**
+		 * Start a batch on this thread.
+		 */
+		void submit(Job job)
+		{
+			loop.execute(() -> start(job));
+		}
+
+		void close()
+		{
+			loop.close();
+		}
+
+		/**
+		 * Start sending the commands of a batch.
+		 */
+		private void start(Job job)
+		{
+			job.started = System.nanoTime();
+			if (!loop.isRunning())
+			{
+				job.fail(new AirTwitchException("Bulk command dispatcher is closed"));
+				return;
+			}
+			try
+			{
+				Optional<InetAddress> address = DeviceConnections.getInstance().getPreferredAddress(job.device);
+				if (!address.isPresent())
+				{
+					job.fail(new AirTwitchException("Device %s has no address", job.device.getName()));
+					return;
+				}
+				job.address = new InetSocketAddress(address.get(), job.device.getPort());
+			}
+			catch (RuntimeException exception)
+			{
+				job.fail(new AirTwitchException("Could not find address of device %s", exception, job.device.getName()));
+				return;
+			}
+			send(job, null, false);
+		}
+
+		/**
+		 * Send the current command of a batch.
+		 *
+		 * @param connection
+		 *          Connection to use, or <code>null</code> to take an idle one or
+		 *          open a new one.
+		 * @param fresh
+		 *          <code>true</code> to open a new connection instead of taking an
+		 *          idle one.
+		 */
+		private void send(Job job, Connection connection, boolean fresh)
+		{
+			try
+			{
+				// Format first, so a failure leaves no connection behind
+				String request = request(job);
+				if (!fresh && (connection == null || !connection.isOpen()))
+				{
+					connection = takeIdle(job.address);
+				}
+				else if (fresh)
+				{
+					connection = null;
+				}
+				if (connection == null)
+				{
+					connection = new Connection(job.address);
+				}
+				connection.job = job;
+				connection.send(request);
+				int sequence = ++job.sequence;
+				Connection used = connection;
+				loop.schedule(job.timeoutMillis, () -> {
+					if (job.sequence == sequence && used.job == job)
+					{
+						used.close();
+						job.fail(new AirTwitchException("Command %s to device %s timed out after %d ms", job.current().name(),
+										job.device.getName(), job.timeoutMillis));
+					}
+				});
+			}
+			catch (IOException | RuntimeException exception)
+			{
+				job.fail(new AirTwitchException("Could not send command %s to device %s", exception, job.current().name(),
+								job.device.getName()));
+			}
+		}
+
+		/**
+		 * Take an open connection without a request.
+		 */
+		private Connection takeIdle(InetSocketAddress address)
+		{
+			Deque<Connection> available = idle.get(address);
+			Connection connection = available == null ? null : available.pollLast();
+			if (available != null && available.isEmpty())
+			{
+				idle.remove(address);
+			}
+			return connection;
+		}
+
+		/**
+		 * Keep a connection open for the next batch.
+		 */
+		private void release(Connection connection)
+		{
+			connection.job = null;
+			connection.reused = true;
+			idle.computeIfAbsent(connection.address, address -> new ArrayDeque<>()).add(connection);
+			long since = ++connection.idleSince;
+			loop.schedule(IDLE_MILLIS, () -> {
+				if (connection.job == null && connection.idleSince == since)
+				{
+					connection.close();
+				}
+			});
+		}
+
+		/**
+		 * Format the request for the current command of a batch.
+		 */
+		private String request(Job job)
+		{
+			Command command = job.current();
+			List<NameValuePair> content = job.stream.getContent(command);
+			String body = content == null ? "" : StreamControl.formatContent(content);
+			String contentType = body.isEmpty() ? "" : "Content-Type: text/plain; charset=ISO-8859-1\r\n";
+			return String.format(
+							"POST %s HTTP/1.1\r\nHost: %s:%d\r\nUser-Agent: MediaControl/1.0\r\n%s: %s\r\n%sContent-Length: %d\r\n\r\n%s",
+							StreamControl.getPath(command), job.address.getHostString(), job.address.getPort(),
+							StreamControl.SESSION_ID_HEADER, job.stream.getSessionId(), contentType,
+							body.getBytes(StandardCharsets.ISO_8859_1).length, body);
+		}
+
+		/**
+		 * Handle the answer to the current command of a batch.
+		 */
+		private void onResponse(Connection connection, HttpMessageBuffer.Message message)
+		{
+			Job job = connection.job;
+			if (job == null)
+			{
+				// Nothing was asked
+				connection.close();
+				return;
+			}
+			job.sequence++;
+			boolean keepAlive = !"close".equalsIgnoreCase(message.getHeader("Connection"));
+			if (!keepAlive)
+			{
+				connection.close();
+			}
+			if (message.getStatus() != 200)
+			{
+				if (keepAlive)
+				{
+					release(connection);
+				}
+				job.fail(new AirTwitchException("Command %s to device %s failed: %s", job.current().name(),
+								job.device.getName(), message.getStartLine()));
+				return;
+			}
+			job.next++;
+			job.retried = false;
+			if (job.next < job.commands.size())
+			{
+				send(job, connection, false);
+				return;
+			}
+			if (keepAlive)
+			{
+				release(connection);
+			}
+			job.succeed();
+		}
+
+		/**
+		 * Handle a broken connection.
+		 */
+		private void onFailure(Connection connection, Exception exception)
+		{
+			Job job = connection.job;
+			if (job == null)
+			{
+				// Idle connection closed by the device
+				return;
+			}
+			connection.job = null;
+			job.sequence++;
+			if (connection.reused && !job.retried && loop.isRunning())
+			{
+				// The device may have closed the connection before the request
+				// arrived, try once more on a new connection
+				job.retried = true;
+				send(job, null, true);
+				return;
+			}
+			job.fail(new AirTwitchException("Could not send command %s to device %s", exception, job.current().name(),
+							job.device.getName()));
+		}
+
+		/**
+		 * Handle a ready connection.
+		 */
+		private void handle(SelectionKey key)
+		{
+			Connection connection = (Connection) key.attachment();
+			try
+			{
+				if (!key.isValid())
+				{
+					return;
+				}
+				if (key.isConnectable() && connection.channel.finishConnect())
+				{
+					key.interestOps(SelectionKey.OP_READ | (connection.output.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+				}
+				if (key.isValid() && key.isWritable())
+				{
+					connection.flush();
+				}
+				if (key.isValid() && key.isReadable())
+				{
+					readBuffer.clear();
+					int read = connection.channel.read(readBuffer);
+					if (read < 0)
+					{
+						connection.failed(new IOException("Connection closed by device"));
+						return;
+					}
+					readBuffer.flip();
+					connection.input.append(readBuffer);
+					HttpMessageBuffer.Message message;
+					while (connection.isOpen() && (message = connection.input.next()) != null)
+					{
+						onResponse(connection, message);
+					}
+				}
+			}
+			catch (IOException | RuntimeException exception)
+			{
+				connection.failed(exception);
+			}
+		}
+
+		/**
+		 * A non-blocking connection to a device.
+		 */
+		private class Connection
+		{
+			private final InetSocketAddress		address;
+			private final SocketChannel				channel;
+			private final SelectionKey				key;
+			private final Queue<ByteBuffer>		output	= new ArrayDeque<>();
+			private final HttpMessageBuffer		input		= new HttpMessageBuffer();
+			/**
+			 * Batch waiting for an answer on this connection, <code>null</code> if
+			 * idle.
+			 */
+			private Job												job;
+			/**
+			 * <code>true</code> if the connection carried an earlier request.
+			 */
+			private boolean										reused;
+			/**
+			 * Incremented each time the connection becomes idle.
+			 */
+			private long											idleSince;
+
+			Connection(InetSocketAddress address) throws IOException
+			{
+				this.address = address;
+				channel = SocketChannel.open();
+				try
+				{
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					boolean connected = channel.connect(address);
+					key = channel.register(loop.getSelector(), connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+				}
+				catch (IOException exception)
+				{
+					channel.close();
+					throw exception;
+				}
+				connections.add(this);
+			}
+
+			boolean isOpen()
+			{
+				return channel.isOpen();
+			}
+
+			void send(String message)
+			{
+				output.add(ByteBuffer.wrap(message.getBytes(StandardCharsets.ISO_8859_1)));
+				if (channel.isConnected())
+				{
+					key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+				}
+			}
+
+			void flush() throws IOException
+			{
+				while (!output.isEmpty())
+				{
+					channel.write(output.peek());
+					if (output.peek().hasRemaining())
+					{
+						return;
+					}
+					output.poll();
+				}
+				key.interestOps(SelectionKey.OP_READ);
+			}
+
+			void failed(Exception exception)
+			{
+				close();
+				onFailure(this, exception);
+			}
+
+			void close()
+			{
+				connections.remove(this);
+				Deque<Connection> available = idle.get(address);
+				if (available != null && available.remove(this) && available.isEmpty())
+				{
+					idle.remove(address);
+				}
+				key.cancel();
+				try
+				{
+					channel.close();
+				}
+				catch (IOException exception)
+				{
+					log.log(Level.FINE, "Could not close connection", exception);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,264 @@
+/**
+ * BulkReport.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Result of a command fan-out by the {@link BulkCommandDispatcher}: the outcome
+ * per device, together with the throughput and latency of the whole fan-out.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class BulkReport
+{
+	/**
+	 * Outcome per device, in the order the streams were passed.
+	 */
+	private final List<DeviceResult>	results;
+
+	/**
+	 * Number of commands per device.
+	 */
+	private final int									commandCount;
+
+	/**
+	 * Time from the dispatch until the last device answered, in milliseconds.
+	 */
+	private final long								durationMillis;
+
+	/**
+	 * Create a report.
+	 *
+	 * @param results
+	 *          Outcome per device.
+	 * @param commandCount
+	 *          Number of commands per device.
+	 * @param durationMillis
+	 *          Duration of the fan-out in milliseconds.
+	 */
+	BulkReport(List<DeviceResult> results, int commandCount, long durationMillis)
+	{
+		this.results = Collections.unmodifiableList(new ArrayList<>(results));
+		this.commandCount = commandCount;
+		this.durationMillis = durationMillis;
+	}
+
+	/**
+	 * @return Outcome per device.
+	 */
+	public List<DeviceResult> getResults()
+	{
+		return results;
+	}
+
+	/**
+	 * @return Outcome of the devices which did not accept all commands.
+	 */
+	public List<DeviceResult> getFailures()
+	{
+		return results.stream().filter(result -> !result.isSuccess()).collect(Collectors.toList());
+	}
+
+	/**
+	 * @return Time from the dispatch until the last device answered, in
+	 *         milliseconds.
+	 */
+	public long getDurationMillis()
+	{
+		return durationMillis;
+	}
+
+	/**
+	 * @return Commands sent per second, including failed commands.
+	 */
+	public double getThroughput()
+	{
+		long sent = results.stream().mapToLong(DeviceResult::getSentCount).sum();
+		return durationMillis == 0 ? sent * 1000.0 : sent * 1000.0 / durationMillis;
+	}
+
+	/**
+	 * Get a percentile of the time the devices took to answer, from sending the
+	 * first command until the last answer. The time waiting for a free slot is
+	 * not included.
+	 *
+	 * @param percentile
+	 *          Percentile between <code>0</code> and <code>100</code>.
+	 * @return Latency in milliseconds, <code>0</code> for an empty fan-out.
+	 */
+	public long getLatencyMillis(double percentile)
+	{
+		return percentile(results.stream().map(DeviceResult::getLatencyMillis).collect(Collectors.toList()), percentile);
+	}
+
+	/**
+	 * Get a percentile of the time the devices waited for a free slot in the
+	 * in-flight windows.
+	 *
+	 * @param percentile
+	 *          Percentile between <code>0</code> and <code>100</code>.
+	 * @return Wait time in milliseconds, <code>0</code> for an empty fan-out.
+	 */
+	public long getWaitMillis(double percentile)
+	{
+		return percentile(results.stream().map(DeviceResult::getWaitMillis).collect(Collectors.toList()), percentile);
+	}
+
+	/**
+	 * Nearest rank percentile.
+	 */
+	private static long percentile(List<Long> values, double percentile)
+	{
+		if (values.isEmpty())
+		{
+			return 0;
+		}
+		Collections.sort(values);
+		int rank = (int) Math.ceil(percentile / 100 * values.size());
+		return values.get(Math.max(0, Math.min(values.size() - 1, rank - 1)));
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+						"%d commands to %d devices in %d ms (%.1f/s), %d failed, latency p50 %d ms, p95 %d ms, p99 %d ms, max %d ms, wait p95 %d ms",
+						commandCount * results.size(), results.size(), durationMillis, getThroughput(), getFailures().size(),
+						getLatencyMillis(50), getLatencyMillis(95), getLatencyMillis(99), getLatencyMillis(100),
+						getWaitMillis(95));
+	}
+
+	/**
+	 * Outcome of a fan-out on one device.
+	 *
+	 * @author Martin Dreier <martin@martindreier.de>
+	 *
+	 */
+	public static class DeviceResult
+	{
+		/**
+		 * Target stream.
+		 */
+		private final StreamControl									stream;
+
+		/**
+		 * Number of commands sent, including a failed command.
+		 */
+		private final int														sentCount;
+
+		/**
+		 * Time waiting for a free slot in milliseconds.
+		 */
+		private final long													waitMillis;
+
+		/**
+		 * Time from sending the first command until the last answer in
+		 * milliseconds.
+		 */
+		private final long													latencyMillis;
+
+		/**
+		 * Cause of the failure, empty if the device accepted all commands.
+		 */
+		private final Optional<AirTwitchException>	failure;
+
+		/**
+		 * Create a result.
+		 *
+		 * @param stream
+		 *          Target stream.
+		 * @param sentCount
+		 *          Number of commands sent.
+		 * @param waitMillis
+		 *          Time waiting for a free slot in milliseconds.
+		 * @param latencyMillis
+		 *          Time until the last answer in milliseconds.
+		 * @param failure
+		 *          Cause of the failure, or <code>null</code>.
+		 */
+		DeviceResult(StreamControl stream, int sentCount, long waitMillis, long latencyMillis,
+						AirTwitchException failure)
+		{
+			this.stream = stream;
+			this.sentCount = sentCount;
+			this.waitMillis = waitMillis;
+			this.latencyMillis = latencyMillis;
+			this.failure = Optional.ofNullable(failure);
+		}
+
+		/**
+		 * @return Target stream.
+		 */
+		public StreamControl getStream()
+		{
+			return stream;
+		}
+
+		/**
+		 * @return Target device.
+		 */
+		public DeviceInfo getDevice()
+		{
+			return stream.getDeviceInfo();
+		}
+
+		/**
+		 * @return Number of commands sent, including a failed command.
+		 */
+		public int getSentCount()
+		{
+			return sentCount;
+		}
+
+		/**
+		 * @return Time waiting for a free slot in milliseconds.
+		 */
+		public long getWaitMillis()
+		{
+			return waitMillis;
+		}
+
+		/**
+		 * @return Time from sending the first command until the last answer in
+		 *         milliseconds.
+		 */
+		public long getLatencyMillis()
+		{
+			return latencyMillis;
+		}
+
+		/**
+		 * @return <code>true</code> if the device accepted all commands.
+		 */
+		public boolean isSuccess()
+		{
+			return !failure.isPresent();
+		}
+
+		/**
+		 * @return Cause of the failure, empty if the device accepted all
+		 *         commands.
+		 */
+		public Optional<AirTwitchException> getFailure()
+		{
+			return failure;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%s: %s in %d ms", getDevice().getName(),
+							failure.map(AirTwitchException::getLocalizedMessage).orElse("OK"), latencyMillis);
+		}
+	}
+}
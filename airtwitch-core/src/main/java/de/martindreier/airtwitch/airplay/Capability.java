@@ -0,0 +1,101 @@
+/**
+ * Capability.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+/**
+ * Capabilities of an AirPlay device, as announced in the <code>features</code>
+ * bitmask of the mDNS TXT record and the <code>/server-info</code> response.
+ * Each capability is identified by its bit in the 64 bit feature mask.
+ *
+ * @see DeviceCapabilities
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public enum Capability
+{
+	/**
+	 * Video playback.
+	 */
+	VIDEO(0),
+	/**
+	 * Photo display.
+	 */
+	PHOTO(1),
+	/**
+	 * FairPlay protected video.
+	 */
+	VIDEO_FAIRPLAY(2),
+	/**
+	 * Volume control during video playback.
+	 */
+	VIDEO_VOLUME_CONTROL(3),
+	/**
+	 * HTTP live streaming.
+	 */
+	HTTP_LIVE_STREAMS(4),
+	/**
+	 * Photo slideshows.
+	 */
+	SLIDESHOW(5),
+	/**
+	 * Screen mirroring.
+	 */
+	SCREEN(7),
+	/**
+	 * Screen rotation during mirroring.
+	 */
+	SCREEN_ROTATE(8),
+	/**
+	 * Audio streaming.
+	 */
+	AUDIO(9),
+	/**
+	 * Redundant audio packets.
+	 */
+	AUDIO_REDUNDANT(11),
+	/**
+	 * Photo caching.
+	 */
+	PHOTO_CACHING(13),
+	/**
+	 * Authentication with device PIN or password.
+	 */
+	AUTHENTICATION(14),
+	/**
+	 * Audio format negotiation.
+	 */
+	AUDIO_FORMATS(18),
+	/**
+	 * Unified media control, i.e. newer devices with AirPlay 2.
+	 */
+	UNIFIED_MEDIA_CONTROL(38),
+	/**
+	 * The device answered a <code>/server-info</code> request. Not part of the
+	 * announced features, set by the probe.
+	 */
+	SERVER_INFO(63);
+
+	/**
+	 * Bit in the feature mask.
+	 */
+	private final int bit;
+
+	private Capability(int bit)
+	{
+		this.bit = bit;
+	}
+
+	/**
+	 * Get the mask of this capability.
+	 *
+	 * @return Mask with the capability bit set.
+	 */
+	long mask()
+	{
+		return 1L << bit;
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * ConnectionStatistics.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Usage statistics of the connection to a device.
+ *
+ * @see DeviceConnections
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class ConnectionStatistics
+{
+	/**
+	 * Number of requests sent.
+	 */
+	private final AtomicLong	requests		= new AtomicLong();
+
+	/**
+	 * Number of TCP connections opened.
+	 */
+	private final AtomicLong	connections	= new AtomicLong();
+
+	/**
+	 * Count a request.
+	 */
+	void requestSent()
+	{
+		requests.incrementAndGet();
+	}
+
+	/**
+	 * Count a new connection.
+	 */
+	void connectionOpened()
+	{
+		connections.incrementAndGet();
+	}
+
+	/**
+	 * @return Number of requests sent to the device.
+	 */
+	public long getRequests()
+	{
+		return requests.get();
+	}
+
+	/**
+	 * @return Number of TCP connections opened to the device.
+	 */
+	public long getConnections()
+	{
+		return connections.get();
+	}
+
+	/**
+	 * Get the share of requests which were sent over an already open connection.
+	 *
+	 * @return Reuse ratio between <code>0</code> and <code>1</code>.
+	 */
+	public double getReuseRatio()
+	{
+		long sent = getRequests();
+		if (sent == 0)
+		{
+			return 0;
+		}
+		return Math.max(0, sent - getConnections()) / (double) sent;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d requests over %d connections (%.0f%% reused)", getRequests(), getConnections(),
+						getReuseRatio() * 100);
+	}
+}
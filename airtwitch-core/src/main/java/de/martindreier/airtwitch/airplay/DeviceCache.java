@@ -0,0 +1,345 @@
+/**
+ * DeviceCache.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+/**
+ * Persistent cache of discovered devices. At startup the cached devices are
+ * added to the {@link DeviceRegistry} at once as probable devices, so the
+ * device list is available before the first mDNS announcement arrives. Each
+ * cached device is then confirmed with a direct <code>/server-info</code>
+ * request; devices which do not answer are removed again. This also finds
+ * devices on routed subnets which multicast does not reach.
+ * <p>
+ * The cache file is read from the Java system property
+ * <code>airtwitch.devices.cache</code> and defaults to
+ * <code>.airtwitch/devices.json</code> in the user's home directory. An empty
+ * value disables the cache.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceCache
+{
+	/**
+	 * Java system property: cache file.
+	 */
+	public static final String							PROP_FILE		= "airtwitch.devices.cache";
+
+	/**
+	 * Devices not seen for this number of days are dropped from the cache.
+	 */
+	private static final long								MAX_AGE_DAYS	= 30;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger							log						= Logger.getLogger(DeviceCache.class.getName());
+
+	/**
+	 * Singleton instance.
+	 */
+	private static DeviceCache							instance;
+
+	/**
+	 * Get the device cache.
+	 *
+	 * @return Singleton instance.
+	 */
+	public static synchronized DeviceCache getInstance()
+	{
+		if (instance == null)
+		{
+			String file = System.getProperty(PROP_FILE,
+							Paths.get(System.getProperty("user.home"), ".airtwitch", "devices.json").toString());
+			instance = new DeviceCache(file.trim().isEmpty() ? null : Paths.get(file));
+		}
+		return instance;
+	}
+
+	/**
+	 * Cache file. Empty if the cache is disabled.
+	 */
+	private final Optional<Path>						file;
+
+	/**
+	 * Cached devices by device key.
+	 */
+	private final Map<String, CachedDevice>	entries				= new LinkedHashMap<>();
+
+	/**
+	 * JSON serializer.
+	 */
+	private final Gson											gson					= new GsonBuilder().setPrettyPrinting().create();
+
+	/**
+	 * <code>true</code> once the cache was restored.
+	 */
+	private final AtomicBoolean							restored			= new AtomicBoolean();
+
+	/**
+	 * <code>true</code> while a save is scheduled.
+	 */
+	private final AtomicBoolean							savePending		= new AtomicBoolean();
+
+	/**
+	 * Writer thread. Saves are coalesced, so a burst of discoveries is written
+	 * once.
+	 */
+	private final ExecutorService						writer				= Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Device cache writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Create a device cache.
+	 *
+	 * @param file
+	 *          Cache file. <code>null</code> disables the cache.
+	 */
+	DeviceCache(Path file)
+	{
+		this.file = Optional.ofNullable(file);
+	}
+
+	/**
+	 * Restore the cached devices into the registry and confirm them in the
+	 * background. Afterwards, all devices seen on the network are written to the
+	 * cache. Only the first call has an effect.
+	 *
+	 * @param registry
+	 *          Registry to restore the devices into.
+	 * @return Future which completes when all cached devices were confirmed or
+	 *         removed.
+	 */
+	public CompletableFuture<Void> restore(DeviceRegistry registry)
+	{
+		if (!file.isPresent() || !restored.compareAndSet(false, true))
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		long start = System.nanoTime();
+		List<DeviceInfo> devices = load();
+		devices.forEach(registry::register);
+		registry.addListener(this::deviceChanged);
+		log.info(() -> String.format("Restored %d cached devices in %d ms", devices.size(),
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+
+		// Confirm all devices in parallel with a direct request
+		AtomicInteger confirmed = new AtomicInteger();
+		CompletableFuture<?>[] verifications = devices.stream()
+						.map(device -> DeviceCapabilityProbe.getInstance().probe(device).thenAccept(capabilities -> {
+							if (capabilities.isProbed())
+							{
+								confirmed.incrementAndGet();
+								registry.register(device.confirmed());
+								remember(device.confirmed());
+							}
+							else if (registry.removeUnconfirmed(device.getKey()).isPresent())
+							{
+								log.fine(() -> String.format("Cached device %s is not available", device.getName()));
+							}
+						})).toArray(CompletableFuture[]::new);
+		return CompletableFuture.allOf(verifications).whenComplete((result, exception) -> log
+						.info(() -> String.format("Confirmed %d of %d cached devices in %d ms", confirmed.get(), devices.size(),
+										TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))));
+	}
+
+	/**
+	 * Registry listener: remember devices seen on the network. Removed devices
+	 * stay in the cache, as they are likely to come back.
+	 */
+	private void deviceChanged(DeviceEvent event)
+	{
+		if (!event.isRemoval() && !event.getDevice().isProbable())
+		{
+			remember(event.getDevice());
+		}
+	}
+
+	/**
+	 * Add or update a device in the cache and schedule a save.
+	 */
+	private void remember(DeviceInfo device)
+	{
+		synchronized (entries)
+		{
+			entries.put(device.getKey(), new CachedDevice(device, System.currentTimeMillis()));
+		}
+		if (savePending.compareAndSet(false, true))
+		{
+			writer.execute(() -> {
+				savePending.set(false);
+				save();
+			});
+		}
+	}
+
+	/**
+	 * Read the cache file.
+	 */
+	private List<DeviceInfo> load()
+	{
+		List<DeviceInfo> devices = new ArrayList<>();
+		if (!Files.isRegularFile(file.get()))
+		{
+			return devices;
+		}
+		long oldest = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_AGE_DAYS);
+		try (Reader reader = Files.newBufferedReader(file.get(), StandardCharsets.UTF_8))
+		{
+			CachedDevice[] cached = gson.fromJson(reader, CachedDevice[].class);
+			synchronized (entries)
+			{
+				for (CachedDevice entry : cached == null ? new CachedDevice[0] : cached)
+				{
+					if (entry.key == null || entry.lastSeen < oldest)
+					{
+						continue;
+					}
+					try
+					{
+						devices.add(entry.toDeviceInfo());
+						entries.put(entry.key, entry);
+					}
+					catch (UnknownHostException exception)
+					{
+						log.log(Level.FINE, String.format("Ignoring cached device %s", entry.name), exception);
+					}
+				}
+			}
+		}
+		catch (IOException | JsonParseException exception)
+		{
+			log.log(Level.WARNING, String.format("Could not read device cache %s", file.get()), exception);
+		}
+		return devices;
+	}
+
+	/**
+	 * Write the cache file. The file is replaced atomically, so a crash never
+	 * leaves a partial cache.
+	 */
+	private void save()
+	{
+		CachedDevice[] cached;
+		synchronized (entries)
+		{
+			cached = entries.values().toArray(new CachedDevice[entries.size()]);
+		}
+		Path target = file.get();
+		try
+		{
+			Path directory = target.toAbsolutePath().getParent();
+			Files.createDirectories(directory);
+			Path temporary = Files.createTempFile(directory, "devices", ".tmp");
+			try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8))
+			{
+				gson.toJson(cached, out);
+			}
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			log.fine(() -> String.format("Saved %d devices to %s", cached.length, target));
+		}
+		catch (IOException exception)
+		{
+			log.log(Level.WARNING, String.format("Could not write device cache %s", target), exception);
+		}
+	}
+
+	/**
+	 * Persistent form of a device.
+	 */
+	private static class CachedDevice
+	{
+		private String				key;
+		private String				name;
+		private String				qualifiedName;
+		private List<String>	inet4Addresses;
+		private List<String>	inet6Addresses;
+		private int						port;
+		private long					features;
+		private String				sourceVersion;
+		private String				model;
+		private long					lastSeen;
+
+		CachedDevice(DeviceInfo device, long lastSeen)
+		{
+			DeviceCapabilities capabilities = device.getCapabilities();
+			key = device.getKey();
+			name = device.getName();
+			qualifiedName = device.getQualifiedName();
+			inet4Addresses = new ArrayList<>();
+			device.getInet4Addresses().forEach(address -> inet4Addresses.add(address.getHostAddress()));
+			inet6Addresses = new ArrayList<>();
+			device.getInet6Addresses().forEach(address -> inet6Addresses.add(address.getHostAddress()));
+			port = device.getPort();
+			features = capabilities.getFeatures();
+			sourceVersion = capabilities.getSourceVersion().orElse(null);
+			model = capabilities.getModel().orElse(null);
+			this.lastSeen = lastSeen;
+		}
+
+		/**
+		 * Restore the device. The addresses are literals, so no name lookup
+		 * happens.
+		 */
+		DeviceInfo toDeviceInfo() throws UnknownHostException
+		{
+			List<Inet4Address> inet4 = new ArrayList<>();
+			List<Inet6Address> inet6 = new ArrayList<>();
+			List<String> literals = new ArrayList<>();
+			Arrays.asList(inet4Addresses, inet6Addresses).stream().filter(list -> list != null).forEach(literals::addAll);
+			for (String literal : literals)
+			{
+				InetAddress address = InetAddress.getByName(literal);
+				if (address instanceof Inet4Address)
+				{
+					inet4.add((Inet4Address) address);
+				}
+				else if (address instanceof Inet6Address)
+				{
+					inet6.add((Inet6Address) address);
+				}
+			}
+			if (inet4.isEmpty() && inet6.isEmpty())
+			{
+				throw new UnknownHostException("No address for " + name);
+			}
+			return new DeviceInfo(name, key, qualifiedName, inet4, inet6, port,
+							new DeviceCapabilities(features, sourceVersion, model, false));
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * DeviceCapabilities.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Immutable capability set of a device. The capabilities are kept as a bit
+ * set, so checking a capability is a constant time operation.
+ *
+ * @see DeviceCapabilityProbe
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceCapabilities
+{
+	/**
+	 * Capabilities without any information about the device.
+	 */
+	public static final DeviceCapabilities	NONE	= new DeviceCapabilities(0, null, null, false);
+
+	/**
+	 * Feature bit set.
+	 */
+	private final long											features;
+
+	/**
+	 * AirPlay server version, e.g. <code>220.68</code>.
+	 */
+	private final Optional<String>					sourceVersion;
+
+	/**
+	 * Device model, e.g. <code>AppleTV3,2</code>.
+	 */
+	private final Optional<String>					model;
+
+	/**
+	 * <code>true</code> if the capabilities were confirmed by the device.
+	 */
+	private final boolean										probed;
+
+	/**
+	 * Create a new capability set.
+	 *
+	 * @param features
+	 *          Feature bit set.
+	 * @param sourceVersion
+	 *          AirPlay server version. May be <code>null</code>.
+	 * @param model
+	 *          Device model. May be <code>null</code>.
+	 * @param probed
+	 *          <code>true</code> if the capabilities were confirmed by the
+	 *          device.
+	 */
+	DeviceCapabilities(long features, String sourceVersion, String model, boolean probed)
+	{
+		this.features = features;
+		this.sourceVersion = Optional.ofNullable(sourceVersion);
+		this.model = Optional.ofNullable(model);
+		this.probed = probed;
+	}
+
+	/**
+	 * Create the capabilities announced in the mDNS TXT record.
+	 *
+	 * @param properties
+	 *          TXT record properties.
+	 * @return Announced capabilities.
+	 */
+	static DeviceCapabilities fromTxtRecord(Map<String, String> properties)
+	{
+		return new DeviceCapabilities(parseFeatures(properties.get("features")), properties.get("srcvers"),
+						properties.get("model"), false);
+	}
+
+	/**
+	 * Add the information of a <code>/server-info</code> response.
+	 *
+	 * @param serverInfo
+	 *          Server info dictionary.
+	 * @return New capability set, confirmed by the device.
+	 */
+	DeviceCapabilities withServerInfo(Map<String, Object> serverInfo)
+	{
+		long merged = features | Capability.SERVER_INFO.mask();
+		Object reported = serverInfo.get("features");
+		if (reported instanceof Number)
+		{
+			merged |= ((Number) reported).longValue();
+		}
+		Object version = serverInfo.get("srcvers");
+		Object modelName = serverInfo.get("model");
+		return new DeviceCapabilities(merged, version == null ? sourceVersion.orElse(null) : version.toString(),
+						modelName == null ? model.orElse(null) : modelName.toString(), true);
+	}
+
+	/**
+	 * Parse the <code>features</code> TXT property. The property is either a
+	 * single hexadecimal number with the lower 32 bits, or two comma separated
+	 * numbers with the lower and the upper 32 bits.
+	 *
+	 * @param value
+	 *          Property value, e.g. <code>0x5A7FFFF7,0x1E</code>. May be
+	 *          <code>null</code>.
+	 * @return Feature bit set. <code>0</code> if the value is missing or
+	 *         malformed.
+	 */
+	static long parseFeatures(String value)
+	{
+		if (value == null)
+		{
+			return 0;
+		}
+		try
+		{
+			String[] parts = value.split(",");
+			long features = parseHex(parts[0]);
+			if (parts.length > 1)
+			{
+				features |= parseHex(parts[1]) << 32;
+			}
+			return features;
+		}
+		catch (NumberFormatException exception)
+		{
+			return 0;
+		}
+	}
+
+	private static long parseHex(String value)
+	{
+		String digits = value.trim();
+		if (digits.startsWith("0x") || digits.startsWith("0X"))
+		{
+			digits = digits.substring(2);
+		}
+		return Long.parseLong(digits, 16) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Check for a capability.
+	 *
+	 * @param capability
+	 *          The capability.
+	 * @return <code>true</code> if the device has the capability.
+	 */
+	public boolean has(Capability capability)
+	{
+		return (features & capability.mask()) != 0;
+	}
+
+	/**
+	 * Get all capabilities of the device.
+	 *
+	 * @return Set of capabilities.
+	 */
+	public Set<Capability> getCapabilities()
+	{
+		Set<Capability> capabilities = EnumSet.noneOf(Capability.class);
+		for (Capability capability : Capability.values())
+		{
+			if (has(capability))
+			{
+				capabilities.add(capability);
+			}
+		}
+		return capabilities;
+	}
+
+	/**
+	 * @return Raw feature bit set.
+	 */
+	public long getFeatures()
+	{
+		return features;
+	}
+
+	/**
+	 * @return AirPlay server version, if known.
+	 */
+	public Optional<String> getSourceVersion()
+	{
+		return sourceVersion;
+	}
+
+	/**
+	 * @return Device model, if known.
+	 */
+	public Optional<String> getModel()
+	{
+		return model;
+	}
+
+	/**
+	 * @return <code>true</code> if the capabilities were confirmed by the
+	 *         device, <code>false</code> if they are only announced.
+	 */
+	public boolean isProbed()
+	{
+		return probed;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("0x%016X %s%s", features, getCapabilities(), probed ? "" : " (announced)");
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ * DeviceCapabilityProbe.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Probes the capabilities of discovered devices with a
+ * <code>/server-info</code> request. Devices are probed in parallel in the
+ * background, and the results are cached by device key, so
+ * {@link DeviceInfo#hasCapability(Capability)} never blocks.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceCapabilityProbe
+{
+	/**
+	 * Path of the server info request.
+	 */
+	private static final URI																					SERVER_INFO				= URI.create("/server-info");
+
+	/**
+	 * Timeout of the probe request in milliseconds.
+	 */
+	private static final int																					TIMEOUT_MILLIS		= 3000;
+
+	/**
+	 * Number of devices probed at the same time.
+	 */
+	private static final int																					PARALLEL_PROBES		= 4;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger																				log								= Logger
+					.getLogger(DeviceCapabilityProbe.class.getName());
+
+	/**
+	 * Singleton instance.
+	 */
+	private static DeviceCapabilityProbe															instance;
+
+	/**
+	 * Get the probe.
+	 *
+	 * @return Singleton instance.
+	 */
+	public static synchronized DeviceCapabilityProbe getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new DeviceCapabilityProbe();
+		}
+		return instance;
+	}
+
+	/**
+	 * Probed capabilities by device key.
+	 */
+	private final Map<String, DeviceCapabilities>											cache							= new ConcurrentHashMap<>();
+
+	/**
+	 * Running probes by device key.
+	 */
+	private final Map<String, CompletableFuture<DeviceCapabilities>>	running						= new ConcurrentHashMap<>();
+
+	/**
+	 * Probe threads.
+	 */
+	private final ExecutorService																			executor					= Executors
+					.newFixedThreadPool(PARALLEL_PROBES, runnable -> {
+						Thread thread = new Thread(runnable, "Device capability probe");
+						thread.setDaemon(true);
+						return thread;
+					});
+
+	private DeviceCapabilityProbe()
+	{
+		// Use getInstance()
+	}
+
+	/**
+	 * Get the probed capabilities of a device.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return The capabilities, or empty if the device was not probed yet.
+	 */
+	public Optional<DeviceCapabilities> getCached(DeviceInfo device)
+	{
+		return Optional.ofNullable(cache.get(device.getKey()));
+	}
+
+	/**
+	 * Probe a device in the background. If the device was probed before, the
+	 * cached result is returned. If the device cannot be reached, the future
+	 * completes with the announced capabilities.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return Future with the capabilities.
+	 */
+	public CompletableFuture<DeviceCapabilities> probe(DeviceInfo device)
+	{
+		DeviceCapabilities cached = cache.get(device.getKey());
+		if (cached != null)
+		{
+			return CompletableFuture.completedFuture(cached);
+		}
+		CompletableFuture<DeviceCapabilities> probe = running.computeIfAbsent(device.getKey(),
+						key -> CompletableFuture.supplyAsync(() -> {
+							try
+							{
+								DeviceCapabilities probed = device.getAnnouncedCapabilities()
+												.withServerInfo(requestServerInfo(device));
+								cache.put(key, probed);
+								log.fine(() -> String.format("Capabilities of device %s: %s", device.getName(), probed));
+								return probed;
+							}
+							catch (AirTwitchException exception)
+							{
+								log.log(Level.FINE, String.format("Could not probe device %s", device.getName()), exception);
+								return device.getAnnouncedCapabilities();
+							}
+						}, executor));
+		probe.whenComplete((capabilities, exception) -> running.remove(device.getKey(), probe));
+		return probe;
+	}
+
+	/**
+	 * Forget the probed capabilities of a device, e.g. after a firmware update.
+	 *
+	 * @param device
+	 *          The device.
+	 */
+	public void invalidate(DeviceInfo device)
+	{
+		cache.remove(device.getKey());
+	}
+
+	/**
+	 * Request the server info of a device.
+	 */
+	private Map<String, Object> requestServerInfo(DeviceInfo device) throws AirTwitchException
+	{
+		try
+		{
+			HttpGet request = new HttpGet(device.getUri().resolve(SERVER_INFO));
+			request.setConfig(RequestConfig.custom().setConnectTimeout(TIMEOUT_MILLIS).setSocketTimeout(TIMEOUT_MILLIS)
+							.setConnectionRequestTimeout(TIMEOUT_MILLIS).build());
+			try (CloseableHttpResponse response = DeviceConnections.getInstance().getClient(device).execute(request))
+			{
+				if (response.getStatusLine().getStatusCode() != 200)
+				{
+					EntityUtils.consume(response.getEntity());
+					throw new AirTwitchException("Device %s answered server info with %s", device.getName(),
+									response.getStatusLine());
+				}
+				return PropertyList.parseDictionary(
+								response.getEntity() == null ? null : EntityUtils.toByteArray(response.getEntity()));
+			}
+		}
+		catch (URISyntaxException | IOException exception)
+		{
+			throw new AirTwitchException("Could not request server info from device %s", exception, device.getName());
+		}
+	}
+}
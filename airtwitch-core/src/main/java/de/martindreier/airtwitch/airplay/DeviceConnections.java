@@ -0,0 +1,269 @@
+/**
+ * DeviceConnections.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.http.Header;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeader;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.http.HttpTransport;
+
+/**
+ * Owner of the HTTP connections to the AirPlay devices. Each device gets one
+ * client with a single persistent keep-alive connection, which is shared by all
+ * {@link StreamControl} instances for that device. Commands therefore only pay
+ * the TCP handshake once, and the number of open connections is bounded by the
+ * number of devices.
+ * <p>
+ * The connections are closed by {@link #closeAll()}, which should be called on
+ * application shutdown.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceConnections
+{
+	/**
+	 * Connections idle for longer than this are closed.
+	 */
+	private static final long											MAX_IDLE_SECONDS	= 60;
+
+	/**
+	 * Maximum time to wait for pending commands when closing a connection.
+	 */
+	private static final long											MAX_SHUTDOWN_SECONDS	= 5;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger										log								= Logger.getLogger(DeviceConnections.class.getName());
+
+	/**
+	 * Singleton instance.
+	 */
+	private static DeviceConnections							instance;
+
+	/**
+	 * Get the connection owner.
+	 *
+	 * @return Singleton instance.
+	 */
+	public static synchronized DeviceConnections getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new DeviceConnections();
+		}
+		return instance;
+	}
+
+	/**
+	 * Open connections by device key.
+	 */
+	private final Map<String, DeviceConnection>		connections				= new ConcurrentHashMap<>();
+
+	private DeviceConnections()
+	{
+		// Use getInstance()
+	}
+
+	/**
+	 * Get the client for a device. The client is created on first use.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return Shared client for the device. Must not be closed by the caller.
+	 * @throws AirTwitchException
+	 *           The client could not be created.
+	 */
+	public synchronized CloseableHttpClient getClient(DeviceInfo device) throws AirTwitchException
+	{
+		DeviceConnection connection = connections.get(device.getKey());
+		if (connection == null)
+		{
+			connection = new DeviceConnection(device);
+			connections.put(device.getKey(), connection);
+		}
+		return connection.client;
+	}
+
+	/**
+	 * Get the command thread for a device. Commands submitted to this executor
+	 * run one after another, in submission order, over the shared connection.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return Single threaded executor for the device.
+	 * @throws AirTwitchException
+	 *           The connection could not be created.
+	 */
+	synchronized ExecutorService getCommandExecutor(DeviceInfo device) throws AirTwitchException
+	{
+		getClient(device);
+		return connections.get(device.getKey()).commands;
+	}
+
+	/**
+	 * Get the usage statistics of the connection to a device.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return Statistics, or empty if no connection to the device was created.
+	 */
+	public Optional<ConnectionStatistics> getStatistics(DeviceInfo device)
+	{
+		return Optional.ofNullable(connections.get(device.getKey())).map(connection -> connection.statistics);
+	}
+
+	/**
+	 * Get the address to use for a device. Connections race all addresses of the
+	 * device, see {@link RacingSocketFactory}; this is the address which won the
+	 * last race.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return Address of the last successful connection, or the first address
+	 *         of the device if it was not connected yet. Empty if the device has
+	 *         no address.
+	 */
+	public Optional<InetAddress> getPreferredAddress(DeviceInfo device)
+	{
+		DeviceConnection connection = connections.get(device.getKey());
+		if (connection != null)
+		{
+			return connection.sockets.getPreferredAddress();
+		}
+		return device.getAddresses().stream().findFirst();
+	}
+
+	/**
+	 * Close the connection to a device, e.g. when the device disappeared. A new
+	 * connection is created on the next request.
+	 * <p>
+	 * Returns at once: pending commands finish and the client is closed on a
+	 * background thread, so this may be called from discovery callbacks.
+	 *
+	 * @param device
+	 *          The device.
+	 */
+	public void close(DeviceInfo device)
+	{
+		DeviceConnection connection = connections.remove(device.getKey());
+		if (connection != null)
+		{
+			connection.closeLater();
+		}
+	}
+
+	/**
+	 * Close the connections to all devices.
+	 */
+	public synchronized void closeAll()
+	{
+		connections.values().forEach(DeviceConnection::close);
+		connections.clear();
+	}
+
+	/**
+	 * Client, command thread and statistics for a single device.
+	 */
+	private static class DeviceConnection
+	{
+		private final String								name;
+		private final ExecutorService				commands;
+		private final ConnectionStatistics	statistics	= new ConnectionStatistics();
+		private final RacingSocketFactory		sockets;
+		private final CloseableHttpClient		client;
+
+		DeviceConnection(DeviceInfo device) throws AirTwitchException
+		{
+			this.name = device.getName();
+			this.commands = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "AirPlay commands " + name);
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.sockets = new RacingSocketFactory(device);
+			PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+							RegistryBuilder.<ConnectionSocketFactory> create()
+											.register("http", sockets).build(),
+							(route, config) -> {
+								ManagedHttpClientConnection connection = ManagedHttpClientConnectionFactory.INSTANCE.create(route,
+												config);
+								statistics.connectionOpened();
+								return connection;
+							});
+			connectionManager.setMaxTotal(1);
+			connectionManager.setDefaultMaxPerRoute(1);
+
+			HttpRequestInterceptor counter = (request, context) -> statistics.requestSent();
+			List<Header> defaultHeaders = new ArrayList<>(1);
+			defaultHeaders.add(new BasicHeader("User-Agent", "MediaControl/1.0"));
+			this.client = HttpTransport.decorate(HttpClients.custom().setConnectionManager(connectionManager)
+							.setDefaultHeaders(defaultHeaders)
+							.addInterceptorLast(counter)
+							.evictExpiredConnections().evictIdleConnections(MAX_IDLE_SECONDS, TimeUnit.SECONDS).build());
+		}
+
+		/**
+		 * Stop accepting commands and close the connection on a background thread.
+		 */
+		void closeLater()
+		{
+			commands.shutdown();
+			Thread closer = new Thread(this::close, "AirPlay close " + name);
+			closer.setDaemon(true);
+			closer.start();
+		}
+
+		/**
+		 * Close the connection. Waits up to {@link #MAX_SHUTDOWN_SECONDS} for
+		 * pending commands.
+		 */
+		void close()
+		{
+			log.info(() -> String.format("Closing connection to device %s: %s", name, statistics));
+			// Let pending commands, e.g. a final stop, finish first
+			commands.shutdown();
+			try
+			{
+				commands.awaitTermination(MAX_SHUTDOWN_SECONDS, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+			}
+			commands.shutdownNow();
+			try
+			{
+				client.close();
+			}
+			catch (IOException exception)
+			{
+				log.log(Level.WARNING, String.format("Could not close connection to device %s", name), exception);
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * DeviceEvent.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.util.Optional;
+
+/**
+ * Change of the device registry.
+ *
+ * @see DeviceRegistry
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceEvent
+{
+	/**
+	 * Kind of change.
+	 */
+	public static enum Type
+	{
+		/**
+		 * A new device was discovered.
+		 */
+		ADDED,
+		/**
+		 * A known device changed its addresses or port.
+		 */
+		UPDATED,
+		/**
+		 * A device announced its removal.
+		 */
+		REMOVED,
+		/**
+		 * A device was not seen within the expiry time.
+		 */
+		EXPIRED
+	}
+
+	/**
+	 * Kind of change.
+	 */
+	private final Type									type;
+
+	/**
+	 * The device after the change, or the removed device.
+	 */
+	private final DeviceInfo						device;
+
+	/**
+	 * The device before an update.
+	 */
+	private final Optional<DeviceInfo>	previous;
+
+	/**
+	 * Create a new event.
+	 *
+	 * @param type
+	 *          Kind of change.
+	 * @param device
+	 *          The device after the change, or the removed device.
+	 * @param previous
+	 *          The device before an update. May be <code>null</code>.
+	 */
+	DeviceEvent(Type type, DeviceInfo device, DeviceInfo previous)
+	{
+		this.type = type;
+		this.device = device;
+		this.previous = Optional.ofNullable(previous);
+	}
+
+	/**
+	 * @return Kind of change.
+	 */
+	public Type getType()
+	{
+		return type;
+	}
+
+	/**
+	 * @return The device after the change, or the removed device.
+	 */
+	public DeviceInfo getDevice()
+	{
+		return device;
+	}
+
+	/**
+	 * @return The device before an update. Empty for other changes.
+	 */
+	public Optional<DeviceInfo> getPrevious()
+	{
+		return previous;
+	}
+
+	/**
+	 * @return <code>true</code> if the device is no longer available.
+	 */
+	public boolean isRemoval()
+	{
+		return type == Type.REMOVED || type == Type.EXPIRED;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s %s", type, device.getName());
+	}
+}
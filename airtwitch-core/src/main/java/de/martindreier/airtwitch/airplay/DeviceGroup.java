@@ -0,0 +1,429 @@
+/**
+ * DeviceGroup.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.http.HttpTransport;
+import de.martindreier.airtwitch.twitch.LiveEdge;
+
+/**
+ * Plays one stream on a group of devices at the same time. Commands are sent
+ * to all members in parallel: the connections to all members are opened
+ * first, then the play commands are released together, with a shared start
+ * position. Unless the caller gives one, the start position is computed from
+ * the live edge of the media playlist, see {@link LiveEdge}, so the members do
+ * not each pick their own default position. Members added while the group is
+ * playing start at the current position of the group.
+ * <p>
+ * The remaining skew between the members is measured by
+ * {@link #measureSkew()}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceGroup
+{
+	/**
+	 * Deadline for a group command in milliseconds, including the wait for the
+	 * slowest member.
+	 */
+	private static final long													TIMEOUT_MILLIS	= 10_000;
+
+	/**
+	 * Timeout for loading the media playlist in milliseconds.
+	 */
+	private static final long													PLAYLIST_TIMEOUT_MILLIS	= 5_000;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger												log							= Logger.getLogger(DeviceGroup.class.getName());
+
+	/**
+	 * Threads for the playback state queries of all groups.
+	 */
+	private static final ExecutorService							queries					= Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "Device group");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Group members, in the order they were added.
+	 */
+	private final List<DeviceInfo>										members					= new ArrayList<>();
+
+	/**
+	 * Streams of the current playback by member.
+	 */
+	private final Map<DeviceInfo, StreamControl>			streams					= new LinkedHashMap<>();
+
+	/**
+	 * Content of the current playback.
+	 */
+	private Optional<URI>															content					= Optional.empty();
+
+	/**
+	 * Create a device group.
+	 *
+	 * @param members
+	 *          Initial members.
+	 */
+	public DeviceGroup(Collection<DeviceInfo> members)
+	{
+		members.forEach(member -> {
+			if (!this.members.contains(member))
+			{
+				this.members.add(member);
+			}
+		});
+	}
+
+	/**
+	 * @return Group members.
+	 */
+	public synchronized List<DeviceInfo> getMembers()
+	{
+		return Collections.unmodifiableList(new ArrayList<>(members));
+	}
+
+	/**
+	 * @return Streams of the current playback. Empty if the group is stopped.
+	 */
+	public synchronized List<StreamControl> getStreams()
+	{
+		return Collections.unmodifiableList(new ArrayList<>(streams.values()));
+	}
+
+	/**
+	 * Play a stream on all members, starting at a shared position close to the
+	 * live edge. The media playlist is loaded to compute the position; if it
+	 * cannot be loaded or is not a media playlist, the members start at their
+	 * default position. A stream already playing on the group is replaced.
+	 *
+	 * @param contentURI
+	 *          Stream content URI.
+	 * @return Future completed when all members accepted the command. Completes
+	 *         exceptionally with an {@link AirTwitchException} naming the members
+	 *         which failed; the other members keep playing.
+	 */
+	public CompletableFuture<Void> play(URI contentURI)
+	{
+		return CompletableFuture.supplyAsync(() -> getStartPosition(contentURI), queries)
+						.thenCompose(position -> play(contentURI, position));
+	}
+
+	/**
+	 * Compute the shared start position of a stream from its media playlist.
+	 *
+	 * @param contentURI
+	 *          Stream content URI.
+	 * @return Start position in seconds, <code>0</code> for the default
+	 *         position of the devices.
+	 */
+	static double getStartPosition(URI contentURI)
+	{
+		RequestConfig config = RequestConfig.custom().setConnectTimeout((int) PLAYLIST_TIMEOUT_MILLIS)
+						.setSocketTimeout((int) PLAYLIST_TIMEOUT_MILLIS).build();
+		try (CloseableHttpClient client = HttpTransport
+						.decorate(HttpClients.custom().setDefaultRequestConfig(config).build()))
+		{
+			HttpGet request = new HttpGet(contentURI);
+			request.addHeader("Accept", "application/vnd.apple.mpegurl");
+			try (CloseableHttpResponse response = client.execute(request))
+			{
+				if (response.getStatusLine().getStatusCode() != 200 || response.getEntity() == null)
+				{
+					EntityUtils.consume(response.getEntity());
+					throw new AirTwitchException("Media playlist %s not available, status %d", contentURI,
+									response.getStatusLine().getStatusCode());
+				}
+				return LiveEdge.parse(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8))
+								.getStartPosition();
+			}
+		}
+		catch (IOException | AirTwitchException exception)
+		{
+			log.log(Level.INFO, "No shared start position, the devices start at their default position", exception);
+			return 0;
+		}
+	}
+
+	/**
+	 * Play a stream on all members. All members start at the same media time.
+	 * A stream already playing on the group is replaced; the old streams are
+	 * stopped right before the new ones start.
+	 *
+	 * @param contentURI
+	 *          Stream content URI.
+	 * @param startPosition
+	 *          Shared start position in seconds. <code>0</code> starts each
+	 *          member at its default position.
+	 * @return Future completed when all members accepted the command. Completes
+	 *         exceptionally with an {@link AirTwitchException} naming the members
+	 *         which failed; the other members keep playing.
+	 */
+	public synchronized CompletableFuture<Void> play(URI contentURI, double startPosition)
+	{
+		// Commands of one device run in order, so each stop is sent before the
+		// play to the same device without waiting for it here
+		stopStreams();
+		content = Optional.of(contentURI);
+		long start = System.nanoTime();
+		Map<DeviceInfo, CompletableFuture<Void>> started = new LinkedHashMap<>();
+		for (DeviceInfo member : members)
+		{
+			try
+			{
+				createStream(member, contentURI, startPosition);
+			}
+			catch (AirTwitchException exception)
+			{
+				started.put(member, failed(exception));
+			}
+		}
+		if (!streams.isEmpty())
+		{
+			CyclicBarrier barrier = new CyclicBarrier(streams.size());
+			streams.forEach((member, stream) -> {
+				CompletableFuture<Void> play = stream.playAsync(barrier, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				// Do not let the other members wait for a member which failed
+				play.whenComplete((result, exception) -> {
+					if (exception != null)
+					{
+						barrier.reset();
+					}
+				});
+				started.put(member, play);
+			});
+		}
+		return collect("play", started).whenComplete((result, exception) -> log
+						.info(() -> String.format("Group play of %d devices took %d ms", started.size(),
+										TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))));
+	}
+
+	/**
+	 * Add a member. If the group is playing, the new member starts at the
+	 * current position of the group.
+	 *
+	 * @param device
+	 *          The new member.
+	 * @return Future completed when the new member plays, or at once if the
+	 *         group is stopped or the device is already a member.
+	 */
+	public synchronized CompletableFuture<Void> add(DeviceInfo device)
+	{
+		if (members.contains(device))
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		members.add(device);
+		if (!content.isPresent())
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		URI contentURI = content.get();
+		return measureSkew().thenCompose(skew -> {
+			double position = skew.getCurrentPosition(1).orElse(0);
+			log.fine(() -> String.format("Device %s joins group at %.3f s", device.getName(), position));
+			synchronized (this)
+			{
+				if (!content.equals(Optional.of(contentURI)) || !members.contains(device))
+				{
+					// The group changed in the meantime
+					return CompletableFuture.completedFuture(null);
+				}
+				try
+				{
+					return collect("play", Collections.singletonMap(device,
+									createStream(device, contentURI, position).playAsync(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)));
+				}
+				catch (AirTwitchException exception)
+				{
+					return failed(exception);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Remove a member. If the group is playing, the stream on the member is
+	 * stopped.
+	 *
+	 * @param device
+	 *          The member.
+	 * @return Future completed when the member stopped.
+	 */
+	public synchronized CompletableFuture<Void> remove(DeviceInfo device)
+	{
+		members.remove(device);
+		StreamControl stream = streams.remove(device);
+		if (stream == null)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		return stream.stopAsync(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop the stream on all members in parallel.
+	 *
+	 * @return Future completed when all members accepted the command. Completes
+	 *         exceptionally with an {@link AirTwitchException} naming the members
+	 *         which failed.
+	 */
+	public synchronized CompletableFuture<Void> stop()
+	{
+		content = Optional.empty();
+		return collect("stop", stopStreams());
+	}
+
+	/**
+	 * Stop all current streams and forget them.
+	 */
+	private Map<DeviceInfo, CompletableFuture<Void>> stopStreams()
+	{
+		Map<DeviceInfo, CompletableFuture<Void>> stopped = new LinkedHashMap<>();
+		streams.forEach((member, stream) -> stopped.put(member, stream.stopAsync(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)));
+		streams.clear();
+		return stopped;
+	}
+
+	/**
+	 * Create the stream for a member.
+	 */
+	private StreamControl createStream(DeviceInfo member, URI contentURI, double startPosition)
+					throws AirTwitchException
+	{
+		StreamControl stream = member.createStream(contentURI);
+		stream.setStartPosition(startPosition);
+		streams.put(member, stream);
+		return stream;
+	}
+
+	private static CompletableFuture<Void> failed(AirTwitchException exception)
+	{
+		CompletableFuture<Void> failed = new CompletableFuture<>();
+		failed.completeExceptionally(exception);
+		return failed;
+	}
+
+	/**
+	 * Combine the results of a command sent to several members.
+	 */
+	private static CompletableFuture<Void> collect(String command, Map<DeviceInfo, CompletableFuture<Void>> results)
+	{
+		CompletableFuture<Void> all = new CompletableFuture<>();
+		CompletableFuture.allOf(results.values().toArray(new CompletableFuture<?>[results.size()]))
+						.whenComplete((result, exception) -> {
+							List<String> failed = new ArrayList<>();
+							results.forEach((member, future) -> {
+								if (future.isCompletedExceptionally())
+								{
+									failed.add(member.getName());
+								}
+							});
+							if (failed.isEmpty())
+							{
+								all.complete(null);
+							}
+							else
+							{
+								Throwable cause = exception instanceof CompletionException ? exception.getCause() : exception;
+								all.completeExceptionally(
+												new AirTwitchException("Command %s failed on devices %s", cause, command, failed));
+							}
+						});
+		return all;
+	}
+
+	/**
+	 * Measure the playback skew between the members. All members are queried
+	 * in parallel.
+	 *
+	 * @return Future with the skew.
+	 */
+	public CompletableFuture<GroupSkew> measureSkew()
+	{
+		Map<DeviceInfo, CompletableFuture<Sample>> samples = new LinkedHashMap<>();
+		synchronized (this)
+		{
+			streams.forEach((member, stream) -> samples.put(member, CompletableFuture.supplyAsync(() -> {
+				try
+				{
+					long before = System.nanoTime();
+					PlaybackInfo info = stream.getPlaybackInfo();
+					// Assume the device answered half way through the request
+					return new Sample(info, before + (System.nanoTime() - before) / 2);
+				}
+				catch (AirTwitchException exception)
+				{
+					throw new CompletionException(exception);
+				}
+			}, queries)));
+		}
+		return CompletableFuture.allOf(samples.values().toArray(new CompletableFuture<?>[samples.size()]))
+						.handle((result, exception) -> {
+							long reference = System.nanoTime();
+							Map<DeviceInfo, Double> positions = new LinkedHashMap<>();
+							List<DeviceInfo> unavailable = new ArrayList<>();
+							samples.forEach((member, future) -> {
+								Sample sample = future.isCompletedExceptionally() ? null : future.join();
+								if (sample == null || sample.info.getState() != PlaybackState.PLAYING)
+								{
+									unavailable.add(member);
+								}
+								else
+								{
+									positions.put(member, sample.info.getPosition()
+													+ sample.info.getRate() * (reference - sample.nanos) / 1e9);
+								}
+							});
+							GroupSkew skew = new GroupSkew(positions, unavailable, reference);
+							log.info(skew::toString);
+							return skew;
+						});
+	}
+
+	/**
+	 * Playback state of a member at one point in time.
+	 */
+	private static class Sample
+	{
+		private final PlaybackInfo	info;
+		private final long					nanos;
+
+		Sample(PlaybackInfo info, long nanos)
+		{
+			this.info = info;
+			this.nanos = nanos;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/**
+ * DeviceHealth.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.util.OptionalDouble;
+
+/**
+ * Immutable health profile of a device, built from the results of the
+ * background probes. Round trip time and error rate are exponentially weighted
+ * moving averages, so recent probes count more than old ones.
+ *
+ * @see DeviceHealthMonitor
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceHealth
+{
+	/**
+	 * Health status of a device.
+	 */
+	public static enum Status
+	{
+		/**
+		 * The device answers reliably.
+		 */
+		HEALTHY,
+		/**
+		 * The device answers, but some probes failed recently.
+		 */
+		DEGRADED,
+		/**
+		 * The device was not probed yet.
+		 */
+		UNKNOWN,
+		/**
+		 * The last probes all failed.
+		 */
+		UNREACHABLE
+	}
+
+	/**
+	 * Weight of a new sample in the moving averages.
+	 */
+	private static final double	WEIGHT								= 0.25;
+
+	/**
+	 * Error rate above which a device is degraded.
+	 */
+	private static final double	DEGRADED_ERROR_RATE		= 0.1;
+
+	/**
+	 * Number of failed probes in a row after which a device is unreachable.
+	 */
+	private static final int		UNREACHABLE_FAILURES	= 3;
+
+	/**
+	 * Profile of a device which was not probed yet.
+	 */
+	static final DeviceHealth		UNPROBED							= new DeviceHealth(-1, 0, 0, 0, 0);
+
+	/**
+	 * Moving average of the round trip time in milliseconds. Negative if no
+	 * probe succeeded yet.
+	 */
+	private final double				rttMillis;
+
+	/**
+	 * Moving average of the share of failed probes.
+	 */
+	private final double				errorRate;
+
+	/**
+	 * Number of probes.
+	 */
+	private final long					probes;
+
+	/**
+	 * Number of failed probes in a row.
+	 */
+	private final int						consecutiveFailures;
+
+	/**
+	 * Time of the last probe in milliseconds since the epoch.
+	 */
+	private final long					lastProbe;
+
+	private DeviceHealth(double rttMillis, double errorRate, long probes, int consecutiveFailures, long lastProbe)
+	{
+		this.rttMillis = rttMillis;
+		this.errorRate = errorRate;
+		this.probes = probes;
+		this.consecutiveFailures = consecutiveFailures;
+		this.lastProbe = lastProbe;
+	}
+
+	/**
+	 * Add a successful probe.
+	 *
+	 * @param rttMillis
+	 *          Measured round trip time in milliseconds.
+	 * @param now
+	 *          Time of the probe in milliseconds since the epoch.
+	 * @return New profile.
+	 */
+	DeviceHealth succeeded(double rttMillis, long now)
+	{
+		double rtt = this.rttMillis < 0 ? rttMillis : average(this.rttMillis, rttMillis);
+		return new DeviceHealth(rtt, average(errorRate, 0), probes + 1, 0, now);
+	}
+
+	/**
+	 * Add a failed probe.
+	 *
+	 * @param now
+	 *          Time of the probe in milliseconds since the epoch.
+	 * @return New profile.
+	 */
+	DeviceHealth failed(long now)
+	{
+		// The first probe decides on its own, later ones are averaged
+		double rate = probes == 0 ? 1 : average(errorRate, 1);
+		return new DeviceHealth(rttMillis, rate, probes + 1, consecutiveFailures + 1, now);
+	}
+
+	private static double average(double average, double sample)
+	{
+		return average + WEIGHT * (sample - average);
+	}
+
+	/**
+	 * @return Health status of the device.
+	 */
+	public Status getStatus()
+	{
+		if (probes == 0)
+		{
+			return Status.UNKNOWN;
+		}
+		if (consecutiveFailures >= UNREACHABLE_FAILURES || rttMillis < 0)
+		{
+			return Status.UNREACHABLE;
+		}
+		if (consecutiveFailures > 0 || errorRate > DEGRADED_ERROR_RATE)
+		{
+			return Status.DEGRADED;
+		}
+		return Status.HEALTHY;
+	}
+
+	/**
+	 * @return Moving average of the round trip time in milliseconds, or empty if
+	 *         no probe succeeded yet.
+	 */
+	public OptionalDouble getRttMillis()
+	{
+		return rttMillis < 0 ? OptionalDouble.empty() : OptionalDouble.of(rttMillis);
+	}
+
+	/**
+	 * @return Moving average of the share of failed probes, between
+	 *         <code>0</code> and <code>1</code>.
+	 */
+	public double getErrorRate()
+	{
+		return errorRate;
+	}
+
+	/**
+	 * @return Number of probes.
+	 */
+	public long getProbes()
+	{
+		return probes;
+	}
+
+	/**
+	 * @return Time of the last probe in milliseconds since the epoch, or
+	 *         <code>0</code> if the device was not probed yet.
+	 */
+	public long getLastProbe()
+	{
+		return lastProbe;
+	}
+
+	/**
+	 * Get the ranking score of the device. Lower is better: the round trip time,
+	 * penalized by the error rate.
+	 *
+	 * @return Score.
+	 */
+	public double getScore()
+	{
+		return rttMillis < 0 ? Double.MAX_VALUE : rttMillis * (1 + 10 * errorRate);
+	}
+
+	@Override
+	public String toString()
+	{
+		Status status = getStatus();
+		if (status == Status.UNKNOWN || status == Status.UNREACHABLE)
+		{
+			return status.toString();
+		}
+		return String.format("%s, %.0f ms, %.0f%% errors", status, rttMillis, errorRate * 100);
+	}
+}
@@ -0,0 +1,407 @@
+/**
+ * DeviceHealthMonitor.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Probes all registered devices in the background and keeps a
+ * {@link DeviceHealth} profile for each of them. A probe is a plain TCP
+ * connect, so it costs no HTTP request on the device. Like commands, probes
+ * race all addresses of the device, see {@link RacingSocketFactory}, so a
+ * stale address does not make a reachable device look unreachable.
+ * <p>
+ * The probe interval adapts to the device: a healthy device is probed less and
+ * less often, up to once a minute, while a degraded device is probed at the
+ * minimum interval. An unreachable device is probed less and less often as
+ * well, so dead devices do not crowd out the others. The minimum interval is
+ * read from the Java system property <code>airtwitch.health.interval</code> in
+ * seconds and defaults to 5 seconds.
+ * <p>
+ * A scheduler thread only times the probes. The probes themselves block for up
+ * to {@value #PROBE_TIMEOUT} ms on a device which does not answer, so they run
+ * on a separate, bounded pool of probe threads.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceHealthMonitor
+{
+	/**
+	 * Java system property: minimum probe interval in seconds.
+	 */
+	public static final String																PROP_INTERVAL				= "airtwitch.health.interval";
+
+	/**
+	 * Default minimum probe interval in seconds.
+	 */
+	private static final long																	DEFAULT_INTERVAL		= 5;
+
+	/**
+	 * Maximum probe interval in milliseconds.
+	 */
+	private static final long																	MAX_INTERVAL_MILLIS	= 60_000;
+
+	/**
+	 * Timeout of a probe in milliseconds.
+	 */
+	private static final int																	PROBE_TIMEOUT				= 2000;
+
+	/**
+	 * Maximum number of probes running at the same time.
+	 */
+	private static final int																	PROBE_THREADS				= 8;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger																log									= Logger
+					.getLogger(DeviceHealthMonitor.class.getName());
+
+	/**
+	 * Singleton instance.
+	 */
+	private static DeviceHealthMonitor												instance;
+
+	/**
+	 * Get the health monitor.
+	 *
+	 * @return Singleton instance.
+	 */
+	public static synchronized DeviceHealthMonitor getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new DeviceHealthMonitor(DeviceRegistry.getInstance(),
+							TimeUnit.SECONDS.toMillis(Long.getLong(PROP_INTERVAL, DEFAULT_INTERVAL)));
+		}
+		return instance;
+	}
+
+	/**
+	 * Orders devices by health: healthy devices first, then by score.
+	 */
+	private final Comparator<DeviceInfo>											ranking							= Comparator
+					.comparing((DeviceInfo device) -> getHealth(device).getStatus())
+					.thenComparingDouble(device -> getHealth(device).getScore());
+
+	/**
+	 * The registry with the devices to probe.
+	 */
+	private final DeviceRegistry															registry;
+
+	/**
+	 * Minimum probe interval in milliseconds.
+	 */
+	private final long																				minIntervalMillis;
+
+	/**
+	 * Health profiles by device key.
+	 */
+	private final Map<String, DeviceHealth>										profiles						= new ConcurrentHashMap<>();
+
+	/**
+	 * Scheduled probes by device key.
+	 */
+	private final Map<String, ScheduledFuture<?>>							probes							= new ConcurrentHashMap<>();
+
+	/**
+	 * Connection races by device key, remembering the address which answered
+	 * the last probe.
+	 */
+	private final Map<String, RacingSocketFactory>						racers							= new ConcurrentHashMap<>();
+
+	/**
+	 * Current probe interval by device key, in milliseconds.
+	 */
+	private final Map<String, Long>														intervals						= new ConcurrentHashMap<>();
+
+	/**
+	 * Health listeners.
+	 */
+	private final List<Consumer<DeviceInfo>>									listeners						= new CopyOnWriteArrayList<>();
+
+	/**
+	 * <code>true</code> once the monitor was started.
+	 */
+	private final AtomicBoolean																started							= new AtomicBoolean();
+
+	/**
+	 * Times the probes. Never blocks, the probes run on {@link #probeThreads}.
+	 */
+	private final ScheduledExecutorService										scheduler						= Executors
+					.newSingleThreadScheduledExecutor(runnable -> {
+						Thread thread = new Thread(runnable, "Device health");
+						thread.setDaemon(true);
+						return thread;
+					});
+
+	/**
+	 * Probe threads. Created on demand and ended when idle.
+	 */
+	private final ThreadPoolExecutor													probeThreads				= new ThreadPoolExecutor(
+					PROBE_THREADS, PROBE_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+						Thread thread = new Thread(runnable, "Device probe");
+						thread.setDaemon(true);
+						return thread;
+					});
+
+	/**
+	 * Create a health monitor.
+	 *
+	 * @param registry
+	 *          The registry with the devices to probe.
+	 * @param minIntervalMillis
+	 *          Minimum probe interval in milliseconds.
+	 */
+	DeviceHealthMonitor(DeviceRegistry registry, long minIntervalMillis)
+	{
+		this.registry = registry;
+		this.minIntervalMillis = minIntervalMillis;
+		probeThreads.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Start probing all registered devices, including devices registered later.
+	 * Only the first call has an effect.
+	 */
+	public void start()
+	{
+		if (started.compareAndSet(false, true))
+		{
+			registry.addListener(this::deviceChanged);
+			registry.getSnapshot().getDevices().forEach(device -> schedule(device.getKey(), 0));
+		}
+	}
+
+	/**
+	 * Add a listener which is called with the device after each probe. Called
+	 * on a probe thread.
+	 *
+	 * @param listener
+	 *          The listener.
+	 */
+	public void addListener(Consumer<DeviceInfo> listener)
+	{
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 *
+	 * @param listener
+	 *          The listener.
+	 */
+	public void removeListener(Consumer<DeviceInfo> listener)
+	{
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Get the health profile of a device. Never blocks.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return Health profile. Status {@link DeviceHealth.Status#UNKNOWN} if the
+	 *         device was not probed yet.
+	 */
+	public DeviceHealth getHealth(DeviceInfo device)
+	{
+		return profiles.getOrDefault(device.getKey(), DeviceHealth.UNPROBED);
+	}
+
+	/**
+	 * Get a comparator which orders devices by health, best first.
+	 *
+	 * @return Comparator for devices.
+	 */
+	public Comparator<DeviceInfo> getRanking()
+	{
+		return ranking;
+	}
+
+	/**
+	 * Get all registered devices, ordered by health. Healthy devices come first,
+	 * ordered by round trip time; unreachable devices come last.
+	 *
+	 * @return Ranked device list.
+	 */
+	public List<DeviceInfo> getRankedDevices()
+	{
+		List<DeviceInfo> devices = new ArrayList<>(registry.getSnapshot().getDevices());
+		devices.sort(ranking);
+		return devices;
+	}
+
+	/**
+	 * Stop all probes.
+	 */
+	public void close()
+	{
+		scheduler.shutdownNow();
+		probeThreads.shutdownNow();
+	}
+
+	/**
+	 * Registry listener: probe new devices at once, forget removed devices.
+	 */
+	private void deviceChanged(DeviceEvent event)
+	{
+		String key = event.getDevice().getKey();
+		if (event.isRemoval())
+		{
+			Optional.ofNullable(probes.remove(key)).ifPresent(probe -> probe.cancel(false));
+			profiles.remove(key);
+			intervals.remove(key);
+			racers.remove(key);
+		}
+		else
+		{
+			// New or changed addresses, so the old profile may not apply
+			racers.remove(key);
+			intervals.put(key, minIntervalMillis);
+			schedule(key, 0);
+		}
+	}
+
+	/**
+	 * Schedule the next probe of a device, replacing a scheduled probe.
+	 */
+	private void schedule(String key, long delayMillis)
+	{
+		if (scheduler.isShutdown())
+		{
+			return;
+		}
+		ScheduledFuture<?> previous = probes.put(key, scheduler.schedule(() -> submit(key), delayMillis,
+						TimeUnit.MILLISECONDS));
+		if (previous != null)
+		{
+			previous.cancel(false);
+		}
+	}
+
+	/**
+	 * Hand a due probe to the probe threads.
+	 */
+	private void submit(String key)
+	{
+		try
+		{
+			probeThreads.execute(() -> probe(key));
+		}
+		catch (RejectedExecutionException exception)
+		{
+			// Closed
+		}
+	}
+
+	/**
+	 * Probe a device and schedule the next probe.
+	 */
+	private void probe(String key)
+	{
+		Optional<DeviceInfo> registered = registry.getSnapshot().getByKey(key);
+		if (!registered.isPresent())
+		{
+			return;
+		}
+		DeviceInfo device = registered.get();
+		DeviceHealth previous = getHealth(device);
+		long now = System.currentTimeMillis();
+		DeviceHealth health;
+		long start = System.nanoTime();
+		try
+		{
+			if (device.getAddresses().isEmpty())
+			{
+				throw new IOException("Device has no address");
+			}
+			RacingSocketFactory racer = racers.computeIfAbsent(key, unused -> new RacingSocketFactory(device));
+			// The race only takes the port from the given address
+			racer.connectSocket(PROBE_TIMEOUT, racer.createSocket(null), null, new InetSocketAddress(device.getPort()),
+							null, null).close();
+			health = previous.succeeded((System.nanoTime() - start) / 1_000_000.0, now);
+			// Unchanged devices are not resolved again, so keep them from expiring
+			registry.touch(key, now);
+		}
+		catch (IOException exception)
+		{
+			log.log(Level.FINEST, String.format("Probe of device %s failed", device.getName()), exception);
+			health = previous.failed(now);
+		}
+		profiles.put(key, health);
+		if (health.getStatus() != previous.getStatus())
+		{
+			DeviceHealth changed = health;
+			log.info(() -> String.format("Device %s is %s", device.getName(), changed));
+		}
+
+		long interval = nextInterval(previous.getStatus(), health.getStatus(),
+						intervals.getOrDefault(key, minIntervalMillis));
+		intervals.put(key, interval);
+		schedule(key, interval);
+
+		for (Consumer<DeviceInfo> listener : listeners)
+		{
+			try
+			{
+				listener.accept(device);
+			}
+			catch (RuntimeException exception)
+			{
+				log.log(Level.WARNING, "Health listener failed", exception);
+			}
+		}
+	}
+
+	/**
+	 * Compute the interval until the next probe of a device. Back off while the
+	 * device stays healthy or stays unreachable, probe at the minimum interval
+	 * otherwise.
+	 *
+	 * @param previous
+	 *          Status before the probe.
+	 * @param current
+	 *          Status after the probe.
+	 * @param interval
+	 *          Interval before the probe in milliseconds.
+	 * @return Interval until the next probe in milliseconds.
+	 */
+	long nextInterval(DeviceHealth.Status previous, DeviceHealth.Status current, long interval)
+	{
+		switch (current)
+		{
+			case HEALTHY:
+				return Math.min(interval * 2, MAX_INTERVAL_MILLIS);
+			case UNREACHABLE:
+				// Start over when the device just became unreachable
+				return previous == DeviceHealth.Status.UNREACHABLE ? Math.min(interval * 2, MAX_INTERVAL_MILLIS)
+								: minIntervalMillis;
+			default:
+				return minIntervalMillis;
+		}
+	}
+}
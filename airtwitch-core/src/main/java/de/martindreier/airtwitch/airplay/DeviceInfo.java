@@ -7,19 +7,19 @@ package de.martindreier.airtwitch.airplay;
 
 import java.net.Inet4Address;
 import java.net.Inet6Address;
+import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import javax.jmdns.ServiceInfo;
-import org.apache.http.Header;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicHeader;
 import de.martindreier.airtwitch.AirTwitchException;
 
 /**
@@ -58,6 +58,15 @@ public class DeviceInfo
 	 * Device key.
 	 */
 	private String										key;
+	/**
+	 * Capabilities announced in the TXT record.
+	 */
+	private final DeviceCapabilities	announcedCapabilities;
+	/**
+	 * <code>true</code> if the device was restored from the {@link DeviceCache}
+	 * and not yet seen on the network.
+	 */
+	private final boolean							probable;
 
 	/**
 	 * Create device information object from service information.
@@ -78,17 +87,102 @@ public class DeviceInfo
 		inet6Addresses = Arrays.asList(info.getInet6Addresses());
 		port = info.getPort();
 		Enumeration<String> propertyNames = info.getPropertyNames();
-		String modelName = null;
+		Map<String, String> properties = new HashMap<>();
 		while (propertyNames.hasMoreElements())
 		{
 			String propertyName = propertyNames.nextElement();
-			if (propertyName.equals("model"))
-			{
-				modelName = info.getPropertyString(propertyName);
-				break;
-			}
+			properties.put(propertyName, info.getPropertyString(propertyName));
+		}
+		model = Optional.ofNullable(properties.get("model"));
+		announcedCapabilities = DeviceCapabilities.fromTxtRecord(properties);
+		probable = false;
+	}
+
+	/**
+	 * Create a device restored from the device cache.
+	 *
+	 * @param name
+	 *          Device name.
+	 * @param key
+	 *          Device key.
+	 * @param qualifiedName
+	 *          Qualified device name.
+	 * @param inet4Addresses
+	 *          IPv4 addresses.
+	 * @param inet6Addresses
+	 *          IPv6 addresses.
+	 * @param port
+	 *          Connection port.
+	 * @param capabilities
+	 *          Last known capabilities.
+	 */
+	DeviceInfo(String name, String key, String qualifiedName, List<Inet4Address> inet4Addresses,
+					List<Inet6Address> inet6Addresses, int port, DeviceCapabilities capabilities)
+	{
+		this.name = name;
+		this.key = key;
+		this.qualifiedName = qualifiedName;
+		this.inet4Addresses = inet4Addresses;
+		this.inet6Addresses = inet6Addresses;
+		this.port = port;
+		model = capabilities.getModel();
+		announcedCapabilities = capabilities;
+		probable = true;
+	}
+
+	/**
+	 * Create a copy of a device with other addresses.
+	 */
+	private DeviceInfo(DeviceInfo device, List<Inet4Address> inet4Addresses, List<Inet6Address> inet6Addresses,
+					boolean probable)
+	{
+		name = device.name;
+		key = device.key;
+		qualifiedName = device.qualifiedName;
+		this.inet4Addresses = inet4Addresses;
+		this.inet6Addresses = inet6Addresses;
+		port = device.port;
+		model = device.model;
+		announcedCapabilities = device.announcedCapabilities;
+		this.probable = probable;
+	}
+
+	/**
+	 * Combine the addresses of this device with the addresses under which the
+	 * same device was seen on another network interface. The addresses of this
+	 * instance come first.
+	 *
+	 * @param other
+	 *          The same device, seen on another interface.
+	 * @return Device with the addresses of both instances. This instance if
+	 *         the other instance has no new addresses.
+	 */
+	public DeviceInfo withAddressesOf(DeviceInfo other)
+	{
+		List<Inet4Address> merged4 = merge(inet4Addresses, other.inet4Addresses);
+		List<Inet6Address> merged6 = merge(inet6Addresses, other.inet6Addresses);
+		if (merged4.size() == inet4Addresses.size() && merged6.size() == inet6Addresses.size())
+		{
+			return this;
 		}
-		model = Optional.ofNullable(modelName);
+		return new DeviceInfo(this, merged4, merged6, probable);
+	}
+
+	/**
+	 * Mark a device restored from the cache as confirmed by the device itself.
+	 *
+	 * @return Confirmed device. This instance if it is not probable.
+	 */
+	DeviceInfo confirmed()
+	{
+		return probable ? new DeviceInfo(this, inet4Addresses, inet6Addresses, false) : this;
+	}
+
+	private static <T> List<T> merge(List<T> first, List<T> second)
+	{
+		List<T> merged = new ArrayList<>(first);
+		second.stream().filter(address -> !merged.contains(address)).forEach(merged::add);
+		return merged;
 	}
 
 	/**
@@ -101,6 +195,17 @@ public class DeviceInfo
 		return name;
 	}
 
+	/**
+	 * Get the device key, which identifies the device independent of its
+	 * addresses.
+	 *
+	 * @return The device key.
+	 */
+	public String getKey()
+	{
+		return key;
+	}
+
 	/**
 	 * Get the qualified device name.
 	 *
@@ -111,6 +216,74 @@ public class DeviceInfo
 		return qualifiedName;
 	}
 
+	/**
+	 * Get the IPv4 addresses of the device.
+	 *
+	 * @return IPv4 addresses. May be empty.
+	 */
+	public List<Inet4Address> getInet4Addresses()
+	{
+		return Collections.unmodifiableList(inet4Addresses);
+	}
+
+	/**
+	 * Get the IPv6 addresses of the device.
+	 *
+	 * @return IPv6 addresses. May be empty.
+	 */
+	public List<Inet6Address> getInet6Addresses()
+	{
+		return Collections.unmodifiableList(inet6Addresses);
+	}
+
+	/**
+	 * Get all addresses of the device, IPv4 addresses first.
+	 *
+	 * @return Addresses. May be empty.
+	 */
+	public List<InetAddress> getAddresses()
+	{
+		List<InetAddress> addresses = new ArrayList<>(inet4Addresses.size() + inet6Addresses.size());
+		addresses.addAll(inet4Addresses);
+		addresses.addAll(inet6Addresses);
+		return addresses;
+	}
+
+	/**
+	 * Get the AirPlay port of the device.
+	 *
+	 * @return The port.
+	 */
+	public int getPort()
+	{
+		return port;
+	}
+
+	/**
+	 * Check whether the device is reached the same way as another instance of
+	 * the same device.
+	 *
+	 * @param other
+	 *          Other instance.
+	 * @return <code>true</code> if addresses and port are the same.
+	 */
+	public boolean hasSameEndpoint(DeviceInfo other)
+	{
+		return port == other.port && inet4Addresses.equals(other.inet4Addresses)
+						&& inet6Addresses.equals(other.inet6Addresses);
+	}
+
+	/**
+	 * Check whether the device was restored from the device cache and has not
+	 * been confirmed yet, neither by mDNS nor by a direct request.
+	 *
+	 * @return <code>true</code> if the device may not be available.
+	 */
+	public boolean isProbable()
+	{
+		return probable;
+	}
+
 	/**
 	 * Get the device model information, if available.
 	 *
@@ -122,6 +295,41 @@ public class DeviceInfo
 		return model;
 	}
 
+	/**
+	 * Get the capabilities announced by the device in its mDNS TXT record.
+	 *
+	 * @return Announced capabilities.
+	 */
+	DeviceCapabilities getAnnouncedCapabilities()
+	{
+		return announcedCapabilities;
+	}
+
+	/**
+	 * Get the capabilities of the device. If the device was already probed by
+	 * {@link DeviceCapabilityProbe}, the probed capabilities are returned,
+	 * otherwise the announced capabilities. Never blocks.
+	 *
+	 * @return Device capabilities.
+	 */
+	public DeviceCapabilities getCapabilities()
+	{
+		return DeviceCapabilityProbe.getInstance().getCached(this).orElse(announcedCapabilities);
+	}
+
+	/**
+	 * Check for a device capability. Never blocks.
+	 *
+	 * @param capability
+	 *          The capability.
+	 * @return <code>true</code> if the device has the capability.
+	 * @see #getCapabilities()
+	 */
+	public boolean hasCapability(Capability capability)
+	{
+		return getCapabilities().has(capability);
+	}
+
 	@Override
 	public String toString()
 	{
@@ -158,8 +366,9 @@ public class DeviceInfo
 	}
 
 	/**
-	 * Create a new stream to the device.
-	 * 
+	 * Create a new stream to the device. The stream uses the shared connection
+	 * to the device, see {@link DeviceConnections}.
+	 *
 	 * @param contentURI
 	 *          The URI if the streaming content.
 	 * @return Controller instance for the stream.
@@ -168,22 +377,32 @@ public class DeviceInfo
 	 */
 	public StreamControl createStream(URI contentURI) throws AirTwitchException
 	{
-		List<Header> defaultHeaders = new ArrayList<>(1);
-		defaultHeaders.add(new BasicHeader("User-Agent", "MediaControl/1.0"));
-		CloseableHttpClient client = HttpClients.custom().setDefaultHeaders(defaultHeaders).build();
-		StreamControl control = new StreamControl(this, client, contentURI);
+		// The shared client is taken when the stream sends its first request
+		StreamControl control = new StreamControl(this, null, contentURI);
 		return control;
 	}
 
 	/**
-	 * Get the device URI.
+	 * Get the device URI. The host is the address which answered the last
+	 * connection to the device, see {@link DeviceConnections#getPreferredAddress(DeviceInfo)}.
 	 *
 	 * @return the device URI.
 	 * @throws URISyntaxException
-	 *           Error when constructing the device URI.
+	 *           Error when constructing the device URI, e.g. if the device has
+	 *           no address.
 	 */
 	public URI getUri() throws URISyntaxException
 	{
-		return new URIBuilder().setScheme("http").setHost(inet4Addresses.get(0).getHostAddress()).setPort(port).build();
+		InetAddress address = DeviceConnections.getInstance().getPreferredAddress(this)
+						.orElseThrow(() -> new URISyntaxException(name, "Device has no address"));
+		String host = address.getHostAddress();
+		if (address instanceof Inet6Address)
+		{
+			// The scope of link-local addresses cannot be part of a URI; the
+			// connection uses the scoped address anyway
+			int scope = host.indexOf('%');
+			host = scope < 0 ? host : host.substring(0, scope);
+		}
+		return new URIBuilder().setScheme("http").setHost(host).setPort(port).build();
 	}
 }
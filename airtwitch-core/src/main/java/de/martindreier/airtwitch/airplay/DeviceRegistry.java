@@ -0,0 +1,607 @@
+/**
+ * DeviceRegistry.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of all discovered devices. Readers get immutable snapshots without
+ * locking; writers build a new snapshot and publish it atomically. Each
+ * snapshot has indexes by device key, name and address. A new snapshot is only
+ * built when devices come, go or change their addresses. The times the
+ * devices were last seen are kept apart from the snapshots, so refreshing them
+ * is cheap.
+ * <p>
+ * A device may be seen on several network interfaces. The registry keeps the
+ * device as seen on each interface and combines their addresses. A goodbye on
+ * one interface only drops the addresses seen there; the device is removed
+ * when no interface sees it any more.
+ * <p>
+ * Devices not seen for longer than the expiry time are removed. The expiry
+ * time is read from the Java system property
+ * <code>airtwitch.devices.ttl</code> in seconds and defaults to the mDNS
+ * record lifetime of 75 minutes; devices which leave properly are removed
+ * earlier by their goodbye announcement. JmDNS does not report renewed records
+ * of unchanged devices, so anything which hears from a device should report it
+ * with {@link #touch(String)}. Service discovery starts the
+ * {@link DeviceHealthMonitor} for this, which touches every device answering
+ * a probe.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceRegistry
+{
+	/**
+	 * Java system property: device expiry time in seconds.
+	 */
+	public static final String										PROP_TTL		= "airtwitch.devices.ttl";
+
+	/**
+	 * Source of devices not seen on a network interface, e.g. restored from the
+	 * device cache. Replaced by the first interface which sees the device.
+	 */
+	public static final String										NO_INTERFACE	= "";
+
+	/**
+	 * Default expiry time in seconds.
+	 */
+	private static final long											DEFAULT_TTL	= 4500;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger										log					= Logger.getLogger(DeviceRegistry.class.getName());
+
+	/**
+	 * Singleton instance.
+	 */
+	private static DeviceRegistry									instance;
+
+	/**
+	 * Get the registry.
+	 *
+	 * @return Singleton instance.
+	 */
+	public static synchronized DeviceRegistry getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new DeviceRegistry(Long.getLong(PROP_TTL, DEFAULT_TTL), TimeUnit.SECONDS);
+		}
+		return instance;
+	}
+
+	/**
+	 * Current snapshot.
+	 */
+	private final AtomicReference<Snapshot>				snapshot		= new AtomicReference<>(
+					new Snapshot(Collections.emptyMap()));
+
+	/**
+	 * Time each registered device was last seen, in milliseconds since the
+	 * epoch, by device key. Contains exactly the devices of the current
+	 * snapshot.
+	 */
+	private final Map<String, Long>								lastSeen		= new ConcurrentHashMap<>();
+
+	/**
+	 * Change listeners.
+	 */
+	private final List<Consumer<DeviceEvent>>			listeners		= new CopyOnWriteArrayList<>();
+
+	/**
+	 * Expiry time in milliseconds.
+	 */
+	private final long														ttlMillis;
+
+	/**
+	 * Expiry thread.
+	 */
+	private final ScheduledExecutorService				expiry			= Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Device expiry");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Create a new registry.
+	 *
+	 * @param ttl
+	 *          Expiry time.
+	 * @param unit
+	 *          Time unit of the expiry time.
+	 */
+	DeviceRegistry(long ttl, TimeUnit unit)
+	{
+		this.ttlMillis = unit.toMillis(ttl);
+		long period = Math.max(1000, ttlMillis / 4);
+		expiry.scheduleWithFixedDelay(() -> expire(System.currentTimeMillis()), period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Get the current snapshot. Never blocks.
+	 *
+	 * @return Immutable snapshot of all known devices.
+	 */
+	public Snapshot getSnapshot()
+	{
+		return snapshot.get();
+	}
+
+	/**
+	 * Add a listener for registry changes. Listeners are called on the thread
+	 * which changed the registry, after the new snapshot was published.
+	 *
+	 * @param listener
+	 *          The listener.
+	 */
+	public void addListener(Consumer<DeviceEvent> listener)
+	{
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 *
+	 * @param listener
+	 *          The listener.
+	 */
+	public void removeListener(Consumer<DeviceEvent> listener)
+	{
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Register a device which was not seen on a network interface.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return The change, or empty if the device was already known unchanged.
+	 * @see #register(String, DeviceInfo)
+	 */
+	public Optional<DeviceEvent> register(DeviceInfo device)
+	{
+		return register(NO_INTERFACE, device, System.currentTimeMillis());
+	}
+
+	/**
+	 * Register a device seen on a network interface. Adds the device if it is
+	 * new, updates it if its port changed or it was seen under new addresses,
+	 * and otherwise only refreshes its expiry time. A confirmed device replaces
+	 * a probable device from the cache.
+	 *
+	 * @param source
+	 *          Name of the network interface, or {@link #NO_INTERFACE}.
+	 * @param device
+	 *          The device as seen on the interface.
+	 * @return The change, or empty if the device was already known unchanged.
+	 */
+	public Optional<DeviceEvent> register(String source, DeviceInfo device)
+	{
+		return register(source, device, System.currentTimeMillis());
+	}
+
+	/**
+	 * Register a device which was not seen on a network interface at the given
+	 * time.
+	 */
+	Optional<DeviceEvent> register(DeviceInfo device, long now)
+	{
+		return register(NO_INTERFACE, device, now);
+	}
+
+	/**
+	 * Register a seen device at the given time.
+	 */
+	Optional<DeviceEvent> register(String source, DeviceInfo device, long now)
+	{
+		DeviceEvent event;
+		synchronized (this)
+		{
+			Entry previous = snapshot.get().entries.get(device.getKey());
+			// Stays null if only the expiry time is refreshed
+			Entry changed = null;
+			if (previous == null)
+			{
+				event = new DeviceEvent(DeviceEvent.Type.ADDED, device, null);
+				changed = new Entry(device, Collections.singletonMap(source, device));
+			}
+			else if (device.isProbable() && !previous.device.isProbable())
+			{
+				// The cached copy of a confirmed device is outdated
+				event = null;
+			}
+			else
+			{
+				Map<String, DeviceInfo> sightings = new LinkedHashMap<>(previous.sightings);
+				if (previous.device.isProbable() && !device.isProbable())
+				{
+					// Cached addresses may be outdated, a device seen on the network
+					// replaces them
+					sightings.clear();
+				}
+				// A device seen on another port moved, its other sightings are outdated
+				sightings.values().removeIf(seen -> seen.getPort() != device.getPort());
+				if (!NO_INTERFACE.equals(source))
+				{
+					sightings.remove(NO_INTERFACE);
+					sightings.put(source, device);
+				}
+				else if (sightings.isEmpty() || sightings.containsKey(NO_INTERFACE))
+				{
+					sightings.put(source, device);
+				}
+				DeviceInfo merged = merge(sightings);
+				if (merged.hasSameEndpoint(previous.device))
+				{
+					event = null;
+					merged = previous.device.isProbable() ? merged : previous.device;
+				}
+				else
+				{
+					event = new DeviceEvent(DeviceEvent.Type.UPDATED, merged, previous.device);
+				}
+				if (merged != previous.device || !isSameSightings(previous.sightings, sightings))
+				{
+					changed = new Entry(merged, sightings);
+				}
+			}
+			lastSeen.merge(device.getKey(), now, Math::max);
+			if (changed != null)
+			{
+				Map<String, Entry> entries = new LinkedHashMap<>(snapshot.get().entries);
+				entries.put(device.getKey(), changed);
+				snapshot.set(new Snapshot(entries));
+			}
+		}
+		if (event == null)
+		{
+			return Optional.empty();
+		}
+		fire(event);
+		return Optional.of(event);
+	}
+
+	/**
+	 * Refresh the expiry time of a device without changing it, e.g. after it
+	 * answered a probe. Never blocks and does not build a new snapshot.
+	 *
+	 * @param key
+	 *          Device key.
+	 * @return <code>true</code> if the device is known.
+	 */
+	public boolean touch(String key)
+	{
+		return touch(key, System.currentTimeMillis());
+	}
+
+	/**
+	 * Refresh the expiry time of a device at the given time.
+	 */
+	boolean touch(String key, long now)
+	{
+		return lastSeen.computeIfPresent(key, (unused, seen) -> Math.max(seen, now)) != null;
+	}
+
+	/**
+	 * Get the time a device was last seen.
+	 *
+	 * @param key
+	 *          Device key.
+	 * @return Time in milliseconds since the epoch, or empty if the device is not
+	 *         known.
+	 */
+	public Optional<Long> getLastSeen(String key)
+	{
+		return Optional.ofNullable(lastSeen.get(key));
+	}
+
+	/**
+	 * Remove a device.
+	 *
+	 * @param key
+	 *          Device key.
+	 * @return The removal, or empty if the device was not known.
+	 */
+	public Optional<DeviceEvent> remove(String key)
+	{
+		DeviceEvent event;
+		synchronized (this)
+		{
+			Map<String, Entry> entries = new LinkedHashMap<>(snapshot.get().entries);
+			Entry removed = entries.remove(key);
+			if (removed == null)
+			{
+				return Optional.empty();
+			}
+			snapshot.set(new Snapshot(entries));
+			lastSeen.remove(key);
+			event = new DeviceEvent(DeviceEvent.Type.REMOVED, removed.device, null);
+		}
+		fire(event);
+		return Optional.of(event);
+	}
+
+	/**
+	 * Remove a device from a network interface, e.g. after its goodbye
+	 * announcement there. The addresses seen on the interface are dropped; the
+	 * device is removed if no other interface sees it.
+	 *
+	 * @param source
+	 *          Name of the network interface.
+	 * @param key
+	 *          Device key.
+	 * @return The removal, an update if the device is still seen on other
+	 *         interfaces under fewer addresses, or empty if nothing changed.
+	 */
+	public Optional<DeviceEvent> remove(String source, String key)
+	{
+		DeviceEvent event;
+		synchronized (this)
+		{
+			Entry previous = snapshot.get().entries.get(key);
+			if (previous == null)
+			{
+				return Optional.empty();
+			}
+			Map<String, DeviceInfo> sightings = new LinkedHashMap<>(previous.sightings);
+			// The goodbye is newer than a sighting without interface
+			boolean removed = sightings.remove(source) != null | sightings.remove(NO_INTERFACE) != null;
+			if (!removed)
+			{
+				return Optional.empty();
+			}
+			Map<String, Entry> entries = new LinkedHashMap<>(snapshot.get().entries);
+			if (sightings.isEmpty())
+			{
+				entries.remove(key);
+				lastSeen.remove(key);
+				event = new DeviceEvent(DeviceEvent.Type.REMOVED, previous.device, null);
+			}
+			else
+			{
+				DeviceInfo merged = merge(sightings);
+				if (merged.hasSameEndpoint(previous.device))
+				{
+					event = null;
+					merged = previous.device;
+				}
+				else
+				{
+					event = new DeviceEvent(DeviceEvent.Type.UPDATED, merged, previous.device);
+				}
+				entries.put(key, new Entry(merged, sightings));
+			}
+			snapshot.set(new Snapshot(entries));
+		}
+		if (event == null)
+		{
+			return Optional.empty();
+		}
+		fire(event);
+		return Optional.of(event);
+	}
+
+	/**
+	 * Remove a device restored from the cache which could not be confirmed.
+	 * Does nothing if the device was seen on the network in the meantime.
+	 *
+	 * @param key
+	 *          Device key.
+	 * @return The removal, or empty if the device is not known or confirmed.
+	 */
+	Optional<DeviceEvent> removeUnconfirmed(String key)
+	{
+		DeviceEvent event;
+		synchronized (this)
+		{
+			Map<String, Entry> entries = new LinkedHashMap<>(snapshot.get().entries);
+			Entry removed = entries.get(key);
+			if (removed == null || !removed.device.isProbable())
+			{
+				return Optional.empty();
+			}
+			entries.remove(key);
+			snapshot.set(new Snapshot(entries));
+			lastSeen.remove(key);
+			event = new DeviceEvent(DeviceEvent.Type.REMOVED, removed.device, null);
+		}
+		fire(event);
+		return Optional.of(event);
+	}
+
+	/**
+	 * Remove all devices not seen within the expiry time.
+	 *
+	 * @param now
+	 *          Current time in milliseconds.
+	 */
+	void expire(long now)
+	{
+		List<DeviceEvent> events = new ArrayList<>();
+		synchronized (this)
+		{
+			Map<String, Entry> entries = new LinkedHashMap<>(snapshot.get().entries);
+			entries.entrySet().removeIf(entry -> {
+				if (now - lastSeen.getOrDefault(entry.getKey(), now) > ttlMillis)
+				{
+					events.add(new DeviceEvent(DeviceEvent.Type.EXPIRED, entry.getValue().device, null));
+					return true;
+				}
+				return false;
+			});
+			if (!events.isEmpty())
+			{
+				snapshot.set(new Snapshot(entries));
+				lastSeen.keySet().retainAll(entries.keySet());
+			}
+		}
+		events.forEach(this::fire);
+	}
+
+	/**
+	 * Combine the addresses of a device seen on several interfaces, in the order
+	 * the interfaces first saw it.
+	 */
+	private static DeviceInfo merge(Map<String, DeviceInfo> sightings)
+	{
+		Iterator<DeviceInfo> iterator = sightings.values().iterator();
+		DeviceInfo merged = iterator.next();
+		while (iterator.hasNext())
+		{
+			merged = merged.withAddressesOf(iterator.next());
+		}
+		return merged;
+	}
+
+	/**
+	 * Check whether a device is seen on the same interfaces under the same
+	 * addresses.
+	 */
+	private static boolean isSameSightings(Map<String, DeviceInfo> previous, Map<String, DeviceInfo> current)
+	{
+		if (!new ArrayList<>(previous.keySet()).equals(new ArrayList<>(current.keySet())))
+		{
+			return false;
+		}
+		for (Map.Entry<String, DeviceInfo> sighting : current.entrySet())
+		{
+			DeviceInfo seen = previous.get(sighting.getKey());
+			if (!seen.hasSameEndpoint(sighting.getValue()) || seen.isProbable() != sighting.getValue().isProbable())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Notify all listeners.
+	 */
+	private void fire(DeviceEvent event)
+	{
+		log.fine(event::toString);
+		for (Consumer<DeviceEvent> listener : listeners)
+		{
+			try
+			{
+				listener.accept(event);
+			}
+			catch (RuntimeException exception)
+			{
+				log.log(Level.WARNING, "Device listener failed", exception);
+			}
+		}
+	}
+
+	/**
+	 * Registry entry.
+	 */
+	private static class Entry
+	{
+		private final DeviceInfo								device;
+		/**
+		 * The device as seen on each interface. Never changed, a new entry gets a
+		 * new map.
+		 */
+		private final Map<String, DeviceInfo>		sightings;
+
+		Entry(DeviceInfo device, Map<String, DeviceInfo> sightings)
+		{
+			this.device = device;
+			this.sightings = sightings;
+		}
+	}
+
+	/**
+	 * Immutable view of the registry at one point in time.
+	 */
+	public static class Snapshot
+	{
+		private final Map<String, Entry>				entries;
+		private final List<DeviceInfo>					devices;
+		private final Map<String, DeviceInfo>		byName		= new HashMap<>();
+		private final Map<InetAddress, DeviceInfo>	byAddress	= new HashMap<>();
+
+		Snapshot(Map<String, Entry> entries)
+		{
+			this.entries = Collections.unmodifiableMap(entries);
+			List<DeviceInfo> list = new ArrayList<>(entries.size());
+			for (Entry entry : entries.values())
+			{
+				list.add(entry.device);
+				byName.put(entry.device.getName(), entry.device);
+				entry.device.getAddresses().forEach(address -> byAddress.put(address, entry.device));
+			}
+			this.devices = Collections.unmodifiableList(list);
+		}
+
+		/**
+		 * @return All devices in discovery order.
+		 */
+		public List<DeviceInfo> getDevices()
+		{
+			return devices;
+		}
+
+		/**
+		 * @param key
+		 *          Device key.
+		 * @return The device, if known.
+		 */
+		public Optional<DeviceInfo> getByKey(String key)
+		{
+			Entry entry = entries.get(key);
+			return entry == null ? Optional.empty() : Optional.of(entry.device);
+		}
+
+		/**
+		 * @param name
+		 *          Device name.
+		 * @return The device, if known.
+		 */
+		public Optional<DeviceInfo> getByName(String name)
+		{
+			return Optional.ofNullable(byName.get(name));
+		}
+
+		/**
+		 * @param address
+		 *          Device address.
+		 * @return The device, if known.
+		 */
+		public Optional<DeviceInfo> getByAddress(InetAddress address)
+		{
+			return Optional.ofNullable(byAddress.get(address));
+		}
+
+		/**
+		 * @return Number of devices.
+		 */
+		public int size()
+		{
+			return devices.size();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * GroupSkew.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+
+/**
+ * Playback skew between the members of a {@link DeviceGroup} at one point in
+ * time. The positions reported by the devices are projected to a common
+ * instant using their playback rate, so the time between the queries does not
+ * count as skew.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class GroupSkew
+{
+	/**
+	 * Projected playback position per member in seconds.
+	 */
+	private final Map<DeviceInfo, Double>	positions;
+
+	/**
+	 * Members which could not be queried.
+	 */
+	private final List<DeviceInfo>				unavailable;
+
+	/**
+	 * Time the positions refer to, as returned by {@link System#nanoTime()}.
+	 */
+	private final long										referenceNanos;
+
+	/**
+	 * Create a skew measurement.
+	 *
+	 * @param positions
+	 *          Projected playback position per member in seconds.
+	 * @param unavailable
+	 *          Members which could not be queried.
+	 * @param referenceNanos
+	 *          Time the positions refer to.
+	 */
+	GroupSkew(Map<DeviceInfo, Double> positions, List<DeviceInfo> unavailable, long referenceNanos)
+	{
+		this.positions = Collections.unmodifiableMap(new LinkedHashMap<>(positions));
+		this.unavailable = Collections.unmodifiableList(new ArrayList<>(unavailable));
+		this.referenceNanos = referenceNanos;
+	}
+
+	/**
+	 * @return Projected playback position per member in seconds.
+	 */
+	public Map<DeviceInfo, Double> getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * @return Members which could not be queried.
+	 */
+	public List<DeviceInfo> getUnavailable()
+	{
+		return unavailable;
+	}
+
+	/**
+	 * Get the difference between the members furthest ahead and furthest
+	 * behind.
+	 *
+	 * @return Skew in milliseconds. <code>0</code> for less than two members.
+	 */
+	public double getSkewMillis()
+	{
+		if (positions.isEmpty())
+		{
+			return 0;
+		}
+		double max = Collections.max(positions.values());
+		double min = Collections.min(positions.values());
+		return (max - min) * 1000;
+	}
+
+	/**
+	 * Get the median position of the group, projected to the current time.
+	 * Members joining the group start at this position.
+	 *
+	 * @param rate
+	 *          Playback rate of the group.
+	 * @return Position in seconds, or empty if no member could be queried.
+	 */
+	public OptionalDouble getCurrentPosition(double rate)
+	{
+		if (positions.isEmpty())
+		{
+			return OptionalDouble.empty();
+		}
+		List<Double> sorted = new ArrayList<>(positions.values());
+		Collections.sort(sorted);
+		double median = sorted.get(sorted.size() / 2);
+		return OptionalDouble.of(median + rate * (System.nanoTime() - referenceNanos) / 1e9);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder(String.format("Skew %.0f ms", getSkewMillis()));
+		if (!positions.isEmpty())
+		{
+			double max = Collections.max(positions.values());
+			builder.append(" (");
+			String separator = "";
+			for (Map.Entry<DeviceInfo, Double> position : positions.entrySet())
+			{
+				builder.append(separator).append(position.getKey().getName())
+								.append(String.format(" %+.0f ms", (position.getValue() - max) * 1000));
+				separator = ", ";
+			}
+			builder.append(")");
+		}
+		for (DeviceInfo device : unavailable)
+		{
+			builder.append(", ").append(device.getName()).append(" unavailable");
+		}
+		return builder.toString();
+	}
+}
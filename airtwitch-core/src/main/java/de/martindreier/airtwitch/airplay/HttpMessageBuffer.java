@@ -0,0 +1,178 @@
+/**
+ * HttpMessageBuffer.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects bytes read from a non-blocking channel and splits them into HTTP
+ * messages. Both requests and responses are supported. Message bodies must be
+ * delimited by <code>Content-Length</code>, which is what AirPlay devices send;
+ * chunked transfer encoding is not supported.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+final class HttpMessageBuffer
+{
+	/**
+	 * Maximum size of a single message.
+	 */
+	private static final int	MAX_MESSAGE_SIZE	= 1024 * 1024;
+
+	/**
+	 * Received, not yet consumed bytes.
+	 */
+	private byte[]						data							= new byte[4096];
+
+	/**
+	 * Number of valid bytes in {@link #data}.
+	 */
+	private int								length;
+
+	/**
+	 * Append received bytes.
+	 *
+	 * @param received
+	 *          Buffer in read mode. Is drained completely.
+	 * @throws IllegalStateException
+	 *           The buffered message exceeds the maximum message size.
+	 */
+	void append(ByteBuffer received)
+	{
+		int count = received.remaining();
+		if (length + count > data.length)
+		{
+			if (length + count > MAX_MESSAGE_SIZE)
+			{
+				throw new IllegalStateException("HTTP message too large");
+			}
+			data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+		}
+		received.get(data, length, count);
+		length += count;
+	}
+
+	/**
+	 * Take the next complete message from the buffer.
+	 *
+	 * @return The message, or <code>null</code> if no complete message is
+	 *         buffered yet.
+	 */
+	Message next()
+	{
+		int headerEnd = indexOfHeaderEnd();
+		if (headerEnd < 0)
+		{
+			return null;
+		}
+		String[] lines = new String(data, 0, headerEnd, StandardCharsets.ISO_8859_1).split("\r\n");
+		Map<String, String> headers = new HashMap<>();
+		for (int index = 1; index < lines.length; index++)
+		{
+			int separator = lines[index].indexOf(':');
+			if (separator > 0)
+			{
+				headers.put(lines[index].substring(0, separator).trim().toLowerCase(Locale.ROOT),
+								lines[index].substring(separator + 1).trim());
+			}
+		}
+		int bodyStart = headerEnd + 4;
+		int bodyLength = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+		if (length < bodyStart + bodyLength)
+		{
+			return null;
+		}
+		byte[] body = Arrays.copyOfRange(data, bodyStart, bodyStart + bodyLength);
+		int consumed = bodyStart + bodyLength;
+		System.arraycopy(data, consumed, data, 0, length - consumed);
+		length -= consumed;
+		return new Message(lines[0], headers, body);
+	}
+
+	/**
+	 * Find the empty line separating header and body.
+	 */
+	private int indexOfHeaderEnd()
+	{
+		for (int index = 0; index + 3 < length; index++)
+		{
+			if (data[index] == '\r' && data[index + 1] == '\n' && data[index + 2] == '\r' && data[index + 3] == '\n')
+			{
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * A received HTTP request or response.
+	 */
+	static final class Message
+	{
+		private final String							startLine;
+		private final Map<String, String>	headers;
+		private final byte[]							body;
+
+		Message(String startLine, Map<String, String> headers, byte[] body)
+		{
+			this.startLine = startLine;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		/**
+		 * @return Request line or status line.
+		 */
+		String getStartLine()
+		{
+			return startLine;
+		}
+
+		/**
+		 * @return Status code of a response, <code>-1</code> for requests.
+		 */
+		int getStatus()
+		{
+			if (!startLine.startsWith("HTTP/"))
+			{
+				return -1;
+			}
+			String[] parts = startLine.split(" ", 3);
+			try
+			{
+				return parts.length > 1 ? Integer.parseInt(parts[1]) : -1;
+			}
+			catch (NumberFormatException exception)
+			{
+				return -1;
+			}
+		}
+
+		/**
+		 * @param name
+		 *          Header name, case insensitive.
+		 * @return Header value, or <code>null</code>.
+		 */
+		String getHeader(String name)
+		{
+			return headers.get(name.toLowerCase(Locale.ROOT));
+		}
+
+		/**
+		 * @return Message body. Empty if the message has no body.
+		 */
+		byte[] getBody()
+		{
+			return body;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * InterfaceStatistics.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Discovery statistics of a single network interface.
+ *
+ * @see AirPlayServiceDiscovery
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class InterfaceStatistics
+{
+	/**
+	 * Interface name, e.g. <code>eth0</code>.
+	 */
+	private final String				interfaceName;
+
+	/**
+	 * Address the discovery is bound to.
+	 */
+	private final InetAddress		address;
+
+	/**
+	 * Start of the discovery in nanoseconds.
+	 */
+	private final long					startNanos;
+
+	/**
+	 * Time needed to start the discovery on the interface, in milliseconds.
+	 */
+	private final AtomicLong		startupMillis				= new AtomicLong(-1);
+
+	/**
+	 * Time until the first device was resolved, in milliseconds.
+	 */
+	private final AtomicLong		firstDeviceMillis		= new AtomicLong(-1);
+
+	/**
+	 * Number of resolved services.
+	 */
+	private final AtomicInteger	resolutions					= new AtomicInteger();
+
+	/**
+	 * Time from announcement to resolution in milliseconds, by device name.
+	 */
+	private final Map<String, Long>	resolutionMillis		= new ConcurrentHashMap<>();
+
+	/**
+	 * Create statistics for an interface.
+	 *
+	 * @param interfaceName
+	 *          Interface name.
+	 * @param address
+	 *          Address the discovery is bound to. May be <code>null</code> if
+	 *          the default interface is used.
+	 * @param startNanos
+	 *          Start of the discovery, as returned by {@link System#nanoTime()}.
+	 */
+	InterfaceStatistics(String interfaceName, InetAddress address, long startNanos)
+	{
+		this.interfaceName = interfaceName;
+		this.address = address;
+		this.startNanos = startNanos;
+	}
+
+	/**
+	 * Record that the discovery on this interface is running.
+	 */
+	void started()
+	{
+		startupMillis.compareAndSet(-1, elapsedMillis());
+	}
+
+	/**
+	 * Record a resolved service.
+	 *
+	 * @return <code>true</code> if this is the first service resolved on the
+	 *         interface.
+	 */
+	boolean resolved()
+	{
+		resolutions.incrementAndGet();
+		return firstDeviceMillis.compareAndSet(-1, elapsedMillis());
+	}
+
+	/**
+	 * Record the time a device needed from its announcement to its resolution.
+	 *
+	 * @param deviceName
+	 *          Device name.
+	 * @param millis
+	 *          Resolution time in milliseconds.
+	 */
+	void resolutionTime(String deviceName, long millis)
+	{
+		resolutionMillis.put(deviceName, millis);
+	}
+
+	private long elapsedMillis()
+	{
+		return (System.nanoTime() - startNanos) / 1_000_000;
+	}
+
+	/**
+	 * @return Interface name.
+	 */
+	public String getInterfaceName()
+	{
+		return interfaceName;
+	}
+
+	/**
+	 * @return Address the discovery is bound to, <code>null</code> for the
+	 *         default interface.
+	 */
+	public InetAddress getAddress()
+	{
+		return address;
+	}
+
+	/**
+	 * @return Time needed to start the discovery on the interface in
+	 *         milliseconds, or empty if it is not running.
+	 */
+	public OptionalLong getStartupMillis()
+	{
+		long value = startupMillis.get();
+		return value < 0 ? OptionalLong.empty() : OptionalLong.of(value);
+	}
+
+	/**
+	 * @return Time from the start of the discovery until the first device was
+	 *         resolved on the interface in milliseconds, or empty if no device
+	 *         was found yet.
+	 */
+	public OptionalLong getFirstDeviceMillis()
+	{
+		long value = firstDeviceMillis.get();
+		return value < 0 ? OptionalLong.empty() : OptionalLong.of(value);
+	}
+
+	/**
+	 * @return Number of services resolved on the interface.
+	 */
+	public int getResolutions()
+	{
+		return resolutions.get();
+	}
+
+	/**
+	 * @return Time from announcement to resolution in milliseconds, by device
+	 *         name. Only contains devices announced while the discovery was
+	 *         running.
+	 */
+	public Map<String, Long> getResolutionMillis()
+	{
+		return Collections.unmodifiableMap(resolutionMillis);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder(interfaceName);
+		if (address != null)
+		{
+			builder.append(" (").append(address.getHostAddress()).append(")");
+		}
+		OptionalLong startup = getStartupMillis();
+		if (startup.isPresent())
+		{
+			builder.append(": started in ").append(startup.getAsLong()).append(" ms");
+		}
+		else
+		{
+			builder.append(": not running");
+		}
+		OptionalLong firstDevice = getFirstDeviceMillis();
+		if (firstDevice.isPresent())
+		{
+			builder.append(", first device after ").append(firstDevice.getAsLong()).append(" ms");
+		}
+		builder.append(", ").append(getResolutions()).append(" resolved");
+		return builder.toString();
+	}
+}
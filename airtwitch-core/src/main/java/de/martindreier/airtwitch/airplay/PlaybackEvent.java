@@ -0,0 +1,108 @@
+/**
+ * PlaybackEvent.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.util.Optional;
+
+/**
+ * Change of the playback state of a monitored stream.
+ *
+ * @see PlaybackMonitor
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class PlaybackEvent
+{
+	/**
+	 * The monitored stream.
+	 */
+	private final StreamControl						stream;
+	/**
+	 * State before the change.
+	 */
+	private final PlaybackState						previousState;
+	/**
+	 * New state.
+	 */
+	private final PlaybackState						state;
+	/**
+	 * Playback information, if the state was polled.
+	 */
+	private final Optional<PlaybackInfo>	info;
+	/**
+	 * Time of the change in milliseconds since the epoch.
+	 */
+	private final long										timestamp	= System.currentTimeMillis();
+
+	/**
+	 * Create a new event.
+	 *
+	 * @param stream
+	 *          The monitored stream.
+	 * @param previousState
+	 *          State before the change.
+	 * @param state
+	 *          New state.
+	 * @param info
+	 *          Playback information. May be <code>null</code>.
+	 */
+	PlaybackEvent(StreamControl stream, PlaybackState previousState, PlaybackState state, PlaybackInfo info)
+	{
+		this.stream = stream;
+		this.previousState = previousState;
+		this.state = state;
+		this.info = Optional.ofNullable(info);
+	}
+
+	/**
+	 * @return The monitored stream.
+	 */
+	public StreamControl getStream()
+	{
+		return stream;
+	}
+
+	/**
+	 * @return State before the change.
+	 */
+	public PlaybackState getPreviousState()
+	{
+		return previousState;
+	}
+
+	/**
+	 * @return New state.
+	 */
+	public PlaybackState getState()
+	{
+		return state;
+	}
+
+	/**
+	 * @return Playback information. Only available if the state was polled,
+	 *         events pushed by the device only carry the state.
+	 */
+	public Optional<PlaybackInfo> getInfo()
+	{
+		return info;
+	}
+
+	/**
+	 * @return Time of the change in milliseconds since the epoch.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s on %s: %s -> %s", stream.getSessionId(), stream.getDeviceInfo().getName(), previousState,
+						state);
+	}
+}
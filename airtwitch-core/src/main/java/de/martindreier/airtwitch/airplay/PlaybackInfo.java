@@ -0,0 +1,160 @@
+/**
+ * PlaybackInfo.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.util.Map;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Playback information as reported by the <code>/playback-info</code> request
+ * of a device.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class PlaybackInfo
+{
+	/**
+	 * Stream duration in seconds. Live streams report the length of the
+	 * seekable window, or <code>0</code>.
+	 */
+	private final double	duration;
+	/**
+	 * Playback position in seconds.
+	 */
+	private final double	position;
+	/**
+	 * Playback rate. <code>0</code> if paused, <code>1</code> if playing.
+	 */
+	private final double	rate;
+	/**
+	 * <code>true</code> if the device has loaded the stream.
+	 */
+	private final boolean	readyToPlay;
+	/**
+	 * <code>true</code> if the playback buffer ran empty.
+	 */
+	private final boolean	bufferEmpty;
+	/**
+	 * <code>true</code> if the device expects playback to continue without
+	 * stalling.
+	 */
+	private final boolean	likelyToKeepUp;
+	/**
+	 * <code>true</code> if the device reported no playback at all.
+	 */
+	private final boolean	idle;
+
+	/**
+	 * Create playback information from the properties sent by the device.
+	 *
+	 * @param properties
+	 *          Property list dictionary.
+	 */
+	PlaybackInfo(Map<String, Object> properties)
+	{
+		idle = !properties.containsKey("duration") && !properties.containsKey("rate");
+		duration = number(properties, "duration");
+		position = number(properties, "position");
+		rate = number(properties, "rate");
+		readyToPlay = flag(properties, "readyToPlay");
+		bufferEmpty = flag(properties, "playbackBufferEmpty");
+		likelyToKeepUp = flag(properties, "playbackLikelyToKeepUp");
+	}
+
+	/**
+	 * Parse the response of a <code>/playback-info</code> request.
+	 *
+	 * @param plist
+	 *          Response body, an XML property list.
+	 * @return Playback information.
+	 * @throws AirTwitchException
+	 *           The response is malformed.
+	 */
+	public static PlaybackInfo parse(byte[] plist) throws AirTwitchException
+	{
+		return new PlaybackInfo(PropertyList.parseDictionary(plist));
+	}
+
+	private static double number(Map<String, Object> properties, String key)
+	{
+		Object value = properties.get(key);
+		return value instanceof Number ? ((Number) value).doubleValue() : 0;
+	}
+
+	private static boolean flag(Map<String, Object> properties, String key)
+	{
+		return Boolean.TRUE.equals(properties.get(key));
+	}
+
+	/**
+	 * @return Stream duration in seconds.
+	 */
+	public double getDuration()
+	{
+		return duration;
+	}
+
+	/**
+	 * @return Playback position in seconds.
+	 */
+	public double getPosition()
+	{
+		return position;
+	}
+
+	/**
+	 * @return Playback rate. <code>0</code> if paused.
+	 */
+	public double getRate()
+	{
+		return rate;
+	}
+
+	/**
+	 * @return <code>true</code> if the playback buffer ran empty.
+	 */
+	public boolean isBufferEmpty()
+	{
+		return bufferEmpty;
+	}
+
+	/**
+	 * @return <code>true</code> if the device expects to play without stalling.
+	 */
+	public boolean isLikelyToKeepUp()
+	{
+		return likelyToKeepUp;
+	}
+
+	/**
+	 * Derive the playback state.
+	 *
+	 * @return The playback state.
+	 */
+	public PlaybackState getState()
+	{
+		if (idle)
+		{
+			return PlaybackState.STOPPED;
+		}
+		if (!readyToPlay)
+		{
+			return PlaybackState.LOADING;
+		}
+		if (bufferEmpty && !likelyToKeepUp)
+		{
+			return PlaybackState.STALLED;
+		}
+		return rate > 0 ? PlaybackState.PLAYING : PlaybackState.PAUSED;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s at %.1f s of %.1f s, rate %.1f", getState(), position, duration, rate);
+	}
+}
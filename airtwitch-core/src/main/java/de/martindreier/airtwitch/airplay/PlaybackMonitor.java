@@ -0,0 +1,517 @@
+/**
+ * PlaybackMonitor.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Monitors the playback state of streams on AirPlay devices. For each
+ * monitored stream the monitor first opens the <code>/reverse</code> event
+ * channel, on which the device pushes state changes. If the device does not
+ * accept the reverse channel, or the channel breaks, the monitor falls back to
+ * polling <code>/playback-info</code>.
+ * <p>
+ * All connections are handled by a single selector thread using non-blocking
+ * I/O, and poll timers are kept in a timer wheel, so one monitor can cover
+ * hundreds of streams. Listeners are notified on a separate thread when the
+ * state of a stream changes.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class PlaybackMonitor implements Closeable
+{
+	/**
+	 * Length of a timer wheel tick in milliseconds.
+	 */
+	private static final long											TICK_MILLIS		= 100;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger										log						= Logger.getLogger(PlaybackMonitor.class.getName());
+
+	/**
+	 * Interval between two polls of a stream.
+	 */
+	private final long														pollMillis;
+
+	/**
+	 * Monitor thread with the selector for all connections and the poll timers.
+	 */
+	private final SelectorLoop										loop;
+
+	/**
+	 * Listener notification thread.
+	 */
+	private final ExecutorService									notifier			= Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Playback events");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Monitored streams by session ID.
+	 */
+	private final Map<String, Session>						sessions			= new ConcurrentHashMap<>();
+
+	/**
+	 * Read buffer, only used by the monitor thread.
+	 */
+	private final ByteBuffer											readBuffer		= ByteBuffer.allocateDirect(16 * 1024);
+
+	/**
+	 * Create a new monitor polling every second where needed.
+	 *
+	 * @throws AirTwitchException
+	 *           The selector could not be opened.
+	 */
+	public PlaybackMonitor() throws AirTwitchException
+	{
+		this(1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Create a new monitor.
+	 *
+	 * @param pollInterval
+	 *          Interval between two polls of streams without reverse channel.
+	 * @param unit
+	 *          Time unit of the interval.
+	 * @throws AirTwitchException
+	 *           The selector could not be opened.
+	 */
+	public PlaybackMonitor(long pollInterval, TimeUnit unit) throws AirTwitchException
+	{
+		this.pollMillis = Math.max(TICK_MILLIS, unit.toMillis(pollInterval));
+		try
+		{
+			loop = new SelectorLoop("Playback monitor", TICK_MILLIS);
+		}
+		catch (IOException exception)
+		{
+			throw new AirTwitchException("Could not open selector for playback monitor", exception);
+		}
+		loop.start(this::handle, () -> {
+			sessions.values().forEach(Session::close);
+			sessions.clear();
+		});
+	}
+
+	/**
+	 * Start monitoring a stream.
+	 *
+	 * @param stream
+	 *          The stream.
+	 * @param listener
+	 *          Receives state changes.
+	 * @throws AirTwitchException
+	 *           The device address cannot be determined.
+	 */
+	public void watch(StreamControl stream, Consumer<PlaybackEvent> listener) throws AirTwitchException
+	{
+		DeviceInfo device = stream.getDeviceInfo();
+		InetAddress address = DeviceConnections.getInstance().getPreferredAddress(device)
+						.orElseThrow(() -> new AirTwitchException("Device %s has no address", device.getName()));
+		Session session = new Session(stream, listener, new InetSocketAddress(address, device.getPort()));
+		Session previous = sessions.put(stream.getSessionId(), session);
+		loop.execute(() -> {
+			if (previous != null)
+			{
+				previous.close();
+			}
+			session.openReverse();
+		});
+	}
+
+	/**
+	 * Stop monitoring a stream.
+	 *
+	 * @param stream
+	 *          The stream.
+	 */
+	public void unwatch(StreamControl stream)
+	{
+		Session session = sessions.remove(stream.getSessionId());
+		if (session != null)
+		{
+			loop.execute(session::close);
+		}
+	}
+
+	/**
+	 * Get the last known state of a stream.
+	 *
+	 * @param stream
+	 *          The stream.
+	 * @return The state, {@link PlaybackState#UNKNOWN} if the stream is not
+	 *         monitored.
+	 */
+	public PlaybackState getState(StreamControl stream)
+	{
+		Session session = sessions.get(stream.getSessionId());
+		return session == null ? PlaybackState.UNKNOWN : session.state;
+	}
+
+	/**
+	 * Get the number of monitored streams.
+	 *
+	 * @return Number of streams.
+	 */
+	public int getSessionCount()
+	{
+		return sessions.size();
+	}
+
+	/**
+	 * Stop monitoring all streams.
+	 */
+	@Override
+	public void close()
+	{
+		loop.close();
+		notifier.shutdown();
+	}
+
+	/**
+	 * Handle a ready connection.
+	 */
+	private void handle(SelectionKey key)
+	{
+		Connection connection = (Connection) key.attachment();
+		try
+		{
+			if (!key.isValid())
+			{
+				return;
+			}
+			if (key.isConnectable() && connection.channel.finishConnect())
+			{
+				key.interestOps(SelectionKey.OP_READ | (connection.output.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+			}
+			if (key.isValid() && key.isWritable())
+			{
+				connection.flush();
+			}
+			if (key.isValid() && key.isReadable())
+			{
+				readBuffer.clear();
+				int read = connection.channel.read(readBuffer);
+				if (read < 0)
+				{
+					connection.failed(new IOException("Connection closed by device"));
+					return;
+				}
+				readBuffer.flip();
+				connection.input.append(readBuffer);
+				HttpMessageBuffer.Message message;
+				while (connection.isOpen() && (message = connection.input.next()) != null)
+				{
+					connection.handler.accept(message);
+				}
+			}
+		}
+		catch (IOException | RuntimeException exception)
+		{
+			connection.failed(exception);
+		}
+	}
+
+	/**
+	 * A non-blocking connection to a device.
+	 */
+	private class Connection
+	{
+		private final SocketChannel														channel;
+		private final SelectionKey														key;
+		private final Queue<ByteBuffer>												output		= new ArrayDeque<>();
+		private final HttpMessageBuffer												input			= new HttpMessageBuffer();
+		private final Consumer<HttpMessageBuffer.Message>		handler;
+		private final Consumer<Exception>											onFailure;
+
+		Connection(InetSocketAddress address, Consumer<HttpMessageBuffer.Message> handler, Consumer<Exception> onFailure)
+						throws IOException
+		{
+			this.handler = handler;
+			this.onFailure = onFailure;
+			channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			boolean connected = channel.connect(address);
+			key = channel.register(loop.getSelector(), connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+		}
+
+		boolean isOpen()
+		{
+			return channel.isOpen();
+		}
+
+		void send(String message)
+		{
+			output.add(ByteBuffer.wrap(message.getBytes(StandardCharsets.ISO_8859_1)));
+			if (channel.isConnected())
+			{
+				key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+			}
+		}
+
+		void flush() throws IOException
+		{
+			while (!output.isEmpty())
+			{
+				channel.write(output.peek());
+				if (output.peek().hasRemaining())
+				{
+					return;
+				}
+				output.poll();
+			}
+			key.interestOps(SelectionKey.OP_READ);
+		}
+
+		void failed(Exception exception)
+		{
+			close();
+			onFailure.accept(exception);
+		}
+
+		void close()
+		{
+			key.cancel();
+			try
+			{
+				channel.close();
+			}
+			catch (IOException exception)
+			{
+				log.log(Level.FINE, "Could not close connection", exception);
+			}
+		}
+	}
+
+	/**
+	 * A monitored stream. Only accessed by the monitor thread, except for the
+	 * state.
+	 */
+	private class Session
+	{
+		private final StreamControl							stream;
+		private final Consumer<PlaybackEvent>		listener;
+		private final InetSocketAddress					address;
+		private volatile PlaybackState					state			= PlaybackState.UNKNOWN;
+		private Connection											reverse;
+		private boolean													upgraded;
+		private Connection											poll;
+		private boolean													pollPending;
+		private boolean													closed;
+
+		Session(StreamControl stream, Consumer<PlaybackEvent> listener, InetSocketAddress address)
+		{
+			this.stream = stream;
+			this.listener = listener;
+			this.address = address;
+		}
+
+		/**
+		 * Open the event channel. The device switches the connection to PTTH,
+		 * after which it sends its events as HTTP requests.
+		 */
+		void openReverse()
+		{
+			if (closed)
+			{
+				// Closed while the monitor ended
+				return;
+			}
+			DeviceCapabilities capabilities = stream.getDeviceInfo().getCapabilities();
+			if (capabilities.isProbed() && !capabilities.has(Capability.VIDEO))
+			{
+				// Only video receivers offer the event channel
+				poll();
+				return;
+			}
+			try
+			{
+				reverse = new Connection(address, this::onReverseMessage, this::onReverseFailed);
+				reverse.send(request("POST", "/reverse", "Upgrade: PTTH/1.0\r\nConnection: Upgrade\r\nX-Apple-Purpose: event\r\n"));
+			}
+			catch (IOException exception)
+			{
+				onReverseFailed(exception);
+			}
+		}
+
+		void onReverseMessage(HttpMessageBuffer.Message message)
+		{
+			if (!upgraded)
+			{
+				if (message.getStatus() == 101)
+				{
+					upgraded = true;
+					log.fine(() -> String.format("Reverse channel open for %s", stream.getSessionId()));
+				}
+				else
+				{
+					reverse.close();
+					onReverseFailed(new IOException("Reverse channel refused: " + message.getStartLine()));
+				}
+				return;
+			}
+			// Event from the device, must be acknowledged
+			reverse.send("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n");
+			try
+			{
+				Map<String, Object> event = PropertyList.parseDictionary(message.getBody());
+				Object category = event.get("category");
+				if (category == null || "video".equals(category))
+				{
+					Object name = event.get("state");
+					update(PlaybackState.fromEventName(name == null ? null : name.toString()), null);
+				}
+			}
+			catch (AirTwitchException exception)
+			{
+				log.log(Level.FINE, "Ignoring malformed event", exception);
+			}
+		}
+
+		void onReverseFailed(Exception exception)
+		{
+			if (closed)
+			{
+				return;
+			}
+			log.log(Level.FINE, String.format("No reverse channel for %s, polling instead", stream.getSessionId()),
+							exception);
+			reverse = null;
+			upgraded = false;
+			poll();
+		}
+
+		/**
+		 * Request the playback info and schedule the next poll.
+		 */
+		void poll()
+		{
+			if (closed)
+			{
+				return;
+			}
+			// Scheduled first, so a failing poll does not end the polling
+			loop.schedule(pollMillis, this::poll);
+			if (pollPending && poll != null)
+			{
+				// No answer within the poll interval
+				poll.close();
+				poll = null;
+				update(PlaybackState.UNKNOWN, null);
+			}
+			try
+			{
+				if (poll == null || !poll.isOpen())
+				{
+					poll = new Connection(address, this::onPollResponse, this::onPollFailed);
+				}
+				poll.send(request("GET", StreamControl.PLAYBACK_INFO.getPath(), ""));
+				pollPending = true;
+			}
+			catch (IOException exception)
+			{
+				onPollFailed(exception);
+			}
+		}
+
+		void onPollResponse(HttpMessageBuffer.Message message)
+		{
+			pollPending = false;
+			if (message.getStatus() != 200)
+			{
+				update(PlaybackState.UNKNOWN, null);
+				return;
+			}
+			try
+			{
+				PlaybackInfo info = PlaybackInfo.parse(message.getBody());
+				update(info.getState(), info);
+			}
+			catch (AirTwitchException exception)
+			{
+				log.log(Level.FINE, "Ignoring malformed playback info", exception);
+			}
+		}
+
+		void onPollFailed(Exception exception)
+		{
+			log.log(Level.FINE, String.format("Polling %s failed", stream.getSessionId()), exception);
+			poll = null;
+			pollPending = false;
+			update(PlaybackState.UNKNOWN, null);
+		}
+
+		String request(String method, String path, String headers)
+		{
+			return String.format(
+							"%s %s HTTP/1.1\r\nHost: %s:%d\r\nUser-Agent: MediaControl/1.0\r\n%s: %s\r\n%sContent-Length: 0\r\n\r\n",
+							method, path, address.getHostString(), address.getPort(), StreamControl.SESSION_ID_HEADER,
+							stream.getSessionId(), headers);
+		}
+
+		/**
+		 * Record a new state and notify the listener if it changed.
+		 */
+		void update(PlaybackState newState, PlaybackInfo info)
+		{
+			PlaybackState previous = state;
+			if (previous == newState || closed)
+			{
+				return;
+			}
+			state = newState;
+			PlaybackEvent event = new PlaybackEvent(stream, previous, newState, info);
+			log.fine(event::toString);
+			notifier.execute(() -> {
+				try
+				{
+					listener.accept(event);
+				}
+				catch (RuntimeException exception)
+				{
+					log.log(Level.WARNING, "Playback listener failed", exception);
+				}
+			});
+		}
+
+		void close()
+		{
+			closed = true;
+			if (reverse != null)
+			{
+				reverse.close();
+			}
+			if (poll != null)
+			{
+				poll.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * PlaybackState.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+/**
+ * Playback state of a stream on a device.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public enum PlaybackState
+{
+	/**
+	 * The device is loading the stream.
+	 */
+	LOADING,
+	/**
+	 * The stream is playing.
+	 */
+	PLAYING,
+	/**
+	 * Playback is paused.
+	 */
+	PAUSED,
+	/**
+	 * Playback should run, but the device ran out of buffered data.
+	 */
+	STALLED,
+	/**
+	 * Nothing is playing.
+	 */
+	STOPPED,
+	/**
+	 * The state is not known, e.g. because the device is unreachable.
+	 */
+	UNKNOWN;
+
+	/**
+	 * Get the state for a state name sent by the device in an event.
+	 *
+	 * @param name
+	 *          State name, e.g. <code>playing</code>.
+	 * @return The state. {@link #UNKNOWN} for unknown names.
+	 */
+	public static PlaybackState fromEventName(String name)
+	{
+		if (name != null)
+		{
+			for (PlaybackState state : values())
+			{
+				if (state.name().equalsIgnoreCase(name))
+				{
+					return state;
+				}
+			}
+		}
+		return UNKNOWN;
+	}
+}
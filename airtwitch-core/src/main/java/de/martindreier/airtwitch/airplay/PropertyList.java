@@ -0,0 +1,146 @@
+/**
+ * PropertyList.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Minimal parser for XML property lists as sent by AirPlay devices. Supports
+ * dictionaries, arrays, strings, numbers, dates (as strings) and booleans.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+final class PropertyList
+{
+	private PropertyList()
+	{
+		// Static access only
+	}
+
+	/**
+	 * Parse a property list with a dictionary as root element.
+	 *
+	 * @param xml
+	 *          The property list.
+	 * @return The dictionary. Empty if the property list is empty.
+	 * @throws AirTwitchException
+	 *           The property list is malformed.
+	 */
+	static Map<String, Object> parseDictionary(byte[] xml) throws AirTwitchException
+	{
+		if (xml == null || xml.length == 0)
+		{
+			return Collections.emptyMap();
+		}
+		try
+		{
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			// Property lists reference an external DTD, which must not be loaded
+			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			factory.setExpandEntityReferences(false);
+			DocumentBuilder builder = factory.newDocumentBuilder();
+			Element root = builder.parse(new ByteArrayInputStream(xml)).getDocumentElement();
+			Element dictionary = firstElement(root);
+			if (dictionary == null)
+			{
+				return Collections.emptyMap();
+			}
+			Object value = parseValue(dictionary);
+			if (!(value instanceof Map))
+			{
+				throw new AirTwitchException("Property list root is %s, expected dict", dictionary.getTagName());
+			}
+			@SuppressWarnings("unchecked")
+			Map<String, Object> result = (Map<String, Object>) value;
+			return result;
+		}
+		catch (ParserConfigurationException | SAXException | IOException | NumberFormatException exception)
+		{
+			throw new AirTwitchException("Malformed property list", exception);
+		}
+	}
+
+	/**
+	 * Convert a value element.
+	 */
+	private static Object parseValue(Element element) throws AirTwitchException
+	{
+		switch (element.getTagName())
+		{
+			case "dict":
+				Map<String, Object> dictionary = new LinkedHashMap<>();
+				String key = null;
+				for (Element child = firstElement(element); child != null; child = nextElement(child))
+				{
+					if (child.getTagName().equals("key"))
+					{
+						key = child.getTextContent();
+					}
+					else if (key != null)
+					{
+						dictionary.put(key, parseValue(child));
+						key = null;
+					}
+				}
+				return dictionary;
+			case "array":
+				List<Object> array = new ArrayList<>();
+				for (Element child = firstElement(element); child != null; child = nextElement(child))
+				{
+					array.add(parseValue(child));
+				}
+				return array;
+			case "real":
+				return Double.valueOf(element.getTextContent().trim());
+			case "integer":
+				return Long.valueOf(element.getTextContent().trim());
+			case "true":
+				return Boolean.TRUE;
+			case "false":
+				return Boolean.FALSE;
+			case "string":
+			case "date":
+			case "data":
+				return element.getTextContent();
+			default:
+				throw new AirTwitchException("Unknown property list element %s", element.getTagName());
+		}
+	}
+
+	private static Element firstElement(Node parent)
+	{
+		Node node = parent.getFirstChild();
+		while (node != null && node.getNodeType() != Node.ELEMENT_NODE)
+		{
+			node = node.getNextSibling();
+		}
+		return (Element) node;
+	}
+
+	private static Element nextElement(Node sibling)
+	{
+		Node node = sibling.getNextSibling();
+		while (node != null && node.getNodeType() != Node.ELEMENT_NODE)
+		{
+			node = node.getNextSibling();
+		}
+		return (Element) node;
+	}
+}
@@ -0,0 +1,302 @@
+/**
+ * RacingSocketFactory.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Connects to a device by racing all of its addresses ("happy eyeballs", RFC
+ * 8305). The connection attempts start one after another with a short delay,
+ * alternating between IPv4 and IPv6, and the first established connection
+ * wins. A stale address therefore only costs the delay instead of a full
+ * connect timeout.
+ * <p>
+ * The winning address is remembered and tried first on the next connect. If
+ * all addresses fail, the next connect races all addresses again.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+class RacingSocketFactory implements ConnectionSocketFactory
+{
+	/**
+	 * Delay between the start of two connection attempts, as recommended by RFC
+	 * 8305.
+	 */
+	private static final long										STAGGER_MILLIS	= 250;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger									log							= Logger
+					.getLogger(RacingSocketFactory.class.getName());
+
+	/**
+	 * Threads for the connection attempts, shared by all devices.
+	 */
+	private static final ExecutorService				attempts				= Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "Connection race");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * The device.
+	 */
+	private final DeviceInfo										device;
+
+	/**
+	 * Address of the last successful connection.
+	 */
+	private final AtomicReference<InetAddress>	winner					= new AtomicReference<>();
+
+	/**
+	 * Create a socket factory for a device.
+	 *
+	 * @param device
+	 *          The device.
+	 */
+	RacingSocketFactory(DeviceInfo device)
+	{
+		this.device = device;
+	}
+
+	/**
+	 * Get the address to use for the device.
+	 *
+	 * @return Address of the last successful connection, or the first address
+	 *         of the device if there was none. Empty if the device has no
+	 *         address.
+	 */
+	Optional<InetAddress> getPreferredAddress()
+	{
+		InetAddress preferred = winner.get();
+		return preferred != null ? Optional.of(preferred) : device.getAddresses().stream().findFirst();
+	}
+
+	@Override
+	public Socket createSocket(HttpContext context) throws IOException
+	{
+		return new Socket();
+	}
+
+	/**
+	 * Race all addresses of the device. The given address is only used for its
+	 * port; the given socket only provides the socket options.
+	 */
+	@Override
+	public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+					InetSocketAddress localAddress, HttpContext context) throws IOException
+	{
+		List<InetAddress> candidates = getCandidates();
+		if (candidates.isEmpty())
+		{
+			candidates.add(remoteAddress.getAddress());
+		}
+		Race race = new Race(socket, remoteAddress.getPort(), localAddress, connectTimeout);
+		try
+		{
+			Socket connected = race.run(candidates);
+			InetAddress address = connected.getInetAddress();
+			if (!address.equals(winner.getAndSet(address)))
+			{
+				log.fine(() -> String.format("Connected to device %s at %s", device.getName(), address));
+			}
+			return connected;
+		}
+		catch (IOException exception)
+		{
+			winner.set(null);
+			throw exception;
+		}
+		finally
+		{
+			socket.close();
+		}
+	}
+
+	/**
+	 * Order the addresses for the race: the last winner first, then alternating
+	 * between the address families.
+	 */
+	private List<InetAddress> getCandidates()
+	{
+		InetAddress preferred = winner.get();
+		LinkedList<InetAddress> inet4 = new LinkedList<>(device.getInet4Addresses());
+		LinkedList<InetAddress> inet6 = new LinkedList<>(device.getInet6Addresses());
+		List<InetAddress> candidates = new ArrayList<>(inet4.size() + inet6.size());
+		boolean useInet6 = false;
+		if (preferred != null && (inet4.remove(preferred) || inet6.remove(preferred)))
+		{
+			candidates.add(preferred);
+			useInet6 = !(preferred instanceof Inet6Address);
+		}
+		while (!inet4.isEmpty() || !inet6.isEmpty())
+		{
+			LinkedList<InetAddress> family = (useInet6 && !inet6.isEmpty()) || inet4.isEmpty() ? inet6 : inet4;
+			candidates.add(family.removeFirst());
+			useInet6 = family == inet4;
+		}
+		return candidates;
+	}
+
+	/**
+	 * A single race of connection attempts.
+	 */
+	private static class Race
+	{
+		private final Socket							template;
+		private final int									port;
+		private final InetSocketAddress		localAddress;
+		private final int									connectTimeout;
+		private final BlockingQueue<Object>	results	= new LinkedBlockingQueue<>();
+		private final List<Socket>					sockets	= new ArrayList<>();
+
+		Race(Socket template, int port, InetSocketAddress localAddress, int connectTimeout)
+		{
+			this.template = template;
+			this.port = port;
+			this.localAddress = localAddress;
+			this.connectTimeout = connectTimeout;
+		}
+
+		/**
+		 * Run the race.
+		 *
+		 * @return The first connected socket.
+		 * @throws IOException
+		 *           No address could be connected.
+		 */
+		Socket run(List<InetAddress> candidates) throws IOException
+		{
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+			int started = 0;
+			int running = 0;
+			long nextStart = System.nanoTime();
+			IOException failure = null;
+			Socket won = null;
+			try
+			{
+				while (true)
+				{
+					long now = System.nanoTime();
+					// Start the next attempt when the delay passed or all running
+					// attempts failed
+					if (started < candidates.size() && (running == 0 || now - nextStart >= 0))
+					{
+						start(candidates.get(started++));
+						running++;
+						nextStart = now + TimeUnit.MILLISECONDS.toNanos(STAGGER_MILLIS);
+					}
+					if (running == 0)
+					{
+						throw failure;
+					}
+					long wait = connectTimeout > 0 ? deadline - now : Long.MAX_VALUE;
+					if (wait <= 0)
+					{
+						throw new ConnectTimeoutException(String.format("Connect to %s timed out", candidates));
+					}
+					if (started < candidates.size())
+					{
+						wait = Math.min(wait, nextStart - now);
+					}
+					Object result = results.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+					if (result instanceof Socket)
+					{
+						won = (Socket) result;
+						return won;
+					}
+					else if (result instanceof IOException)
+					{
+						failure = (IOException) result;
+						running--;
+					}
+				}
+			}
+			catch (InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+				throw new SocketTimeoutException("Connect interrupted");
+			}
+			finally
+			{
+				finish(won);
+			}
+		}
+
+		/**
+		 * Start a connection attempt.
+		 */
+		private void start(InetAddress address) throws IOException
+		{
+			Socket socket = new Socket();
+			socket.setSoTimeout(template.getSoTimeout());
+			socket.setTcpNoDelay(template.getTcpNoDelay());
+			socket.setKeepAlive(template.getKeepAlive());
+			synchronized (this)
+			{
+				sockets.add(socket);
+			}
+			attempts.execute(() -> {
+				try
+				{
+					if (localAddress != null)
+					{
+						socket.bind(localAddress);
+					}
+					socket.connect(new InetSocketAddress(address, port), connectTimeout);
+					results.add(socket);
+				}
+				catch (IOException exception)
+				{
+					results.add(exception);
+				}
+			});
+		}
+
+		/**
+		 * Close all sockets except the winner. Aborts the running attempts, and
+		 * attempts which connected too late.
+		 */
+		private synchronized void finish(Socket won)
+		{
+			sockets.stream().filter(socket -> socket != won).forEach(Race::closeQuietly);
+		}
+
+		private static void closeQuietly(Socket socket)
+		{
+			try
+			{
+				socket.close();
+			}
+			catch (IOException exception)
+			{
+				// Ignore, the socket is not used
+			}
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/**
+ * SelectorLoop.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A selector thread for non-blocking connections, with a task queue and a
+ * {@link TimerWheel} for timeouts. The owner registers its channels with
+ * {@link #getSelector()} and handles their ready keys; other threads hand work
+ * to the loop with {@link #execute(Runnable)}.
+ * <p>
+ * One thread serves all connections of its owner, so the key handler, queued
+ * tasks and timers are guarded: a failure is logged and the loop goes on.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public final class SelectorLoop implements Closeable
+{
+	/**
+	 * Number of timer wheel slots.
+	 */
+	private static final int				SLOT_COUNT	= 512;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger			log					= Logger.getLogger(SelectorLoop.class.getName());
+
+	/**
+	 * Name of the loop thread, also used in log messages.
+	 */
+	private final String						name;
+
+	/**
+	 * Selector for all channels of the loop.
+	 */
+	private final Selector					selector;
+
+	/**
+	 * Tasks to run on the loop thread.
+	 */
+	private final Queue<Runnable>		tasks				= new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Timers. Only accessed by the loop thread.
+	 */
+	private final TimerWheel				timers;
+
+	/**
+	 * The loop thread, <code>null</code> before the loop was started.
+	 */
+	private Thread									thread;
+
+	/**
+	 * Set to <code>false</code> to end the loop.
+	 */
+	private volatile boolean				running			= true;
+
+	/**
+	 * Create a loop. The selector is open right away, the thread starts with
+	 * {@link #start(Consumer, Runnable)}.
+	 *
+	 * @param name
+	 *          Name of the loop thread.
+	 * @param tickMillis
+	 *          Precision of the timers in milliseconds.
+	 * @throws IOException
+	 *           The selector could not be opened.
+	 */
+	public SelectorLoop(String name, long tickMillis) throws IOException
+	{
+		this.name = name;
+		this.selector = Selector.open();
+		this.timers = new TimerWheel(SLOT_COUNT, tickMillis, System.currentTimeMillis());
+	}
+
+	/**
+	 * Start the loop thread.
+	 *
+	 * @param handler
+	 *          Handles a ready key.
+	 * @param shutdown
+	 *          Called on the loop thread when the loop ends, before the remaining
+	 *          tasks run and the selector is closed. Should close the open
+	 *          channels.
+	 */
+	public synchronized void start(Consumer<SelectionKey> handler, Runnable shutdown)
+	{
+		if (thread != null)
+		{
+			throw new IllegalStateException(name + " already started");
+		}
+		thread = new Thread(() -> run(handler, shutdown), name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @return Selector to register the channels of the loop with.
+	 */
+	public Selector getSelector()
+	{
+		return selector;
+	}
+
+	/**
+	 * @return <code>false</code> once the loop is closed or failed.
+	 */
+	public boolean isRunning()
+	{
+		return running;
+	}
+
+	/**
+	 * Run a task on the loop thread. Tasks queued while the loop ends still run
+	 * after the shutdown, so they can release what they hold.
+	 *
+	 * @param task
+	 *          The task.
+	 */
+	public void execute(Runnable task)
+	{
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	/**
+	 * Schedule a task on the timer wheel. Must be called on the loop thread.
+	 *
+	 * @param delayMillis
+	 *          Delay in milliseconds, rounded up to full ticks.
+	 * @param task
+	 *          The task.
+	 */
+	public void schedule(long delayMillis, Runnable task)
+	{
+		timers.schedule(delayMillis, () -> runGuarded(task));
+	}
+
+	/**
+	 * End the loop and wait up to a second for the thread.
+	 */
+	@Override
+	public void close()
+	{
+		running = false;
+		selector.wakeup();
+		Thread running;
+		synchronized (this)
+		{
+			running = thread;
+		}
+		if (running == null || running == Thread.currentThread())
+		{
+			return;
+		}
+		try
+		{
+			running.join(TimeUnit.SECONDS.toMillis(1));
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run(Consumer<SelectionKey> handler, Runnable shutdown)
+	{
+		try
+		{
+			while (running)
+			{
+				runTasks();
+				timers.advance(System.currentTimeMillis());
+				selector.select(timers.millisToNextTick(System.currentTimeMillis()));
+				for (SelectionKey key : selector.selectedKeys())
+				{
+					runGuarded(() -> handler.accept(key));
+				}
+				selector.selectedKeys().clear();
+			}
+		}
+		catch (IOException | ClosedSelectorException exception)
+		{
+			log.log(Level.SEVERE, name + " failed", exception);
+		}
+		finally
+		{
+			running = false;
+			runGuarded(shutdown);
+			runTasks();
+			try
+			{
+				selector.close();
+			}
+			catch (IOException exception)
+			{
+				log.log(Level.FINE, "Could not close selector of " + name, exception);
+			}
+		}
+	}
+
+	private void runTasks()
+	{
+		Runnable task;
+		while ((task = tasks.poll()) != null)
+		{
+			runGuarded(task);
+		}
+	}
+
+	private void runGuarded(Runnable task)
+	{
+		try
+		{
+			task.run();
+		}
+		catch (RuntimeException exception)
+		{
+			log.log(Level.WARNING, name + " task failed", exception);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * ServiceResolver.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.jmdns.JmDNS;
+import javax.jmdns.ServiceInfo;
+
+/**
+ * Resolves announced services right away instead of waiting for JmDNS to
+ * resolve them in the background. Resolutions of all interfaces share a small
+ * thread pool, so a burst of announcements does not flood the network. Each
+ * resolution is retried with a growing timeout.
+ *
+ * @see AirPlayServiceListener
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+class ServiceResolver
+{
+	/**
+	 * Number of services resolved at the same time.
+	 */
+	private static final int						PARALLEL_RESOLUTIONS	= 4;
+
+	/**
+	 * Timeout of the first attempt in milliseconds. Later attempts wait longer.
+	 */
+	private static final long						TIMEOUT_MILLIS				= 1000;
+
+	/**
+	 * Number of attempts per service.
+	 */
+	private static final int						ATTEMPTS							= 3;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger					log										= Logger.getLogger(ServiceResolver.class.getName());
+
+	/**
+	 * Resolution threads, shared by all interfaces.
+	 */
+	private static final ExecutorService	executor							= Executors.newFixedThreadPool(PARALLEL_RESOLUTIONS,
+					runnable -> {
+						Thread thread = new Thread(runnable, "mDNS resolution");
+						thread.setDaemon(true);
+						return thread;
+					});
+
+	/**
+	 * Announcement time of the services waiting for resolution, by lower case
+	 * qualified name, as returned by {@link System#nanoTime()}.
+	 */
+	private final Map<String, Long>			pending								= new ConcurrentHashMap<>();
+
+	/**
+	 * Receives the resolved services.
+	 */
+	private final Consumer<ServiceInfo>	callback;
+
+	/**
+	 * Create a resolver.
+	 *
+	 * @param callback
+	 *          Receives the resolved services. Called on a resolution thread.
+	 */
+	ServiceResolver(Consumer<ServiceInfo> callback)
+	{
+		this.callback = callback;
+	}
+
+	/**
+	 * Start resolving an announced service. Does nothing if the service is
+	 * already being resolved.
+	 *
+	 * @param jmdns
+	 *          The JmDNS instance which saw the announcement.
+	 * @param type
+	 *          Service type.
+	 * @param name
+	 *          Service name.
+	 */
+	void resolve(JmDNS jmdns, String type, String name)
+	{
+		String qualifiedName = (name + "." + type).toLowerCase(Locale.ROOT);
+		if (pending.putIfAbsent(qualifiedName, System.nanoTime()) != null)
+		{
+			return;
+		}
+		executor.execute(() -> {
+			for (int attempt = 1; attempt <= ATTEMPTS && pending.containsKey(qualifiedName); attempt++)
+			{
+				try
+				{
+					ServiceInfo info = jmdns.getServiceInfo(type, name, TIMEOUT_MILLIS * attempt);
+					if (info != null)
+					{
+						callback.accept(info);
+						return;
+					}
+					int failed = attempt;
+					log.fine(() -> String.format("Attempt %d to resolve %s timed out", failed, name));
+				}
+				catch (RuntimeException exception)
+				{
+					// JmDNS instance closed
+					log.log(Level.FINE, String.format("Could not resolve %s", name), exception);
+					break;
+				}
+			}
+			if (pending.remove(qualifiedName) != null)
+			{
+				log.info(() -> String.format("Could not resolve %s after %d attempts", name, ATTEMPTS));
+			}
+		});
+	}
+
+	/**
+	 * Record the resolution of a service, by this resolver or by JmDNS.
+	 *
+	 * @param info
+	 *          The resolved service.
+	 * @return Time from the announcement to the resolution in milliseconds.
+	 *         Empty if the announcement was not seen, e.g. for a refresh.
+	 */
+	OptionalLong resolved(ServiceInfo info)
+	{
+		Long announced = pending.remove(info.getQualifiedName().toLowerCase(Locale.ROOT));
+		if (announced == null)
+		{
+			return OptionalLong.empty();
+		}
+		return OptionalLong.of(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - announced));
+	}
+}
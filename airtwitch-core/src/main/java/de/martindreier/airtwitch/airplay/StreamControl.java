@@ -9,12 +9,26 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.EntityBuilder;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.message.BasicNameValuePair;
@@ -32,13 +46,44 @@ import de.martindreier.airtwitch.AirTwitchException;
 public class StreamControl
 {
 
+	/**
+	 * Java system property: default command timeout in milliseconds.
+	 */
+	public static final String										PROP_COMMAND_TIMEOUT	= "airtwitch.airplay.commandTimeout";
+
+	/**
+	 * Default command timeout in milliseconds, used if the system property is
+	 * not set.
+	 */
+	private static final long											DEFAULT_TIMEOUT_MILLIS	= 5000;
+
+	/**
+	 * Name of the session ID header.
+	 */
+	static final String														SESSION_ID_HEADER				= "X-Apple-Session-ID";
+
+	/**
+	 * Path of the playback state request.
+	 */
+	static final URI																PLAYBACK_INFO						= URI.create("/playback-info");
+
+	/**
+	 * Aborts requests which exceed their deadline.
+	 */
+	private static final ScheduledExecutorService	timeouts							= Executors
+					.newSingleThreadScheduledExecutor(runnable -> {
+						Thread thread = new Thread(runnable, "AirPlay command timeout");
+						thread.setDaemon(true);
+						return thread;
+					});
+
 	/**
 	 * Availabe commands to send to the device.
 	 *
 	 * @author Martin Dreier <martin@martindreier.de>
 	 *
 	 */
-	private static enum Command
+	public static enum Command
 	{
 		PLAY("/play"), STOP("/stop");
 
@@ -54,9 +99,10 @@ public class StreamControl
 	}
 
 	/**
-	 * Client instance.
+	 * Client instance, <code>null</code> to take the shared client from
+	 * {@link DeviceConnections} for each request.
 	 */
-	private CloseableHttpClient	client;
+	private final CloseableHttpClient	client;
 	/**
 	 * Stream content URI.
 	 */
@@ -65,6 +111,15 @@ public class StreamControl
 	 * Device information.
 	 */
 	private DeviceInfo					deviceInfo;
+	/**
+	 * AirPlay session ID, sent with every request. Events on the reverse
+	 * channel refer to this ID.
+	 */
+	private final String				sessionId	= UUID.randomUUID().toString().toUpperCase(Locale.ROOT);
+	/**
+	 * Media time to start playback at, in seconds.
+	 */
+	private volatile double			startPosition;
 
 	/**
 	 * Logging instance.
@@ -77,7 +132,8 @@ public class StreamControl
 	 * @param deviceInfo
 	 *          Target device.
 	 * @param client
-	 *          Client instance.
+	 *          Client instance, or <code>null</code> to use the shared client of
+	 *          the device for each request.
 	 * @param contentURI
 	 *          Stream content URI.
 	 * @see DeviceInfo#createStream(URI)
@@ -112,11 +168,369 @@ public class StreamControl
 	public void play() throws AirTwitchException
 	{
 		log.entering(StreamControl.class.getName(), "play");
-		List<NameValuePair> content = new ArrayList<>(2);
+		sendRequest(Command.PLAY, getContent(Command.PLAY));
+		log.exiting(StreamControl.class.getName(), "play");
+	}
+
+	/**
+	 * Get the client for a request to the device. The shared client is looked
+	 * up for each request and not kept, as it is closed and replaced when the
+	 * device changes or disappears. Streams which only send commands through
+	 * the {@link BulkCommandDispatcher} therefore never create a client.
+	 *
+	 * @return The client.
+	 * @throws AirTwitchException
+	 *           The client could not be created.
+	 */
+	private CloseableHttpClient getClient() throws AirTwitchException
+	{
+		if (client != null)
+		{
+			return client;
+		}
+		// The registry knows the current addresses if the device changed
+		DeviceInfo current = DeviceRegistry.getInstance().getSnapshot().getByKey(deviceInfo.getKey()).orElse(deviceInfo);
+		return DeviceConnections.getInstance().getClient(current);
+	}
+
+	/**
+	 * Get the target device.
+	 *
+	 * @return The device.
+	 */
+	public DeviceInfo getDeviceInfo()
+	{
+		return deviceInfo;
+	}
+
+	/**
+	 * Get the AirPlay session ID of the stream.
+	 *
+	 * @return The session ID.
+	 */
+	public String getSessionId()
+	{
+		return sessionId;
+	}
+
+	/**
+	 * Query the current playback state from the device.
+	 *
+	 * @return Playback information.
+	 * @throws AirTwitchException
+	 *           The device could not be queried.
+	 * @see PlaybackMonitor
+	 */
+	public PlaybackInfo getPlaybackInfo() throws AirTwitchException
+	{
+		try
+		{
+			HttpGet request = new HttpGet(deviceInfo.getUri().resolve(PLAYBACK_INFO));
+			request.setHeader(SESSION_ID_HEADER, sessionId);
+			int timeoutMillis = (int) getDefaultTimeoutMillis();
+			request.setConfig(RequestConfig.custom().setConnectTimeout(timeoutMillis).setSocketTimeout(timeoutMillis)
+							.setConnectionRequestTimeout(timeoutMillis).build());
+			try (CloseableHttpResponse response = getClient().execute(request))
+			{
+				byte[] body = response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+				return PlaybackInfo.parse(body);
+			}
+		}
+		catch (URISyntaxException | IOException exception)
+		{
+			throw new AirTwitchException("Could not query playback state of device %s", exception, deviceInfo.getName());
+		}
+		catch (IllegalStateException exception)
+		{
+			// The shared client was closed after it was looked up
+			throw new AirTwitchException("Connection to device %s is closed", exception, deviceInfo.getName());
+		}
+	}
+
+	/**
+	 * Get the media time the next {@link Command#PLAY} starts at.
+	 *
+	 * @return Start position in seconds.
+	 */
+	public double getStartPosition()
+	{
+		return startPosition;
+	}
+
+	/**
+	 * Set the media time the next {@link Command#PLAY} starts at. Sent as
+	 * <code>Start-Position-Seconds</code>, as the <code>Start-Position</code>
+	 * parameter is a fraction of the duration, which live streams do not have.
+	 *
+	 * @param startPosition
+	 *          Start position in seconds. <code>0</code> starts at the default
+	 *          position of the device.
+	 */
+	public void setStartPosition(double startPosition)
+	{
+		this.startPosition = Math.max(0, startPosition);
+	}
+
+	/**
+	 * Start the stream without blocking the caller. Uses the default command
+	 * timeout.
+	 *
+	 * @return Future completed when the device accepted the command.
+	 * @see #PROP_COMMAND_TIMEOUT
+	 */
+	public CompletableFuture<Void> playAsync()
+	{
+		return playAsync(getDefaultTimeoutMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Start the stream without blocking the caller.
+	 *
+	 * @param timeout
+	 *          Deadline for the command.
+	 * @param unit
+	 *          Time unit of the deadline.
+	 * @return Future completed when the device accepted the command. Completes
+	 *         exceptionally with an {@link AirTwitchException} if the command
+	 *         failed or timed out.
+	 */
+	public CompletableFuture<Void> playAsync(long timeout, TimeUnit unit)
+	{
+		return sendAsync(Collections.singletonList(Command.PLAY), timeout, unit);
+	}
+
+	/**
+	 * Stop the stream without blocking the caller. Uses the default command
+	 * timeout.
+	 *
+	 * @return Future completed when the device accepted the command.
+	 * @see #PROP_COMMAND_TIMEOUT
+	 */
+	public CompletableFuture<Void> stopAsync()
+	{
+		return stopAsync(getDefaultTimeoutMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop the stream without blocking the caller.
+	 *
+	 * @param timeout
+	 *          Deadline for the command.
+	 * @param unit
+	 *          Time unit of the deadline.
+	 * @return Future completed when the device accepted the command. Completes
+	 *         exceptionally with an {@link AirTwitchException} if the command
+	 *         failed or timed out.
+	 */
+	public CompletableFuture<Void> stopAsync(long timeout, TimeUnit unit)
+	{
+		return sendAsync(Collections.singletonList(Command.STOP), timeout, unit);
+	}
+
+	/**
+	 * Send a batch of commands without blocking the caller. The commands are
+	 * sent one after another in the given order over the shared connection to
+	 * the device. Commands of other stream controls for the same device are not
+	 * interleaved with the batch. If a command fails, the remaining commands are
+	 * skipped. Cancelling the future skips all commands not yet sent.
+	 *
+	 * @param commands
+	 *          Commands to send.
+	 * @param timeout
+	 *          Deadline for each single command.
+	 * @param unit
+	 *          Time unit of the deadline.
+	 * @return Future completed when the device accepted all commands. Completes
+	 *         exceptionally with an {@link AirTwitchException} if a command
+	 *         failed or timed out.
+	 */
+	public CompletableFuture<Void> sendAsync(List<Command> commands, long timeout, TimeUnit unit)
+	{
+		List<Command> batch = new ArrayList<>(commands);
+		return submit(result -> {
+			for (Command command : batch)
+			{
+				if (result.isDone())
+				{
+					return;
+				}
+				sendRequest(command, getContent(command), timeout, unit);
+			}
+		});
+	}
+
+	/**
+	 * Start the stream together with other streams. The connection to the
+	 * device is opened first; then the command thread waits at the barrier
+	 * until all streams are ready, so the play commands leave at the same time.
+	 * If the barrier breaks or times out, the stream is started anyway.
+	 *
+	 * @param barrier
+	 *          Barrier shared by all streams started together.
+	 * @param timeout
+	 *          Deadline for waiting at the barrier and for the command.
+	 * @param unit
+	 *          Time unit of the deadline.
+	 * @return Future completed when the device accepted the command.
+	 * @see DeviceGroup
+	 */
+	CompletableFuture<Void> playAsync(CyclicBarrier barrier, long timeout, TimeUnit unit)
+	{
+		return submit(result -> {
+			try
+			{
+				// Open the connection, so the play command does not wait for it
+				getPlaybackInfo();
+			}
+			catch (AirTwitchException exception)
+			{
+				log.log(Level.FINE, "Could not prepare connection", exception);
+			}
+			try
+			{
+				barrier.await(timeout, unit);
+			}
+			catch (BrokenBarrierException | TimeoutException exception)
+			{
+				log.fine(() -> String.format("Starting %s without the other streams", deviceInfo.getName()));
+			}
+			catch (InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+				throw new AirTwitchException("Start of stream on device %s was interrupted", exception,
+								deviceInfo.getName());
+			}
+			sendRequest(Command.PLAY, getContent(Command.PLAY), timeout, unit);
+		});
+	}
+
+	/**
+	 * Run a task on the command thread of the device.
+	 *
+	 * @param task
+	 *          The task.
+	 * @return Future completed when the task finished. Completes exceptionally
+	 *         if the task failed.
+	 */
+	private CompletableFuture<Void> submit(CommandTask task)
+	{
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		try
+		{
+			DeviceConnections.getInstance().getCommandExecutor(deviceInfo).execute(() -> {
+				try
+				{
+					task.run(result);
+					result.complete(null);
+				}
+				catch (AirTwitchException exception)
+				{
+					result.completeExceptionally(exception);
+				}
+				catch (RuntimeException exception)
+				{
+					// E.g. the connection was closed while the command was sent
+					log.log(Level.WARNING, "Command failed", exception);
+					result.completeExceptionally(new AirTwitchException("Command to device %s failed", exception,
+									deviceInfo.getName()));
+				}
+			});
+		}
+		catch (AirTwitchException exception)
+		{
+			result.completeExceptionally(exception);
+		}
+		catch (RejectedExecutionException exception)
+		{
+			result.completeExceptionally(
+							new AirTwitchException("Connection to device %s is closed", exception, deviceInfo.getName()));
+		}
+		return result;
+	}
+
+	/**
+	 * A task on the command thread.
+	 */
+	@FunctionalInterface
+	private interface CommandTask
+	{
+		/**
+		 * Run the task.
+		 *
+		 * @param result
+		 *          Future of the task. The task should stop early if it is done,
+		 *          e.g. cancelled.
+		 * @throws AirTwitchException
+		 *           The task failed.
+		 */
+		void run(CompletableFuture<Void> result) throws AirTwitchException;
+	}
+
+	/**
+	 * Get the request content for a command.
+	 *
+	 * @param command
+	 *          The command.
+	 * @return The content, or <code>null</code> if the command has no content.
+	 */
+	protected List<NameValuePair> getContent(Command command)
+	{
+		if (command != Command.PLAY)
+		{
+			return null;
+		}
+		List<NameValuePair> content = new ArrayList<>(3);
 		content.add(new BasicNameValuePair("Content-Location", contentURI.toString()));
 		content.add(new BasicNameValuePair("Start-Position", "0.0"));
-		sendRequest(Command.PLAY, content);
-		log.exiting(StreamControl.class.getName(), "play");
+		double position = startPosition;
+		if (position > 0)
+		{
+			content.add(new BasicNameValuePair("Start-Position-Seconds", String.format(Locale.ROOT, "%.3f", position)));
+		}
+		return content;
+	}
+
+	/**
+	 * Format request content as sent to the device, one
+	 * <code>name: value</code> line per parameter.
+	 *
+	 * @param content
+	 *          The content.
+	 * @return The request body.
+	 */
+	static String formatContent(List<NameValuePair> content)
+	{
+		StringBuilder contentBuilder = new StringBuilder();
+		for (NameValuePair parameter : content)
+		{
+			contentBuilder.append(parameter.getName());
+			contentBuilder.append(": ");
+			contentBuilder.append(parameter.getValue());
+			contentBuilder.append("\n");
+		}
+		return contentBuilder.toString();
+	}
+
+	/**
+	 * Get the command path.
+	 *
+	 * @param command
+	 *          The command.
+	 * @return Path relative to the device root.
+	 */
+	static String getPath(Command command)
+	{
+		return command.uri.getPath();
+	}
+
+	/**
+	 * Get the default command timeout.
+	 *
+	 * @return Timeout in milliseconds.
+	 */
+	static long getDefaultTimeoutMillis()
+	{
+		return Long.getLong(PROP_COMMAND_TIMEOUT, DEFAULT_TIMEOUT_MILLIS);
 	}
 
 	/**
@@ -129,43 +543,90 @@ public class StreamControl
 	 * @throws AirTwitchException
 	 */
 	protected void sendRequest(Command command, List<NameValuePair> content) throws AirTwitchException
+	{
+		sendRequest(command, content, getDefaultTimeoutMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Send a command request to the device. The request is aborted if the
+	 * device does not answer within the timeout.
+	 *
+	 * @param command
+	 *          The command to send.
+	 * @param content
+	 *          The content to send to the device. May be <code>null</code>.
+	 * @param timeout
+	 *          Deadline for the command.
+	 * @param unit
+	 *          Time unit of the deadline.
+	 * @throws AirTwitchException
+	 */
+	protected void sendRequest(Command command, List<NameValuePair> content, long timeout, TimeUnit unit)
+					throws AirTwitchException
 	{
 		log.entering(StreamControl.class.getName(), "sendRequest", new Object[] { command, content });
+		HttpPost request = null;
+		ScheduledFuture<?> deadline = null;
 		try
 		{
-			HttpPost request = new HttpPost(deviceInfo.getUri().resolve(command.uri));
-			log.fine(() -> String.format("Sending request %s", request));
+			request = new HttpPost(deviceInfo.getUri().resolve(command.uri));
+			int timeoutMillis = (int) Math.min(Integer.MAX_VALUE, unit.toMillis(timeout));
+			request.setConfig(RequestConfig.custom().setConnectTimeout(timeoutMillis).setSocketTimeout(timeoutMillis)
+							.setConnectionRequestTimeout(timeoutMillis).build());
+			request.setHeader(SESSION_ID_HEADER, sessionId);
+			deadline = timeouts.schedule(request::abort, timeout, unit);
+			HttpPost loggedRequest = request;
+			log.fine(() -> String.format("Sending request %s", loggedRequest));
 
 			if (content != null && content.size() > 0)
 			{
-				StringBuilder contentBuilder = new StringBuilder();
-				for (NameValuePair parameter : content)
-				{
-					contentBuilder.append(parameter.getName());
-					contentBuilder.append(": ");
-					contentBuilder.append(parameter.getValue());
-					contentBuilder.append("\n");
-				}
-				request.setEntity(EntityBuilder.create().setText(contentBuilder.toString()).build());
-				log.fine(() -> String.format("Sending request with content:\n%s", contentBuilder.toString()));
+				String text = formatContent(content);
+				request.setEntity(EntityBuilder.create().setText(text).build());
+				log.fine(() -> String.format("Sending request with content:\n%s", text));
 			}
-			try (CloseableHttpResponse response = client.execute(request))
+			try (CloseableHttpResponse response = getClient().execute(request))
 			{
-				if (log.isLoggable(Level.INFO))
+				if (log.isLoggable(Level.INFO) && response.getEntity() != null)
 				{
 					String responseContent = EntityUtils.toString(response.getEntity());
 					log.info(String.format("Response from device %s: %s", deviceInfo.getName(), responseContent));
 				}
+				else
+				{
+					// Read the response completely to keep the connection open for reuse
+					EntityUtils.consume(response.getEntity());
+				}
 			}
 			log.exiting(StreamControl.class.getName(), "sendRequest");
 		}
 		catch (URISyntaxException | IOException exception)
 		{
 			log.log(Level.SEVERE, "Request failed", exception);
-			AirTwitchException e = new AirTwitchException("Could not send command %s to device %s", exception, command.name(),
-							deviceInfo.getName());
+			AirTwitchException e;
+			if (request != null && request.isAborted())
+			{
+				e = new AirTwitchException("Command %s to device %s timed out after %d ms", exception, command.name(),
+								deviceInfo.getName(), unit.toMillis(timeout));
+			}
+			else
+			{
+				e = new AirTwitchException("Could not send command %s to device %s", exception, command.name(),
+								deviceInfo.getName());
+			}
 			log.throwing(StreamControl.class.getName(), "sendRequest", e);
 			throw e;
 		}
+		catch (IllegalStateException exception)
+		{
+			// The shared client was closed after it was looked up
+			throw new AirTwitchException("Connection to device %s is closed", exception, deviceInfo.getName());
+		}
+		finally
+		{
+			if (deadline != null)
+			{
+				deadline.cancel(false);
+			}
+		}
 	}
 }
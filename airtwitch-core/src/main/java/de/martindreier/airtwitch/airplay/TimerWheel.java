@@ -0,0 +1,138 @@
+/**
+ * TimerWheel.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timer wheel for a large number of short, low precision timeouts.
+ * Scheduling and expiry are constant time per task, independent of the number
+ * of scheduled tasks. The wheel is not thread safe; it is driven by the thread
+ * which owns it, e.g. a selector loop.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+final class TimerWheel
+{
+	/**
+	 * Length of one tick in milliseconds.
+	 */
+	private final long								tickMillis;
+
+	/**
+	 * Scheduled tasks per slot.
+	 */
+	private final List<List<Timeout>>	slots;
+
+	/**
+	 * Current slot.
+	 */
+	private int												cursor;
+
+	/**
+	 * Start time of the current tick.
+	 */
+	private long											tickStart;
+
+	/**
+	 * Create a new wheel.
+	 *
+	 * @param slotCount
+	 *          Number of slots. Delays longer than one revolution take
+	 *          additional rounds.
+	 * @param tickMillis
+	 *          Length of one tick in milliseconds.
+	 * @param now
+	 *          Current time in milliseconds.
+	 */
+	TimerWheel(int slotCount, long tickMillis, long now)
+	{
+		this.tickMillis = tickMillis;
+		this.tickStart = now;
+		this.slots = new ArrayList<>(slotCount);
+		for (int index = 0; index < slotCount; index++)
+		{
+			slots.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Schedule a task.
+	 *
+	 * @param delayMillis
+	 *          Delay in milliseconds. Rounded up to full ticks.
+	 * @param task
+	 *          The task.
+	 */
+	void schedule(long delayMillis, Runnable task)
+	{
+		long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+		int slot = (int) ((cursor + ticks) % slots.size());
+		long rounds = (ticks - 1) / slots.size();
+		slots.get(slot).add(new Timeout(task, rounds));
+	}
+
+	/**
+	 * Advance the wheel to the given time and run all expired tasks.
+	 *
+	 * @param now
+	 *          Current time in milliseconds.
+	 */
+	void advance(long now)
+	{
+		while (now - tickStart >= tickMillis)
+		{
+			tickStart += tickMillis;
+			cursor = (cursor + 1) % slots.size();
+			List<Timeout> expired = new ArrayList<>();
+			for (Iterator<Timeout> iterator = slots.get(cursor).iterator(); iterator.hasNext();)
+			{
+				Timeout timeout = iterator.next();
+				if (timeout.rounds == 0)
+				{
+					iterator.remove();
+					expired.add(timeout);
+				}
+				else
+				{
+					timeout.rounds--;
+				}
+			}
+			// Run after iterating, tasks may schedule new timeouts in this slot
+			expired.forEach(timeout -> timeout.task.run());
+		}
+	}
+
+	/**
+	 * Get the time until the next tick.
+	 *
+	 * @param now
+	 *          Current time in milliseconds.
+	 * @return Milliseconds until the next tick, at least <code>1</code>.
+	 */
+	long millisToNextTick(long now)
+	{
+		return Math.max(1, tickStart + tickMillis - now);
+	}
+
+	/**
+	 * A scheduled task.
+	 */
+	private static class Timeout
+	{
+		private final Runnable	task;
+		private long						rounds;
+
+		Timeout(Runnable task, long rounds)
+		{
+			this.task = task;
+			this.rounds = rounds;
+		}
+	}
+}
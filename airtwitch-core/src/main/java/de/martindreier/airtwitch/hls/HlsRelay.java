@@ -0,0 +1,612 @@
+/**
+ * HlsRelay.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.twitch.Channel;
+
+/**
+ * Relays a channel to the devices. The master playlist and the media playlists
+ * are rewritten to point at the relay, so the devices load everything from
+ * this host, and each playlist and segment crosses the uplink once, however
+ * many devices play the channel.
+ * <p>
+ * Paths below the base path of the relay:
+ * <ul>
+ * <li><code>master.m3u8</code>: master playlist, with the variants allowed by
+ * the policy.</li>
+ * <li><code>&lt;variant&gt;.m3u8</code>: media playlist of a variant, by its
+ * index in the master playlist.</li>
+ * <li><code>&lt;variant&gt;/&lt;sequence&gt;.ts</code>: segment of a variant,
+ * by its media sequence number.</li>
+ * </ul>
+ * The master playlist is requested again with a fresh channel token when it is
+ * older than the cache time, or when Twitch rejects a media playlist because
+ * the token expired. The new master playlist replaces the old one in a single
+ * step once it is complete, so devices keep loading media playlists while Twitch
+ * is asked. Segments are kept in a {@link SegmentCache} shared by the relays, by
+ * channel, variant and media sequence number.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+class HlsRelay
+{
+	/**
+	 * Name of the master playlist.
+	 */
+	static final String											MASTER							= "master.m3u8";
+
+	/**
+	 * Time a media playlist is served from the cache, in milliseconds. Below the
+	 * target duration, so the devices see new segments in time, but long enough
+	 * that the devices polling share one upstream request.
+	 */
+	private static final long								MEDIA_CACHE_MILLIS	= 1000;
+
+	/**
+	 * Maximum time a device waits for a playlist or segment, in milliseconds.
+	 * Devices retry on an error, but not on a request which never ends.
+	 */
+	private static final long								DEADLINE_MILLIS			= 20_000;
+
+	/**
+	 * Tag of a variant.
+	 */
+	private static final String							STREAM_INF					= "#EXT-X-STREAM-INF:";
+
+	/**
+	 * Tag of the first media sequence number.
+	 */
+	private static final String							MEDIA_SEQUENCE			= "#EXT-X-MEDIA-SEQUENCE:";
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger							log									= Logger.getLogger(HlsRelay.class.getName());
+
+	/**
+	 * The channel.
+	 */
+	private final Channel										channel;
+
+	/**
+	 * Limits for the variants.
+	 */
+	private final VariantPolicy							policy;
+
+	/**
+	 * Fetches from Twitch.
+	 */
+	private final UpstreamClient						upstream;
+
+	/**
+	 * Time the master playlist is served from the cache, in milliseconds.
+	 */
+	private final long											cacheMillis;
+
+	/**
+	 * Stores the segments.
+	 */
+	private final SegmentCache							cache;
+
+	/**
+	 * Upstream segments of the recent media playlists, by path.
+	 */
+	private final Map<String, UpstreamSegment>	segments;
+
+	/**
+	 * Latest master playlist, <code>null</code> before the first request.
+	 */
+	private volatile Master									master;
+
+	/**
+	 * Held while the master playlist is requested. The channel keeps a single
+	 * token, so only one request may run at a time.
+	 */
+	private final Object										masterLock					= new Object();
+
+	/**
+	 * Media playlists by variant index. Guarded by <code>this</code>.
+	 */
+	private final Map<Integer, MediaPlaylist>	media								= new HashMap<>();
+
+	/**
+	 * Create a new relay.
+	 *
+	 * @param channel
+	 *          The channel.
+	 * @param policy
+	 *          Limits for the variants.
+	 * @param upstream
+	 *          Fetches from Twitch.
+	 * @param cache
+	 *          Stores the segments.
+	 * @param cacheMillis
+	 *          Time the master playlist is served from the cache, in
+	 *          milliseconds.
+	 * @param maxSegments
+	 *          Number of segments known for devices which lag behind.
+	 */
+	HlsRelay(Channel channel, VariantPolicy policy, UpstreamClient upstream, SegmentCache cache, long cacheMillis,
+					int maxSegments)
+	{
+		this.channel = channel;
+		this.policy = policy;
+		this.upstream = upstream;
+		this.cache = cache;
+		this.cacheMillis = cacheMillis;
+		this.segments = Collections.synchronizedMap(new LinkedHashMap<String, UpstreamSegment>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, UpstreamSegment> eldest)
+			{
+				return size() > maxSegments;
+			}
+		});
+	}
+
+	/**
+	 * Get a playlist of the relay.
+	 *
+	 * @param path
+	 *          Path below the base path of the relay.
+	 * @return Completes with the content, or with <code>null</code> if there is
+	 *         no such playlist. Completes exceptionally if Twitch could not be
+	 *         reached in time.
+	 * @see #getSegment(String)
+	 */
+	CompletableFuture<byte[]> get(String path)
+	{
+		return upstream.withDeadline(load(path), DEADLINE_MILLIS, content -> {
+			// Nothing to release
+		});
+	}
+
+	/**
+	 * Load a playlist, without deadline.
+	 */
+	private CompletableFuture<byte[]> load(String path)
+	{
+		if (MASTER.equals(path))
+		{
+			return CompletableFuture.supplyAsync(() -> {
+				try
+				{
+					return getMaster().playlist.getBytes(StandardCharsets.UTF_8);
+				}
+				catch (AirTwitchException exception)
+				{
+					throw new CompletionException(exception);
+				}
+			}, upstream.getExecutor());
+		}
+		try
+		{
+			if (path.endsWith(".m3u8"))
+			{
+				return getMedia(Integer.parseInt(path.substring(0, path.length() - ".m3u8".length())));
+			}
+		}
+		catch (NumberFormatException exception)
+		{
+			// Not a path of the relay
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Get the content type of a resource.
+	 *
+	 * @param path
+	 *          Path below the base path of the relay.
+	 * @return The content type.
+	 */
+	static String getContentType(String path)
+	{
+		return path.endsWith(".ts") ? "video/MP2T" : "application/vnd.apple.mpegurl";
+	}
+
+	/**
+	 * Get the master playlist, requesting it again if it is older than the
+	 * cache time.
+	 */
+	private Master getMaster() throws AirTwitchException
+	{
+		Master current = master;
+		if (current != null && now() - current.time < cacheMillis)
+		{
+			return current;
+		}
+		return refreshMaster(current);
+	}
+
+	/**
+	 * Request the master playlist again with a fresh channel token. If another
+	 * thread replaced the outdated playlist meanwhile, its result is taken
+	 * instead of asking Twitch once more.
+	 *
+	 * @param outdated
+	 *          The master playlist found outdated, <code>null</code> if there was
+	 *          none.
+	 */
+	private Master refreshMaster(Master outdated) throws AirTwitchException
+	{
+		synchronized (masterLock)
+		{
+			Master current = master;
+			if (current != outdated)
+			{
+				return current;
+			}
+			long now = now();
+			channel.requestChannelToken();
+			String filtered = MasterPlaylistRewriter.rewrite(channel.getMasterPlaylist(), policy);
+			List<URI> upstreamUris = new ArrayList<>();
+			List<String> names = new ArrayList<>();
+			StringBuilder rewritten = new StringBuilder(filtered.length());
+			boolean variantUri = false;
+			for (String line : filtered.split("\n"))
+			{
+				if (variantUri && !line.isEmpty() && !line.startsWith("#"))
+				{
+					rewritten.append(upstreamUris.size()).append(".m3u8\n");
+					upstreamUris.add(URI.create(line.trim()));
+					variantUri = false;
+					continue;
+				}
+				if (line.startsWith(STREAM_INF))
+				{
+					Map<String, String> attributes = MasterPlaylistRewriter.parseAttributes(line.substring(STREAM_INF.length()));
+					names.add(attributes.getOrDefault("VIDEO", attributes.get("BANDWIDTH")));
+					variantUri = true;
+				}
+				rewritten.append(line).append('\n');
+			}
+			master = new Master(rewritten.toString(), now, upstreamUris, names);
+			log.fine(() -> String.format("Relaying %d variants of %s", upstreamUris.size(), channel.getName()));
+			return master;
+		}
+	}
+
+	/**
+	 * Get the media playlist of a variant. Devices asking within the media
+	 * cache time share one upstream request.
+	 */
+	private CompletableFuture<byte[]> getMedia(int variant)
+	{
+		Master current = master;
+		if (current == null || variant < 0 || variant >= current.variants.size())
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		MediaPlaylist playlist;
+		synchronized (this)
+		{
+			playlist = media.computeIfAbsent(variant, MediaPlaylist::new);
+		}
+		return playlist.get();
+	}
+
+	/**
+	 * Fetch the media playlist of a variant from the latest master playlist.
+	 */
+	private CompletableFuture<byte[]> fetchMedia(int variant)
+	{
+		Master current = master;
+		if (current == null || variant >= current.variants.size())
+		{
+			// Not in the master playlist any more
+			return CompletableFuture.completedFuture(null);
+		}
+		return fetchMedia(variant, current.names.get(variant), current.variants.get(variant), current);
+	}
+
+	/**
+	 * Fetch a media playlist and rewrite the segment URIs. If Twitch rejects the
+	 * request, the token probably expired: the master playlist is requested
+	 * again and the media playlist is fetched from the new URI of the variant
+	 * with the same name.
+	 *
+	 * @param variant
+	 *          Variant index the device asked for.
+	 * @param name
+	 *          Name of the variant.
+	 * @param uri
+	 *          Upstream URI of the media playlist.
+	 * @param source
+	 *          Master playlist the URI was taken from, <code>null</code> if the
+	 *          token was already refreshed.
+	 */
+	private CompletableFuture<byte[]> fetchMedia(int variant, String name, URI uri, Master source)
+	{
+		return upstream.fetch(uri).thenComposeAsync(response -> {
+			if (response.isSuccess())
+			{
+				return CompletableFuture
+								.completedFuture(rewriteMedia(variant, name, uri, new String(response.getBody(), StandardCharsets.UTF_8)));
+			}
+			if (source != null && (response.getStatus() == 403 || response.getStatus() == 404))
+			{
+				log.info(() -> String.format("Media playlist of %s rejected with status %d, refreshing the token",
+								channel.getName(), response.getStatus()));
+				Master refreshed;
+				try
+				{
+					refreshed = refreshMaster(source);
+				}
+				catch (AirTwitchException exception)
+				{
+					throw new CompletionException(exception);
+				}
+				int index = refreshed.names.indexOf(name);
+				if (index < 0)
+				{
+					log.fine(() -> String.format("Variant %s of %s no longer offered", name, channel.getName()));
+					return CompletableFuture.completedFuture(null);
+				}
+				return fetchMedia(variant, name, refreshed.variants.get(index), null);
+			}
+			throw new CompletionException(new AirTwitchException("Media playlist %s not available, status %d", uri,
+							response.getStatus()));
+		}, upstream.getExecutor());
+	}
+
+	/**
+	 * Point the segment URIs of a media playlist at the relay.
+	 */
+	private byte[] rewriteMedia(int variant, String name, URI playlistUri, String source)
+	{
+		StringBuilder rewritten = new StringBuilder(source.length());
+		long sequence = 0;
+		for (String line : source.split("\r?\n"))
+		{
+			if (line.startsWith(MEDIA_SEQUENCE))
+			{
+				try
+				{
+					sequence = Long.parseLong(line.substring(MEDIA_SEQUENCE.length()).trim());
+				}
+				catch (NumberFormatException exception)
+				{
+					log.fine(() -> "Malformed media sequence " + line);
+				}
+			}
+			else if (!line.trim().isEmpty() && !line.startsWith("#"))
+			{
+				String path = variant + "/" + sequence + ".ts";
+				registerSegment(path, playlistUri.resolve(line.trim()), new SegmentCache.Key(channel.getId(), name, sequence));
+				rewritten.append(path).append('\n');
+				sequence++;
+				continue;
+			}
+			rewritten.append(line).append('\n');
+		}
+		return rewritten.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Remember the upstream URI of a segment. The segment is only fetched when a
+	 * device asks for it.
+	 */
+	private void registerSegment(String path, URI uri, SegmentCache.Key key)
+	{
+		synchronized (segments)
+		{
+			UpstreamSegment known = segments.get(path);
+			// A new URI for a known path means the stream restarted its sequence
+			if (known == null || !known.uri.equals(uri))
+			{
+				segments.put(path, new UpstreamSegment(uri, key));
+			}
+		}
+	}
+
+	/**
+	 * Get a segment. If it is not cached, the first device asking starts the
+	 * upstream transfer, the others wait for the same transfer.
+	 *
+	 * @param path
+	 *          Path below the base path of the relay.
+	 * @return Completes with the segment, or with <code>null</code> if there is
+	 *         no such segment. The caller holds a reference to the segment and
+	 *         must {@link SegmentCache.Segment#release() release} it. Completes
+	 *         exceptionally if Twitch could not be reached in time.
+	 */
+	CompletableFuture<SegmentCache.Segment> getSegment(String path)
+	{
+		// A segment arriving too late is not served, so its reference is dropped
+		return upstream.withDeadline(loadSegment(path), DEADLINE_MILLIS, SegmentCache.Segment::release);
+	}
+
+	/**
+	 * Load a segment, without deadline.
+	 */
+	private CompletableFuture<SegmentCache.Segment> loadSegment(String path)
+	{
+		UpstreamSegment segment = segments.get(path);
+		if (segment == null)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		SegmentCache.Segment cached = cache.get(segment.key);
+		if (cached != null)
+		{
+			cache.recordHit();
+			return CompletableFuture.completedFuture(cached);
+		}
+		return segment.fetch().thenApply(fetched -> {
+			if (!fetched.retain())
+			{
+				// Dropped for newer segments before this device was served
+				throw new CompletionException(new AirTwitchException("Segment %s dropped from the cache", segment.key));
+			}
+			return fetched;
+		});
+	}
+
+	/**
+	 * @return Monotonic time in milliseconds.
+	 */
+	private static long now()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+	}
+
+	/**
+	 * A segment of a media playlist, fetched into the cache on first use.
+	 */
+	private class UpstreamSegment
+	{
+		/**
+		 * Upstream URI of the segment.
+		 */
+		private final URI																	uri;
+
+		/**
+		 * Key of the segment in the cache.
+		 */
+		private final SegmentCache.Key										key;
+
+		/**
+		 * Latest transfer, <code>null</code> before the first request.
+		 */
+		private CompletableFuture<SegmentCache.Segment>	transfer;
+
+		UpstreamSegment(URI uri, SegmentCache.Key key)
+		{
+			this.uri = uri;
+			this.key = key;
+		}
+
+		/**
+		 * Start a transfer, unless one is running. Only called if the segment is
+		 * not cached, so a finished transfer either failed or its segment was
+		 * dropped. Only the request starting the transfer counts as a cache miss.
+		 *
+		 * @return Completes with the segment. The waiters take their own
+		 *         references.
+		 */
+		synchronized CompletableFuture<SegmentCache.Segment> fetch()
+		{
+			if (transfer != null && !transfer.isDone())
+			{
+				cache.recordHit();
+				return transfer;
+			}
+			cache.recordMiss();
+			transfer = upstream.fetch(uri, (status, body) -> {
+				if (status < 200 || status >= 300)
+				{
+					throw new AirTwitchException("Segment %s not available, status %d", uri, status);
+				}
+				SegmentCache.Segment stored = cache.put(key, Channels.newChannel(body));
+				// The cache keeps the segment until the waiters are served
+				stored.release();
+				return stored;
+			});
+			transfer.whenComplete((stored, exception) -> {
+				if (exception != null)
+				{
+					log.log(Level.FINE, "Could not fetch segment " + key, exception);
+				}
+			});
+			return transfer;
+		}
+	}
+
+	/**
+	 * The media playlist of a variant, shared by the devices polling it.
+	 */
+	private class MediaPlaylist
+	{
+		/**
+		 * Variant index.
+		 */
+		private final int									variant;
+
+		/**
+		 * Latest transfer, <code>null</code> before the first request.
+		 */
+		private CompletableFuture<byte[]>	latest;
+
+		/**
+		 * Time the latest transfer was started, monotonic milliseconds.
+		 */
+		private long											started;
+
+		MediaPlaylist(int variant)
+		{
+			this.variant = variant;
+		}
+
+		/**
+		 * Get the playlist, fetching it if the latest transfer is too old or
+		 * failed.
+		 */
+		synchronized CompletableFuture<byte[]> get()
+		{
+			long now = now();
+			if (latest == null || now - started >= MEDIA_CACHE_MILLIS || latest.isCompletedExceptionally())
+			{
+				latest = fetchMedia(variant);
+				started = now;
+			}
+			return latest;
+		}
+	}
+
+	/**
+	 * A rewritten master playlist with its variants. Never changed, a new
+	 * request replaces it.
+	 */
+	private static class Master
+	{
+		/**
+		 * Rewritten master playlist.
+		 */
+		private final String				playlist;
+
+		/**
+		 * Time the master playlist was requested, monotonic milliseconds.
+		 */
+		private final long					time;
+
+		/**
+		 * Upstream URIs of the media playlists, by variant index.
+		 */
+		private final List<URI>			variants;
+
+		/**
+		 * Names of the variants, by variant index.
+		 */
+		private final List<String>	names;
+
+		Master(String playlist, long time, List<URI> variants, List<String> names)
+		{
+			this.playlist = playlist;
+			this.time = time;
+			this.variants = Collections.unmodifiableList(variants);
+			this.names = Collections.unmodifiableList(names);
+		}
+	}
+}
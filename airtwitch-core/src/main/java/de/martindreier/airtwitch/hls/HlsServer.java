@@ -0,0 +1,565 @@
+/**
+ * HlsServer.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.twitch.Channel;
+
+/**
+ * Serves master playlists tailored to the devices. Instead of a single fixed
+ * variant, a device gets the master playlist of the channel with all variants
+ * it can play, so its own adaptive bitrate logic switches the quality instead
+ * of stalling. The device loads the variants from Twitch directly.
+ * <p>
+ * A playlist is rewritten once per channel and per {@link VariantPolicy} and
+ * cached, so devices with the same policy share it. When the cached playlist
+ * is older than the cache time, the next request gets a fresh channel token,
+ * requests the master playlist again and rewrites it. The cache time is read
+ * from the Java system property <code>airtwitch.hls.cacheTime</code> in
+ * milliseconds, the port of the server from <code>airtwitch.hls.port</code>.
+ * <p>
+ * In relay mode, the devices load the media playlists and the segments from
+ * this server as well, see {@link #publishRelay(Channel, DeviceInfo)}. The
+ * number of connections to Twitch is read from
+ * <code>airtwitch.hls.relayConnections</code>, the number of segments kept per
+ * channel from <code>airtwitch.hls.relaySegments</code>. Relayed segments are
+ * kept outside the heap in a {@link SegmentCache}, its size is read from
+ * <code>airtwitch.hls.segmentCache</code> in bytes. The server runs on
+ * non-blocking channels, so segments are written to the devices straight from
+ * the cache with gathering writes.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class HlsServer implements Closeable
+{
+	/**
+	 * Java system property: port of the server. Default is any free port.
+	 */
+	public static final String											PROP_PORT						= "airtwitch.hls.port";
+
+	/**
+	 * Java system property: time a rewritten playlist is served from the cache,
+	 * in milliseconds.
+	 */
+	public static final String											PROP_CACHE_TIME			= "airtwitch.hls.cacheTime";
+
+	/**
+	 * Java system property: number of relay connections to Twitch.
+	 */
+	public static final String											PROP_RELAY_CONNECTIONS	= "airtwitch.hls.relayConnections";
+
+	/**
+	 * Java system property: number of segments the relay keeps per channel and
+	 * policy.
+	 */
+	public static final String											PROP_RELAY_SEGMENTS	= "airtwitch.hls.relaySegments";
+
+	/**
+	 * Java system property: size of the segment cache in bytes.
+	 */
+	public static final String											PROP_SEGMENT_CACHE	= "airtwitch.hls.segmentCache";
+
+	/**
+	 * Default number of relay connections.
+	 */
+	private static final int												DEFAULT_CONNECTIONS	= 4;
+
+	/**
+	 * Default number of segments kept by the relay. Enough for the playlist
+	 * windows of a few variants.
+	 */
+	private static final int												DEFAULT_SEGMENTS		= 64;
+
+	/**
+	 * Default size of the segment cache in bytes, enough for about half a
+	 * minute of a few source quality variants.
+	 */
+	private static final long												DEFAULT_SEGMENT_CACHE	= 64L * 1024 * 1024;
+
+	/**
+	 * Default cache time in milliseconds. Shorter than the lifetime of a channel
+	 * token.
+	 */
+	private static final long												DEFAULT_CACHE_MILLIS	= TimeUnit.MINUTES.toMillis(5);
+
+	/**
+	 * Path prefix of the playlists.
+	 */
+	private static final String											PATH								= "/hls/";
+
+	/**
+	 * Content type of playlists.
+	 */
+	private static final String											CONTENT_TYPE				= "application/vnd.apple.mpegurl";
+
+	/**
+	 * Content type of segments.
+	 */
+	private static final String											SEGMENT_CONTENT_TYPE	= "video/MP2T";
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger											log									= Logger.getLogger(HlsServer.class.getName());
+
+	/**
+	 * Singleton instance.
+	 */
+	private static HlsServer												instance;
+
+	/**
+	 * Get the server instance. The server is started on first use.
+	 *
+	 * @return The server.
+	 */
+	public static synchronized HlsServer getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new HlsServer(Integer.getInteger(PROP_PORT, 0),
+							Long.getLong(PROP_CACHE_TIME, DEFAULT_CACHE_MILLIS));
+		}
+		return instance;
+	}
+
+	/**
+	 * Port to listen on, <code>0</code> for any free port.
+	 */
+	private final int																port;
+
+	/**
+	 * Cache time in milliseconds.
+	 */
+	private final long															cacheMillis;
+
+	/**
+	 * Published playlists by path.
+	 */
+	private final Map<String, PublishedPlaylist>		playlists						= new ConcurrentHashMap<>();
+
+	/**
+	 * Relays by base path.
+	 */
+	private final Map<String, HlsRelay>							relays							= new ConcurrentHashMap<>();
+
+	/**
+	 * Relayed segments.
+	 */
+	private final SegmentCache											segmentCache;
+
+	/**
+	 * Request threads. Relayed content is sent when the upstream transfer
+	 * completes, so the threads only wait for Twitch to rewrite master
+	 * playlists.
+	 */
+	private final ExecutorService										executor						= Executors.newFixedThreadPool(4,
+					runnable -> {
+						Thread thread = new Thread(runnable, "HLS server");
+						thread.setDaemon(true);
+						return thread;
+					});
+
+	/**
+	 * The HTTP server, <code>null</code> before the first playlist is published.
+	 */
+	private HttpChannelServer												server;
+
+	/**
+	 * Fetches relayed content, <code>null</code> before the first relay is
+	 * published.
+	 */
+	private UpstreamClient													upstream;
+
+	/**
+	 * Create a new server.
+	 *
+	 * @param port
+	 *          Port to listen on, <code>0</code> for any free port.
+	 * @param cacheMillis
+	 *          Cache time in milliseconds.
+	 */
+	HlsServer(int port, long cacheMillis)
+	{
+		this.port = port;
+		this.cacheMillis = cacheMillis;
+		this.segmentCache = new SegmentCache(Long.getLong(PROP_SEGMENT_CACHE, DEFAULT_SEGMENT_CACHE));
+	}
+
+	/**
+	 * Publish the master playlist of a channel for a device, limited by the
+	 * policy of the device.
+	 *
+	 * @param channel
+	 *          The channel.
+	 * @param device
+	 *          The device.
+	 * @return URI of the playlist, reachable by the device.
+	 * @throws AirTwitchException
+	 *           The playlist could not be created, or the server could not be
+	 *           started.
+	 * @see VariantPolicy#forDevice(DeviceInfo)
+	 */
+	public URI publish(Channel channel, DeviceInfo device) throws AirTwitchException
+	{
+		return publish(channel, VariantPolicy.forDevice(device), device);
+	}
+
+	/**
+	 * Publish the master playlist of a channel for a device.
+	 *
+	 * @param channel
+	 *          The channel.
+	 * @param policy
+	 *          Limits for the variants.
+	 * @param device
+	 *          The device.
+	 * @return URI of the playlist, reachable by the device.
+	 * @throws AirTwitchException
+	 *           The playlist could not be created, or the server could not be
+	 *           started.
+	 */
+	public URI publish(Channel channel, VariantPolicy policy, DeviceInfo device) throws AirTwitchException
+	{
+		String path = getBasePath(channel, policy) + ".m3u8";
+		PublishedPlaylist playlist = playlists.computeIfAbsent(path, key -> new PublishedPlaylist(channel, policy));
+		// Fail here rather than on the device, e.g. if the channel is offline
+		playlist.getContent();
+		return getUri(path, device);
+	}
+
+	/**
+	 * Relay a channel to a device, limited by the policy of the device. The
+	 * device loads the playlists and the segments from this server, which loads
+	 * each of them from Twitch once for all devices.
+	 *
+	 * @param channel
+	 *          The channel.
+	 * @param device
+	 *          The device.
+	 * @return URI of the master playlist, reachable by the device.
+	 * @throws AirTwitchException
+	 *           The playlist could not be created, or the server could not be
+	 *           started.
+	 * @see VariantPolicy#forDevice(DeviceInfo)
+	 */
+	public URI publishRelay(Channel channel, DeviceInfo device) throws AirTwitchException
+	{
+		return publishRelay(channel, VariantPolicy.forDevice(device), device);
+	}
+
+	/**
+	 * Relay a channel to a device.
+	 *
+	 * @param channel
+	 *          The channel.
+	 * @param policy
+	 *          Limits for the variants.
+	 * @param device
+	 *          The device.
+	 * @return URI of the master playlist, reachable by the device.
+	 * @throws AirTwitchException
+	 *           The playlist could not be created, or the server could not be
+	 *           started.
+	 */
+	public URI publishRelay(Channel channel, VariantPolicy policy, DeviceInfo device) throws AirTwitchException
+	{
+		String base = getBasePath(channel, policy) + "/";
+		UpstreamClient client = getUpstream();
+		HlsRelay relay = relays.computeIfAbsent(base, key -> new HlsRelay(channel, policy, client, segmentCache, cacheMillis,
+						Integer.getInteger(PROP_RELAY_SEGMENTS, DEFAULT_SEGMENTS)));
+		try
+		{
+			// Fail here rather than on the device, e.g. if the channel is offline
+			relay.get(HlsRelay.MASTER).join();
+		}
+		catch (CompletionException exception)
+		{
+			if (exception.getCause() instanceof AirTwitchException)
+			{
+				throw (AirTwitchException) exception.getCause();
+			}
+			throw new AirTwitchException("Could not relay channel %s", exception.getCause(), channel.getName());
+		}
+		return getUri(base + HlsRelay.MASTER, device);
+	}
+
+	/**
+	 * @return The cache of relayed segments, e.g. for its hit ratio.
+	 */
+	public SegmentCache getSegmentCache()
+	{
+		return segmentCache;
+	}
+
+	/**
+	 * @return Path of the playlists of a channel for a policy, without suffix.
+	 */
+	private static String getBasePath(Channel channel, VariantPolicy policy)
+	{
+		return String.format("%s%s/%d-%d", PATH, channel.getId(), policy.getMaxHeight().orElse(0),
+						policy.getMaxBandwidth().orElse(0L));
+	}
+
+	/**
+	 * Start the server if necessary and build the URI of a path for a device.
+	 */
+	private URI getUri(String path, DeviceInfo device) throws AirTwitchException
+	{
+		int serverPort = start();
+		InetAddress local = getLocalAddress(device);
+		String host = local.getHostAddress();
+		if (local instanceof Inet6Address)
+		{
+			int scope = host.indexOf('%');
+			host = "[" + (scope < 0 ? host : host.substring(0, scope)) + "]";
+		}
+		try
+		{
+			return new URI(String.format("http://%s:%d%s", host, serverPort, path));
+		}
+		catch (URISyntaxException exception)
+		{
+			throw new AirTwitchException("Could not build playlist URI for %s", exception, device.getName());
+		}
+	}
+
+	/**
+	 * @return The client for relayed content, created on first use.
+	 */
+	private synchronized UpstreamClient getUpstream() throws AirTwitchException
+	{
+		if (upstream == null)
+		{
+			upstream = new UpstreamClient(Integer.getInteger(PROP_RELAY_CONNECTIONS, DEFAULT_CONNECTIONS));
+		}
+		return upstream;
+	}
+
+	/**
+	 * Stop the server.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (server != null)
+		{
+			server.close();
+			server = null;
+		}
+		if (upstream != null)
+		{
+			try
+			{
+				upstream.close();
+			}
+			catch (IOException exception)
+			{
+				log.log(Level.FINE, "Could not close relay connections", exception);
+			}
+			upstream = null;
+		}
+		playlists.clear();
+		relays.clear();
+		segmentCache.clear();
+	}
+
+	/**
+	 * Start the server if it is not running.
+	 *
+	 * @return Port of the server.
+	 */
+	private synchronized int start() throws AirTwitchException
+	{
+		if (server == null)
+		{
+			try
+			{
+				HttpChannelServer created = new HttpChannelServer(port, this::handle, executor);
+				server = created;
+				log.info(() -> String.format("HLS server listening on port %d", created.getPort()));
+			}
+			catch (IOException exception)
+			{
+				throw new AirTwitchException("Could not start HLS server on port %d", exception, port);
+			}
+		}
+		return server.getPort();
+	}
+
+	/**
+	 * Find the local address the device reaches this host on. Connecting a
+	 * datagram socket selects the route without sending anything.
+	 */
+	private static InetAddress getLocalAddress(DeviceInfo device) throws AirTwitchException
+	{
+		try (DatagramSocket socket = new DatagramSocket())
+		{
+			socket.connect(InetAddress.getByName(device.getUri().getHost()), device.getPort());
+			return socket.getLocalAddress();
+		}
+		catch (IOException | URISyntaxException exception)
+		{
+			throw new AirTwitchException("Could not find local address for %s", exception, device.getName());
+		}
+	}
+
+	/**
+	 * Answer a request for a playlist or relayed content.
+	 */
+	private void handle(HttpChannelServer.Exchange exchange)
+	{
+		String path = exchange.getPath();
+		if (!"GET".equals(exchange.getMethod()))
+		{
+			respond(exchange, 405, null, null);
+			return;
+		}
+		PublishedPlaylist playlist = playlists.get(path);
+		if (playlist != null)
+		{
+			try
+			{
+				respond(exchange, 200, CONTENT_TYPE, playlist.getContent().getBytes(StandardCharsets.UTF_8));
+			}
+			catch (AirTwitchException exception)
+			{
+				log.log(Level.WARNING, "Could not serve " + path, exception);
+				respond(exchange, 502, null, null);
+			}
+			return;
+		}
+		int separator = path.lastIndexOf('/', path.endsWith(".ts") ? path.lastIndexOf('/') - 1 : path.length());
+		HlsRelay relay = separator < 0 ? null : relays.get(path.substring(0, separator + 1));
+		if (relay == null)
+		{
+			respond(exchange, 404, null, null);
+			return;
+		}
+		String resource = path.substring(separator + 1);
+		// Answer when the upstream transfer completes, without blocking this
+		// thread. Sending only queues the response for the server thread.
+		if (resource.endsWith(".ts"))
+		{
+			relay.getSegment(resource).whenComplete((segment, exception) -> {
+				if (exception != null)
+				{
+					log.log(Level.FINE, "Could not relay " + path, exception);
+				}
+				if (segment == null)
+				{
+					respond(exchange, exception == null ? 404 : 502, null, null);
+				}
+				else
+				{
+					exchange.respond(SEGMENT_CONTENT_TYPE, segment);
+				}
+			});
+			return;
+		}
+		relay.get(resource).whenComplete((content, exception) -> {
+			if (exception != null)
+			{
+				log.log(Level.FINE, "Could not relay " + path, exception);
+				respond(exchange, 502, null, null);
+			}
+			else
+			{
+				respond(exchange, content == null ? 404 : 200, HlsRelay.getContentType(resource), content);
+			}
+		});
+	}
+
+	/**
+	 * Send a response.
+	 *
+	 * @param status
+	 *          HTTP status code.
+	 * @param contentType
+	 *          Content type, ignored without content.
+	 * @param content
+	 *          Content, <code>null</code> for none.
+	 */
+	private static void respond(HttpChannelServer.Exchange exchange, int status, String contentType, byte[] content)
+	{
+		if (content == null || status != 200)
+		{
+			exchange.respond(status, null, null);
+			return;
+		}
+		if (!contentType.startsWith("video/"))
+		{
+			exchange.setHeader("Cache-Control", "no-cache");
+		}
+		exchange.respond(200, contentType, content);
+	}
+
+	/**
+	 * The rewritten master playlist of a channel for a policy.
+	 */
+	private class PublishedPlaylist
+	{
+		/**
+		 * The channel.
+		 */
+		private final Channel				channel;
+
+		/**
+		 * Limits for the variants.
+		 */
+		private final VariantPolicy	policy;
+
+		/**
+		 * Rewritten playlist, <code>null</code> before the first request.
+		 */
+		private String							content;
+
+		/**
+		 * Time the playlist was rewritten, monotonic milliseconds.
+		 */
+		private long								rewritten;
+
+		PublishedPlaylist(Channel channel, VariantPolicy policy)
+		{
+			this.channel = channel;
+			this.policy = policy;
+		}
+
+		/**
+		 * Get the rewritten playlist, rewriting it if it is older than the cache
+		 * time. Concurrent requests wait for a single rewrite.
+		 */
+		synchronized String getContent() throws AirTwitchException
+		{
+			long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+			if (content == null || now - rewritten >= cacheMillis)
+			{
+				channel.requestChannelToken();
+				content = MasterPlaylistRewriter.rewrite(channel.getMasterPlaylist(), policy);
+				rewritten = now;
+				log.fine(() -> String.format("Rewrote master playlist of %s for %s", channel.getName(), policy));
+			}
+			return content;
+		}
+	}
+}
@@ -0,0 +1,682 @@
+/**
+ * HttpChannelServer.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import de.martindreier.airtwitch.airplay.SelectorLoop;
+
+/**
+ * A minimal HTTP/1.1 server on non-blocking channels. A single selector thread
+ * accepts the connections, reads the requests and writes the responses.
+ * Requests are handled on an executor and may be answered later from any
+ * thread, e.g. when an upstream transfer completes.
+ * <p>
+ * Responses are sent with gathering writes: the header and all slabs of a
+ * cached segment go to the socket in one call, straight from direct memory.
+ * Only requests without body are supported, which is all the devices send for
+ * playlists and segments. Connections are kept alive unless the client asks
+ * otherwise; a connection handles one request at a time.
+ * <p>
+ * A connection which neither sends nor takes data for the idle timeout is
+ * closed, whether it waits for the next request, stalls in the middle of one or
+ * stops reading a response. This releases its buffers and the segment it holds.
+ * Connections waiting for the request handler are not timed out.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+final class HttpChannelServer implements Closeable
+{
+	/**
+	 * Maximum size of a request header.
+	 */
+	private static final int							MAX_REQUEST_SIZE	= 16 * 1024;
+
+	/**
+	 * Length of a timer wheel tick in milliseconds.
+	 */
+	private static final long							TICK_MILLIS				= 100;
+
+	/**
+	 * Default idle timeout of a connection in milliseconds.
+	 */
+	private static final long							DEFAULT_IDLE_MILLIS	= 30_000;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger						log								= Logger.getLogger(HttpChannelServer.class.getName());
+
+	/**
+	 * Handles requests.
+	 */
+	interface Handler
+	{
+		/**
+		 * Handle a request. The exchange must be answered exactly once, either
+		 * before returning or later from any thread.
+		 *
+		 * @param exchange
+		 *          The request.
+		 */
+		void handle(Exchange exchange);
+	}
+
+	/**
+	 * Request handler.
+	 */
+	private final Handler									handler;
+
+	/**
+	 * Runs the request handler.
+	 */
+	private final Executor								executor;
+
+	/**
+	 * Server thread with the selector for all connections.
+	 */
+	private final SelectorLoop						loop;
+
+	/**
+	 * Listening channel.
+	 */
+	private final ServerSocketChannel			serverChannel;
+
+	/**
+	 * Port the server listens on.
+	 */
+	private final int											port;
+
+	/**
+	 * Idle timeout of a connection in milliseconds.
+	 */
+	private final long										idleMillis;
+
+	/**
+	 * Read buffer, only used by the server thread.
+	 */
+	private final ByteBuffer							readBuffer				= ByteBuffer.allocateDirect(MAX_REQUEST_SIZE);
+
+	/**
+	 * Start a new server.
+	 *
+	 * @param port
+	 *          Port to listen on, <code>0</code> for any free port.
+	 * @param handler
+	 *          Handles the requests.
+	 * @param executor
+	 *          Runs the request handler.
+	 * @throws IOException
+	 *           The server could not be started.
+	 */
+	HttpChannelServer(int port, Handler handler, Executor executor) throws IOException
+	{
+		this(port, handler, executor, DEFAULT_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Start a new server.
+	 *
+	 * @param port
+	 *          Port to listen on, <code>0</code> for any free port.
+	 * @param handler
+	 *          Handles the requests.
+	 * @param executor
+	 *          Runs the request handler.
+	 * @param idleTimeout
+	 *          Time after which a connection without progress is closed.
+	 * @param unit
+	 *          Time unit of the timeout.
+	 * @throws IOException
+	 *           The server could not be started.
+	 */
+	HttpChannelServer(int port, Handler handler, Executor executor, long idleTimeout, TimeUnit unit) throws IOException
+	{
+		this.handler = handler;
+		this.executor = executor;
+		this.idleMillis = Math.max(TICK_MILLIS, unit.toMillis(idleTimeout));
+		loop = new SelectorLoop("HLS server", TICK_MILLIS);
+		ServerSocketChannel channel = null;
+		try
+		{
+			channel = ServerSocketChannel.open();
+			channel.bind(new InetSocketAddress(port));
+			channel.configureBlocking(false);
+			channel.register(loop.getSelector(), SelectionKey.OP_ACCEPT);
+		}
+		catch (IOException exception)
+		{
+			if (channel != null)
+			{
+				channel.close();
+			}
+			loop.getSelector().close();
+			throw exception;
+		}
+		serverChannel = channel;
+		this.port = channel.socket().getLocalPort();
+		loop.start(this::handle, this::shutdown);
+		loop.execute(this::closeIdle);
+	}
+
+	/**
+	 * @return Port the server listens on.
+	 */
+	int getPort()
+	{
+		return port;
+	}
+
+	/**
+	 * Stop the server and close all connections.
+	 */
+	@Override
+	public void close()
+	{
+		loop.close();
+	}
+
+	/**
+	 * Close all connections and the listening channel when the server thread
+	 * ends. Responses for closed connections release their segments afterwards.
+	 */
+	private void shutdown()
+	{
+		for (SelectionKey key : loop.getSelector().keys())
+		{
+			if (key.attachment() instanceof Connection)
+			{
+				((Connection) key.attachment()).close();
+			}
+		}
+		try
+		{
+			serverChannel.close();
+		}
+		catch (IOException exception)
+		{
+			log.log(Level.FINE, "Could not close HLS server", exception);
+		}
+	}
+
+	/**
+	 * Close the connections which made no progress for the idle timeout, and
+	 * check again later.
+	 */
+	private void closeIdle()
+	{
+		long now = System.currentTimeMillis();
+		for (SelectionKey key : loop.getSelector().keys())
+		{
+			if (key.attachment() instanceof Connection)
+			{
+				Connection connection = (Connection) key.attachment();
+				if (!connection.pending && now - connection.lastActivity >= idleMillis)
+				{
+					log.fine("Closing idle connection");
+					connection.close();
+				}
+			}
+		}
+		loop.schedule(Math.min(idleMillis, TimeUnit.SECONDS.toMillis(1)), this::closeIdle);
+	}
+
+	/**
+	 * Accept all pending connections.
+	 */
+	private void accept()
+	{
+		while (true)
+		{
+			SocketChannel channel = null;
+			try
+			{
+				channel = serverChannel.accept();
+				if (channel == null)
+				{
+					return;
+				}
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				new Connection(channel);
+			}
+			catch (IOException exception)
+			{
+				log.log(Level.FINE, "Could not accept connection", exception);
+				if (channel == null)
+				{
+					return;
+				}
+				try
+				{
+					channel.close();
+				}
+				catch (IOException closeException)
+				{
+					log.log(Level.FINE, "Could not close connection", closeException);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Handle a ready connection.
+	 */
+	private void handle(SelectionKey key)
+	{
+		if (key.attachment() == null)
+		{
+			accept();
+			return;
+		}
+		Connection connection = (Connection) key.attachment();
+		try
+		{
+			if (key.isValid() && key.isWritable())
+			{
+				connection.flush();
+			}
+			if (key.isValid() && key.isReadable())
+			{
+				connection.read();
+			}
+		}
+		catch (IOException | RuntimeException exception)
+		{
+			log.log(Level.FINE, "Closing connection", exception);
+			connection.close();
+		}
+	}
+
+	/**
+	 * @return Reason phrase of a status code.
+	 */
+	private static String getReason(int status)
+	{
+		switch (status)
+		{
+			case 200:
+				return "OK";
+			case 400:
+				return "Bad Request";
+			case 404:
+				return "Not Found";
+			case 405:
+				return "Method Not Allowed";
+			case 500:
+				return "Internal Server Error";
+			case 502:
+				return "Bad Gateway";
+			default:
+				return "Status";
+		}
+	}
+
+	/**
+	 * A connection from a client. Only accessed by the server thread.
+	 */
+	private class Connection
+	{
+		private final SocketChannel					channel;
+		private final SelectionKey					key;
+		private final byte[]								input		= new byte[MAX_REQUEST_SIZE];
+		private int													length;
+		private ByteBuffer[]								output;
+		private SegmentCache.Segment				segment;
+		private boolean											keepAlive;
+		private boolean											closed;
+		/**
+		 * <code>true</code> while the request handler has not answered.
+		 */
+		private boolean											pending;
+		/**
+		 * Time of the last data sent or received.
+		 */
+		private long												lastActivity	= System.currentTimeMillis();
+
+		Connection(SocketChannel channel) throws IOException
+		{
+			this.channel = channel;
+			key = channel.register(loop.getSelector(), SelectionKey.OP_READ, this);
+		}
+
+		void read() throws IOException
+		{
+			readBuffer.clear();
+			int read = channel.read(readBuffer);
+			if (read < 0)
+			{
+				close();
+				return;
+			}
+			readBuffer.flip();
+			lastActivity = System.currentTimeMillis();
+			if (length + readBuffer.remaining() > input.length)
+			{
+				throw new IOException("Request too large");
+			}
+			int count = readBuffer.remaining();
+			readBuffer.get(input, length, count);
+			length += count;
+			if (output == null)
+			{
+				next();
+			}
+		}
+
+		/**
+		 * Start handling the next buffered request, if it is complete.
+		 */
+		void next()
+		{
+			int headerEnd = indexOfHeaderEnd();
+			if (headerEnd < 0)
+			{
+				return;
+			}
+			String[] lines = new String(input, 0, headerEnd, StandardCharsets.ISO_8859_1).split("\r\n");
+			int consumed = headerEnd + 4;
+			System.arraycopy(input, consumed, input, 0, length - consumed);
+			length -= consumed;
+
+			String[] requestLine = lines[0].split(" ");
+			String connectionHeader = null;
+			boolean hasBody = false;
+			for (int index = 1; index < lines.length; index++)
+			{
+				int separator = lines[index].indexOf(':');
+				if (separator > 0)
+				{
+					String name = lines[index].substring(0, separator).trim().toLowerCase(Locale.ROOT);
+					String value = lines[index].substring(separator + 1).trim();
+					if ("connection".equals(name))
+					{
+						connectionHeader = value;
+					}
+					else if ("transfer-encoding".equals(name) || ("content-length".equals(name) && !"0".equals(value)))
+					{
+						hasBody = true;
+					}
+				}
+			}
+			boolean http11 = requestLine.length == 3 && "HTTP/1.1".equals(requestLine[2]);
+			boolean persistent = http11 ? !"close".equalsIgnoreCase(connectionHeader)
+							: "keep-alive".equalsIgnoreCase(connectionHeader);
+			String path = null;
+			if (requestLine.length == 3)
+			{
+				try
+				{
+					path = URI.create(requestLine[1]).getPath();
+				}
+				catch (IllegalArgumentException exception)
+				{
+					log.log(Level.FINE, "Malformed request target " + requestLine[1], exception);
+				}
+			}
+			// Stop reading until the response is written
+			key.interestOps(0);
+			pending = true;
+			if (path == null || hasBody)
+			{
+				new Exchange(this, requestLine[0], "", false).respond(400, null, null);
+				return;
+			}
+			Exchange exchange = new Exchange(this, requestLine[0], path, persistent);
+			executor.execute(() -> {
+				try
+				{
+					handler.handle(exchange);
+				}
+				catch (RuntimeException exception)
+				{
+					log.log(Level.WARNING, "Could not handle request for " + exchange.getPath(), exception);
+					if (!exchange.isAnswered())
+					{
+						exchange.respond(500, null, null);
+					}
+				}
+			});
+		}
+
+		/**
+		 * Find the empty line separating header and body.
+		 */
+		private int indexOfHeaderEnd()
+		{
+			for (int index = 0; index + 3 < length; index++)
+			{
+				if (input[index] == '\r' && input[index + 1] == '\n' && input[index + 2] == '\r' && input[index + 3] == '\n')
+				{
+					return index;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Start writing a response.
+		 */
+		void write(ByteBuffer[] response, SegmentCache.Segment content, boolean persistent)
+		{
+			if (closed)
+			{
+				if (content != null)
+				{
+					content.release();
+				}
+				return;
+			}
+			output = response;
+			segment = content;
+			keepAlive = persistent;
+			pending = false;
+			lastActivity = System.currentTimeMillis();
+			key.interestOps(SelectionKey.OP_WRITE);
+			try
+			{
+				flush();
+			}
+			catch (IOException exception)
+			{
+				log.log(Level.FINE, "Could not send response", exception);
+				close();
+			}
+		}
+
+		/**
+		 * Write as much of the response as the socket takes.
+		 */
+		void flush() throws IOException
+		{
+			if (output == null)
+			{
+				return;
+			}
+			// Header and content in one call
+			if (channel.write(output) > 0)
+			{
+				lastActivity = System.currentTimeMillis();
+			}
+			if (output[output.length - 1].hasRemaining())
+			{
+				return;
+			}
+			output = null;
+			releaseSegment();
+			if (!keepAlive)
+			{
+				close();
+				return;
+			}
+			key.interestOps(SelectionKey.OP_READ);
+			next();
+		}
+
+		void releaseSegment()
+		{
+			if (segment != null)
+			{
+				segment.release();
+				segment = null;
+			}
+		}
+
+		void close()
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+			key.cancel();
+			releaseSegment();
+			try
+			{
+				channel.close();
+			}
+			catch (IOException exception)
+			{
+				log.log(Level.FINE, "Could not close connection", exception);
+			}
+		}
+	}
+
+	/**
+	 * A request and its response.
+	 */
+	final class Exchange
+	{
+		private final Connection						connection;
+		private final String								method;
+		private final String								path;
+		private final boolean								keepAlive;
+		private final Map<String, String>		headers		= new LinkedHashMap<>();
+		private final AtomicBoolean					answered	= new AtomicBoolean();
+
+		Exchange(Connection connection, String method, String path, boolean keepAlive)
+		{
+			this.connection = connection;
+			this.method = method;
+			this.path = path;
+			this.keepAlive = keepAlive;
+		}
+
+		/**
+		 * @return Request method.
+		 */
+		String getMethod()
+		{
+			return method;
+		}
+
+		/**
+		 * @return Decoded request path, without query.
+		 */
+		String getPath()
+		{
+			return path;
+		}
+
+		/**
+		 * @return <code>true</code> if a response was sent.
+		 */
+		boolean isAnswered()
+		{
+			return answered.get();
+		}
+
+		/**
+		 * Set a response header. Must be called before the response is sent.
+		 *
+		 * @param name
+		 *          Header name.
+		 * @param value
+		 *          Header value.
+		 */
+		void setHeader(String name, String value)
+		{
+			headers.put(name, value);
+		}
+
+		/**
+		 * Send a response.
+		 *
+		 * @param status
+		 *          HTTP status code.
+		 * @param contentType
+		 *          Content type, <code>null</code> for none.
+		 * @param content
+		 *          Content, <code>null</code> for none.
+		 */
+		void respond(int status, String contentType, byte[] content)
+		{
+			ByteBuffer[] body = content == null ? new ByteBuffer[0] : new ByteBuffer[] { ByteBuffer.wrap(content) };
+			send(status, contentType, content == null ? 0 : content.length, body, null);
+		}
+
+		/**
+		 * Send a cached segment. The reference of the caller is released when the
+		 * segment is written.
+		 *
+		 * @param contentType
+		 *          Content type.
+		 * @param content
+		 *          The segment.
+		 */
+		void respond(String contentType, SegmentCache.Segment content)
+		{
+			send(200, contentType, content.getSize(), content.getBuffers(), content);
+		}
+
+		private void send(int status, String contentType, long contentLength, ByteBuffer[] body,
+						SegmentCache.Segment content)
+		{
+			if (!answered.compareAndSet(false, true))
+			{
+				if (content != null)
+				{
+					content.release();
+				}
+				throw new IllegalStateException("Request for " + path + " already answered");
+			}
+			StringBuilder header = new StringBuilder();
+			header.append(String.format("HTTP/1.1 %d %s\r\n", status, getReason(status)));
+			if (contentType != null)
+			{
+				header.append("Content-Type: ").append(contentType).append("\r\n");
+			}
+			headers.forEach((name, value) -> header.append(name).append(": ").append(value).append("\r\n"));
+			header.append("Content-Length: ").append(contentLength).append("\r\n");
+			if (!keepAlive)
+			{
+				header.append("Connection: close\r\n");
+			}
+			header.append("\r\n");
+			ByteBuffer[] response = new ByteBuffer[body.length + 1];
+			response[0] = ByteBuffer.wrap(header.toString().getBytes(StandardCharsets.ISO_8859_1));
+			System.arraycopy(body, 0, response, 1, body.length);
+			loop.execute(() -> connection.write(response, content, keepAlive));
+		}
+	}
+}
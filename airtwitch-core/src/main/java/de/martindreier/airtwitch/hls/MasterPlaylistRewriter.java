@@ -0,0 +1,224 @@
+/**
+ * MasterPlaylistRewriter.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Removes the variants not allowed by a {@link VariantPolicy} from a master
+ * playlist. The playlist is rewritten line by line instead of being parsed and
+ * written again, so the Twitch specific tags survive unchanged.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+class MasterPlaylistRewriter
+{
+	/**
+	 * Tag of a variant.
+	 */
+	private static final String	STREAM_INF	= "#EXT-X-STREAM-INF:";
+
+	/**
+	 * Tag of a rendition group member.
+	 */
+	private static final String	MEDIA				= "#EXT-X-MEDIA:";
+
+	/**
+	 * Rewrite a master playlist. If the policy allows no variant at all, the
+	 * video variant with the lowest bandwidth is kept, so the device can still
+	 * play.
+	 *
+	 * @param source
+	 *          Master playlist source.
+	 * @param policy
+	 *          The policy.
+	 * @return Playlist with the allowed variants.
+	 * @throws AirTwitchException
+	 *           The source is not a master playlist.
+	 */
+	static String rewrite(String source, VariantPolicy policy) throws AirTwitchException
+	{
+		String[] lines = source.split("\r?\n");
+		List<Variant> variants = new ArrayList<>();
+		for (int index = 0; index < lines.length; index++)
+		{
+			if (lines[index].startsWith(STREAM_INF))
+			{
+				int uriLine = index + 1;
+				while (uriLine < lines.length && (lines[uriLine].trim().isEmpty() || lines[uriLine].startsWith("#")))
+				{
+					uriLine++;
+				}
+				if (uriLine == lines.length)
+				{
+					throw new AirTwitchException("Variant without URI in line %d", index + 1);
+				}
+				variants.add(new Variant(index, uriLine, parseAttributes(lines[index].substring(STREAM_INF.length()))));
+			}
+		}
+		if (variants.isEmpty())
+		{
+			throw new AirTwitchException("Not a master playlist");
+		}
+		Set<Variant> kept = new HashSet<>();
+		Variant lowest = null;
+		for (Variant variant : variants)
+		{
+			if (policy.allows(variant.getBandwidth(), variant.getHeight()))
+			{
+				kept.add(variant);
+			}
+			if (variant.getHeight() > 0 && (lowest == null || variant.getBandwidth() < lowest.getBandwidth()))
+			{
+				lowest = variant;
+			}
+		}
+		if (kept.isEmpty() && lowest != null)
+		{
+			kept.add(lowest);
+		}
+		Set<String> groups = new HashSet<>();
+		kept.forEach(variant -> groups.add(variant.attributes.get("VIDEO")));
+		Set<Integer> dropped = new HashSet<>();
+		for (Variant variant : variants)
+		{
+			if (!kept.contains(variant))
+			{
+				dropped.add(variant.tagLine);
+				dropped.add(variant.uriLine);
+			}
+		}
+		StringBuilder rewritten = new StringBuilder(source.length());
+		for (int index = 0; index < lines.length; index++)
+		{
+			if (dropped.contains(index))
+			{
+				continue;
+			}
+			if (lines[index].startsWith(MEDIA))
+			{
+				Map<String, String> media = parseAttributes(lines[index].substring(MEDIA.length()));
+				if ("VIDEO".equals(media.get("TYPE")) && !groups.contains(media.get("GROUP-ID")))
+				{
+					continue;
+				}
+			}
+			rewritten.append(lines[index]).append('\n');
+		}
+		return rewritten.toString();
+	}
+
+	/**
+	 * Parse an attribute list. Quotes are removed from quoted values.
+	 *
+	 * @param list
+	 *          Attribute list, e.g. <code>BANDWIDTH=1000,VIDEO="720p"</code>.
+	 * @return Attributes by name.
+	 */
+	static Map<String, String> parseAttributes(String list)
+	{
+		Map<String, String> attributes = new HashMap<>();
+		int position = 0;
+		while (position < list.length())
+		{
+			int equals = list.indexOf('=', position);
+			if (equals < 0)
+			{
+				break;
+			}
+			String name = list.substring(position, equals).trim();
+			int end;
+			String value;
+			if (equals + 1 < list.length() && list.charAt(equals + 1) == '"')
+			{
+				int quote = list.indexOf('"', equals + 2);
+				quote = quote < 0 ? list.length() : quote;
+				value = list.substring(equals + 2, quote);
+				end = list.indexOf(',', quote);
+			}
+			else
+			{
+				end = list.indexOf(',', equals);
+				value = list.substring(equals + 1, end < 0 ? list.length() : end);
+			}
+			attributes.put(name, value.trim());
+			position = end < 0 ? list.length() : end + 1;
+		}
+		return attributes;
+	}
+
+	/**
+	 * A variant in the source playlist.
+	 */
+	private static class Variant
+	{
+		/**
+		 * Line of the variant tag.
+		 */
+		private final int									tagLine;
+
+		/**
+		 * Line of the variant URI.
+		 */
+		private final int									uriLine;
+
+		/**
+		 * Attributes of the variant tag.
+		 */
+		private final Map<String, String>	attributes;
+
+		Variant(int tagLine, int uriLine, Map<String, String> attributes)
+		{
+			this.tagLine = tagLine;
+			this.uriLine = uriLine;
+			this.attributes = attributes;
+		}
+
+		/**
+		 * @return Bandwidth in bits per second, <code>0</code> if not known.
+		 */
+		long getBandwidth()
+		{
+			try
+			{
+				return Long.parseLong(attributes.getOrDefault("BANDWIDTH", "0"));
+			}
+			catch (NumberFormatException exception)
+			{
+				return 0;
+			}
+		}
+
+		/**
+		 * @return Picture height in pixels, <code>0</code> for audio only
+		 *         variants.
+		 */
+		int getHeight()
+		{
+			String resolution = attributes.get("RESOLUTION");
+			int separator = resolution == null ? -1 : resolution.indexOf('x');
+			if (separator < 0)
+			{
+				return 0;
+			}
+			try
+			{
+				return Integer.parseInt(resolution.substring(separator + 1));
+			}
+			catch (NumberFormatException exception)
+			{
+				return 0;
+			}
+		}
+	}
+}
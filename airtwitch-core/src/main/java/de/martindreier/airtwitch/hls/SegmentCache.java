@@ -0,0 +1,532 @@
+/**
+ * SegmentCache.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Keeps relayed segments outside the Java heap. A segment is stored in slabs
+ * of direct memory of a fixed size, taken from a pool which is bounded by the
+ * size of the cache. Slabs are allocated on first use and reused after their
+ * segment is dropped, so the garbage collector neither copies nor scans the
+ * segment data.
+ * <p>
+ * Segments are reference counted. The cache holds one reference, each device
+ * being served holds another one, so serving never copies a segment. When the
+ * cache needs slabs, it drops the least recently used segments; the slabs of a
+ * dropped segment return to the pool when the last device is served.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class SegmentCache
+{
+	/**
+	 * Size of a slab in bytes. Twitch segments are a few megabytes, so the
+	 * unused part of the last slab of a segment is small.
+	 */
+	static final int												SLAB_SIZE	= 64 * 1024;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger							log				= Logger.getLogger(SegmentCache.class.getName());
+
+	/**
+	 * Maximum number of slabs.
+	 */
+	private final int												maxSlabs;
+
+	/**
+	 * Slabs not in use.
+	 */
+	private final Deque<ByteBuffer>					free			= new ArrayDeque<>();
+
+	/**
+	 * Segments in least recently used order.
+	 */
+	private final LinkedHashMap<Key, Segment>	entries		= new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Number of slabs allocated so far.
+	 */
+	private int															allocated;
+
+	/**
+	 * Requests answered from the cache.
+	 */
+	private final AtomicLong								hits			= new AtomicLong();
+
+	/**
+	 * Requests not answered from the cache.
+	 */
+	private final AtomicLong								misses		= new AtomicLong();
+
+	/**
+	 * Create a new cache.
+	 *
+	 * @param sizeBytes
+	 *          Maximum size of the cache in bytes. At least one slab.
+	 */
+	public SegmentCache(long sizeBytes)
+	{
+		this.maxSlabs = (int) Math.max(1, Math.min(Integer.MAX_VALUE, sizeBytes / SLAB_SIZE));
+	}
+
+	/**
+	 * Get a segment. The relay counts the hits and misses, so devices waiting for
+	 * the same upstream transfer count as one miss.
+	 *
+	 * @param key
+	 *          The segment.
+	 * @return The segment, or <code>null</code> if it is not cached. The caller
+	 *         holds a reference and must {@link Segment#release() release} it.
+	 */
+	public Segment get(Key key)
+	{
+		Segment segment;
+		synchronized (this)
+		{
+			segment = entries.get(key);
+			if (segment != null && !segment.retain())
+			{
+				segment = null;
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * Record a request answered from the cache, or by a transfer another request
+	 * started.
+	 */
+	void recordHit()
+	{
+		hits.incrementAndGet();
+	}
+
+	/**
+	 * Record a request which started an upstream transfer.
+	 */
+	void recordMiss()
+	{
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * Store a segment, replacing a segment with the same key.
+	 *
+	 * @param key
+	 *          The segment.
+	 * @param source
+	 *          Content of the segment, read to its end.
+	 * @return The segment. The caller holds a reference and must
+	 *         {@link Segment#release() release} it.
+	 * @throws IOException
+	 *           The content could not be read.
+	 * @throws AirTwitchException
+	 *           The segment is larger than the cache, or the devices being
+	 *           served hold all slabs.
+	 */
+	public Segment put(Key key, ReadableByteChannel source) throws IOException, AirTwitchException
+	{
+		List<ByteBuffer> slabs = new ArrayList<>();
+		long size = 0;
+		try
+		{
+			ByteBuffer slab = null;
+			while (true)
+			{
+				if (slab == null || !slab.hasRemaining())
+				{
+					slab = takeSlab(key);
+					slabs.add(slab);
+				}
+				int read = source.read(slab);
+				if (read < 0)
+				{
+					break;
+				}
+				size += read;
+			}
+			if (slab.position() == 0 && slabs.size() > 1)
+			{
+				// The content ended with the previous slab
+				slabs.remove(slabs.size() - 1);
+				recycle(Collections.singletonList(slab));
+			}
+		}
+		catch (IOException | AirTwitchException | RuntimeException exception)
+		{
+			recycle(slabs);
+			throw exception;
+		}
+		Segment segment = new Segment(key, slabs, size);
+		segment.retain();
+		Segment replaced;
+		synchronized (this)
+		{
+			replaced = entries.put(key, segment);
+		}
+		if (replaced != null)
+		{
+			replaced.release();
+		}
+		return segment;
+	}
+
+	/**
+	 * Drop all segments. Slabs still used by devices return to the pool when the
+	 * devices are served.
+	 */
+	public void clear()
+	{
+		List<Segment> dropped;
+		synchronized (this)
+		{
+			dropped = new ArrayList<>(entries.values());
+			entries.clear();
+		}
+		dropped.forEach(Segment::release);
+	}
+
+	/**
+	 * @return Share of the requests answered from the cache, between
+	 *         <code>0</code> and <code>1</code>.
+	 */
+	public double getHitRatio()
+	{
+		long hitCount = hits.get();
+		long total = hitCount + misses.get();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * @return Requests answered from the cache.
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return Requests not answered from the cache.
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return Number of cached segments.
+	 */
+	public synchronized int getSegmentCount()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return Bytes of direct memory in use, including slabs of dropped segments
+	 *         which devices are still being served.
+	 */
+	public synchronized long getUsedBytes()
+	{
+		return (long) (allocated - free.size()) * SLAB_SIZE;
+	}
+
+	/**
+	 * @return Maximum size of the cache in bytes.
+	 */
+	public long getCapacityBytes()
+	{
+		return (long) maxSlabs * SLAB_SIZE;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d segments, %.1f of %.1f MiB, hit ratio %.1f %% (%d hits, %d misses)", getSegmentCount(),
+						getUsedBytes() / 1048576.0, getCapacityBytes() / 1048576.0, getHitRatio() * 100, hits.get(),
+						misses.get());
+	}
+
+	/**
+	 * Take a slab from the pool, allocating it or dropping the least recently
+	 * used segments as necessary.
+	 *
+	 * @param key
+	 *          The segment the slab is for, never dropped.
+	 */
+	private ByteBuffer takeSlab(Key key) throws AirTwitchException
+	{
+		while (true)
+		{
+			Segment evicted;
+			synchronized (this)
+			{
+				if (!free.isEmpty())
+				{
+					return free.pop();
+				}
+				if (allocated < maxSlabs)
+				{
+					allocated++;
+					return ByteBuffer.allocateDirect(SLAB_SIZE);
+				}
+				evicted = null;
+				Iterator<Segment> eldest = entries.values().iterator();
+				while (eldest.hasNext())
+				{
+					Segment candidate = eldest.next();
+					if (!candidate.key.equals(key))
+					{
+						eldest.remove();
+						evicted = candidate;
+						break;
+					}
+				}
+			}
+			if (evicted == null)
+			{
+				throw new AirTwitchException("Segment cache of %d bytes is full", getCapacityBytes());
+			}
+			Segment dropped = evicted;
+			log.fine(() -> "Dropping segment " + dropped.key);
+			// Frees the slabs unless devices are still being served
+			evicted.release();
+		}
+	}
+
+	/**
+	 * Return slabs to the pool.
+	 */
+	private synchronized void recycle(List<ByteBuffer> slabs)
+	{
+		for (ByteBuffer slab : slabs)
+		{
+			slab.clear();
+			free.push(slab);
+		}
+	}
+
+	/**
+	 * Identifies a segment: channel, variant and media sequence number.
+	 */
+	public static final class Key
+	{
+		/**
+		 * Channel ID.
+		 */
+		private final String	channel;
+
+		/**
+		 * Variant name.
+		 */
+		private final String	variant;
+
+		/**
+		 * Media sequence number.
+		 */
+		private final long		sequence;
+
+		/**
+		 * Create a new key.
+		 *
+		 * @param channel
+		 *          Channel ID.
+		 * @param variant
+		 *          Variant name, e.g. <code>720p30</code>.
+		 * @param sequence
+		 *          Media sequence number.
+		 */
+		public Key(String channel, String variant, long sequence)
+		{
+			this.channel = channel;
+			this.variant = variant;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key) obj;
+			return sequence == other.sequence && channel.equals(other.channel) && variant.equals(other.variant);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(channel, variant, sequence);
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%s/%s/%d", channel, variant, sequence);
+		}
+	}
+
+	/**
+	 * A cached segment. The content stays valid while the holder has not
+	 * released its reference.
+	 */
+	public final class Segment
+	{
+		/**
+		 * The segment.
+		 */
+		private final Key							key;
+
+		/**
+		 * Slabs holding the content, all but the last one full.
+		 */
+		private final List<ByteBuffer>	slabs;
+
+		/**
+		 * Size of the content in bytes.
+		 */
+		private final long						size;
+
+		/**
+		 * Number of references, <code>0</code> once the slabs are returned.
+		 */
+		private final AtomicInteger			references	= new AtomicInteger(1);
+
+		Segment(Key key, List<ByteBuffer> slabs, long size)
+		{
+			this.key = key;
+			this.slabs = slabs;
+			this.size = size;
+		}
+
+		/**
+		 * @return The segment.
+		 */
+		public Key getKey()
+		{
+			return key;
+		}
+
+		/**
+		 * @return Size of the content in bytes.
+		 */
+		public long getSize()
+		{
+			return size;
+		}
+
+		/**
+		 * Add a reference, unless the slabs are already returned.
+		 *
+		 * @return <code>true</code> if the reference was added.
+		 */
+		boolean retain()
+		{
+			while (true)
+			{
+				int count = references.get();
+				if (count == 0)
+				{
+					return false;
+				}
+				if (references.compareAndSet(count, count + 1))
+				{
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Release a reference. The slabs return to the pool with the last
+		 * reference.
+		 */
+		public void release()
+		{
+			int count = references.decrementAndGet();
+			if (count == 0)
+			{
+				recycle(slabs);
+			}
+			else if (count < 0)
+			{
+				throw new IllegalStateException("Segment " + key + " released too often");
+			}
+		}
+
+		/**
+		 * Get views of the slabs holding the content, e.g. for a gathering write.
+		 * Each call returns new views, so concurrent writers do not share
+		 * positions.
+		 *
+		 * @return Views in read mode, together exactly the content.
+		 */
+		ByteBuffer[] getBuffers()
+		{
+			ByteBuffer[] views = new ByteBuffer[slabs.size()];
+			long remaining = size;
+			for (int index = 0; index < views.length; index++)
+			{
+				ByteBuffer view = slabs.get(index).duplicate();
+				view.flip();
+				view.limit((int) Math.min(remaining, SLAB_SIZE));
+				remaining -= view.limit();
+				views[index] = view;
+			}
+			return views;
+		}
+
+		/**
+		 * Write the content to a blocking channel, straight from the slabs. A
+		 * gathering channel, e.g. a file, receives all slabs in one call.
+		 *
+		 * @param target
+		 *          The channel.
+		 * @throws IOException
+		 *           The content could not be written.
+		 */
+		public void writeTo(WritableByteChannel target) throws IOException
+		{
+			ByteBuffer[] views = getBuffers();
+			if (target instanceof GatheringByteChannel)
+			{
+				GatheringByteChannel gathering = (GatheringByteChannel) target;
+				long written = 0;
+				while (written < size)
+				{
+					written += gathering.write(views);
+				}
+				return;
+			}
+			for (ByteBuffer view : views)
+			{
+				while (view.hasRemaining())
+				{
+					target.write(view);
+				}
+			}
+		}
+	}
+}
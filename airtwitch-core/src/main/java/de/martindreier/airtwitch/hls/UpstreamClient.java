@@ -0,0 +1,269 @@
+/**
+ * UpstreamClient.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.http.HttpTransport;
+
+/**
+ * Fetches playlists and segments from Twitch for the relay, over a small pool
+ * of kept-alive connections. Requests are queued on as many threads as there
+ * are connections, so callers never block and the uplink carries at most that
+ * many transfers at a time. Connect, pool and read timeouts keep a stalled
+ * server from holding a connection for good, and {@link #withDeadline} bounds
+ * the wait of the devices.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+class UpstreamClient implements Closeable
+{
+	/**
+	 * Timeout for connecting to Twitch in milliseconds.
+	 */
+	private static final int							CONNECT_TIMEOUT_MILLIS	= 5000;
+
+	/**
+	 * Timeout for waiting for a free connection in milliseconds.
+	 */
+	private static final int							POOL_TIMEOUT_MILLIS			= 10_000;
+
+	/**
+	 * Timeout for reading from a connection without receiving data, in
+	 * milliseconds.
+	 */
+	private static final int							SOCKET_TIMEOUT_MILLIS		= 10_000;
+
+	/**
+	 * The pooled client.
+	 */
+	private final CloseableHttpClient	client;
+
+	/**
+	 * Transfer threads, one per connection.
+	 */
+	private final ExecutorService			executor;
+
+	/**
+	 * Completes futures which missed their deadline.
+	 */
+	private final ScheduledExecutorService	deadlines	= Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "HLS deadline");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Create a new client.
+	 *
+	 * @param connections
+	 *          Number of connections.
+	 * @throws AirTwitchException
+	 *           The configured HTTP transport cannot be initialized.
+	 */
+	UpstreamClient(int connections) throws AirTwitchException
+	{
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(connections);
+		connectionManager.setDefaultMaxPerRoute(connections);
+		RequestConfig config = RequestConfig.custom().setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+						.setConnectionRequestTimeout(POOL_TIMEOUT_MILLIS).setSocketTimeout(SOCKET_TIMEOUT_MILLIS).build();
+		this.client = HttpTransport.decorate(
+						HttpClients.custom().setConnectionManager(connectionManager).setDefaultRequestConfig(config).build());
+		this.executor = Executors.newFixedThreadPool(connections, runnable -> {
+			Thread thread = new Thread(runnable, "HLS upstream");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Fetch a resource.
+	 *
+	 * @param uri
+	 *          The resource.
+	 * @return Completes with the response. Completes exceptionally if the
+	 *         resource could not be fetched.
+	 */
+	CompletableFuture<Response> fetch(URI uri)
+	{
+		return fetch(uri, (status, body) -> {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = body.read(buffer)) >= 0)
+			{
+				content.write(buffer, 0, read);
+			}
+			return new Response(status, content.toByteArray());
+		});
+	}
+
+	/**
+	 * Fetch a resource and read the body while it arrives, e.g. to store it
+	 * without holding all of it on the heap.
+	 *
+	 * @param uri
+	 *          The resource.
+	 * @param handler
+	 *          Reads the body, on a transfer thread.
+	 * @return Completes with the result of the handler. Completes exceptionally
+	 *         if the resource could not be fetched or the handler failed.
+	 */
+	<T> CompletableFuture<T> fetch(URI uri, BodyHandler<T> handler)
+	{
+		return CompletableFuture.supplyAsync(() -> {
+			try (CloseableHttpResponse response = client.execute(new HttpGet(uri)))
+			{
+				HttpEntity entity = response.getEntity();
+				try (InputStream body = entity == null ? new ByteArrayInputStream(new byte[0]) : entity.getContent())
+				{
+					return handler.handle(response.getStatusLine().getStatusCode(), body);
+				}
+			}
+			catch (IOException exception)
+			{
+				throw new CompletionException(new AirTwitchException("Could not fetch %s", exception, uri));
+			}
+			catch (AirTwitchException exception)
+			{
+				throw new CompletionException(exception);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Limit the wait for a future. The transfer behind the future keeps running
+	 * and ends with the read timeout at the latest.
+	 *
+	 * @param source
+	 *          The future.
+	 * @param millis
+	 *          Deadline in milliseconds.
+	 * @param discard
+	 *          Receives a value which arrives after the deadline, e.g. to release
+	 *          it.
+	 * @return Completes like the source, or exceptionally with an
+	 *         {@link AirTwitchException} when the deadline passed.
+	 */
+	<T> CompletableFuture<T> withDeadline(CompletableFuture<T> source, long millis, Consumer<? super T> discard)
+	{
+		CompletableFuture<T> result = new CompletableFuture<>();
+		ScheduledFuture<?> timer = deadlines.schedule(
+						() -> result.completeExceptionally(new AirTwitchException("No answer from Twitch within %d ms", millis)),
+						millis, TimeUnit.MILLISECONDS);
+		source.whenComplete((value, exception) -> {
+			timer.cancel(false);
+			boolean completed = exception == null ? result.complete(value) : result.completeExceptionally(exception);
+			if (!completed && value != null)
+			{
+				discard.accept(value);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return The transfer threads, e.g. for work depending on a transfer.
+	 */
+	ExecutorService getExecutor()
+	{
+		return executor;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		executor.shutdownNow();
+		deadlines.shutdownNow();
+		client.close();
+	}
+
+	/**
+	 * Reads the body of a response.
+	 */
+	@FunctionalInterface
+	interface BodyHandler<T>
+	{
+		/**
+		 * Read the body.
+		 *
+		 * @param status
+		 *          HTTP status code.
+		 * @param body
+		 *          The body, closed after the call.
+		 * @return The result of the transfer.
+		 */
+		T handle(int status, InputStream body) throws IOException, AirTwitchException;
+	}
+
+	/**
+	 * An upstream response.
+	 */
+	static class Response
+	{
+		/**
+		 * HTTP status code.
+		 */
+		private final int			status;
+
+		/**
+		 * Response body.
+		 */
+		private final byte[]	body;
+
+		Response(int status, byte[] body)
+		{
+			this.status = status;
+			this.body = body;
+		}
+
+		/**
+		 * @return HTTP status code.
+		 */
+		int getStatus()
+		{
+			return status;
+		}
+
+		/**
+		 * @return <code>true</code> for a 2xx status.
+		 */
+		boolean isSuccess()
+		{
+			return status >= 200 && status < 300;
+		}
+
+		/**
+		 * @return Response body.
+		 */
+		byte[] getBody()
+		{
+			return body;
+		}
+	}
+}
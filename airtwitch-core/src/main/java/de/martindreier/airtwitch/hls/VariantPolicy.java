@@ -0,0 +1,173 @@
+/**
+ * VariantPolicy.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import java.util.Objects;
+import java.util.Optional;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+
+/**
+ * Limits for the variants offered to a device in a master playlist. A variant
+ * is allowed if neither its bandwidth nor its picture height exceed the
+ * limits. Audio only variants are never allowed, the devices are screens.
+ * <p>
+ * The bandwidth limit is read from the Java system property
+ * <code>airtwitch.hls.maxBandwidth</code> in bits per second, the height limit
+ * from <code>airtwitch.hls.maxHeight</code> in pixels. Devices which cannot
+ * decode high resolutions are further limited by their model.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class VariantPolicy
+{
+	/**
+	 * Java system property: highest variant bandwidth in bits per second.
+	 */
+	public static final String				PROP_MAX_BANDWIDTH	= "airtwitch.hls.maxBandwidth";
+
+	/**
+	 * Java system property: highest variant picture height in pixels.
+	 */
+	public static final String				PROP_MAX_HEIGHT			= "airtwitch.hls.maxHeight";
+
+	/**
+	 * Policy which allows all video variants.
+	 */
+	public static final VariantPolicy	UNLIMITED						= new VariantPolicy(0, 0);
+
+	/**
+	 * Highest bandwidth in bits per second, <code>0</code> for no limit.
+	 */
+	private final long								maxBandwidth;
+
+	/**
+	 * Highest picture height in pixels, <code>0</code> for no limit.
+	 */
+	private final int									maxHeight;
+
+	/**
+	 * Create a policy.
+	 *
+	 * @param maxBandwidth
+	 *          Highest bandwidth in bits per second, <code>0</code> for no
+	 *          limit.
+	 * @param maxHeight
+	 *          Highest picture height in pixels, <code>0</code> for no limit.
+	 */
+	public VariantPolicy(long maxBandwidth, int maxHeight)
+	{
+		this.maxBandwidth = Math.max(0, maxBandwidth);
+		this.maxHeight = Math.max(0, maxHeight);
+	}
+
+	/**
+	 * Get the policy for a device: the configured limits, further limited by the
+	 * highest resolution the device model can decode.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return The policy.
+	 */
+	public static VariantPolicy forDevice(DeviceInfo device)
+	{
+		int configuredHeight = Integer.getInteger(PROP_MAX_HEIGHT, 0);
+		int deviceHeight = getMaxHeight(device.getCapabilities().getModel().orElse(device.getModel().orElse(null)));
+		int height = configuredHeight == 0 ? deviceHeight
+						: deviceHeight == 0 ? configuredHeight : Math.min(configuredHeight, deviceHeight);
+		return new VariantPolicy(Long.getLong(PROP_MAX_BANDWIDTH, 0), height);
+	}
+
+	/**
+	 * Get the highest picture height a device model can decode.
+	 *
+	 * @param model
+	 *          Model identifier, e.g. "AppleTV3,2". May be <code>null</code>.
+	 * @return Height in pixels, <code>0</code> if not known.
+	 */
+	static int getMaxHeight(String model)
+	{
+		if (model == null || !model.startsWith("AppleTV"))
+		{
+			return 0;
+		}
+		int comma = model.indexOf(',');
+		try
+		{
+			int generation = Integer.parseInt(model.substring("AppleTV".length(), comma < 0 ? model.length() : comma));
+			if (generation <= 2)
+			{
+				return 720;
+			}
+			// AppleTV5 is the fourth generation, AppleTV6 and later decode 4K
+			return generation <= 5 ? 1080 : 2160;
+		}
+		catch (NumberFormatException exception)
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Check a variant against the policy.
+	 *
+	 * @param bandwidth
+	 *          Peak bandwidth of the variant in bits per second, <code>0</code>
+	 *          if not known.
+	 * @param height
+	 *          Picture height of the variant in pixels, <code>0</code> for audio
+	 *          only variants.
+	 * @return <code>true</code> if the variant may be offered.
+	 */
+	public boolean allows(long bandwidth, int height)
+	{
+		if (height <= 0)
+		{
+			return false;
+		}
+		return (maxBandwidth == 0 || bandwidth <= maxBandwidth) && (maxHeight == 0 || height <= maxHeight);
+	}
+
+	/**
+	 * @return Highest bandwidth in bits per second, or empty for no limit.
+	 */
+	public Optional<Long> getMaxBandwidth()
+	{
+		return maxBandwidth == 0 ? Optional.empty() : Optional.of(maxBandwidth);
+	}
+
+	/**
+	 * @return Highest picture height in pixels, or empty for no limit.
+	 */
+	public Optional<Integer> getMaxHeight()
+	{
+		return maxHeight == 0 ? Optional.empty() : Optional.of(maxHeight);
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if (!(other instanceof VariantPolicy))
+		{
+			return false;
+		}
+		VariantPolicy policy = (VariantPolicy) other;
+		return maxBandwidth == policy.maxBandwidth && maxHeight == policy.maxHeight;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash(maxBandwidth, maxHeight);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s, %s", maxHeight == 0 ? "any height" : "up to " + maxHeight + "p",
+						maxBandwidth == 0 ? "any bandwidth" : String.format("up to %.1f Mbit/s", maxBandwidth / 1e6));
+	}
+}
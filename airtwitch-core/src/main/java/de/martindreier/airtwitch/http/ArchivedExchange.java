@@ -0,0 +1,194 @@
+/**
+ * ArchivedExchange.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * A single request and response read from an HTTP archive.
+ *
+ * @see HttpArchiveWriter
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class ArchivedExchange
+{
+	/**
+	 * Time the request was sent, in epoch microseconds.
+	 */
+	private final long			timestampMicros;
+	/**
+	 * Time until the response was received, in microseconds.
+	 */
+	private final int				durationMicros;
+	/**
+	 * Request method.
+	 */
+	private final String		method;
+	/**
+	 * Request URI.
+	 */
+	private final String		uri;
+	/**
+	 * Response status code.
+	 */
+	private final int				status;
+	/**
+	 * Response reason phrase.
+	 */
+	private final String		reason;
+	/**
+	 * Response headers.
+	 */
+	private final Header[]	headers;
+	/**
+	 * Response body. May be <code>null</code>.
+	 */
+	private final byte[]		body;
+
+	/**
+	 * Decode an exchange from an archive record. The buffer must be positioned
+	 * directly after the record length.
+	 *
+	 * @param record
+	 *          Record buffer.
+	 */
+	ArchivedExchange(ByteBuffer record)
+	{
+		timestampMicros = record.getLong();
+		durationMicros = record.getInt();
+		method = readString(record);
+		uri = readString(record);
+		skipBytes(record);
+		status = record.getShort();
+		reason = readString(record);
+		headers = new Header[record.getShort()];
+		for (int index = 0; index < headers.length; index++)
+		{
+			headers[index] = new BasicHeader(readString(record), readString(record));
+		}
+		body = readBytes(record);
+	}
+
+	/**
+	 * Read the method and URI of a record without decoding the full exchange.
+	 *
+	 * @param record
+	 *          Record buffer, positioned directly after the record length.
+	 * @return Array containing method and URI.
+	 */
+	static String[] readRequestLine(ByteBuffer record)
+	{
+		record.position(record.position() + 12);
+		String method = readString(record);
+		String uri = readString(record);
+		return new String[] { method, uri };
+	}
+
+	/**
+	 * Read a length-prefixed UTF-8 string.
+	 */
+	private static String readString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Read a length-prefixed byte array.
+	 */
+	private static byte[] readBytes(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+		if (length < 0)
+		{
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Skip a length-prefixed byte array.
+	 */
+	private static void skipBytes(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+		if (length > 0)
+		{
+			buffer.position(buffer.position() + length);
+		}
+	}
+
+	/**
+	 * @return Time the request was sent, in epoch microseconds.
+	 */
+	public long getTimestampMicros()
+	{
+		return timestampMicros;
+	}
+
+	/**
+	 * @return Time until the response was received, in microseconds.
+	 */
+	public int getDurationMicros()
+	{
+		return durationMicros;
+	}
+
+	/**
+	 * @return The request method.
+	 */
+	public String getMethod()
+	{
+		return method;
+	}
+
+	/**
+	 * @return The request URI.
+	 */
+	public String getUri()
+	{
+		return uri;
+	}
+
+	/**
+	 * @return The response status code.
+	 */
+	public int getStatus()
+	{
+		return status;
+	}
+
+	/**
+	 * @return The response reason phrase.
+	 */
+	public String getReason()
+	{
+		return reason;
+	}
+
+	/**
+	 * @return The response headers.
+	 */
+	public Header[] getHeaders()
+	{
+		return headers.clone();
+	}
+
+	/**
+	 * @return The response body. May be <code>null</code>.
+	 */
+	public byte[] getBody()
+	{
+		return body;
+	}
+}
@@ -0,0 +1,237 @@
+/**
+ * CachingDnsResolver.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+
+/**
+ * DNS resolver which caches resolved addresses for their time to live and
+ * refreshes them in the background before they expire, as long as a host is in
+ * use. Requests therefore only wait for DNS on the very first resolution of a
+ * host. If a refresh fails, the previous addresses are kept for another TTL.
+ * <p>
+ * The Java platform does not expose the TTL of DNS records. The TTL is taken
+ * from the security property <code>networkaddress.cache.ttl</code>, and is 30
+ * seconds if that property is not set.
+ * <p>
+ * With the default {@link SystemDefaultDnsResolver}, the refresh at 80% of the
+ * TTL goes through the address cache of the JVM, which holds its entries for
+ * the full TTL. The refresh therefore does not produce fresh records before
+ * the JVM cache has expired; it keeps the lookup off the request path, not the
+ * records more current. A delegate which queries DNS directly gets fresh
+ * records on every refresh.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class CachingDnsResolver implements DnsResolver
+{
+	/**
+	 * Default time to live in seconds.
+	 */
+	private static final long								DEFAULT_TTL_SECONDS	= 30;
+
+	/**
+	 * Hosts not used for this number of TTLs are no longer refreshed.
+	 */
+	private static final int								IDLE_TTLS						= 20;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger							log									= Logger
+					.getLogger(CachingDnsResolver.class.getName());
+
+	/**
+	 * Resolver performing the actual lookups.
+	 */
+	private final DnsResolver								delegate;
+
+	/**
+	 * Time to live of cache entries in milliseconds.
+	 */
+	private final long											ttlMillis;
+
+	/**
+	 * Cached addresses by host name.
+	 */
+	private final Map<String, Entry>				cache								= new ConcurrentHashMap<>();
+
+	/**
+	 * Background refresh thread.
+	 */
+	private final ScheduledExecutorService	refresher						= Executors.newSingleThreadScheduledExecutor(runnable -> {
+																																	Thread thread = new Thread(runnable, "DNS refresh");
+																																	thread.setDaemon(true);
+																																	return thread;
+																																});
+
+	/**
+	 * Create a resolver using the system resolver and the platform TTL.
+	 */
+	public CachingDnsResolver()
+	{
+		this(SystemDefaultDnsResolver.INSTANCE, determineTtl(), TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Create a resolver.
+	 *
+	 * @param delegate
+	 *          Resolver performing the actual lookups.
+	 * @param ttl
+	 *          Time to live of cache entries.
+	 * @param unit
+	 *          Time unit of the time to live.
+	 */
+	public CachingDnsResolver(DnsResolver delegate, long ttl, TimeUnit unit)
+	{
+		this.delegate = delegate;
+		this.ttlMillis = unit.toMillis(ttl);
+	}
+
+	/**
+	 * @see org.apache.http.conn.DnsResolver#resolve(java.lang.String)
+	 */
+	@Override
+	public InetAddress[] resolve(String host) throws UnknownHostException
+	{
+		Entry entry = cache.get(host);
+		long now = System.currentTimeMillis();
+		if (entry != null && entry.expires > now)
+		{
+			entry.lastUsed = now;
+			return entry.addresses.clone();
+		}
+		InetAddress[] addresses = lookup(host);
+		return addresses.clone();
+	}
+
+	/**
+	 * Resolve hosts in the background, so later requests find them in the cache.
+	 *
+	 * @param hosts
+	 *          Host names.
+	 */
+	public void prefetch(String... hosts)
+	{
+		for (String host : hosts)
+		{
+			refresher.execute(() -> {
+				try
+				{
+					resolve(host);
+				}
+				catch (UnknownHostException exception)
+				{
+					log.warning(() -> String.format("Could not prefetch address of %s: %s", host, exception.getMessage()));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Look up a host and cache the result.
+	 */
+	private InetAddress[] lookup(String host) throws UnknownHostException
+	{
+		InetAddress[] addresses = delegate.resolve(host);
+		Entry previous = cache.put(host, new Entry(addresses, System.currentTimeMillis() + ttlMillis));
+		if (previous == null)
+		{
+			scheduleRefresh(host);
+		}
+		log.fine(() -> String.format("Resolved %s to %d addresses", host, addresses.length));
+		return addresses;
+	}
+
+	/**
+	 * Schedule the refresh of a host shortly before its entry expires.
+	 */
+	private void scheduleRefresh(String host)
+	{
+		refresher.schedule(() -> refresh(host), ttlMillis * 8 / 10, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Refresh a cached host if it is still in use.
+	 */
+	private void refresh(String host)
+	{
+		Entry entry = cache.get(host);
+		if (entry == null)
+		{
+			return;
+		}
+		if (System.currentTimeMillis() - entry.lastUsed > ttlMillis * IDLE_TTLS)
+		{
+			// Unused host, resolve on demand next time
+			cache.remove(host);
+			return;
+		}
+		try
+		{
+			Entry refreshed = new Entry(delegate.resolve(host), System.currentTimeMillis() + ttlMillis);
+			refreshed.lastUsed = entry.lastUsed;
+			cache.put(host, refreshed);
+		}
+		catch (UnknownHostException exception)
+		{
+			log.warning(() -> String.format("Could not refresh address of %s, keeping previous addresses", host));
+			entry.expires = System.currentTimeMillis() + ttlMillis;
+		}
+		scheduleRefresh(host);
+	}
+
+	/**
+	 * Determine the TTL from the security property
+	 * <code>networkaddress.cache.ttl</code>.
+	 */
+	private static long determineTtl()
+	{
+		String property = Security.getProperty("networkaddress.cache.ttl");
+		if (property == null)
+		{
+			return DEFAULT_TTL_SECONDS;
+		}
+		try
+		{
+			long ttl = Long.parseLong(property.trim());
+			return ttl > 0 ? ttl : DEFAULT_TTL_SECONDS;
+		}
+		catch (NumberFormatException exception)
+		{
+			log.fine(() -> String.format("Invalid DNS cache TTL %s, using %d seconds", property, DEFAULT_TTL_SECONDS));
+			return DEFAULT_TTL_SECONDS;
+		}
+	}
+
+	/**
+	 * Cache entry.
+	 */
+	private static class Entry
+	{
+		private final InetAddress[]	addresses;
+		private volatile long				expires;
+		private volatile long				lastUsed	= System.currentTimeMillis();
+
+		Entry(InetAddress[] addresses, long expires)
+		{
+			this.addresses = addresses;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * ConnectionWarmer.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Prepares connections to a set of hosts. Sends a <code>HEAD</code> request to
+ * each host when started, so the pooled client holds an open keep-alive
+ * connection with completed DNS, TCP and TLS setup when the first real request
+ * arrives. Later warm-ups only happen on demand: when a real request follows an
+ * idle period longer than the idle threshold, the connections to the other
+ * hosts are prepared alongside it. An idle client sends no requests.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class ConnectionWarmer implements Closeable
+{
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger				log						= Logger.getLogger(ConnectionWarmer.class.getName());
+
+	/**
+	 * Client to warm up. Should use a pooling connection manager.
+	 */
+	private final CloseableHttpClient	client;
+
+	/**
+	 * Hosts to connect to.
+	 */
+	private final List<URI>						targets;
+
+	/**
+	 * Idle threshold in nanoseconds.
+	 */
+	private final long								idleNanos;
+
+	/**
+	 * Time of the last client activity, from {@link System#nanoTime()}.
+	 */
+	private volatile long							lastActivity	= System.nanoTime();
+
+	/**
+	 * Warm-up thread.
+	 */
+	private final ExecutorService			executor			= Executors.newSingleThreadExecutor(runnable -> {
+																										Thread thread = new Thread(runnable, "Connection warm-up");
+																										thread.setDaemon(true);
+																										return thread;
+																									});
+
+	/**
+	 * Create a new warmer.
+	 *
+	 * @param client
+	 *          Client to warm up. Should use a pooling connection manager.
+	 * @param targets
+	 *          Base URIs of the hosts to connect to.
+	 * @param idleThreshold
+	 *          Idle time after which the next request warms up the connections
+	 *          again.
+	 * @param unit
+	 *          Time unit of the idle threshold.
+	 */
+	public ConnectionWarmer(CloseableHttpClient client, Collection<URI> targets, long idleThreshold, TimeUnit unit)
+	{
+		this.client = client;
+		this.targets = new ArrayList<>(targets);
+		this.idleNanos = unit.toNanos(idleThreshold);
+	}
+
+	/**
+	 * Warm up the connections to all targets in the background.
+	 */
+	public void start()
+	{
+		lastActivity = System.nanoTime();
+		executor.execute(() -> warmUp(null));
+	}
+
+	/**
+	 * Record client activity. Should be called for every request sent through
+	 * the client. If the client was idle for longer than the idle threshold, the
+	 * connections to the other targets are warmed up in the background, as they
+	 * are likely to be used next.
+	 *
+	 * @param request
+	 *          URI of the request about to be sent.
+	 */
+	public void touch(URI request)
+	{
+		long now = System.nanoTime();
+		long idle = now - lastActivity;
+		lastActivity = now;
+		if (idle > idleNanos)
+		{
+			log.fine(() -> String.format("Client idle for %d s, warming up connections",
+							TimeUnit.NANOSECONDS.toSeconds(idle)));
+			executor.execute(() -> warmUp(request.getHost()));
+		}
+	}
+
+	/**
+	 * Send a warm-up request to every target.
+	 *
+	 * @param skipHost
+	 *          Host not to warm up because a real request is sent to it. May be
+	 *          <code>null</code>.
+	 */
+	private void warmUp(String skipHost)
+	{
+		for (URI target : targets)
+		{
+			if (Objects.equals(target.getHost(), skipHost))
+			{
+				continue;
+			}
+			long start = System.nanoTime();
+			try (CloseableHttpResponse response = client.execute(new HttpHead(target)))
+			{
+				// Return the connection to the pool
+				EntityUtils.consume(response.getEntity());
+				log.fine(() -> String.format("Warmed up connection to %s in %d ms (%s)", target.getHost(),
+								TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), response.getStatusLine()));
+			}
+			catch (IOException exception)
+			{
+				log.warning(() -> String.format("Could not warm up connection to %s: %s", target, exception.getMessage()));
+			}
+		}
+	}
+
+	/**
+	 * Stop warming up connections.
+	 */
+	@Override
+	public void close()
+	{
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,279 @@
+/**
+ * HttpArchiveReader.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Reader for HTTP archives written by {@link HttpArchiveWriter}. The archive is
+ * memory-mapped and indexed once when opening; exchanges are only decoded when
+ * they are requested.
+ * <p>
+ * Requests are matched by method, path and query. Query parameters which change
+ * on every request (random cache busters, access tokens) can be excluded from
+ * matching. If the same request was recorded several times, the recorded
+ * responses are returned in order, and the last one is repeated once all have
+ * been served.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class HttpArchiveReader implements Closeable
+{
+	/**
+	 * Query parameters ignored by default when matching requests.
+	 */
+	public static final Collection<String>	DEFAULT_IGNORED_PARAMETERS	= Arrays.asList("p", "token", "sig");
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger							log													= Logger
+					.getLogger(HttpArchiveReader.class.getName());
+
+	/**
+	 * Mapped archive content, <code>null</code> once closed.
+	 */
+	private MappedByteBuffer								archive;
+
+	/**
+	 * Query parameters excluded from request matching.
+	 */
+	private final Set<String>								ignoredParameters;
+
+	/**
+	 * Record offsets by full request key.
+	 */
+	private final Map<String, Cursor>				byRequest										= new HashMap<>();
+
+	/**
+	 * Record offsets by method and path only, used when no exact match exists.
+	 */
+	private final Map<String, Cursor>				byPath											= new HashMap<>();
+
+	/**
+	 * Number of records in the archive.
+	 */
+	private int															recordCount;
+
+	/**
+	 * Open and index an archive, using the default set of ignored query
+	 * parameters.
+	 *
+	 * @param archiveFile
+	 *          The archive file.
+	 * @throws IOException
+	 *           Error reading the archive.
+	 */
+	public HttpArchiveReader(Path archiveFile) throws IOException
+	{
+		this(archiveFile, DEFAULT_IGNORED_PARAMETERS);
+	}
+
+	/**
+	 * Open and index an archive.
+	 *
+	 * @param archiveFile
+	 *          The archive file.
+	 * @param ignoredParameters
+	 *          Query parameters to exclude from request matching.
+	 * @throws IOException
+	 *           Error reading the archive.
+	 */
+	public HttpArchiveReader(Path archiveFile, Collection<String> ignoredParameters) throws IOException
+	{
+		this.ignoredParameters = new HashSet<>(ignoredParameters);
+		try (FileChannel channel = FileChannel.open(archiveFile, StandardOpenOption.READ))
+		{
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				throw new IOException(String.format("Archive %s exceeds 2 GiB", archiveFile));
+			}
+			archive = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (archive.remaining() < HttpArchiveWriter.HEADER_SIZE || archive.getInt() != HttpArchiveWriter.MAGIC)
+		{
+			throw new IOException(String.format("%s is not an HTTP archive", archiveFile));
+		}
+		short version = archive.getShort();
+		if (version != HttpArchiveWriter.VERSION)
+		{
+			throw new IOException(String.format("Unsupported archive version %d in %s", version, archiveFile));
+		}
+		buildIndex();
+		log.info(() -> String.format("Indexed %d recorded exchanges from %s", recordCount, archiveFile));
+	}
+
+	/**
+	 * Scan all records and index their offsets.
+	 */
+	private void buildIndex()
+	{
+		ByteBuffer scan = archive.duplicate();
+		scan.position(HttpArchiveWriter.HEADER_SIZE);
+		while (scan.remaining() >= 4)
+		{
+			int length = scan.getInt();
+			int offset = scan.position();
+			if (length <= 0 || length > scan.remaining())
+			{
+				log.warning(() -> String.format("Truncated record at offset %d, ignoring rest of archive", offset));
+				break;
+			}
+			String[] requestLine = ArchivedExchange.readRequestLine(scan);
+			byRequest.computeIfAbsent(requestKey(requestLine[0], requestLine[1]), key -> new Cursor()).add(offset);
+			byPath.computeIfAbsent(pathKey(requestLine[0], requestLine[1]), key -> new Cursor()).add(offset);
+			scan.position(offset + length);
+			recordCount++;
+		}
+	}
+
+	/**
+	 * Find the next recorded exchange for a request.
+	 *
+	 * @param method
+	 *          Request method.
+	 * @param uri
+	 *          Request URI.
+	 * @return The recorded exchange, or an empty {@link Optional} if the request
+	 *         was never recorded.
+	 * @throws IOException
+	 *           The reader is closed.
+	 */
+	public synchronized Optional<ArchivedExchange> next(String method, String uri) throws IOException
+	{
+		if (archive == null)
+		{
+			throw new IOException("HTTP archive is closed");
+		}
+		Cursor cursor = byRequest.get(requestKey(method, uri));
+		if (cursor == null)
+		{
+			cursor = byPath.get(pathKey(method, uri));
+		}
+		if (cursor == null)
+		{
+			return Optional.empty();
+		}
+		ByteBuffer record = archive.duplicate();
+		record.position(cursor.next());
+		return Optional.of(new ArchivedExchange(record));
+	}
+
+	/**
+	 * Get the number of records in the archive.
+	 *
+	 * @return The record count.
+	 */
+	public int getRecordCount()
+	{
+		return recordCount;
+	}
+
+	/**
+	 * Build the matching key for a request from method, path and relevant query
+	 * parameters.
+	 */
+	private String requestKey(String method, String uri)
+	{
+		URI parsed = URI.create(uri);
+		String query = parsed.getRawQuery() == null ? ""
+						: Arrays.stream(parsed.getRawQuery().split("&"))
+										.filter(parameter -> !ignoredParameters.contains(parameter.split("=", 2)[0])).sorted()
+										.collect(Collectors.joining("&"));
+		return method + " " + parsed.getRawPath() + "?" + query;
+	}
+
+	/**
+	 * Build the fallback matching key for a request from method and path.
+	 */
+	private static String pathKey(String method, String uri)
+	{
+		return method + " " + URI.create(uri).getRawPath();
+	}
+
+	/**
+	 * Release the mapping of the archive. Exchanges returned before stay valid,
+	 * as they are copied out of the mapping. The mapping is only unmapped right
+	 * away on Java 8, see {@link #unmap(MappedByteBuffer)}.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (archive != null)
+		{
+			unmap(archive);
+			archive = null;
+		}
+	}
+
+	/**
+	 * Unmap a buffer right away instead of waiting for garbage collection. This
+	 * is best-effort and only works on Java 8: the platform offers no API for it,
+	 * so the cleaner of the JDK buffer implementation is invoked by reflection.
+	 * From Java 9 on the module system denies that access, and the mapping, and
+	 * on Windows the lock on the archive file, is only released once the buffer
+	 * is collected.
+	 */
+	private static void unmap(MappedByteBuffer buffer)
+	{
+		try
+		{
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null)
+			{
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		}
+		catch (ReflectiveOperationException | RuntimeException exception)
+		{
+			log.log(Level.FINE, "Could not unmap HTTP archive, leaving it to garbage collection", exception);
+		}
+	}
+
+	/**
+	 * Ordered record offsets for one request key.
+	 */
+	private static class Cursor
+	{
+		private final List<Integer>	offsets	= new ArrayList<>(1);
+		private int									position;
+
+		void add(int offset)
+		{
+			offsets.add(offset);
+		}
+
+		int next()
+		{
+			int offset = offsets.get(Math.min(position, offsets.size() - 1));
+			position++;
+			return offset;
+		}
+	}
+}
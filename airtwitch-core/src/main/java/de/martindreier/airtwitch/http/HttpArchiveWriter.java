@@ -0,0 +1,191 @@
+/**
+ * HttpArchiveWriter.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.apache.http.Header;
+
+/**
+ * Append-only writer for HTTP archives. Each exchange is written as a single
+ * length-prefixed record, so an archive can be extended by several recording
+ * sessions and read back without a separate index file.
+ * <p>
+ * File layout:
+ *
+ * <pre>
+ * header: int magic, short version
+ * record: int length (of the remaining record),
+ *         long timestamp (epoch microseconds), int duration (microseconds),
+ *         string method, string uri, bytes request body,
+ *         short status, string reason,
+ *         short header count, (string name, string value)*,
+ *         bytes response body
+ * string: int length, UTF-8 bytes
+ * bytes:  int length (-1 for no content), raw bytes
+ * </pre>
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class HttpArchiveWriter implements Closeable
+{
+	/**
+	 * Magic number identifying an archive ("ATHA").
+	 */
+	static final int					MAGIC			= 0x41544841;
+
+	/**
+	 * Archive format version.
+	 */
+	static final short				VERSION		= 1;
+
+	/**
+	 * Size of the file header in bytes.
+	 */
+	static final int					HEADER_SIZE		= 6;
+
+	/**
+	 * Target file channel, opened for appending.
+	 */
+	private final FileChannel	channel;
+
+	/**
+	 * Open an archive for appending. A new archive file is created if it does
+	 * not exist yet.
+	 *
+	 * @param archiveFile
+	 *          The archive file.
+	 * @throws IOException
+	 *           Error opening the archive file.
+	 */
+	public HttpArchiveWriter(Path archiveFile) throws IOException
+	{
+		channel = FileChannel.open(archiveFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.APPEND);
+		if (channel.size() == 0)
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putShort(VERSION).flip();
+			writeFully(header);
+		}
+	}
+
+	/**
+	 * Append an exchange to the archive.
+	 *
+	 * @param timestampMillis
+	 *          Time the request was sent, in epoch milliseconds.
+	 * @param durationNanos
+	 *          Time until the response was received, in nanoseconds.
+	 * @param method
+	 *          Request method.
+	 * @param uri
+	 *          Request URI.
+	 * @param requestBody
+	 *          Request body. May be <code>null</code>.
+	 * @param status
+	 *          Response status code.
+	 * @param reason
+	 *          Response reason phrase. May be <code>null</code>.
+	 * @param headers
+	 *          Response headers.
+	 * @param responseBody
+	 *          Response body. May be <code>null</code>.
+	 * @throws IOException
+	 *           Error writing to the archive.
+	 */
+	public synchronized void write(long timestampMillis, long durationNanos, String method, String uri,
+					byte[] requestBody, int status, String reason, Header[] headers, byte[] responseBody) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(256 + length(requestBody) + length(responseBody));
+		DataOutputStream out = new DataOutputStream(buffer);
+		out.writeInt(0);
+		out.writeLong(timestampMillis * 1000);
+		out.writeInt((int) Math.min(Integer.MAX_VALUE, durationNanos / 1000));
+		writeString(out, method);
+		writeString(out, uri);
+		writeBytes(out, requestBody);
+		out.writeShort(status);
+		writeString(out, reason == null ? "" : reason);
+		out.writeShort(headers.length);
+		for (Header header : headers)
+		{
+			writeString(out, header.getName());
+			writeString(out, header.getValue());
+		}
+		writeBytes(out, responseBody);
+		out.flush();
+
+		ByteBuffer record = ByteBuffer.wrap(buffer.toByteArray());
+		record.putInt(0, record.remaining() - 4);
+		writeFully(record);
+	}
+
+	/**
+	 * Write the complete buffer to the archive.
+	 *
+	 * @param buffer
+	 *          Buffer to write.
+	 * @throws IOException
+	 *           Error writing to the archive.
+	 */
+	private void writeFully(ByteBuffer buffer) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Write a length-prefixed UTF-8 string.
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Write a length-prefixed byte array. <code>null</code> is written as length
+	 * <code>-1</code>.
+	 */
+	private static void writeBytes(DataOutputStream out, byte[] value) throws IOException
+	{
+		if (value == null)
+		{
+			out.writeInt(-1);
+		}
+		else
+		{
+			out.writeInt(value.length);
+			out.write(value);
+		}
+	}
+
+	/**
+	 * Length of a byte array which may be <code>null</code>.
+	 */
+	private static int length(byte[] value)
+	{
+		return value == null ? 0 : value.length;
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		channel.close();
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * HttpTransport.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+import org.apache.http.impl.client.CloseableHttpClient;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Selects the HTTP transport used by the Twitch client and the stream control.
+ * By default requests go to the network unchanged. The transport can be
+ * switched with Java system properties:
+ * <ul>
+ * <li><code>airtwitch.http.record</code>: Path of an archive file. All
+ * exchanges are appended to this file.</li>
+ * <li><code>airtwitch.http.replay</code>: Path of an archive file. All
+ * responses are served from this file, the network is not used.</li>
+ * <li><code>airtwitch.http.replaySpeed</code>: Replay speed factor, default
+ * <code>1.0</code>. <code>0</code> replays without delays.</li>
+ * </ul>
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public final class HttpTransport
+{
+	/**
+	 * Java system property: archive file for recording.
+	 */
+	public static final String				PROP_RECORD				= "airtwitch.http.record";
+
+	/**
+	 * Java system property: archive file for replay.
+	 */
+	public static final String				PROP_REPLAY				= "airtwitch.http.replay";
+
+	/**
+	 * Java system property: replay speed factor.
+	 */
+	public static final String				PROP_REPLAY_SPEED	= "airtwitch.http.replaySpeed";
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger				log								= Logger.getLogger(HttpTransport.class.getName());
+
+	/**
+	 * Shared archive writer, if recording.
+	 */
+	private static HttpArchiveWriter	recorder;
+
+	/**
+	 * Shared archive reader, if replaying.
+	 */
+	private static HttpArchiveReader	replay;
+
+	private HttpTransport()
+	{
+		// Static access only
+	}
+
+	/**
+	 * Apply the configured transport to a client.
+	 *
+	 * @param client
+	 *          The network client.
+	 * @return The client to use. This is the given client if neither recording
+	 *         nor replay is configured.
+	 * @throws AirTwitchException
+	 *           The configured archive cannot be opened.
+	 */
+	public static synchronized CloseableHttpClient decorate(CloseableHttpClient client) throws AirTwitchException
+	{
+		String replayFile = System.getProperty(PROP_REPLAY);
+		String recordFile = System.getProperty(PROP_RECORD);
+		try
+		{
+			if (replayFile != null)
+			{
+				if (replay == null)
+				{
+					replay = new HttpArchiveReader(Paths.get(replayFile));
+				}
+				client.close();
+				double speed = Double.parseDouble(System.getProperty(PROP_REPLAY_SPEED, "1.0"));
+				return new ReplayHttpClient(replay, speed);
+			}
+			else if (recordFile != null)
+			{
+				if (recorder == null)
+				{
+					recorder = new HttpArchiveWriter(Paths.get(recordFile));
+					log.info(() -> String.format("Recording HTTP exchanges to %s", recordFile));
+				}
+				return new RecordingHttpClient(client, recorder);
+			}
+			return client;
+		}
+		catch (IOException | NumberFormatException exception)
+		{
+			throw new AirTwitchException("Could not initialize HTTP transport", exception);
+		}
+	}
+
+	/**
+	 * Check whether requests go to the network unchanged.
+	 *
+	 * @return <code>true</code> if neither recording nor replay is configured.
+	 */
+	public static boolean isPassthrough()
+	{
+		return System.getProperty(PROP_REPLAY) == null && System.getProperty(PROP_RECORD) == null;
+	}
+
+	/**
+	 * Close the shared archives.
+	 *
+	 * @throws IOException
+	 *           Error closing an archive.
+	 */
+	public static synchronized void close() throws IOException
+	{
+		try
+		{
+			if (recorder != null)
+			{
+				recorder.close();
+				recorder = null;
+			}
+		}
+		finally
+		{
+			if (replay != null)
+			{
+				replay.close();
+				replay = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ * RecordingHttpClient.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.StatusLine;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * HTTP client which passes all requests to a delegate and writes every
+ * exchange, including its timing, to an HTTP archive. Response bodies are
+ * buffered, so the returned responses can be consumed as usual.
+ *
+ * @see HttpTransport
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+@SuppressWarnings("deprecation")
+public class RecordingHttpClient extends CloseableHttpClient
+{
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger				log	= Logger.getLogger(RecordingHttpClient.class.getName());
+
+	/**
+	 * Client executing the requests.
+	 */
+	private final CloseableHttpClient	delegate;
+
+	/**
+	 * Archive receiving the exchanges.
+	 */
+	private final HttpArchiveWriter		archive;
+
+	/**
+	 * Create a recording client.
+	 *
+	 * @param delegate
+	 *          Client executing the requests.
+	 * @param archive
+	 *          Archive receiving the exchanges. Not closed by this client.
+	 */
+	public RecordingHttpClient(CloseableHttpClient delegate, HttpArchiveWriter archive)
+	{
+		if (delegate == null || archive == null)
+		{
+			throw new IllegalArgumentException("Delegate client and archive must not be null");
+		}
+		this.delegate = delegate;
+		this.archive = archive;
+	}
+
+	/**
+	 * @see org.apache.http.impl.client.CloseableHttpClient#doExecute(org.apache.http.HttpHost,
+	 *      org.apache.http.HttpRequest, org.apache.http.protocol.HttpContext)
+	 */
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+					throws IOException, ClientProtocolException
+	{
+		byte[] requestBody = bufferRequestBody(request);
+		long timestamp = System.currentTimeMillis();
+		long start = System.nanoTime();
+		CloseableHttpResponse response = delegate.execute(target, request, context);
+		byte[] responseBody = bufferResponseBody(response);
+		long duration = System.nanoTime() - start;
+
+		StatusLine status = response.getStatusLine();
+		try
+		{
+			archive.write(timestamp, duration, request.getRequestLine().getMethod(), requestUri(target, request),
+							requestBody, status.getStatusCode(), status.getReasonPhrase(), response.getAllHeaders(), responseBody);
+		}
+		catch (IOException exception)
+		{
+			// Recording must never break the actual request
+			log.log(Level.WARNING, "Could not record HTTP exchange", exception);
+		}
+		return response;
+	}
+
+	/**
+	 * Buffer the request entity, if any, so it can be both recorded and sent.
+	 *
+	 * @return Request body, or <code>null</code> if the request has none.
+	 */
+	private static byte[] bufferRequestBody(HttpRequest request) throws IOException
+	{
+		if (request instanceof HttpEntityEnclosingRequest)
+		{
+			HttpEntityEnclosingRequest enclosingRequest = (HttpEntityEnclosingRequest) request;
+			HttpEntity entity = enclosingRequest.getEntity();
+			if (entity != null)
+			{
+				byte[] body = EntityUtils.toByteArray(entity);
+				enclosingRequest.setEntity(copyEntity(entity, body));
+				return body;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Buffer the response entity, if any, and replace it by a repeatable copy.
+	 *
+	 * @return Response body, or <code>null</code> if the response has none.
+	 */
+	private static byte[] bufferResponseBody(CloseableHttpResponse response) throws IOException
+	{
+		HttpEntity entity = response.getEntity();
+		if (entity == null)
+		{
+			return null;
+		}
+		byte[] body = EntityUtils.toByteArray(entity);
+		response.setEntity(copyEntity(entity, body));
+		return body;
+	}
+
+	/**
+	 * Create a repeatable entity with the content and metadata of the original.
+	 */
+	private static HttpEntity copyEntity(HttpEntity original, byte[] content)
+	{
+		ByteArrayEntity copy = new ByteArrayEntity(content);
+		copy.setContentType(original.getContentType());
+		copy.setContentEncoding(original.getContentEncoding());
+		copy.setChunked(original.isChunked());
+		return copy;
+	}
+
+	/**
+	 * Determine the absolute request URI.
+	 */
+	private static String requestUri(HttpHost target, HttpRequest request)
+	{
+		if (request instanceof HttpUriRequest && ((HttpUriRequest) request).getURI().isAbsolute())
+		{
+			return ((HttpUriRequest) request).getURI().toString();
+		}
+		String uri = request.getRequestLine().getUri();
+		return target == null ? uri : target.toURI() + uri;
+	}
+
+	/**
+	 * @see org.apache.http.client.HttpClient#getParams()
+	 */
+	@Override
+	public org.apache.http.params.HttpParams getParams()
+	{
+		return delegate.getParams();
+	}
+
+	/**
+	 * @see org.apache.http.client.HttpClient#getConnectionManager()
+	 */
+	@Override
+	public org.apache.http.conn.ClientConnectionManager getConnectionManager()
+	{
+		return delegate.getConnectionManager();
+	}
+
+	/**
+	 * Close the delegate client. The archive remains open.
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		delegate.close();
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * ReplayHttpClient.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * HTTP client serving responses from an HTTP archive instead of the network.
+ * Each response is delayed by its recorded duration divided by the replay
+ * speed. A speed of <code>0</code> replays without any delay.
+ *
+ * @see HttpTransport
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+@SuppressWarnings("deprecation")
+public class ReplayHttpClient extends CloseableHttpClient
+{
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger																	log	= Logger.getLogger(ReplayHttpClient.class.getName());
+
+	/**
+	 * Archive providing the responses.
+	 */
+	private final HttpArchiveReader															archive;
+
+	/**
+	 * Replay speed factor.
+	 */
+	private final double																				speed;
+
+	/**
+	 * Connection manager reported by {@link #getConnectionManager()}. Never
+	 * used, as no connections are opened.
+	 */
+	private final org.apache.http.conn.ClientConnectionManager	connectionManager;
+
+	/**
+	 * Create a replaying client.
+	 *
+	 * @param archive
+	 *          Archive providing the responses. Not closed by this client.
+	 * @param speed
+	 *          Replay speed factor: <code>1.0</code> replays at recorded speed,
+	 *          larger values accelerate the replay, <code>0</code> disables all
+	 *          delays.
+	 */
+	public ReplayHttpClient(HttpArchiveReader archive, double speed)
+	{
+		if (archive == null)
+		{
+			throw new IllegalArgumentException("Archive must not be null");
+		}
+		if (speed < 0)
+		{
+			throw new IllegalArgumentException("Replay speed must not be negative");
+		}
+		this.archive = archive;
+		this.speed = speed;
+		this.connectionManager = new org.apache.http.impl.conn.BasicClientConnectionManager();
+	}
+
+	/**
+	 * @see org.apache.http.impl.client.CloseableHttpClient#doExecute(org.apache.http.HttpHost,
+	 *      org.apache.http.HttpRequest, org.apache.http.protocol.HttpContext)
+	 */
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+					throws IOException, ClientProtocolException
+	{
+		String method = request.getRequestLine().getMethod();
+		String uri = request instanceof HttpUriRequest ? ((HttpUriRequest) request).getURI().toString()
+						: request.getRequestLine().getUri();
+		Optional<ArchivedExchange> recorded = archive.next(method, uri);
+		if (!recorded.isPresent())
+		{
+			log.warning(() -> String.format("No recorded response for %s %s", method, uri));
+			return new ReplayedResponse(404, "No recorded response");
+		}
+		ArchivedExchange exchange = recorded.get();
+		delay(exchange.getDurationMicros());
+
+		ReplayedResponse response = new ReplayedResponse(exchange.getStatus(), exchange.getReason());
+		response.setHeaders(exchange.getHeaders());
+		if (exchange.getBody() != null)
+		{
+			ByteArrayEntity entity = new ByteArrayEntity(exchange.getBody());
+			Header contentType = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+			entity.setContentType(contentType);
+			response.setEntity(entity);
+		}
+		return response;
+	}
+
+	/**
+	 * Wait for the scaled recorded duration.
+	 *
+	 * @param durationMicros
+	 *          Recorded duration.
+	 * @throws InterruptedIOException
+	 *           Interrupted while waiting.
+	 */
+	private void delay(int durationMicros) throws InterruptedIOException
+	{
+		if (speed == 0)
+		{
+			return;
+		}
+		try
+		{
+			TimeUnit.MICROSECONDS.sleep((long) (durationMicros / speed));
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during replay delay");
+		}
+	}
+
+	/**
+	 * @see org.apache.http.client.HttpClient#getParams()
+	 */
+	@Override
+	public org.apache.http.params.HttpParams getParams()
+	{
+		return new org.apache.http.params.BasicHttpParams();
+	}
+
+	/**
+	 * @see org.apache.http.client.HttpClient#getConnectionManager()
+	 */
+	@Override
+	public org.apache.http.conn.ClientConnectionManager getConnectionManager()
+	{
+		return connectionManager;
+	}
+
+	/**
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		// Archive is owned by the transport
+		connectionManager.shutdown();
+	}
+
+	/**
+	 * Response constructed from an archive record.
+	 */
+	private static class ReplayedResponse extends BasicHttpResponse implements CloseableHttpResponse
+	{
+		ReplayedResponse(int status, String reason)
+		{
+			super(HttpVersion.HTTP_1_1, status, reason);
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			// No-Op
+		}
+	}
+}
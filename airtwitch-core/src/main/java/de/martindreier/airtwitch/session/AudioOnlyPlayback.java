@@ -0,0 +1,189 @@
+/**
+ * AudioOnlyPlayback.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Logger;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.Capability;
+import de.martindreier.airtwitch.airplay.DeviceHealthMonitor;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.airplay.StreamControl;
+import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * Plays only the sound of a channel, e.g. for background music. The audio only
+ * stream needs a fraction of the bandwidth of even the lowest video stream.
+ * Receivers which handle audio best are preferred: devices announcing more of
+ * the audio capabilities first, then healthy devices.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class AudioOnlyPlayback
+{
+	/**
+	 * Capabilities which make a receiver better suited for audio.
+	 */
+	private static final Capability[]		AUDIO_CAPABILITIES	= { Capability.AUDIO, Capability.AUDIO_REDUNDANT,
+					Capability.AUDIO_FORMATS };
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger					log									= Logger
+					.getLogger(AudioOnlyPlayback.class.getName());
+
+	/**
+	 * The channel.
+	 */
+	private final Channel										channel;
+
+	/**
+	 * The audio only stream.
+	 */
+	private final LiveStream								stream;
+
+	/**
+	 * The video stream with the lowest bandwidth, if the channel has one.
+	 */
+	private final Optional<LiveStream>			lowestVideo;
+
+	/**
+	 * Create a new audio playback.
+	 *
+	 * @param channel
+	 *          The channel.
+	 * @param stream
+	 *          The audio only stream.
+	 * @param lowestVideo
+	 *          The video stream with the lowest bandwidth.
+	 */
+	AudioOnlyPlayback(Channel channel, LiveStream stream, Optional<LiveStream> lowestVideo)
+	{
+		this.channel = channel;
+		this.stream = stream;
+		this.lowestVideo = lowestVideo;
+	}
+
+	/**
+	 * Resolve the audio only stream of a channel.
+	 *
+	 * @param channel
+	 *          The channel.
+	 * @return The audio playback.
+	 * @throws AirTwitchException
+	 *           The streams could not be resolved, or the channel has no audio
+	 *           only stream.
+	 */
+	public static AudioOnlyPlayback resolve(Channel channel) throws AirTwitchException
+	{
+		channel.requestChannelToken();
+		List<LiveStream> streams = channel.getLiveStreams();
+		LiveStream audio = streams.stream().filter(LiveStream::isAudioOnly).findFirst()
+						.orElseThrow(() -> new AirTwitchException("Channel %s has no audio only stream", channel.getName()));
+		Optional<LiveStream> lowestVideo = streams.stream()
+						.filter(stream -> !stream.isAudioOnly() && stream.getBandwidth() > 0)
+						.min(Comparator.comparingLong(LiveStream::getBandwidth));
+		return new AudioOnlyPlayback(channel, audio, lowestVideo);
+	}
+
+	/**
+	 * Order receivers by their suitability for audio.
+	 *
+	 * @param devices
+	 *          The receivers.
+	 * @return The receivers, best first.
+	 */
+	public static List<DeviceInfo> rankDevices(Collection<DeviceInfo> devices)
+	{
+		List<DeviceInfo> ranked = new ArrayList<>(devices);
+		ranked.sort(Comparator.comparingInt(AudioOnlyPlayback::getAudioScore).reversed()
+						.thenComparing(DeviceHealthMonitor.getInstance().getRanking()));
+		return ranked;
+	}
+
+	/**
+	 * @return Number of audio capabilities of the device.
+	 */
+	private static int getAudioScore(DeviceInfo device)
+	{
+		int score = 0;
+		for (Capability capability : AUDIO_CAPABILITIES)
+		{
+			if (device.hasCapability(capability))
+			{
+				score++;
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * @return The audio only stream.
+	 */
+	public LiveStream getStream()
+	{
+		return stream;
+	}
+
+	/**
+	 * @return The video stream with the lowest bandwidth, or empty if the
+	 *         channel has none with a known bandwidth.
+	 */
+	public Optional<LiveStream> getLowestVideo()
+	{
+		return lowestVideo;
+	}
+
+	/**
+	 * Get the data saved by playing the audio only stream instead of the lowest
+	 * video stream, based on the peak bandwidths from the master playlist.
+	 *
+	 * @return Saved bytes per hour, <code>0</code> if not known.
+	 */
+	public long getSavedBytesPerHour()
+	{
+		if (!lowestVideo.isPresent() || stream.getBandwidth() == 0)
+		{
+			return 0;
+		}
+		return Math.max(0, lowestVideo.get().getBandwidth() - stream.getBandwidth()) / 8 * 3600;
+	}
+
+	/**
+	 * Play the audio only stream on a device.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return Control for the playback.
+	 * @throws AirTwitchException
+	 *           The stream could not be played.
+	 */
+	public StreamControl play(DeviceInfo device) throws AirTwitchException
+	{
+		StreamControl control = device.createStream(stream.getStreamUri());
+		control.play();
+		log.info(() -> String.format("Playing %s on %s: %s", channel.getName(), device.getName(), this));
+		return control;
+	}
+
+	@Override
+	public String toString()
+	{
+		if (getSavedBytesPerHour() == 0)
+		{
+			return String.format("audio only at %d kbit/s", stream.getBandwidth() / 1000);
+		}
+		return String.format("audio only at %d kbit/s, saves %.0f MB per hour compared with %s",
+						stream.getBandwidth() / 1000, getSavedBytesPerHour() / 1e6, lowestVideo.get().getTitle());
+	}
+}
@@ -0,0 +1,423 @@
+/**
+ * ChannelZapper.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.airplay.StreamControl;
+import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * Fast channel switching on a single device. The zapper keeps a small ring of
+ * warm sessions for the channels next to the current one in the lineup and for
+ * all favourite channels. A warm session holds a fresh channel token, the
+ * resolved stream list and a stream control for the device, so switching to
+ * that channel only needs the <code>/play</code> command. The device replaces
+ * the running stream, a separate <code>/stop</code> is not required.
+ * <p>
+ * Creating a stream control does not connect to the device, so each prepared
+ * session queries the playback state once to open the shared connection. A
+ * timer prepares expired sessions again and queries the device before its
+ * connection is closed as idle.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class ChannelZapper implements Closeable
+{
+	/**
+	 * Warm sessions older than this are prepared again, as the channel token may
+	 * have expired.
+	 */
+	private static final long									MAX_SESSION_AGE_MILLIS	= TimeUnit.MINUTES.toMillis(5);
+
+	/**
+	 * Interval of the refresh timer. Below the idle time of the device
+	 * connections.
+	 */
+	private static final long									REFRESH_MILLIS					= TimeUnit.SECONDS.toMillis(30);
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger								log											= Logger.getLogger(ChannelZapper.class.getName());
+
+	/**
+	 * Target device.
+	 */
+	private final DeviceInfo									device;
+
+	/**
+	 * Preferred stream title, e.g. "720p60". May be <code>null</code>.
+	 */
+	private final String											preferredStream;
+
+	/**
+	 * Channels to step through with {@link #next()} and {@link #previous()}.
+	 */
+	private List<Channel>											lineup									= new ArrayList<>();
+
+	/**
+	 * Favourite channels by channel ID, kept warm at all times. Keyed by ID, as
+	 * every search creates new channel instances.
+	 */
+	private final Map<String, Channel>				favourites							= new LinkedHashMap<>();
+
+	/**
+	 * Warm sessions by channel ID.
+	 */
+	private final Map<String, WarmSession>		sessions								= new ConcurrentHashMap<>();
+
+	/**
+	 * IDs of the channels currently being prepared in the background.
+	 */
+	private final Set<String>									preparing								= ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Background preparation of warm sessions and the refresh timer.
+	 */
+	private final ScheduledExecutorService		preparation							= Executors.newScheduledThreadPool(2, runnable -> {
+		Thread thread = new Thread(runnable, "Zap session preparation");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Age in milliseconds after which a warm session is prepared again.
+	 */
+	private final long												maxSessionAgeMillis;
+
+	/**
+	 * IDs of the channels which should currently be kept warm.
+	 */
+	private Set<String>												wanted									= new LinkedHashSet<>();
+
+	/**
+	 * Currently playing channel.
+	 */
+	private Channel														current;
+
+	/**
+	 * Create a new zapper.
+	 *
+	 * @param device
+	 *          Target device.
+	 * @param preferredStream
+	 *          Title of the preferred stream, e.g. "720p60". If a channel has no
+	 *          stream with this title, its first stream is used. May be
+	 *          <code>null</code>.
+	 */
+	public ChannelZapper(DeviceInfo device, String preferredStream)
+	{
+		this(device, preferredStream, MAX_SESSION_AGE_MILLIS, REFRESH_MILLIS);
+	}
+
+	/**
+	 * Create a new zapper with custom timings.
+	 *
+	 * @param device
+	 *          Target device.
+	 * @param preferredStream
+	 *          Title of the preferred stream. May be <code>null</code>.
+	 * @param maxSessionAgeMillis
+	 *          Age in milliseconds after which a warm session is prepared again.
+	 * @param refreshMillis
+	 *          Interval of the refresh timer in milliseconds.
+	 */
+	ChannelZapper(DeviceInfo device, String preferredStream, long maxSessionAgeMillis, long refreshMillis)
+	{
+		if (device == null)
+		{
+			throw new IllegalArgumentException("Device must not be null");
+		}
+		this.device = device;
+		this.preferredStream = preferredStream;
+		this.maxSessionAgeMillis = maxSessionAgeMillis;
+		preparation.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Set the channels to step through.
+	 *
+	 * @param channels
+	 *          Channel lineup.
+	 */
+	public synchronized void setLineup(List<Channel> channels)
+	{
+		lineup = new ArrayList<>(channels);
+		refreshRing();
+	}
+
+	/**
+	 * Add a favourite channel. Favourites are always kept warm.
+	 *
+	 * @param channel
+	 *          The channel.
+	 */
+	public synchronized void addFavourite(Channel channel)
+	{
+		favourites.put(channel.getId(), channel);
+		refreshRing();
+	}
+
+	/**
+	 * Remove a favourite channel.
+	 *
+	 * @param channel
+	 *          The channel.
+	 */
+	public synchronized void removeFavourite(Channel channel)
+	{
+		favourites.remove(channel.getId());
+		refreshRing();
+	}
+
+	/**
+	 * Switch to the next channel in the lineup.
+	 *
+	 * @return Switch result.
+	 * @throws AirTwitchException
+	 *           The switch failed.
+	 */
+	public ZapResult next() throws AirTwitchException
+	{
+		return zapTo(neighbour(1));
+	}
+
+	/**
+	 * Switch to the previous channel in the lineup.
+	 *
+	 * @return Switch result.
+	 * @throws AirTwitchException
+	 *           The switch failed.
+	 */
+	public ZapResult previous() throws AirTwitchException
+	{
+		return zapTo(neighbour(-1));
+	}
+
+	/**
+	 * Switch to a channel. Uses a warm session if available, otherwise the
+	 * stream is resolved first.
+	 *
+	 * @param channel
+	 *          The channel.
+	 * @return Switch result.
+	 * @throws AirTwitchException
+	 *           The switch failed.
+	 */
+	public ZapResult zapTo(Channel channel) throws AirTwitchException
+	{
+		if (channel == null)
+		{
+			throw new AirTwitchException("No channel to switch to");
+		}
+		long start = System.nanoTime();
+		WarmSession session = sessions.remove(channel.getId());
+		boolean warm = session != null && !session.isOlderThan(maxSessionAgeMillis);
+		if (!warm)
+		{
+			session = prepare(channel);
+		}
+		session.control.play();
+		long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		ZapResult result = new ZapResult(channel, session.stream, latency, warm);
+		log.info(result::toString);
+
+		synchronized (this)
+		{
+			current = channel;
+			// Keep the session, the channel may become a neighbour again
+			sessions.put(channel.getId(), session);
+			refreshRing();
+		}
+		return result;
+	}
+
+	/**
+	 * Get the currently playing channel.
+	 *
+	 * @return The current channel, or <code>null</code> if no channel was played
+	 *         yet.
+	 */
+	public synchronized Channel getCurrent()
+	{
+		return current;
+	}
+
+	/**
+	 * Find the channel at a distance from the current channel in the lineup.
+	 */
+	private synchronized Channel neighbour(int distance)
+	{
+		if (lineup.isEmpty())
+		{
+			return null;
+		}
+		int index = current == null ? -1 : indexOf(current.getId());
+		if (index < 0)
+		{
+			return lineup.get(distance > 0 ? 0 : lineup.size() - 1);
+		}
+		return lineup.get(Math.floorMod(index + distance, lineup.size()));
+	}
+
+	/**
+	 * Find a channel in the lineup by its ID.
+	 *
+	 * @return Index of the channel, or <code>-1</code> if it is not in the
+	 *         lineup.
+	 */
+	private int indexOf(String channelId)
+	{
+		for (int index = 0; index < lineup.size(); index++)
+		{
+			if (lineup.get(index).getId().equals(channelId))
+			{
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Timer task: prepare expired sessions again and keep the device connection
+	 * open.
+	 */
+	private void refresh()
+	{
+		refreshRing();
+		sessions.values().stream().findFirst().ifPresent(this::prime);
+	}
+
+	/**
+	 * Query the playback state through a session, which opens or keeps open the
+	 * connection to the device.
+	 */
+	private void prime(WarmSession session)
+	{
+		try
+		{
+			session.control.getPlaybackInfo();
+		}
+		catch (AirTwitchException exception)
+		{
+			log.log(Level.FINE, String.format("Could not reach device %s", device.getName()), exception);
+		}
+	}
+
+	/**
+	 * Bring the set of warm sessions in line with the current neighbours and
+	 * favourites. Sessions no longer needed are dropped, missing or expired
+	 * sessions are prepared in the background unless they already are.
+	 */
+	private synchronized void refreshRing()
+	{
+		Map<String, Channel> ring = new LinkedHashMap<>();
+		for (Channel channel : new Channel[] { neighbour(1), neighbour(-1), current })
+		{
+			if (channel != null)
+			{
+				ring.put(channel.getId(), channel);
+			}
+		}
+		ring.putAll(favourites);
+		wanted = ring.keySet();
+
+		sessions.keySet().retainAll(wanted);
+		for (Channel channel : ring.values())
+		{
+			WarmSession session = sessions.get(channel.getId());
+			if ((session == null || session.isOlderThan(maxSessionAgeMillis)) && preparing.add(channel.getId()))
+			{
+				preparation.execute(() -> {
+					try
+					{
+						WarmSession prepared = prepare(channel);
+						prime(prepared);
+						synchronized (this)
+						{
+							if (wanted.contains(channel.getId()))
+							{
+								sessions.put(channel.getId(), prepared);
+							}
+						}
+					}
+					catch (AirTwitchException exception)
+					{
+						log.log(Level.WARNING, String.format("Could not prepare channel %s", channel.getName()), exception);
+					}
+					finally
+					{
+						preparing.remove(channel.getId());
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Prepare a session: request the token, resolve the streams and create the
+	 * stream control.
+	 */
+	private WarmSession prepare(Channel channel) throws AirTwitchException
+	{
+		channel.requestChannelToken();
+		List<LiveStream> streams = channel.getLiveStreams();
+		if (streams.isEmpty())
+		{
+			throw new AirTwitchException("Channel %s has no live streams", channel.getName());
+		}
+		LiveStream stream = streams.stream().filter(candidate -> candidate.getTitle().equals(preferredStream)).findFirst()
+						.orElse(streams.get(0));
+		return new WarmSession(stream, device.createStream(stream.getStreamUri()));
+	}
+
+	/**
+	 * Drop all warm sessions.
+	 */
+	@Override
+	public void close()
+	{
+		preparation.shutdownNow();
+		sessions.clear();
+	}
+
+	/**
+	 * Prepared playback of one channel.
+	 */
+	private static class WarmSession
+	{
+		private final LiveStream		stream;
+		private final StreamControl	control;
+		private final long					prepared	= System.currentTimeMillis();
+
+		WarmSession(LiveStream stream, StreamControl control)
+		{
+			this.stream = stream;
+			this.control = control;
+		}
+
+		boolean isOlderThan(long maxAgeMillis)
+		{
+			return System.currentTimeMillis() - prepared > maxAgeMillis;
+		}
+	}
+}
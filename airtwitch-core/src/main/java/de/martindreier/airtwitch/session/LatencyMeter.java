@@ -0,0 +1,284 @@
+/**
+ * LatencyMeter.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.PlaybackInfo;
+import de.martindreier.airtwitch.airplay.PlaybackState;
+import de.martindreier.airtwitch.airplay.StreamControl;
+import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveEdge;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * Estimates how far behind live a device plays. The device reports its
+ * playback position relative to the start of the playlist window it loaded.
+ * The <code>EXT-X-PROGRAM-DATE-TIME</code> tags of the media playlist date the
+ * start of that window, so the wall clock time of the picture on screen is the
+ * window start plus the position. Its distance to the current time is the delay
+ * from capture to screen.
+ * <p>
+ * The estimate is smoothed over the samples, each sample is logged. The window
+ * start is taken from the playlist when the meter starts, so it should be
+ * started right after playback; if the position jumps back because the device
+ * reloaded the stream, the window start is taken again. The estimate includes
+ * the clock difference between Twitch and this host. The sampling interval is
+ * read from the Java system property <code>airtwitch.latency.interval</code> in
+ * milliseconds.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class LatencyMeter implements Closeable
+{
+	/**
+	 * Java system property: interval between two samples in milliseconds.
+	 */
+	public static final String									PROP_INTERVAL				= "airtwitch.latency.interval";
+
+	/**
+	 * Default sampling interval in milliseconds.
+	 */
+	private static final long										DEFAULT_INTERVAL		= 5000;
+
+	/**
+	 * Weight of a new sample in the smoothed estimate.
+	 */
+	private static final double									SMOOTHING						= 0.25;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger									log									= Logger.getLogger(LatencyMeter.class.getName());
+
+	/**
+	 * The channel playing.
+	 */
+	private final Channel												channel;
+
+	/**
+	 * The variant playing.
+	 */
+	private final LiveStream										stream;
+
+	/**
+	 * Control of the playback.
+	 */
+	private final StreamControl									control;
+
+	/**
+	 * Sampling interval in milliseconds.
+	 */
+	private final long													intervalMillis;
+
+	/**
+	 * Sampling thread.
+	 */
+	private final ScheduledExecutorService			executor						= Executors
+					.newSingleThreadScheduledExecutor(runnable -> {
+						Thread thread = new Thread(runnable, "Latency meter");
+						thread.setDaemon(true);
+						return thread;
+					});
+
+	/**
+	 * Receive the estimates.
+	 */
+	private final List<Consumer<LatencyMeter>>	listeners						= new CopyOnWriteArrayList<>();
+
+	/**
+	 * Wall clock time of the start of the playlist window in milliseconds since
+	 * the epoch, <code>-1</code> if not known.
+	 */
+	private long																windowStartMillis		= -1;
+
+	/**
+	 * Position at the last sample in seconds.
+	 */
+	private double															lastPosition;
+
+	/**
+	 * Delay of the last sample in seconds, negative before the first sample.
+	 */
+	private volatile double											lastSample					= -1;
+
+	/**
+	 * Smoothed delay in seconds, negative before the first sample.
+	 */
+	private volatile double											latency							= -1;
+
+	/**
+	 * Number of samples.
+	 */
+	private volatile int												samples;
+
+	/**
+	 * Create a new meter.
+	 *
+	 * @param channel
+	 *          The channel playing.
+	 * @param stream
+	 *          The variant playing.
+	 * @param control
+	 *          Control of the playback.
+	 */
+	public LatencyMeter(Channel channel, LiveStream stream, StreamControl control)
+	{
+		this.channel = channel;
+		this.stream = stream;
+		this.control = control;
+		this.intervalMillis = Long.getLong(PROP_INTERVAL, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Add a listener which is called after each sample, on the sampling thread.
+	 *
+	 * @param listener
+	 *          The listener.
+	 */
+	public void addListener(Consumer<LatencyMeter> listener)
+	{
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 *
+	 * @param listener
+	 *          The listener.
+	 */
+	public void removeListener(Consumer<LatencyMeter> listener)
+	{
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Start sampling.
+	 */
+	public void start()
+	{
+		executor.execute(this::anchor);
+		executor.scheduleWithFixedDelay(this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop sampling.
+	 */
+	@Override
+	public void close()
+	{
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return The smoothed delay from capture to screen in seconds, or empty
+	 *         before the first sample.
+	 */
+	public OptionalDouble getLatencySeconds()
+	{
+		double value = latency;
+		return value < 0 ? OptionalDouble.empty() : OptionalDouble.of(value);
+	}
+
+	/**
+	 * @return The delay of the last sample in seconds, or empty before the first
+	 *         sample.
+	 */
+	public OptionalDouble getLastSampleSeconds()
+	{
+		double value = lastSample;
+		return value < 0 ? OptionalDouble.empty() : OptionalDouble.of(value);
+	}
+
+	/**
+	 * @return Number of samples.
+	 */
+	public int getSampleCount()
+	{
+		return samples;
+	}
+
+	/**
+	 * Take the start of the playlist window from the media playlist.
+	 */
+	private void anchor()
+	{
+		try
+		{
+			LiveEdge edge = channel.getLiveEdge(stream);
+			windowStartMillis = edge.getWindowStartMillis().orElse(-1);
+			if (windowStartMillis < 0)
+			{
+				log.warning(() -> String.format("Media playlist of %s has no program date time", channel.getName()));
+			}
+		}
+		catch (AirTwitchException exception)
+		{
+			log.log(Level.WARNING, "Could not read media playlist", exception);
+		}
+	}
+
+	/**
+	 * Compare the playback position with the wall clock.
+	 */
+	private void sample()
+	{
+		try
+		{
+			if (windowStartMillis < 0)
+			{
+				anchor();
+				return;
+			}
+			PlaybackInfo info = control.getPlaybackInfo();
+			if (info.getState() != PlaybackState.PLAYING)
+			{
+				return;
+			}
+			long now = System.currentTimeMillis();
+			if (info.getPosition() < lastPosition - 1)
+			{
+				// The device loaded the stream again, with a new window
+				lastPosition = 0;
+				anchor();
+				return;
+			}
+			lastPosition = info.getPosition();
+			double sample = (now - windowStartMillis) / 1000.0 - info.getPosition();
+			lastSample = Math.max(0, sample);
+			latency = latency < 0 ? lastSample : latency + SMOOTHING * (lastSample - latency);
+			samples++;
+			log.info(() -> String.format("Latency of %s on %s: %s", channel.getName(), control.getDeviceInfo().getName(),
+							this));
+			listeners.forEach(listener -> listener.accept(this));
+		}
+		catch (AirTwitchException | RuntimeException exception)
+		{
+			// Keep sampling, the device may answer the next time
+			log.log(Level.FINE, "Could not sample latency", exception);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		if (samples == 0)
+		{
+			return "not measured yet";
+		}
+		return String.format("%.1f s behind live (last sample %.1f s, %d samples)", latency, lastSample, samples);
+	}
+}
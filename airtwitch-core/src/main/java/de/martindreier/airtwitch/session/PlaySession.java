@@ -0,0 +1,580 @@
+/**
+ * PlaySession.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.DeviceEvent;
+import de.martindreier.airtwitch.airplay.DeviceHealth;
+import de.martindreier.airtwitch.airplay.DeviceHealthMonitor;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.airplay.DeviceRegistry;
+import de.martindreier.airtwitch.airplay.PlaybackState;
+import de.martindreier.airtwitch.airplay.StreamControl;
+import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * A channel playing on a device, which resumes after the device or the network
+ * drops. The session remembers the device by its key, so it finds the device
+ * again after a reboot or a new address. It watches the device registry and
+ * the health monitor: when the device disappears or stops answering, the
+ * session is lost; when the device comes back within the recovery budget, the
+ * channel token and the playlist are resolved again and playback is restarted.
+ * <p>
+ * The recovery budget is read from the Java system property
+ * <code>airtwitch.session.recoveryBudget</code> in milliseconds. If the device
+ * does not come back in time, the session gives up and stops watching, so a
+ * device switched off on purpose does not start playing hours later.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class PlaySession implements Closeable
+{
+	/**
+	 * Session states.
+	 */
+	public static enum State
+	{
+		/**
+		 * The channel was not played yet.
+		 */
+		NEW,
+		/**
+		 * The channel is playing.
+		 */
+		PLAYING,
+		/**
+		 * The device dropped, the session waits for it to come back.
+		 */
+		LOST,
+		/**
+		 * The device did not come back within the recovery budget.
+		 */
+		FAILED,
+		/**
+		 * The session was closed.
+		 */
+		CLOSED
+	}
+
+	/**
+	 * Java system property: time to wait for a dropped device to come back, in
+	 * milliseconds.
+	 */
+	public static final String								PROP_RECOVERY_BUDGET	= "airtwitch.session.recoveryBudget";
+
+	/**
+	 * Default recovery budget in milliseconds.
+	 */
+	private static final long									DEFAULT_BUDGET_MILLIS	= TimeUnit.MINUTES.toMillis(2);
+
+	/**
+	 * Delay before the first retry of a failed recovery, in milliseconds.
+	 * Doubled for every further retry.
+	 */
+	private static final long									RETRY_MILLIS					= 1000;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger								log										= Logger.getLogger(PlaySession.class.getName());
+
+	/**
+	 * Key of the device to play on.
+	 */
+	private final String											deviceKey;
+
+	/**
+	 * The channel to play.
+	 */
+	private final Channel											channel;
+
+	/**
+	 * Title of the variant to play. May be <code>null</code>.
+	 */
+	private final String											preferredStream;
+
+	/**
+	 * Recovery budget in milliseconds.
+	 */
+	private final long												budgetMillis;
+
+	/**
+	 * Delay before the first retry of a failed recovery in milliseconds.
+	 */
+	private final long												firstRetryMillis;
+
+	/**
+	 * Registry to find the device in.
+	 */
+	private final DeviceRegistry							registry;
+
+	/**
+	 * Health monitor watching the device.
+	 */
+	private final DeviceHealthMonitor					healthMonitor;
+
+	/**
+	 * Session thread. All session state is only changed on this thread.
+	 */
+	private final ScheduledExecutorService		executor							= Executors
+					.newSingleThreadScheduledExecutor(runnable -> {
+						Thread thread = new Thread(runnable, "Play session");
+						thread.setDaemon(true);
+						return thread;
+					});
+
+	/**
+	 * Receive state changes of the session.
+	 */
+	private final List<Consumer<PlaySession>>	listeners							= new CopyOnWriteArrayList<>();
+
+	/**
+	 * Registry listener, kept for removal.
+	 */
+	private final Consumer<DeviceEvent>				registryListener			= event -> executor
+					.execute(() -> deviceChanged(event));
+
+	/**
+	 * Health listener, kept for removal.
+	 */
+	private final Consumer<DeviceInfo>				healthListener				= device -> executor
+					.execute(() -> healthChanged(device));
+
+	/**
+	 * Current state.
+	 */
+	private volatile State										state									= State.NEW;
+
+	/**
+	 * Variant playing, or played before the drop.
+	 */
+	private volatile LiveStream								current;
+
+	/**
+	 * Stream control of the playback.
+	 */
+	private StreamControl											control;
+
+	/**
+	 * Time the device dropped, monotonic milliseconds.
+	 */
+	private long															lostSince;
+
+	/**
+	 * Reason for the drop.
+	 */
+	private String														lostReason;
+
+	/**
+	 * Incremented on every drop, so scheduled retries of an earlier drop are
+	 * ignored.
+	 */
+	private int																generation;
+
+	/**
+	 * Delay before the next retry in milliseconds.
+	 */
+	private long															retryMillis;
+
+	/**
+	 * Time to recover from the last drop in milliseconds, <code>-1</code> if
+	 * playback never recovered.
+	 */
+	private volatile long											lastRecoveryMillis		= -1;
+
+	/**
+	 * Number of recoveries.
+	 */
+	private volatile int											recoveries;
+
+	/**
+	 * Create a new session.
+	 *
+	 * @param deviceKey
+	 *          Key of the device to play on.
+	 * @param channel
+	 *          The channel to play.
+	 * @param preferredStream
+	 *          Title of the variant to play, e.g. "720p60". If the channel has no
+	 *          variant with this title, the first variant is used. May be
+	 *          <code>null</code>.
+	 * @see DeviceInfo#getKey()
+	 */
+	public PlaySession(String deviceKey, Channel channel, String preferredStream)
+	{
+		this(deviceKey, channel, preferredStream, DeviceRegistry.getInstance(), DeviceHealthMonitor.getInstance(),
+						Long.getLong(PROP_RECOVERY_BUDGET, DEFAULT_BUDGET_MILLIS), RETRY_MILLIS);
+	}
+
+	/**
+	 * Create a new session with custom collaborators and timing. Used for tests.
+	 *
+	 * @param deviceKey
+	 *          Key of the device to play on.
+	 * @param channel
+	 *          The channel to play.
+	 * @param preferredStream
+	 *          Title of the variant to play. May be <code>null</code>.
+	 * @param registry
+	 *          Registry to find the device in.
+	 * @param healthMonitor
+	 *          Health monitor watching the device.
+	 * @param budgetMillis
+	 *          Recovery budget in milliseconds.
+	 * @param retryMillis
+	 *          Delay before the first retry of a failed recovery in milliseconds.
+	 */
+	PlaySession(String deviceKey, Channel channel, String preferredStream, DeviceRegistry registry,
+					DeviceHealthMonitor healthMonitor, long budgetMillis, long retryMillis)
+	{
+		if (deviceKey == null || channel == null)
+		{
+			throw new IllegalArgumentException("Device key and channel must not be null");
+		}
+		this.deviceKey = deviceKey;
+		this.channel = channel;
+		this.preferredStream = preferredStream;
+		this.registry = registry;
+		this.healthMonitor = healthMonitor;
+		this.budgetMillis = budgetMillis;
+		this.firstRetryMillis = retryMillis;
+	}
+
+	/**
+	 * @return Key of the device to play on.
+	 */
+	public String getDeviceKey()
+	{
+		return deviceKey;
+	}
+
+	/**
+	 * @return The channel to play.
+	 */
+	public Channel getChannel()
+	{
+		return channel;
+	}
+
+	/**
+	 * @return The current state.
+	 */
+	public State getState()
+	{
+		return state;
+	}
+
+	/**
+	 * @return The variant playing, or played before the drop. <code>null</code>
+	 *         before the start.
+	 */
+	public LiveStream getStream()
+	{
+		return current;
+	}
+
+	/**
+	 * @return Time from the last drop until playback was restarted in
+	 *         milliseconds, or empty if playback never recovered.
+	 */
+	public OptionalLong getLastRecoveryMillis()
+	{
+		long millis = lastRecoveryMillis;
+		return millis < 0 ? OptionalLong.empty() : OptionalLong.of(millis);
+	}
+
+	/**
+	 * @return Number of times playback recovered from a drop.
+	 */
+	public int getRecoveries()
+	{
+		return recoveries;
+	}
+
+	/**
+	 * Add a listener for state changes. Listeners are called on the session
+	 * thread.
+	 *
+	 * @param listener
+	 *          The listener.
+	 */
+	public void addListener(Consumer<PlaySession> listener)
+	{
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 *
+	 * @param listener
+	 *          The listener.
+	 */
+	public void removeListener(Consumer<PlaySession> listener)
+	{
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Play the channel and start watching the device.
+	 *
+	 * @return The variant playing.
+	 * @throws AirTwitchException
+	 *           The device is not known, or the channel could not be played.
+	 */
+	public LiveStream start() throws AirTwitchException
+	{
+		try
+		{
+			return executor.submit(() -> {
+				DeviceInfo device = registry.getSnapshot().getByKey(deviceKey).orElseThrow(
+								() -> new AirTwitchException("Device %s is not known", deviceKey));
+				play(device);
+				registry.addListener(registryListener);
+				healthMonitor.addListener(healthListener);
+				setState(State.PLAYING);
+				return current;
+			}).get();
+		}
+		catch (ExecutionException exception)
+		{
+			if (exception.getCause() instanceof AirTwitchException)
+			{
+				throw (AirTwitchException) exception.getCause();
+			}
+			throw new AirTwitchException("Could not start channel %s", exception.getCause(), channel.getName());
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+			throw new AirTwitchException("Start of channel %s was interrupted", exception, channel.getName());
+		}
+	}
+
+	/**
+	 * Stop watching the device. Playback continues.
+	 */
+	@Override
+	public void close()
+	{
+		stopWatching();
+		executor.shutdownNow();
+		state = State.CLOSED;
+	}
+
+	/**
+	 * Stop receiving device events.
+	 */
+	private void stopWatching()
+	{
+		registry.removeListener(registryListener);
+		healthMonitor.removeListener(healthListener);
+	}
+
+	/**
+	 * Stop playback and close the session.
+	 */
+	public void stop()
+	{
+		StreamControl stopping = control;
+		close();
+		if (stopping != null)
+		{
+			stopping.stopAsync();
+		}
+	}
+
+	/**
+	 * Act on a change of the registered devices.
+	 */
+	private void deviceChanged(DeviceEvent event)
+	{
+		if (!deviceKey.equals(event.getDevice().getKey()))
+		{
+			return;
+		}
+		if (event.isRemoval())
+		{
+			lost(String.format("device %s", event.getType().name().toLowerCase()));
+		}
+		else if (state == State.LOST)
+		{
+			recover();
+		}
+		else if (event.getType() == DeviceEvent.Type.UPDATED && state == State.PLAYING)
+		{
+			// New addresses alone are no drop, e.g. the device was seen on another
+			// interface. Only a device which stopped answering lost playback.
+			checkPlayback();
+		}
+	}
+
+	/**
+	 * Ask the device for its playback info, and recover unless it still plays
+	 * the stream. A device which answers, but rebooted or dropped the stream,
+	 * lost playback as well.
+	 */
+	private void checkPlayback()
+	{
+		PlaybackState playback;
+		try
+		{
+			playback = control.getPlaybackInfo().getState();
+		}
+		catch (AirTwitchException exception)
+		{
+			log.log(Level.FINE, String.format("Device %s does not answer at its new address", deviceKey), exception);
+			playback = PlaybackState.UNKNOWN;
+		}
+		if (playback != PlaybackState.PLAYING)
+		{
+			lost(String.format("device moved to a new address, playback %s", playback.name().toLowerCase()));
+			recover();
+		}
+	}
+
+	/**
+	 * Act on a health probe of a device.
+	 */
+	private void healthChanged(DeviceInfo device)
+	{
+		if (!deviceKey.equals(device.getKey()))
+		{
+			return;
+		}
+		DeviceHealth.Status status = healthMonitor.getHealth(device).getStatus();
+		if (status == DeviceHealth.Status.UNREACHABLE)
+		{
+			lost("device unreachable");
+		}
+		else if (state == State.LOST && status != DeviceHealth.Status.UNKNOWN)
+		{
+			// Came back before the registry noticed the drop
+			recover();
+		}
+	}
+
+	/**
+	 * Mark the session as lost and start the recovery budget.
+	 */
+	private void lost(String reason)
+	{
+		if (state != State.PLAYING)
+		{
+			return;
+		}
+		lostSince = now();
+		lostReason = reason;
+		retryMillis = firstRetryMillis;
+		int lostGeneration = ++generation;
+		log.warning(() -> String.format("Lost playback of %s on %s: %s", channel.getName(), deviceKey, reason));
+		setState(State.LOST);
+		executor.schedule(() -> {
+			if (generation == lostGeneration && state == State.LOST)
+			{
+				log.warning(() -> String.format("Device %s did not come back within %d ms, giving up on %s", deviceKey,
+								budgetMillis, channel.getName()));
+				stopWatching();
+				setState(State.FAILED);
+				executor.shutdown();
+			}
+		}, budgetMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Try to restart playback on the device. Failed attempts are retried with a
+	 * growing delay until the budget is used up.
+	 */
+	private void recover()
+	{
+		if (state != State.LOST)
+		{
+			return;
+		}
+		Optional<DeviceInfo> device = registry.getSnapshot().getByKey(deviceKey);
+		if (!device.isPresent())
+		{
+			// Wait for the device to be registered again
+			return;
+		}
+		try
+		{
+			play(device.get());
+			lastRecoveryMillis = now() - lostSince;
+			recoveries++;
+			log.info(() -> String.format("Recovered playback of %s on %s after %s in %d ms", channel.getName(),
+							device.get().getName(), lostReason, lastRecoveryMillis));
+			setState(State.PLAYING);
+		}
+		catch (AirTwitchException exception)
+		{
+			long remaining = budgetMillis - (now() - lostSince);
+			log.log(Level.FINE, String.format("Recovery attempt failed, %d ms left", remaining), exception);
+			if (remaining > retryMillis)
+			{
+				int retryGeneration = generation;
+				executor.schedule(() -> {
+					if (generation == retryGeneration)
+					{
+						recover();
+					}
+				}, retryMillis, TimeUnit.MILLISECONDS);
+				retryMillis *= 2;
+			}
+		}
+	}
+
+	/**
+	 * Resolve the channel again and play it on the device. The token and the
+	 * stream URIs expire, so they are never reused across a drop.
+	 */
+	private void play(DeviceInfo device) throws AirTwitchException
+	{
+		channel.requestChannelToken();
+		List<LiveStream> streams = channel.getLiveStreams();
+		if (streams.isEmpty())
+		{
+			throw new AirTwitchException("Channel %s has no live streams", channel.getName());
+		}
+		String title = current == null ? preferredStream : current.getTitle();
+		LiveStream stream = streams.stream().filter(candidate -> candidate.getTitle().equals(title)).findFirst()
+						.orElse(streams.get(0));
+		StreamControl next = device.createStream(stream.getStreamUri());
+		next.play();
+		control = next;
+		current = stream;
+	}
+
+	/**
+	 * Change the state and inform the listeners.
+	 */
+	private void setState(State newState)
+	{
+		state = newState;
+		listeners.forEach(listener -> listener.accept(this));
+	}
+
+	/**
+	 * @return Monotonic time in milliseconds.
+	 */
+	private static long now()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+	}
+}
@@ -0,0 +1,678 @@
+/**
+ * SessionSupervisor.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.DeviceHealth;
+import de.martindreier.airtwitch.airplay.DeviceHealthMonitor;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.airplay.PlaybackInfo;
+import de.martindreier.airtwitch.airplay.PlaybackState;
+import de.martindreier.airtwitch.airplay.StreamControl;
+import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * Keeps a channel playing on an unattended device. The supervisor polls the
+ * playback progress of the device. If playback does not advance for longer
+ * than the stall timeout, the channel is played again with the next lower
+ * variant. After playback has been stable for a while and the device is
+ * healthy, the supervisor steps up one variant again; if the step up stalls
+ * soon after, the supervisor waits twice as long before the next one.
+ * <p>
+ * If the device keeps stalling, or cannot be reached at all, playback moves
+ * to the backup device, if one is set. Without a backup device, an unreachable
+ * device is not played again: playing it again would not help. The
+ * supervisor checks less and less often until the device answers again.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class SessionSupervisor implements Closeable
+{
+	/**
+	 * Java system property: time without playback progress after which playback
+	 * is considered stalled, in milliseconds.
+	 */
+	public static final String													PROP_STALL_TIMEOUT				= "airtwitch.supervisor.stallTimeout";
+
+	/**
+	 * Default stall timeout in milliseconds.
+	 */
+	private static final long														DEFAULT_STALL_MILLIS			= 8000;
+
+	/**
+	 * Interval between two progress checks in milliseconds.
+	 */
+	private static final long														CHECK_MILLIS							= 2000;
+
+	/**
+	 * Time a device may take to load a stream before it counts as stalled, in
+	 * milliseconds.
+	 */
+	private static final long														STARTUP_MILLIS						= 15_000;
+
+	/**
+	 * Time of stable playback before stepping up a variant, in milliseconds.
+	 */
+	private static final long														UPGRADE_MILLIS						= TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * Upper limit for the time before stepping up, in milliseconds.
+	 */
+	private static final long														MAX_UPGRADE_MILLIS				= TimeUnit.MINUTES.toMillis(30);
+
+	/**
+	 * Stalls within this time count towards a failover, in milliseconds.
+	 */
+	private static final long														FAILOVER_WINDOW_MILLIS		= TimeUnit.MINUTES.toMillis(5);
+
+	/**
+	 * Number of stalls within the failover window which move playback to the
+	 * backup device.
+	 */
+	private static final int														FAILOVER_STALLS						= 3;
+
+	/**
+	 * Number of failed progress checks after which the device is considered
+	 * unreachable.
+	 */
+	private static final int														UNREACHABLE_CHECKS				= 3;
+
+	/**
+	 * Upper limit for the time between two checks of an unreachable device, in
+	 * milliseconds.
+	 */
+	private static final long														MAX_UNREACHABLE_MILLIS		= TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger													log												= Logger
+					.getLogger(SessionSupervisor.class.getName());
+
+	/**
+	 * The supervised channel.
+	 */
+	private final Channel																channel;
+
+	/**
+	 * Title of the variant to start with. May be <code>null</code>.
+	 */
+	private final String																preferredStream;
+
+	/**
+	 * Stall timeout in milliseconds.
+	 */
+	private final long																	stallMillis;
+
+	/**
+	 * Monotonic clock in milliseconds.
+	 */
+	private final LongSupplier													clock;
+
+	/**
+	 * Supervision thread. All playback state below is only changed on this
+	 * thread.
+	 */
+	private final ScheduledExecutorService							executor									= Executors
+					.newSingleThreadScheduledExecutor(runnable -> {
+						Thread thread = new Thread(runnable, "Session supervisor");
+						thread.setDaemon(true);
+						return thread;
+					});
+
+	/**
+	 * Receive the actions of the supervisor.
+	 */
+	private final List<Consumer<SupervisorEvent>>				listeners									= new CopyOnWriteArrayList<>();
+
+	/**
+	 * Device playing the channel.
+	 */
+	private volatile DeviceInfo													device;
+
+	/**
+	 * Device to move playback to if the device keeps failing.
+	 */
+	private volatile Optional<DeviceInfo>								backup										= Optional.empty();
+
+	/**
+	 * Variants of the channel, highest bandwidth first.
+	 */
+	private List<LiveStream>														variants									= Collections.emptyList();
+
+	/**
+	 * Variant playing.
+	 */
+	private volatile LiveStream													current;
+
+	/**
+	 * Stream control of the playback.
+	 */
+	private StreamControl																control;
+
+	/**
+	 * Start of the playback.
+	 */
+	private long																				started;
+
+	/**
+	 * Time of the last progress check.
+	 */
+	private long																				lastCheck;
+
+	/**
+	 * Playback position at the last progress check in seconds.
+	 */
+	private double																			lastPosition;
+
+	/**
+	 * Start of the stall, <code>0</code> if playback advances.
+	 */
+	private long																				stalledSince;
+
+	/**
+	 * Start of stable playback, <code>0</code> if playback does not advance.
+	 */
+	private long																				stableSince;
+
+	/**
+	 * Number of consecutive progress checks which could not reach the device.
+	 */
+	private int																					unreachable;
+
+	/**
+	 * Time between two checks of an unreachable device, <code>0</code> while the
+	 * device answers.
+	 */
+	private long																				unreachableMillis;
+
+	/**
+	 * Time of the next check of an unreachable device.
+	 */
+	private long																				nextCheck;
+
+	/**
+	 * Times of the recent stalls.
+	 */
+	private final Deque<Long>														stalls										= new ArrayDeque<>();
+
+	/**
+	 * Time of stable playback before the next step up, in milliseconds.
+	 */
+	private long																				upgradeMillis							= UPGRADE_MILLIS;
+
+	/**
+	 * Time of the last step up, <code>0</code> if it held.
+	 */
+	private long																				lastUpgrade;
+
+	/**
+	 * Create a new supervisor.
+	 *
+	 * @param channel
+	 *          The channel to play.
+	 * @param device
+	 *          The device to play on.
+	 * @param preferredStream
+	 *          Title of the variant to start with, e.g. "720p60". If the channel
+	 *          has no variant with this title, the highest variant is used. May
+	 *          be <code>null</code>.
+	 */
+	public SessionSupervisor(Channel channel, DeviceInfo device, String preferredStream)
+	{
+		this(channel, device, preferredStream, SessionSupervisor::now);
+	}
+
+	/**
+	 * Create a new supervisor with a custom clock. Used for tests.
+	 *
+	 * @param channel
+	 *          The channel to play.
+	 * @param device
+	 *          The device to play on.
+	 * @param preferredStream
+	 *          Title of the variant to start with. May be <code>null</code>.
+	 * @param clock
+	 *          Monotonic clock in milliseconds.
+	 */
+	SessionSupervisor(Channel channel, DeviceInfo device, String preferredStream, LongSupplier clock)
+	{
+		if (channel == null || device == null)
+		{
+			throw new IllegalArgumentException("Channel and device must not be null");
+		}
+		this.channel = channel;
+		this.device = device;
+		this.preferredStream = preferredStream;
+		this.stallMillis = Long.getLong(PROP_STALL_TIMEOUT, DEFAULT_STALL_MILLIS);
+		this.clock = clock;
+	}
+
+	/**
+	 * Set the device to move playback to if the device keeps failing. Playback
+	 * moves at most once.
+	 *
+	 * @param backupDevice
+	 *          The backup device, or <code>null</code> for none.
+	 */
+	public void setBackupDevice(DeviceInfo backupDevice)
+	{
+		backup = Optional.ofNullable(backupDevice);
+	}
+
+	/**
+	 * @return The backup device, or empty if none is set or playback already
+	 *         moved to it.
+	 */
+	public Optional<DeviceInfo> getBackupDevice()
+	{
+		return backup;
+	}
+
+	/**
+	 * @return The device playing the channel.
+	 */
+	public DeviceInfo getDevice()
+	{
+		return device;
+	}
+
+	/**
+	 * @return The variant playing, or <code>null</code> before the start.
+	 */
+	public LiveStream getStream()
+	{
+		return current;
+	}
+
+	/**
+	 * Add a listener for the actions of the supervisor. Listeners are called on
+	 * the supervision thread.
+	 *
+	 * @param listener
+	 *          The listener.
+	 */
+	public void addListener(Consumer<SupervisorEvent> listener)
+	{
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 *
+	 * @param listener
+	 *          The listener.
+	 */
+	public void removeListener(Consumer<SupervisorEvent> listener)
+	{
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Start playback and supervision.
+	 *
+	 * @return The variant playing.
+	 * @throws AirTwitchException
+	 *           The channel could not be played.
+	 */
+	public LiveStream start() throws AirTwitchException
+	{
+		try
+		{
+			return executor.submit(() -> {
+				LiveStream stream = begin();
+				executor.scheduleWithFixedDelay(this::check, CHECK_MILLIS, CHECK_MILLIS, TimeUnit.MILLISECONDS);
+				return stream;
+			}).get();
+		}
+		catch (ExecutionException exception)
+		{
+			if (exception.getCause() instanceof AirTwitchException)
+			{
+				throw (AirTwitchException) exception.getCause();
+			}
+			throw new AirTwitchException("Could not start channel %s", exception.getCause(), channel.getName());
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+			throw new AirTwitchException("Start of channel %s was interrupted", exception, channel.getName());
+		}
+	}
+
+	/**
+	 * Play the preferred variant. Called by {@link #start()} on the supervision
+	 * thread.
+	 *
+	 * @return The variant playing.
+	 * @throws AirTwitchException
+	 *           The channel could not be played.
+	 */
+	LiveStream begin() throws AirTwitchException
+	{
+		refreshVariants();
+		int index = indexOf(preferredStream);
+		play(variants.get(Math.max(0, index)), SupervisorEvent.Action.START, "requested");
+		return current;
+	}
+
+	/**
+	 * Stop supervision. Playback continues.
+	 */
+	@Override
+	public void close()
+	{
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Check the playback progress.
+	 */
+	private void check()
+	{
+		try
+		{
+			evaluate(clock.getAsLong());
+		}
+		catch (RuntimeException exception)
+		{
+			// Keep supervising, a failed check must not end the schedule
+			log.log(Level.WARNING, "Progress check failed", exception);
+		}
+	}
+
+	/**
+	 * Query the device and act on the progress since the last check.
+	 *
+	 * @param now
+	 *          Time of the check, from the clock of the supervisor.
+	 */
+	void evaluate(long now)
+	{
+		if (now < nextCheck)
+		{
+			// Waiting for an unreachable device
+			return;
+		}
+		PlaybackInfo info;
+		try
+		{
+			info = control.getPlaybackInfo();
+			unreachable = 0;
+			unreachableMillis = 0;
+		}
+		catch (AirTwitchException exception)
+		{
+			log.log(Level.FINE, "Could not query playback progress", exception);
+			lastCheck = now;
+			onUnreachable(now);
+			return;
+		}
+		double elapsed = (now - lastCheck) / 1000.0;
+		lastCheck = now;
+		if (info.getState() == PlaybackState.PAUSED)
+		{
+			// Paused on purpose
+			stalledSince = 0;
+			stableSince = 0;
+			lastPosition = info.getPosition();
+			return;
+		}
+		boolean advancing = info.getState() == PlaybackState.PLAYING
+						&& info.getPosition() - lastPosition >= elapsed * info.getRate() / 2;
+		lastPosition = info.getPosition();
+		if (advancing)
+		{
+			stalledSince = 0;
+			if (stableSince == 0)
+			{
+				stableSince = now;
+			}
+			if (lastUpgrade != 0 && now - lastUpgrade >= upgradeMillis)
+			{
+				// The last step up held
+				lastUpgrade = 0;
+				upgradeMillis = UPGRADE_MILLIS;
+			}
+			if (indexOf(current.getTitle()) > 0 && now - stableSince >= upgradeMillis && isHealthy())
+			{
+				recover(-1, SupervisorEvent.Action.UPGRADE,
+								String.format("stable for %d s", TimeUnit.MILLISECONDS.toSeconds(now - stableSince)));
+				lastUpgrade = now;
+			}
+			return;
+		}
+		stableSince = 0;
+		if (now - started < STARTUP_MILLIS)
+		{
+			// Still loading
+			return;
+		}
+		if (stalledSince == 0)
+		{
+			stalledSince = now;
+		}
+		if (now - stalledSince < stallMillis)
+		{
+			return;
+		}
+		onStall(now, String.format("%s at %.1f s for %d s", info.getState(), info.getPosition(),
+						TimeUnit.MILLISECONDS.toSeconds(now - stalledSince)));
+	}
+
+	/**
+	 * Handle a progress check which could not reach the device. After a few
+	 * failed checks, playback moves to the backup device. Without one, the
+	 * channel is not played again, as the device would not get the request
+	 * either; the device is checked less often until it answers.
+	 */
+	private void onUnreachable(long now)
+	{
+		unreachable++;
+		// Progress is unknown, the stall timeout starts again once the device answers
+		stalledSince = 0;
+		stableSince = 0;
+		if (unreachable < UNREACHABLE_CHECKS)
+		{
+			return;
+		}
+		if (backup.isPresent())
+		{
+			failover("device unreachable");
+			return;
+		}
+		unreachableMillis = unreachableMillis == 0 ? CHECK_MILLIS
+						: Math.min(MAX_UNREACHABLE_MILLIS, unreachableMillis * 2);
+		nextCheck = now + unreachableMillis;
+		log.fine(() -> String.format("%s unreachable, checking again in %d s", device.getName(),
+						TimeUnit.MILLISECONDS.toSeconds(unreachableMillis)));
+	}
+
+	/**
+	 * Recover from a stall: step down a variant, retry on the lowest variant, or
+	 * move to the backup device.
+	 */
+	private void onStall(long now, String reason)
+	{
+		stalls.addLast(now);
+		while (now - stalls.peekFirst() > FAILOVER_WINDOW_MILLIS)
+		{
+			stalls.pollFirst();
+		}
+		if (lastUpgrade != 0)
+		{
+			// The last step up did not hold, wait longer before the next
+			upgradeMillis = Math.min(MAX_UPGRADE_MILLIS, upgradeMillis * 2);
+			lastUpgrade = 0;
+		}
+		if (backup.isPresent() && stalls.size() >= FAILOVER_STALLS)
+		{
+			failover(reason);
+		}
+		else if (indexOf(current.getTitle()) < variants.size() - 1)
+		{
+			recover(1, SupervisorEvent.Action.DOWNGRADE, reason);
+		}
+		else
+		{
+			recover(0, SupervisorEvent.Action.RETRY, reason);
+		}
+	}
+
+	/**
+	 * Move playback to the backup device.
+	 */
+	private void failover(String reason)
+	{
+		DeviceInfo failed = device;
+		StreamControl failedControl = control;
+		device = backup.get();
+		backup = Optional.empty();
+		stalls.clear();
+		unreachable = 0;
+		unreachableMillis = 0;
+		// The device may be unreachable, do not wait for it
+		failedControl.stopAsync();
+		recover(0, SupervisorEvent.Action.FAILOVER, String.format("%s kept failing, %s", failed.getName(), reason));
+	}
+
+	/**
+	 * Play the channel again, a number of variants lower or higher than the
+	 * current one. The variants are resolved again, as the stream URIs of the
+	 * channel expire.
+	 *
+	 * @param steps
+	 *          Number of variants to step down, negative to step up.
+	 */
+	private void recover(int steps, SupervisorEvent.Action action, String reason)
+	{
+		LiveStream previous = current;
+		try
+		{
+			refreshVariants();
+		}
+		catch (AirTwitchException exception)
+		{
+			log.log(Level.WARNING, "Could not resolve variants, using the known ones", exception);
+		}
+		int index = indexOf(previous.getTitle());
+		if (index < 0)
+		{
+			// Variant gone, continue with the closest lower one
+			index = variants.size() - 1;
+			for (int candidate = 0; candidate < variants.size(); candidate++)
+			{
+				if (variants.get(candidate).getBandwidth() <= previous.getBandwidth())
+				{
+					index = candidate;
+					break;
+				}
+			}
+		}
+		index = Math.max(0, Math.min(variants.size() - 1, index + steps));
+		try
+		{
+			play(variants.get(index), action, reason);
+		}
+		catch (AirTwitchException exception)
+		{
+			log.log(Level.WARNING, String.format("Could not recover playback on %s", device.getName()), exception);
+			// Count the stall again after the timeout
+			started = clock.getAsLong();
+			stalledSince = 0;
+		}
+	}
+
+	/**
+	 * Resolve the variants of the channel, highest bandwidth first. The audio
+	 * only variant is left out.
+	 */
+	private void refreshVariants() throws AirTwitchException
+	{
+		channel.requestChannelToken();
+		List<LiveStream> streams = channel.getLiveStreams().stream()
+						.filter(stream -> !stream.isAudioOnly())
+						.sorted(Comparator.comparingLong(LiveStream::getBandwidth).reversed()).collect(Collectors.toList());
+		if (streams.isEmpty())
+		{
+			throw new AirTwitchException("Channel %s has no live streams", channel.getName());
+		}
+		variants = streams;
+	}
+
+	/**
+	 * Find a variant by title.
+	 *
+	 * @return Index in the variants, <code>-1</code> if not found.
+	 */
+	private int indexOf(String title)
+	{
+		for (int index = 0; index < variants.size(); index++)
+		{
+			if (variants.get(index).getTitle().equals(title))
+			{
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Play a variant on the device and reset the progress tracking.
+	 */
+	private void play(LiveStream stream, SupervisorEvent.Action action, String reason) throws AirTwitchException
+	{
+		StreamControl next = device.createStream(stream.getStreamUri());
+		next.play();
+		control = next;
+		current = stream;
+		started = clock.getAsLong();
+		lastCheck = started;
+		lastPosition = 0;
+		stalledSince = 0;
+		stableSince = 0;
+		SupervisorEvent event = new SupervisorEvent(action, device, stream, reason);
+		log.info(event::toString);
+		listeners.forEach(listener -> listener.accept(event));
+	}
+
+	/**
+	 * @return <code>true</code> if the health monitor does not advise against a
+	 *         step up.
+	 */
+	private boolean isHealthy()
+	{
+		DeviceHealth.Status status = DeviceHealthMonitor.getInstance().getHealth(device).getStatus();
+		return status == DeviceHealth.Status.HEALTHY || status == DeviceHealth.Status.UNKNOWN;
+	}
+
+	/**
+	 * @return Monotonic time in milliseconds.
+	 */
+	private static long now()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * SupervisorEvent.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * An action taken by a {@link SessionSupervisor}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class SupervisorEvent
+{
+	/**
+	 * Supervisor actions.
+	 */
+	public static enum Action
+	{
+		/**
+		 * Playback was started.
+		 */
+		START,
+		/**
+		 * Playback stalled and was restarted with a lower variant.
+		 */
+		DOWNGRADE,
+		/**
+		 * Playback was stable and was restarted with a higher variant.
+		 */
+		UPGRADE,
+		/**
+		 * Playback stalled on the lowest variant and was restarted.
+		 */
+		RETRY,
+		/**
+		 * The device kept failing, playback moved to the backup device.
+		 */
+		FAILOVER
+	}
+
+	/**
+	 * The action.
+	 */
+	private final Action			action;
+	/**
+	 * Device playing after the action.
+	 */
+	private final DeviceInfo	device;
+	/**
+	 * Variant playing after the action.
+	 */
+	private final LiveStream	stream;
+	/**
+	 * Reason for the action.
+	 */
+	private final String			reason;
+	/**
+	 * Time of the action in milliseconds since the epoch.
+	 */
+	private final long				timestamp	= System.currentTimeMillis();
+
+	/**
+	 * Create a new event.
+	 *
+	 * @param action
+	 *          The action.
+	 * @param device
+	 *          Device playing after the action.
+	 * @param stream
+	 *          Variant playing after the action.
+	 * @param reason
+	 *          Reason for the action.
+	 */
+	SupervisorEvent(Action action, DeviceInfo device, LiveStream stream, String reason)
+	{
+		this.action = action;
+		this.device = device;
+		this.stream = stream;
+		this.reason = reason;
+	}
+
+	/**
+	 * @return The action.
+	 */
+	public Action getAction()
+	{
+		return action;
+	}
+
+	/**
+	 * @return Device playing after the action.
+	 */
+	public DeviceInfo getDevice()
+	{
+		return device;
+	}
+
+	/**
+	 * @return Variant playing after the action.
+	 */
+	public LiveStream getStream()
+	{
+		return stream;
+	}
+
+	/**
+	 * @return Reason for the action.
+	 */
+	public String getReason()
+	{
+		return reason;
+	}
+
+	/**
+	 * @return Time of the action in milliseconds since the epoch.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s: %s on %s (%s)", action, stream.getTitle(), device.getName(), reason);
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * ZapResult.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * Result of a channel switch.
+ *
+ * @see ChannelZapper
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class ZapResult
+{
+	/**
+	 * The new channel.
+	 */
+	private final Channel			channel;
+	/**
+	 * The stream playing on the device.
+	 */
+	private final LiveStream	stream;
+	/**
+	 * Switch latency in milliseconds.
+	 */
+	private final long				latencyMillis;
+	/**
+	 * <code>true</code> if a warm session was used.
+	 */
+	private final boolean			warm;
+
+	/**
+	 * Create a new result.
+	 *
+	 * @param channel
+	 *          The new channel.
+	 * @param stream
+	 *          The stream playing on the device.
+	 * @param latencyMillis
+	 *          Switch latency in milliseconds.
+	 * @param warm
+	 *          <code>true</code> if a warm session was used.
+	 */
+	ZapResult(Channel channel, LiveStream stream, long latencyMillis, boolean warm)
+	{
+		this.channel = channel;
+		this.stream = stream;
+		this.latencyMillis = latencyMillis;
+		this.warm = warm;
+	}
+
+	/**
+	 * @return The new channel.
+	 */
+	public Channel getChannel()
+	{
+		return channel;
+	}
+
+	/**
+	 * @return The stream playing on the device.
+	 */
+	public LiveStream getStream()
+	{
+		return stream;
+	}
+
+	/**
+	 * @return The time from the switch request until the device accepted the
+	 *         new stream, in milliseconds.
+	 */
+	public long getLatencyMillis()
+	{
+		return latencyMillis;
+	}
+
+	/**
+	 * @return <code>true</code> if the switch used a warm session,
+	 *         <code>false</code> if the stream had to be resolved first.
+	 */
+	public boolean isWarm()
+	{
+		return warm;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("Switched to %s (%s) in %d ms (%s)", channel.getName(), stream.getTitle(), latencyMillis,
+						warm ? "warm" : "cold");
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * StreamAggregate.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.stats;
+
+/**
+ * Aggregated stream statistics for one time bucket.
+ *
+ * @see TimeSeriesStore#downsample(String, long, long, long)
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class StreamAggregate
+{
+	/**
+	 * Start of the bucket in epoch milliseconds.
+	 */
+	private final long	bucketStart;
+	/**
+	 * Number of samples in the bucket.
+	 */
+	private int					count;
+	/**
+	 * Minimum number of viewers.
+	 */
+	private long				minViewers	= Long.MAX_VALUE;
+	/**
+	 * Maximum number of viewers.
+	 */
+	private long				maxViewers	= Long.MIN_VALUE;
+	/**
+	 * Sum of viewers, for the average.
+	 */
+	private long				viewerSum;
+	/**
+	 * Sum of frame rates, for the average.
+	 */
+	private double			fpsSum;
+	/**
+	 * Maximum video height.
+	 */
+	private int					maxVideoHeight;
+	/**
+	 * Sum of delays, for the average.
+	 */
+	private long				delaySum;
+
+	/**
+	 * Create an empty aggregate.
+	 *
+	 * @param bucketStart
+	 *          Start of the bucket in epoch milliseconds.
+	 */
+	StreamAggregate(long bucketStart)
+	{
+		this.bucketStart = bucketStart;
+	}
+
+	/**
+	 * Add a sample to the aggregate.
+	 *
+	 * @param viewers
+	 *          Number of viewers.
+	 * @param averageFps
+	 *          Frame rate.
+	 * @param videoHeight
+	 *          Video height.
+	 * @param delay
+	 *          Stream delay.
+	 */
+	void add(long viewers, double averageFps, int videoHeight, long delay)
+	{
+		count++;
+		minViewers = Math.min(minViewers, viewers);
+		maxViewers = Math.max(maxViewers, viewers);
+		viewerSum += viewers;
+		fpsSum += averageFps;
+		maxVideoHeight = Math.max(maxVideoHeight, videoHeight);
+		delaySum += delay;
+	}
+
+	/**
+	 * @return Start of the bucket in epoch milliseconds.
+	 */
+	public long getBucketStart()
+	{
+		return bucketStart;
+	}
+
+	/**
+	 * @return Number of samples in the bucket.
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return Minimum number of viewers.
+	 */
+	public long getMinViewers()
+	{
+		return minViewers;
+	}
+
+	/**
+	 * @return Maximum number of viewers.
+	 */
+	public long getMaxViewers()
+	{
+		return maxViewers;
+	}
+
+	/**
+	 * @return Average number of viewers.
+	 */
+	public double getAverageViewers()
+	{
+		return (double) viewerSum / count;
+	}
+
+	/**
+	 * @return Average frame rate.
+	 */
+	public double getAverageFps()
+	{
+		return fpsSum / count;
+	}
+
+	/**
+	 * @return Maximum video height.
+	 */
+	public int getMaxVideoHeight()
+	{
+		return maxVideoHeight;
+	}
+
+	/**
+	 * @return Average stream delay in seconds.
+	 */
+	public double getAverageDelay()
+	{
+		return (double) delaySum / count;
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * StreamSample.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.stats;
+
+import de.martindreier.airtwitch.twitch.StreamStatistics;
+
+/**
+ * Stream statistics sampled at a point in time.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class StreamSample
+{
+	/**
+	 * Sample time in epoch milliseconds.
+	 */
+	private final long							timestamp;
+	/**
+	 * Sampled statistics.
+	 */
+	private final StreamStatistics	statistics;
+
+	/**
+	 * Create a new sample.
+	 *
+	 * @param timestamp
+	 *          Sample time in epoch milliseconds.
+	 * @param statistics
+	 *          Sampled statistics.
+	 */
+	public StreamSample(long timestamp, StreamStatistics statistics)
+	{
+		if (statistics == null)
+		{
+			throw new IllegalArgumentException("Statistics must not be null");
+		}
+		this.timestamp = timestamp;
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @return The sample time in epoch milliseconds.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * @return The sampled statistics.
+	 */
+	public StreamStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%tT: %s", timestamp, statistics);
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * StreamStatisticsRecorder.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.stats;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.twitch.Channel;
+
+/**
+ * Periodically samples the stream statistics of watched channels into a
+ * {@link TimeSeriesStore}. Channels which are not live are skipped.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class StreamStatisticsRecorder implements Closeable
+{
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger							log				= Logger.getLogger(StreamStatisticsRecorder.class.getName());
+
+	/**
+	 * Store receiving the samples.
+	 */
+	private final TimeSeriesStore						store;
+
+	/**
+	 * Watched channels by channel ID.
+	 */
+	private final Map<String, Channel>			watched		= new ConcurrentHashMap<>();
+
+	/**
+	 * Sampling thread.
+	 */
+	private final ScheduledExecutorService	scheduler	= Executors.newSingleThreadScheduledExecutor(runnable -> {
+																											Thread thread = new Thread(runnable, "Stream statistics recorder");
+																											thread.setDaemon(true);
+																											return thread;
+																										});
+
+	/**
+	 * Create a new recorder.
+	 *
+	 * @param store
+	 *          Store receiving the samples.
+	 * @param interval
+	 *          Sampling interval.
+	 * @param unit
+	 *          Time unit of the sampling interval.
+	 */
+	public StreamStatisticsRecorder(TimeSeriesStore store, long interval, TimeUnit unit)
+	{
+		if (store == null)
+		{
+			throw new IllegalArgumentException("Store must not be null");
+		}
+		this.store = store;
+		scheduler.scheduleWithFixedDelay(this::sampleAll, 0, interval, unit);
+	}
+
+	/**
+	 * Start sampling a channel.
+	 *
+	 * @param channel
+	 *          The channel.
+	 */
+	public void watch(Channel channel)
+	{
+		watched.put(channel.getId(), channel);
+	}
+
+	/**
+	 * Stop sampling a channel. Samples already recorded are kept.
+	 *
+	 * @param channel
+	 *          The channel.
+	 */
+	public void unwatch(Channel channel)
+	{
+		watched.remove(channel.getId());
+	}
+
+	/**
+	 * Get the store containing the samples. Series are keyed by channel ID.
+	 *
+	 * @return The store.
+	 */
+	public TimeSeriesStore getStore()
+	{
+		return store;
+	}
+
+	/**
+	 * Rank all watched channels by their viewer trend.
+	 *
+	 * @param window
+	 *          Length of the time window to evaluate, ending now.
+	 * @param unit
+	 *          Time unit of the window.
+	 * @return Watched channels, fastest growing first.
+	 */
+	public List<Channel> rankByTrend(long window, TimeUnit unit)
+	{
+		long to = System.currentTimeMillis() + 1;
+		long from = to - unit.toMillis(window);
+		Map<Channel, Double> trends = new ConcurrentHashMap<>();
+		watched.values().forEach(channel -> trends.put(channel, store.viewerTrend(channel.getId(), from, to)));
+		List<Channel> ranking = new ArrayList<>(trends.keySet());
+		ranking.sort(Comparator.comparing(trends::get, Comparator.reverseOrder()));
+		return ranking;
+	}
+
+	/**
+	 * Sample all watched channels.
+	 */
+	private void sampleAll()
+	{
+		for (Channel channel : watched.values())
+		{
+			try
+			{
+				channel.readStreamStatistics().ifPresent(
+								statistics -> store.append(channel.getId(), new StreamSample(System.currentTimeMillis(), statistics)));
+			}
+			catch (AirTwitchException | RuntimeException exception)
+			{
+				log.log(Level.WARNING, String.format("Could not sample statistics of channel %s", channel.getName()),
+								exception);
+			}
+		}
+	}
+
+	/**
+	 * Stop sampling.
+	 */
+	@Override
+	public void close()
+	{
+		scheduler.shutdownNow();
+	}
+}
@@ -0,0 +1,451 @@
+/**
+ * TimeSeriesStore.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.stats;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import de.martindreier.airtwitch.twitch.StreamStatistics;
+
+/**
+ * Compact store for stream statistics time series.
+ * <p>
+ * All samples are kept in a single direct buffer which is allocated once and
+ * split into fixed-size blocks. Each block stores the samples of one series as
+ * zig-zag encoded variable-length deltas against the previous sample, so a
+ * typical sample needs only a few bytes. Each series uses at most a fixed
+ * number of blocks; when the limit is reached, the oldest block of the series
+ * is reused. When the store runs out of blocks, the oldest block of any series
+ * is reused. Memory usage therefore does not grow, regardless of uptime.
+ * <p>
+ * Frame rates are stored with a precision of 1/100 fps.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class TimeSeriesStore
+{
+	/**
+	 * Size of a single block in bytes.
+	 */
+	public static final int						BLOCK_SIZE				= 1024;
+
+	/**
+	 * Block header: timestamp of first sample.
+	 */
+	private static final int					FIRST_TIME				= 0;
+	/**
+	 * Block header: timestamp of last sample.
+	 */
+	private static final int					LAST_TIME					= 8;
+	/**
+	 * Block header: number of samples.
+	 */
+	private static final int					COUNT							= 16;
+	/**
+	 * Block header: offset of the next sample.
+	 */
+	private static final int					WRITE_OFFSET			= 20;
+	/**
+	 * Block header: values of the last sample (viewers, centi-fps, height,
+	 * delay).
+	 */
+	private static final int					LAST_VALUES				= 24;
+	/**
+	 * Number of values per sample, excluding the timestamp.
+	 */
+	private static final int					VALUE_COUNT				= 4;
+	/**
+	 * Start of sample data in a block.
+	 */
+	private static final int					DATA_START				= LAST_VALUES + VALUE_COUNT * 8;
+	/**
+	 * Maximum size of an encoded sample (five 64 bit varints).
+	 */
+	private static final int					MAX_SAMPLE_SIZE		= (VALUE_COUNT + 1) * 10;
+
+	/**
+	 * Off-heap storage for all blocks.
+	 */
+	private final ByteBuffer					arena;
+
+	/**
+	 * Stack of unused block indexes.
+	 */
+	private final int[]								freeBlocks;
+
+	/**
+	 * Number of entries in {@link #freeBlocks}.
+	 */
+	private int												freeCount;
+
+	/**
+	 * Maximum number of blocks per series.
+	 */
+	private final int									maxBlocksPerSeries;
+
+	/**
+	 * Series by key.
+	 */
+	private final Map<String, Series>	series						= new HashMap<>();
+
+	/**
+	 * Create a new store.
+	 *
+	 * @param totalBlocks
+	 *          Total number of blocks in the store.
+	 * @param maxBlocksPerSeries
+	 *          Maximum number of blocks used by a single series.
+	 */
+	public TimeSeriesStore(int totalBlocks, int maxBlocksPerSeries)
+	{
+		if (totalBlocks < 1 || maxBlocksPerSeries < 1)
+		{
+			throw new IllegalArgumentException("Store requires at least one block");
+		}
+		if ((long) totalBlocks * BLOCK_SIZE > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException(String.format("Too many blocks: %d", totalBlocks));
+		}
+		this.arena = ByteBuffer.allocateDirect(totalBlocks * BLOCK_SIZE);
+		this.maxBlocksPerSeries = maxBlocksPerSeries;
+		this.freeBlocks = new int[totalBlocks];
+		for (int block = totalBlocks - 1; block >= 0; block--)
+		{
+			freeBlocks[freeCount++] = block;
+		}
+	}
+
+	/**
+	 * Append a sample to a series. Samples of a series must be appended in
+	 * chronological order.
+	 *
+	 * @param key
+	 *          The series key.
+	 * @param sample
+	 *          The sample.
+	 */
+	public synchronized void append(String key, StreamSample sample)
+	{
+		Series target = series.computeIfAbsent(key, k -> new Series(maxBlocksPerSeries));
+		int block = target.newest();
+		if (block >= 0 && sample.getTimestamp() < arena.getLong(base(block) + LAST_TIME))
+		{
+			throw new IllegalArgumentException(String.format("Sample for %s is older than the last sample", key));
+		}
+		if (block < 0 || arena.getInt(base(block) + WRITE_OFFSET) + MAX_SAMPLE_SIZE > BLOCK_SIZE)
+		{
+			block = allocate(target, sample.getTimestamp());
+		}
+
+		int base = base(block);
+		StreamStatistics statistics = sample.getStatistics();
+		long[] values = { statistics.getViewers(), Math.round(statistics.getAverageFps() * 100),
+						statistics.getVideoHeight(), statistics.getDelay() };
+		int position = base + arena.getInt(base + WRITE_OFFSET);
+		position = writeVarLong(position, sample.getTimestamp() - arena.getLong(base + LAST_TIME));
+		for (int index = 0; index < VALUE_COUNT; index++)
+		{
+			int valueOffset = base + LAST_VALUES + index * 8;
+			position = writeVarLong(position, values[index] - arena.getLong(valueOffset));
+			arena.putLong(valueOffset, values[index]);
+		}
+		arena.putLong(base + LAST_TIME, sample.getTimestamp());
+		arena.putInt(base + COUNT, arena.getInt(base + COUNT) + 1);
+		arena.putInt(base + WRITE_OFFSET, position - base);
+	}
+
+	/**
+	 * Get all samples of a series in a time range.
+	 *
+	 * @param key
+	 *          The series key.
+	 * @param from
+	 *          Start of the range in epoch milliseconds, inclusive.
+	 * @param to
+	 *          End of the range in epoch milliseconds, exclusive.
+	 * @return Samples in chronological order. May be empty but never
+	 *         <code>null</code>.
+	 */
+	public synchronized List<StreamSample> range(String key, long from, long to)
+	{
+		List<StreamSample> samples = new ArrayList<>();
+		scan(key, from, to, samples::add);
+		return samples;
+	}
+
+	/**
+	 * Aggregate the samples of a series in a time range into buckets of equal
+	 * length. Buckets without samples are omitted.
+	 *
+	 * @param key
+	 *          The series key.
+	 * @param from
+	 *          Start of the range in epoch milliseconds, inclusive.
+	 * @param to
+	 *          End of the range in epoch milliseconds, exclusive.
+	 * @param bucketMillis
+	 *          Bucket length in milliseconds.
+	 * @return Aggregates in chronological order. May be empty but never
+	 *         <code>null</code>.
+	 */
+	public synchronized List<StreamAggregate> downsample(String key, long from, long to, long bucketMillis)
+	{
+		if (bucketMillis <= 0)
+		{
+			throw new IllegalArgumentException("Bucket length must be positive");
+		}
+		TreeMap<Long, StreamAggregate> buckets = new TreeMap<>();
+		scan(key, from, to, sample -> {
+			long bucketStart = from + (sample.getTimestamp() - from) / bucketMillis * bucketMillis;
+			StreamStatistics statistics = sample.getStatistics();
+			buckets.computeIfAbsent(bucketStart, StreamAggregate::new).add(statistics.getViewers(),
+							statistics.getAverageFps(), statistics.getVideoHeight(), statistics.getDelay());
+		});
+		return new ArrayList<>(buckets.values());
+	}
+
+	/**
+	 * Calculate the viewer trend of a series as the least-squares slope of the
+	 * viewer count over time.
+	 *
+	 * @param key
+	 *          The series key.
+	 * @param from
+	 *          Start of the range in epoch milliseconds, inclusive.
+	 * @param to
+	 *          End of the range in epoch milliseconds, exclusive.
+	 * @return Viewer change per hour. <code>0</code> if there are less than two
+	 *         samples in the range.
+	 */
+	public synchronized double viewerTrend(String key, long from, long to)
+	{
+		// Sums relative to range start to keep the numbers small
+		double[] sums = new double[5];
+		scan(key, from, to, sample -> {
+			double hours = (sample.getTimestamp() - from) / 3_600_000d;
+			double viewers = sample.getStatistics().getViewers();
+			sums[0]++;
+			sums[1] += hours;
+			sums[2] += viewers;
+			sums[3] += hours * hours;
+			sums[4] += hours * viewers;
+		});
+		double n = sums[0];
+		double denominator = n * sums[3] - sums[1] * sums[1];
+		if (n < 2 || denominator == 0)
+		{
+			return 0;
+		}
+		return (n * sums[4] - sums[1] * sums[2]) / denominator;
+	}
+
+	/**
+	 * Remove a series and release its blocks.
+	 *
+	 * @param key
+	 *          The series key.
+	 */
+	public synchronized void remove(String key)
+	{
+		Series removed = series.remove(key);
+		if (removed != null)
+		{
+			while (removed.size > 0)
+			{
+				freeBlocks[freeCount++] = removed.removeOldest();
+			}
+		}
+	}
+
+	/**
+	 * Get the size of the off-heap storage.
+	 *
+	 * @return Storage size in bytes.
+	 */
+	public int getCapacityBytes()
+	{
+		return arena.capacity();
+	}
+
+	/**
+	 * Decode all samples of a series within a range.
+	 */
+	private void scan(String key, long from, long to, Consumer<StreamSample> consumer)
+	{
+		Series source = series.get(key);
+		if (source == null)
+		{
+			return;
+		}
+		long[] values = new long[VALUE_COUNT];
+		long[] varLong = new long[1];
+		for (int ring = 0; ring < source.size; ring++)
+		{
+			int base = base(source.get(ring));
+			if (arena.getLong(base + LAST_TIME) < from || arena.getLong(base + FIRST_TIME) >= to)
+			{
+				continue;
+			}
+			long timestamp = arena.getLong(base + FIRST_TIME);
+			Arrays.fill(values, 0);
+			int position = base + DATA_START;
+			int count = arena.getInt(base + COUNT);
+			for (int index = 0; index < count; index++)
+			{
+				position = readVarLong(position, varLong);
+				timestamp += varLong[0];
+				for (int value = 0; value < VALUE_COUNT; value++)
+				{
+					position = readVarLong(position, varLong);
+					values[value] += varLong[0];
+				}
+				if (timestamp >= from && timestamp < to)
+				{
+					consumer.accept(new StreamSample(timestamp,
+									new StreamStatistics(values[0], values[1] / 100d, (int) values[2], values[3])));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Allocate and initialize a new block for a series.
+	 */
+	private int allocate(Series target, long firstTimestamp)
+	{
+		int block;
+		if (target.size == maxBlocksPerSeries)
+		{
+			block = target.removeOldest();
+		}
+		else if (freeCount > 0)
+		{
+			block = freeBlocks[--freeCount];
+		}
+		else
+		{
+			block = evictOldest();
+		}
+		int base = base(block);
+		arena.putLong(base + FIRST_TIME, firstTimestamp);
+		arena.putLong(base + LAST_TIME, firstTimestamp);
+		arena.putInt(base + COUNT, 0);
+		arena.putInt(base + WRITE_OFFSET, DATA_START);
+		for (int index = 0; index < VALUE_COUNT; index++)
+		{
+			arena.putLong(base + LAST_VALUES + index * 8, 0);
+		}
+		target.add(block);
+		return block;
+	}
+
+	/**
+	 * Take the block with the oldest data from all series.
+	 */
+	private int evictOldest()
+	{
+		Series oldest = null;
+		for (Series candidate : series.values())
+		{
+			if (candidate.size > 0 && (oldest == null
+							|| arena.getLong(base(candidate.get(0)) + FIRST_TIME) < arena.getLong(base(oldest.get(0)) + FIRST_TIME)))
+			{
+				oldest = candidate;
+			}
+		}
+		return oldest.removeOldest();
+	}
+
+	/**
+	 * Get the arena offset of a block.
+	 */
+	private static int base(int block)
+	{
+		return block * BLOCK_SIZE;
+	}
+
+	/**
+	 * Write a zig-zag encoded variable-length long.
+	 *
+	 * @return Position after the written value.
+	 */
+	private int writeVarLong(int position, long value)
+	{
+		long zigZag = (value << 1) ^ (value >> 63);
+		while ((zigZag & ~0x7FL) != 0)
+		{
+			arena.put(position++, (byte) ((zigZag & 0x7F) | 0x80));
+			zigZag >>>= 7;
+		}
+		arena.put(position++, (byte) zigZag);
+		return position;
+	}
+
+	/**
+	 * Read a zig-zag encoded variable-length long.
+	 *
+	 * @return Position after the read value.
+	 */
+	private int readVarLong(int position, long[] result)
+	{
+		long zigZag = 0;
+		int shift = 0;
+		byte current;
+		do
+		{
+			current = arena.get(position++);
+			zigZag |= (long) (current & 0x7F) << shift;
+			shift += 7;
+		} while ((current & 0x80) != 0);
+		result[0] = (zigZag >>> 1) ^ -(zigZag & 1);
+		return position;
+	}
+
+	/**
+	 * Ring of block indexes of one series, oldest first.
+	 */
+	private static class Series
+	{
+		private final int[]	blocks;
+		private int					head;
+		private int					size;
+
+		Series(int capacity)
+		{
+			blocks = new int[capacity];
+		}
+
+		int get(int index)
+		{
+			return blocks[(head + index) % blocks.length];
+		}
+
+		int newest()
+		{
+			return size == 0 ? -1 : get(size - 1);
+		}
+
+		void add(int block)
+		{
+			blocks[(head + size) % blocks.length] = block;
+			size++;
+		}
+
+		int removeOldest()
+		{
+			int block = blocks[head];
+			head = (head + 1) % blocks.length;
+			size--;
+			return block;
+		}
+	}
+}
@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
@@ -54,7 +55,7 @@ public class Channel
 	/**
 	 * Authorization token for this channel.
 	 */
-	private ChannelToken				channelToken;
+	private volatile ChannelToken	channelToken;
 
 	/**
 	 * API endpoint for the user playlist API.
@@ -69,14 +70,14 @@ public class Channel
 	/**
 	 * Stream information.
 	 */
-	private Stream							streamInfo;
+	private volatile Stream			streamInfo;
 
 	/**
 	 * Base URI for Usher API.
 	 */
 	// private static final String USHER_API_BASE =
 	// "https://usher.twitch.tv/api/channel/hls/";
-	private static final String	USHER_API_BASE	= "https://usher.ttvnw.net/api/channel/hls/";
+	static final String					USHER_API_BASE	= "https://usher.ttvnw.net/api/channel/hls/";
 
 	/**
 	 * Create a new channel object.
@@ -127,6 +128,16 @@ public class Channel
 		return channelInfo.displayName;
 	}
 
+	/**
+	 * Get the channel ID.
+	 *
+	 * @return The Twitch channel ID.
+	 */
+	public String getId()
+	{
+		return channelInfo.id;
+	}
+
 	public boolean isLive()
 	{
 		if (streamInfo == null)
@@ -173,6 +184,24 @@ public class Channel
 						StreamInfo::new).stream;
 	}
 
+	/**
+	 * Refresh the stream information and get the current stream statistics.
+	 *
+	 * @return Statistics of the live stream. Empty if the channel is not live.
+	 * @throws AirTwitchException
+	 *           Error while retrieving the stream information.
+	 */
+	public Optional<StreamStatistics> readStreamStatistics() throws AirTwitchException
+	{
+		readStreamInfo();
+		Stream stream = streamInfo;
+		if (stream == null)
+		{
+			return Optional.empty();
+		}
+		return Optional.of(new StreamStatistics(stream.viewers, stream.averageFps, stream.videoHeight, stream.delay));
+	}
+
 	/**
 	 * Get list of live streams for this channel. List may be empty if the channel
 	 * is not live.
@@ -182,6 +211,65 @@ public class Channel
 	 *           Error while retrieving the streams.
 	 */
 	public List<LiveStream> getLiveStreams() throws AirTwitchException
+	{
+		Optional<String> playlistSource = readMasterPlaylist();
+		if (!playlistSource.isPresent())
+		{
+			return Collections.emptyList();
+		}
+		try (ByteArrayInputStream in = new ByteArrayInputStream(playlistSource.get().getBytes(Charset.forName("UTF-8"))))
+		{
+			// Lenient parsing required because Twitch uses own tags not known to
+			// the parser
+			PlaylistParser parser = new PlaylistParser(in, Format.EXT_M3U, Encoding.UTF_8, ParsingMode.LENIENT);
+			Playlist playlist = parser.parse();
+			if (playlist.hasMasterPlaylist())
+			{
+				// Extended M3U
+				List<PlaylistData> tracks = playlist.getMasterPlaylist().getPlaylists();
+				return tracks.stream().map(LiveStream::build).collect(Collectors.toList());
+			}
+			else if (playlist.hasMediaPlaylist())
+			{
+				// Plain M3U
+				List<TrackData> tracks = playlist.getMediaPlaylist().getTracks();
+				return tracks.stream().map(track -> track.getUri()).map(URI::create).map(LiveStream::build)
+								.collect(Collectors.toList());
+			}
+			else
+			{
+				return Collections.emptyList();
+			}
+		}
+		catch (IOException | ParseException | PlaylistException exception)
+		{
+			throw new AirTwitchException("Could not retrieve live streams for channel %s", exception, channelInfo.name);
+		}
+	}
+
+	/**
+	 * Get the master playlist of this channel as sent by the Usher API, with
+	 * all variants. Requires a channel token, see
+	 * {@link #requestChannelToken()}.
+	 *
+	 * @return Playlist source.
+	 * @throws AirTwitchException
+	 *           Error while retrieving the playlist, or the channel is not live.
+	 */
+	public String getMasterPlaylist() throws AirTwitchException
+	{
+		return readMasterPlaylist()
+						.orElseThrow(() -> new AirTwitchException("Channel %s is not live", channelInfo.name));
+	}
+
+	/**
+	 * Request the master playlist from the Usher API.
+	 *
+	 * @return Playlist source. Empty if the Usher API rejected the request.
+	 * @throws AirTwitchException
+	 *           Error while retrieving the playlist.
+	 */
+	private Optional<String> readMasterPlaylist() throws AirTwitchException
 	{
 		try
 		{
@@ -191,42 +279,42 @@ public class Channel
 			AtomicReference<String> playlistSource = new AtomicReference<String>();
 			boolean success = api.sendRequest(getStreamPlaylist, content -> playlistSource.set(content),
 							(status, content) -> System.err.println(content));
-			if (success)
-			{
-				try (ByteArrayInputStream in = new ByteArrayInputStream(
-								playlistSource.get().getBytes(Charset.forName("UTF-8"))))
-				{
-					// Lenient parsing required because Twitch uses own tags not known to
-					// the parser
-					PlaylistParser parser = new PlaylistParser(in, Format.EXT_M3U, Encoding.UTF_8, ParsingMode.LENIENT);
-					Playlist playlist = parser.parse();
-					if (playlist.hasMasterPlaylist())
-					{
-						// Extended M3U
-						List<PlaylistData> tracks = playlist.getMasterPlaylist().getPlaylists();
-						return tracks.stream().map(LiveStream::build).collect(Collectors.toList());
-					}
-					else if (playlist.hasMediaPlaylist())
-					{
-						// Plain M3U
-						List<TrackData> tracks = playlist.getMediaPlaylist().getTracks();
-						return tracks.stream().map(track -> track.getUri()).map(URI::create).map(LiveStream::build)
-										.collect(Collectors.toList());
-					}
-					else
-					{
-						return Collections.emptyList();
-					}
-				}
-			}
-			else
+			return success ? Optional.ofNullable(playlistSource.get()) : Optional.empty();
+		}
+		catch (URISyntaxException | IOException exception)
+		{
+			throw new AirTwitchException("Could not retrieve live streams for channel %s", exception, channelInfo.name);
+		}
+	}
+
+	/**
+	 * Compute the live edge of a stream of this channel from its media
+	 * playlist.
+	 *
+	 * @param stream
+	 *          A stream of this channel.
+	 * @return The live edge.
+	 * @throws AirTwitchException
+	 *           The media playlist could not be retrieved or parsed.
+	 */
+	public LiveEdge getLiveEdge(LiveStream stream) throws AirTwitchException
+	{
+		try
+		{
+			HttpGet getMediaPlaylist = new HttpGet(stream.getStreamUri());
+			getMediaPlaylist.addHeader("Accept", "application/vnd.apple.mpegurl");
+			AtomicReference<String> playlistSource = new AtomicReference<String>();
+			if (!api.sendRequest(getMediaPlaylist, content -> playlistSource.set(content), null))
 			{
-				return Collections.emptyList();
+				throw new AirTwitchException("Media playlist of stream %s of channel %s not available", stream.getTitle(),
+								channelInfo.name);
 			}
+			return LiveEdge.parse(playlistSource.get());
 		}
-		catch (URISyntaxException | IOException | ParseException | PlaylistException exception)
+		catch (IOException exception)
 		{
-			throw new AirTwitchException("Could not retrieve live streams for channel %s", exception, channelInfo.name);
+			throw new AirTwitchException("Could not retrieve media playlist of stream %s of channel %s", exception,
+							stream.getTitle(), channelInfo.name);
 		}
 	}
 
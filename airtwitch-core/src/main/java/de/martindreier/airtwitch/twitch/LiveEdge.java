@@ -0,0 +1,290 @@
+/**
+ * LiveEdge.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.twitch;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.logging.Logger;
+import com.iheartradio.m3u8.Encoding;
+import com.iheartradio.m3u8.Format;
+import com.iheartradio.m3u8.ParseException;
+import com.iheartradio.m3u8.ParsingMode;
+import com.iheartradio.m3u8.PlaylistException;
+import com.iheartradio.m3u8.PlaylistParser;
+import com.iheartradio.m3u8.data.MediaPlaylist;
+import com.iheartradio.m3u8.data.Playlist;
+import com.iheartradio.m3u8.data.TrackData;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Start position close to the live edge of a stream, computed from the media
+ * playlist of a variant. With <code>Start-Position: 0.0</code> alone, devices
+ * start at the beginning of the playlist window, which is the full window
+ * length behind the live edge. Starting at the live edge minus a safety margin
+ * saves the difference.
+ * <p>
+ * The safety margin is read from the Java system property
+ * <code>airtwitch.liveEdge.margin</code> in seconds. It defaults to one and a
+ * half target durations and is never less than one target duration, so the
+ * device starts on a complete segment.
+ *
+ * @see Channel#getLiveEdge(LiveStream)
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class LiveEdge
+{
+	/**
+	 * Java system property: <code>true</code> to start playback at the live
+	 * edge.
+	 */
+	public static final String	PROP_ENABLED							= "airtwitch.liveEdge";
+
+	/**
+	 * Java system property: safety margin behind the live edge in seconds.
+	 */
+	public static final String	PROP_MARGIN								= "airtwitch.liveEdge.margin";
+
+	/**
+	 * Default safety margin in target durations.
+	 */
+	private static final double	DEFAULT_MARGIN_SEGMENTS	= 1.5;
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger	log											= Logger.getLogger(LiveEdge.class.getName());
+
+	/**
+	 * Length of the playlist window in seconds.
+	 */
+	private final double				windowSeconds;
+
+	/**
+	 * Target duration of the playlist in seconds.
+	 */
+	private final int						targetDuration;
+
+	/**
+	 * Distance of the start position from the live edge in seconds.
+	 */
+	private final double				marginSeconds;
+
+	/**
+	 * <code>false</code> if the playlist is complete, e.g. for a recording.
+	 */
+	private final boolean				live;
+
+	/**
+	 * Wall clock time of the start of the playlist window in milliseconds since
+	 * the epoch, <code>-1</code> if the playlist has no program date time.
+	 */
+	private final long					windowStartMillis;
+
+	/**
+	 * Create a live edge.
+	 *
+	 * @param windowSeconds
+	 *          Length of the playlist window in seconds.
+	 * @param targetDuration
+	 *          Target duration of the playlist in seconds.
+	 * @param marginSeconds
+	 *          Distance of the start position from the live edge in seconds.
+	 * @param live
+	 *          <code>false</code> if the playlist is complete.
+	 * @param windowStartMillis
+	 *          Wall clock time of the start of the playlist window in
+	 *          milliseconds since the epoch, <code>-1</code> if not known.
+	 */
+	LiveEdge(double windowSeconds, int targetDuration, double marginSeconds, boolean live, long windowStartMillis)
+	{
+		this.windowSeconds = windowSeconds;
+		this.targetDuration = targetDuration;
+		this.marginSeconds = Math.min(windowSeconds, marginSeconds);
+		this.live = live;
+		this.windowStartMillis = windowStartMillis;
+	}
+
+	/**
+	 * Compute the live edge of a media playlist, with the configured safety
+	 * margin.
+	 *
+	 * @param playlist
+	 *          Media playlist source.
+	 * @return The live edge.
+	 * @throws AirTwitchException
+	 *           The source is not a media playlist.
+	 */
+	public static LiveEdge parse(String playlist) throws AirTwitchException
+	{
+		String margin = System.getProperty(PROP_MARGIN);
+		LiveEdge edge = parse(playlist, margin == null ? -1 : Double.parseDouble(margin));
+		log.info(edge::toString);
+		return edge;
+	}
+
+	/**
+	 * Compute the live edge of a media playlist.
+	 *
+	 * @param playlist
+	 *          Media playlist source.
+	 * @param marginSeconds
+	 *          Safety margin behind the live edge in seconds. Negative for the
+	 *          default margin.
+	 * @return The live edge.
+	 * @throws AirTwitchException
+	 *           The source is not a media playlist.
+	 */
+	static LiveEdge parse(String playlist, double marginSeconds) throws AirTwitchException
+	{
+		try (ByteArrayInputStream in = new ByteArrayInputStream(playlist.getBytes(StandardCharsets.UTF_8)))
+		{
+			// Twitch uses own tags not known to the parser
+			Playlist parsed = new PlaylistParser(in, Format.EXT_M3U, Encoding.UTF_8, ParsingMode.LENIENT).parse();
+			if (!parsed.hasMediaPlaylist())
+			{
+				throw new AirTwitchException("Not a media playlist");
+			}
+			MediaPlaylist media = parsed.getMediaPlaylist();
+			double window = 0;
+			long windowStart = -1;
+			List<TrackData> tracks = media.getTracks();
+			for (TrackData track : tracks)
+			{
+				if (windowStart < 0 && track.hasProgramDateTime())
+				{
+					// Date of the first dated segment, minus the segments before it
+					windowStart = parseDateTime(track.getProgramDateTime()) - Math.round(window * 1000);
+				}
+				window += track.hasTrackInfo() ? track.getTrackInfo().duration : media.getTargetDuration();
+			}
+			int target = media.getTargetDuration();
+			double margin = marginSeconds < 0 ? target * DEFAULT_MARGIN_SEGMENTS : marginSeconds;
+			return new LiveEdge(window, target, Math.max(target, margin), media.isOngoing(), windowStart);
+		}
+		catch (IOException | ParseException | PlaylistException exception)
+		{
+			throw new AirTwitchException("Could not parse media playlist", exception);
+		}
+	}
+
+	/**
+	 * Parse an <code>EXT-X-PROGRAM-DATE-TIME</code> value.
+	 *
+	 * @param value
+	 *          ISO 8601 date and time, e.g.
+	 *          <code>2026-10-19T08:00:00.000Z</code>.
+	 * @return Milliseconds since the epoch, <code>-1</code> if the value is
+	 *         malformed.
+	 */
+	private static long parseDateTime(String value)
+	{
+		try
+		{
+			return OffsetDateTime.parse(value.trim()).toInstant().toEpochMilli();
+		}
+		catch (DateTimeParseException exception)
+		{
+			log.fine(() -> "Malformed program date time " + value);
+			return -1;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if playback should start at the live edge.
+	 * @see #PROP_ENABLED
+	 */
+	public static boolean isEnabled()
+	{
+		return Boolean.getBoolean(PROP_ENABLED);
+	}
+
+	/**
+	 * Get the position to start playback at, relative to the start of the
+	 * playlist window.
+	 *
+	 * @return Start position in seconds. <code>0</code> for complete
+	 *         playlists, which are played from the start.
+	 */
+	public double getStartPosition()
+	{
+		return live ? windowSeconds - marginSeconds : 0;
+	}
+
+	/**
+	 * @return Length of the playlist window in seconds.
+	 */
+	public double getWindowSeconds()
+	{
+		return windowSeconds;
+	}
+
+	/**
+	 * @return Target duration of the playlist in seconds.
+	 */
+	public int getTargetDuration()
+	{
+		return targetDuration;
+	}
+
+	/**
+	 * @return Distance of the start position from the live edge in seconds.
+	 */
+	public double getMarginSeconds()
+	{
+		return live ? marginSeconds : windowSeconds;
+	}
+
+	/**
+	 * Get the expected reduction of the glass-to-glass latency, compared to a
+	 * start at the beginning of the playlist window.
+	 *
+	 * @return Latency saved in seconds.
+	 */
+	public double getLatencySavedSeconds()
+	{
+		return getStartPosition();
+	}
+
+	/**
+	 * Get the wall clock time of the start of the playlist window, from the
+	 * <code>EXT-X-PROGRAM-DATE-TIME</code> tags of the playlist. Twitch dates
+	 * the segments when they are ingested.
+	 *
+	 * @return Milliseconds since the epoch, or empty if the playlist has no
+	 *         program date time.
+	 */
+	public OptionalLong getWindowStartMillis()
+	{
+		return windowStartMillis < 0 ? OptionalLong.empty() : OptionalLong.of(windowStartMillis);
+	}
+
+	/**
+	 * @return <code>false</code> if the playlist is complete, e.g. for a
+	 *         recording.
+	 */
+	public boolean isLive()
+	{
+		return live;
+	}
+
+	@Override
+	public String toString()
+	{
+		if (!live)
+		{
+			return "Playlist is complete, starting at the beginning";
+		}
+		return String.format("Starting %.1f s into the %.1f s window, %.1f s behind the live edge, about %.1f s less latency",
+						getStartPosition(), windowSeconds, marginSeconds, getLatencySavedSeconds());
+	}
+}
@@ -15,6 +15,11 @@ import com.iheartradio.m3u8.data.PlaylistData;
  */
 public class LiveStream
 {
+	/**
+	 * Title of the audio only stream.
+	 */
+	public static final String	AUDIO_ONLY	= "audio_only";
+
 	/**
 	 * Stream title.
 	 */
@@ -23,6 +28,11 @@ public class LiveStream
 	 * Stream URI.
 	 */
 	private URI			streamUri;
+	/**
+	 * Peak bandwidth of the stream in bits per second, <code>0</code> if not
+	 * known.
+	 */
+	private long		bandwidth;
 
 	/**
 	 * Build a new live stream. The title in inferred from the URI.
@@ -53,7 +63,8 @@ public class LiveStream
 	public static LiveStream build(PlaylistData streamPlaylist)
 	{
 		URI streamURI = URI.create(streamPlaylist.getUri());
-		return new LiveStream(streamPlaylist.getStreamInfo().getVideo(), streamURI);
+		int bandwidth = streamPlaylist.getStreamInfo().getBandwidth();
+		return new LiveStream(streamPlaylist.getStreamInfo().getVideo(), streamURI, Math.max(0, bandwidth));
 	}
 
 	/**
@@ -65,11 +76,28 @@ public class LiveStream
 	 *          Stream URI.
 	 */
 	public LiveStream(String title, URI streamUri)
+	{
+		this(title, streamUri, 0);
+	}
+
+	/**
+	 * Create a new live stream reference.
+	 *
+	 * @param title
+	 *          Stream title.
+	 * @param streamUri
+	 *          Stream URI.
+	 * @param bandwidth
+	 *          Peak bandwidth of the stream in bits per second, <code>0</code> if
+	 *          not known.
+	 */
+	public LiveStream(String title, URI streamUri, long bandwidth)
 	{
 		Args.notNull(title, "stream title");
 		Args.notNull(streamUri, "stream URI");
 		this.title = title;
 		this.streamUri = streamUri;
+		this.bandwidth = bandwidth;
 	}
 
 	/**
@@ -92,4 +120,26 @@ public class LiveStream
 		return streamUri;
 	}
 
+	/**
+	 * Get the peak bandwidth of the stream, as announced in the master
+	 * playlist.
+	 *
+	 * @return Bandwidth in bits per second, <code>0</code> if not known.
+	 */
+	public long getBandwidth()
+	{
+		return bandwidth;
+	}
+
+	/**
+	 * Check whether this is the audio only stream of the channel, without
+	 * video.
+	 *
+	 * @return <code>true</code> for the audio only stream.
+	 */
+	public boolean isAudioOnly()
+	{
+		return AUDIO_ONLY.equals(title);
+	}
+
 }
@@ -0,0 +1,241 @@
+/**
+ * StreamPrefetcher.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.twitch;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Speculatively prepares playback for the top live channels of a search
+ * result. For each of the first live channels the channel token is requested
+ * and the stream list is resolved in the background, so selecting one of these
+ * channels does not wait for the Twitch API anymore. Preparation for channels
+ * which are no longer part of the search result is cancelled.
+ * <p>
+ * The number of channels to prepare is read from the Java system property
+ * <code>airtwitch.prefetch.count</code>. The prefetcher is disabled if the
+ * property is not set; {@link #getLiveStreams(Channel)} then simply resolves
+ * the streams on demand.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class StreamPrefetcher implements Closeable
+{
+	/**
+	 * Java system property: number of channels to prepare.
+	 */
+	public static final String										PROP_PREFETCH_COUNT	= "airtwitch.prefetch.count";
+
+	/**
+	 * Prepared streams are discarded after this time, as the channel token may
+	 * have expired.
+	 */
+	private static final long											MAX_AGE_MILLIS			= TimeUnit.MINUTES.toMillis(5);
+
+	/**
+	 * Logging instance.
+	 */
+	private static final Logger										log									= Logger
+					.getLogger(StreamPrefetcher.class.getName());
+
+	/**
+	 * Number of live channels to prepare.
+	 */
+	private final int															count;
+
+	/**
+	 * Preparation threads.
+	 */
+	private final ExecutorService									executor;
+
+	/**
+	 * Prepared stream lists by channel ID. Each search returns new channel
+	 * instances, so channels are matched by their ID.
+	 */
+	private final Map<String, Preparation>				prepared						= new ConcurrentHashMap<>();
+
+	/**
+	 * Task selecting the live channels of the current search result.
+	 */
+	private Future<?>															selection;
+
+	/**
+	 * Create a prefetcher configured by the system property
+	 * <code>airtwitch.prefetch.count</code>.
+	 */
+	public StreamPrefetcher()
+	{
+		this(Integer.getInteger(PROP_PREFETCH_COUNT, 0));
+	}
+
+	/**
+	 * Create a prefetcher.
+	 *
+	 * @param count
+	 *          Number of live channels to prepare. <code>0</code> disables
+	 *          prefetching.
+	 */
+	public StreamPrefetcher(int count)
+	{
+		this.count = Math.max(0, count);
+		this.executor = Executors.newFixedThreadPool(Math.max(1, this.count + 1), runnable -> {
+			Thread thread = new Thread(runnable, "Stream prefetch");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Start preparing playback for a new search result. Preparation for
+	 * channels not contained in the result is cancelled.
+	 *
+	 * @param channels
+	 *          The search result, best match first.
+	 */
+	public synchronized void prefetch(List<Channel> channels)
+	{
+		if (count == 0)
+		{
+			return;
+		}
+		if (selection != null)
+		{
+			selection.cancel(true);
+		}
+		Set<String> ids = channels.stream().map(Channel::getId).collect(Collectors.toSet());
+		for (String id : new ArrayList<>(prepared.keySet()))
+		{
+			if (!ids.contains(id))
+			{
+				cancel(id);
+			}
+		}
+		List<Channel> candidates = new ArrayList<>(channels);
+		selection = executor.submit(() -> selectLiveChannels(candidates));
+	}
+
+	/**
+	 * Get the live streams of a channel. Returns the prepared streams if they are
+	 * available, waiting for a running preparation if necessary. Otherwise the
+	 * channel token is requested and the streams are resolved directly.
+	 *
+	 * @param channel
+	 *          The channel.
+	 * @return List of streams. May be empty but never <code>null</code>.
+	 * @throws AirTwitchException
+	 *           Error while retrieving the streams.
+	 */
+	public List<LiveStream> getLiveStreams(Channel channel) throws AirTwitchException
+	{
+		Preparation preparation = prepared.get(channel.getId());
+		if (preparation != null && System.currentTimeMillis() - preparation.started < MAX_AGE_MILLIS)
+		{
+			try
+			{
+				List<LiveStream> streams = preparation.future.get();
+				log.fine(() -> String.format("Using prepared streams for channel %s", channel.getName()));
+				return streams;
+			}
+			catch (ExecutionException | CancellationException exception)
+			{
+				log.log(Level.FINE, "Prepared streams not available, resolving directly", exception);
+			}
+			catch (InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+				throw new AirTwitchException("Interrupted while waiting for streams of channel %s", exception,
+								channel.getName());
+			}
+		}
+		cancel(channel.getId());
+		channel.requestChannelToken();
+		return channel.getLiveStreams();
+	}
+
+	/**
+	 * Walk through the search result and start preparation for the first live
+	 * channels.
+	 */
+	private void selectLiveChannels(List<Channel> channels)
+	{
+		int selected = 0;
+		for (Channel channel : channels)
+		{
+			if (selected >= count || Thread.currentThread().isInterrupted())
+			{
+				return;
+			}
+			if (!channel.isLive())
+			{
+				continue;
+			}
+			selected++;
+			Preparation existing = prepared.get(channel.getId());
+			if (existing == null || System.currentTimeMillis() - existing.started >= MAX_AGE_MILLIS)
+			{
+				Preparation replaced = prepared.put(channel.getId(), new Preparation(executor.submit(() -> {
+					channel.requestChannelToken();
+					return channel.getLiveStreams();
+				})));
+				if (replaced != null)
+				{
+					replaced.future.cancel(true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forget the preparation of a channel, cancelling it if it is still running.
+	 */
+	private void cancel(String id)
+	{
+		Preparation removed = prepared.remove(id);
+		if (removed != null)
+		{
+			removed.future.cancel(true);
+		}
+	}
+
+	/**
+	 * Cancel all preparation.
+	 */
+	@Override
+	public void close()
+	{
+		executor.shutdownNow();
+		prepared.clear();
+	}
+
+	/**
+	 * Running or completed preparation of one channel.
+	 */
+	private static class Preparation
+	{
+		private final Future<List<LiveStream>>	future;
+		private final long											started	= System.currentTimeMillis();
+
+		Preparation(Future<List<LiveStream>> future)
+		{
+			this.future = future;
+		}
+	}
+}
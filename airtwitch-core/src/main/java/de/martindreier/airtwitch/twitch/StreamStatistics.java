@@ -0,0 +1,91 @@
+/**
+ * StreamStatistics.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.twitch;
+
+/**
+ * Statistics of a live stream at one point in time.
+ *
+ * @see Channel#readStreamStatistics()
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class StreamStatistics
+{
+	/**
+	 * Number of viewers.
+	 */
+	private final long		viewers;
+	/**
+	 * Average frames per second.
+	 */
+	private final double	averageFps;
+	/**
+	 * Video height in pixels.
+	 */
+	private final int			videoHeight;
+	/**
+	 * Stream delay in seconds.
+	 */
+	private final long		delay;
+
+	/**
+	 * Create new stream statistics.
+	 *
+	 * @param viewers
+	 *          Number of viewers.
+	 * @param averageFps
+	 *          Average frames per second.
+	 * @param videoHeight
+	 *          Video height in pixels.
+	 * @param delay
+	 *          Stream delay in seconds.
+	 */
+	public StreamStatistics(long viewers, double averageFps, int videoHeight, long delay)
+	{
+		this.viewers = viewers;
+		this.averageFps = averageFps;
+		this.videoHeight = videoHeight;
+		this.delay = delay;
+	}
+
+	/**
+	 * @return The number of viewers.
+	 */
+	public long getViewers()
+	{
+		return viewers;
+	}
+
+	/**
+	 * @return The average frames per second.
+	 */
+	public double getAverageFps()
+	{
+		return averageFps;
+	}
+
+	/**
+	 * @return The video height in pixels.
+	 */
+	public int getVideoHeight()
+	{
+		return videoHeight;
+	}
+
+	/**
+	 * @return The stream delay in seconds.
+	 */
+	public long getDelay()
+	{
+		return delay;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d viewers, %.1f fps, %dp, %ds delay", viewers, averageFps, videoHeight, delay);
+	}
+}
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
@@ -31,8 +32,13 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
@@ -40,6 +46,9 @@ import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.http.CachingDnsResolver;
+import de.martindreier.airtwitch.http.ConnectionWarmer;
+import de.martindreier.airtwitch.http.HttpTransport;
 
 /**
  * @author Martin Dreier <martin@martindreier.de>
@@ -82,6 +91,12 @@ public class Twitch
 	 */
 	private static final String				TWITCH_API_HOST					= "api.twitch.tv";
 
+	/**
+	 * Idle time in seconds after which the next request warms up the
+	 * connections to the Twitch hosts again.
+	 */
+	private static final long					WARM_UP_IDLE_SECONDS		= 60;
+
 	/**
 	 * Twitch API client secret.
 	 */
@@ -97,6 +112,16 @@ public class Twitch
 	 */
 	private final Gson								gson;
 
+	/**
+	 * Caching DNS resolver for the Twitch hosts.
+	 */
+	private final CachingDnsResolver	dnsResolver;
+
+	/**
+	 * Connection warm-up, if started.
+	 */
+	private volatile ConnectionWarmer	warmer;
+
 	/**
 	 * Create a new Twitch API client.
 	 *
@@ -106,6 +131,7 @@ public class Twitch
 	{
 		gson = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).create();
 		clientID = determineClientID();
+		dnsResolver = new CachingDnsResolver();
 		httpClient = initializeHttpClient();
 	}
 
@@ -113,12 +139,43 @@ public class Twitch
 	 * Initialize the HTTP client to connect to the Twitch API.
 	 *
 	 * @return The HTTP client.
+	 * @throws AirTwitchException
+	 *           The configured HTTP transport cannot be initialized.
+	 * @see HttpTransport
 	 */
-	protected CloseableHttpClient initializeHttpClient()
+	protected CloseableHttpClient initializeHttpClient() throws AirTwitchException
 	{
 		List<Header> defaultHeaders = new ArrayList<>(2);
 		defaultHeaders.add(new BasicHeader(HEADER_TWITCH_CLIENT_ID, clientID));
-		return HttpClients.custom().setDefaultHeaders(defaultHeaders).build();
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+						RegistryBuilder.<ConnectionSocketFactory> create()
+										.register("http", PlainConnectionSocketFactory.getSocketFactory())
+										.register("https", SSLConnectionSocketFactory.getSocketFactory()).build(),
+						dnsResolver);
+		connectionManager.setDefaultMaxPerRoute(4);
+		return HttpTransport.decorate(
+						HttpClients.custom().setConnectionManager(connectionManager).setDefaultHeaders(defaultHeaders).build());
+	}
+
+	/**
+	 * Prepare the connections to the Twitch API and the Usher API in the
+	 * background, so the first search and the first playback do not pay for DNS,
+	 * TCP and TLS setup. A request after a long idle period prepares the
+	 * connection to the other host again. Has no effect while HTTP traffic is
+	 * recorded or replayed.
+	 */
+	public synchronized void warmUp()
+	{
+		if (warmer != null || !HttpTransport.isPassthrough())
+		{
+			return;
+		}
+		URI usherApi = URI.create(Channel.USHER_API_BASE);
+		dnsResolver.prefetch(TWITCH_API_HOST, usherApi.getHost());
+		warmer = new ConnectionWarmer(httpClient,
+						Arrays.asList(URI.create("https://" + TWITCH_API_HOST + "/"), usherApi.resolve("/")),
+						WARM_UP_IDLE_SECONDS, TimeUnit.SECONDS);
+		warmer.start();
 	}
 
 	/**
@@ -232,6 +289,10 @@ public class Twitch
 					BiConsumer<StatusLine, String> errorHandler) throws ClientProtocolException, IOException
 	{
 		log.fine(() -> String.format("Sending request to %s", request.getURI().toString()));
+		if (warmer != null)
+		{
+			warmer.touch(request.getURI());
+		}
 		try (CloseableHttpResponse response = httpClient.execute(request))
 		{
 			StatusLine status = response.getStatusLine();
@@ -0,0 +1,180 @@
+/**
+ * BulkCommandDispatcherTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.NameValuePair;
+import org.junit.After;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.StreamControl.Command;
+import de.martindreier.airtwitch.test.FakeAirPlayDevice;
+
+/**
+ * Tests for {@link BulkCommandDispatcher} against a local fake device.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class BulkCommandDispatcherTest
+{
+	/**
+	 * Dispatcher under test.
+	 */
+	private BulkCommandDispatcher	dispatcher;
+
+	/**
+	 * Fake device.
+	 */
+	private FakeAirPlayDevice		device;
+
+	@After
+	public void tearDown() throws IOException
+	{
+		if (dispatcher != null)
+		{
+			dispatcher.close();
+		}
+		if (device != null)
+		{
+			device.close();
+		}
+	}
+
+	@Test
+	public void connectionShouldBeKeptAliveForNextBatch() throws Exception
+	{
+		device = new FakeAirPlayDevice(0, true, Integer.MAX_VALUE);
+		dispatcher = new BulkCommandDispatcher(1, 8, 1);
+		List<StreamControl> streams = givenStreams(1);
+
+		BulkReport first = dispatcher.dispatch(streams, Collections.singletonList(Command.STOP)).get(5, TimeUnit.SECONDS);
+		BulkReport second = dispatcher.dispatch(streams, Collections.singletonList(Command.STOP)).get(5,
+						TimeUnit.SECONDS);
+
+		assertTrue("First batch failed: " + first, first.getFailures().isEmpty());
+		assertTrue("Second batch failed: " + second, second.getFailures().isEmpty());
+		assertEquals("Connection not reused", 1, device.getConnections());
+		assertEquals("Wrong number of requests", 2, device.getRequests());
+	}
+
+	@Test
+	public void staleConnectionShouldBeRetried() throws Exception
+	{
+		// The device drops the connection instead of answering the second request
+		device = new FakeAirPlayDevice(0, true, 1);
+		dispatcher = new BulkCommandDispatcher(1, 8, 1);
+		List<StreamControl> streams = givenStreams(1);
+		dispatcher.dispatch(streams, Collections.singletonList(Command.STOP)).get(5, TimeUnit.SECONDS);
+
+		BulkReport report = dispatcher.dispatch(streams, Collections.singletonList(Command.STOP)).get(5,
+						TimeUnit.SECONDS);
+
+		assertTrue("Request not retried on a new connection: " + report, report.getFailures().isEmpty());
+		assertEquals("Wrong number of connections", 2, device.getConnections());
+	}
+
+	@Test
+	public void globalWindowShouldLimitRequestsInFlight() throws Exception
+	{
+		device = new FakeAirPlayDevice(100, true, Integer.MAX_VALUE);
+		dispatcher = new BulkCommandDispatcher(2, 2, 1);
+
+		BulkReport report = dispatcher.dispatch(givenStreams(6), Collections.singletonList(Command.STOP)).get(5,
+						TimeUnit.SECONDS);
+
+		assertTrue("Batches failed: " + report, report.getFailures().isEmpty());
+		assertEquals("Global window not used or exceeded", 2, device.getMaxActive());
+	}
+
+	@Test
+	public void deviceWindowShouldLimitRequestsInFlight() throws Exception
+	{
+		device = new FakeAirPlayDevice(100, true, Integer.MAX_VALUE);
+		dispatcher = new BulkCommandDispatcher(2, 8, 1);
+		DeviceInfo info = givenDevice("TV");
+		List<StreamControl> streams = new ArrayList<>();
+		for (int index = 0; index < 3; index++)
+		{
+			streams.add(info.createStream(URI.create("http://localhost/stream.m3u8")));
+		}
+
+		BulkReport report = dispatcher.dispatch(streams, Collections.singletonList(Command.STOP)).get(5,
+						TimeUnit.SECONDS);
+
+		assertTrue("Batches failed: " + report, report.getFailures().isEmpty());
+		assertEquals("Device window exceeded", 1, device.getMaxActive());
+		assertEquals("Wrong number of requests", 3, device.getRequests());
+	}
+
+	@Test
+	public void silentDeviceShouldTimeOut() throws Exception
+	{
+		device = new FakeAirPlayDevice(0, false, Integer.MAX_VALUE);
+		dispatcher = new BulkCommandDispatcher(1, 8, 1);
+
+		BulkReport report = dispatcher
+						.dispatch(givenStreams(1), Collections.singletonList(Command.STOP), 200, TimeUnit.MILLISECONDS)
+						.get(5, TimeUnit.SECONDS);
+
+		assertEquals("Timeout not reported", 1, report.getFailures().size());
+		String message = report.getFailures().get(0).getFailure().get().getMessage();
+		assertTrue("Wrong failure: " + message, message.contains("timed out"));
+	}
+
+	@Test
+	public void failingStreamShouldNotStopDispatcher() throws Exception
+	{
+		device = new FakeAirPlayDevice(0, true, Integer.MAX_VALUE);
+		dispatcher = new BulkCommandDispatcher(1, 8, 1);
+		StreamControl broken = new StreamControl(givenDevice("Broken"), null, URI.create("http://localhost/stream.m3u8"))
+		{
+			@Override
+			protected List<NameValuePair> getContent(Command command)
+			{
+				throw new IllegalStateException("No content");
+			}
+		};
+
+		BulkReport failed = dispatcher.dispatch(Collections.singletonList(broken), Collections.singletonList(Command.PLAY))
+						.get(5, TimeUnit.SECONDS);
+		BulkReport report = dispatcher.dispatch(givenStreams(1), Collections.singletonList(Command.STOP)).get(5,
+						TimeUnit.SECONDS);
+
+		assertEquals("Failure not reported", 1, failed.getFailures().size());
+		assertTrue("Dispatcher stopped after failure: " + report, report.getFailures().isEmpty());
+	}
+
+	// ***** GIVEN *****
+
+	/**
+	 * Streams on different devices, all served by the fake device.
+	 */
+	private List<StreamControl> givenStreams(int count) throws AirTwitchException, IOException
+	{
+		List<StreamControl> streams = new ArrayList<>();
+		for (int index = 0; index < count; index++)
+		{
+			streams.add(givenDevice("TV " + index).createStream(URI.create("http://localhost/stream.m3u8")));
+		}
+		return streams;
+	}
+
+	private DeviceInfo givenDevice(String name) throws IOException
+	{
+		return new DeviceInfo(name, name, name, Collections.singletonList((Inet4Address) InetAddress.getByName("127.0.0.1")),
+						Collections.emptyList(), device.getPort(), DeviceCapabilities.NONE);
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * DeviceCacheTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import de.martindreier.airtwitch.test.FakeAirPlayDevice;
+
+/**
+ * Tests for {@link DeviceCache}. Cached devices are confirmed against a local
+ * fake device.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceCacheTest
+{
+	@Rule
+	public TemporaryFolder		folder	= new TemporaryFolder();
+
+	private FakeAirPlayDevice	fake;
+	private Path							cacheFile;
+	private DeviceInfo				device;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		fake = new FakeAirPlayDevice();
+		cacheFile = folder.getRoot().toPath().resolve("devices.json");
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		if (device != null)
+		{
+			DeviceConnections.getInstance().close(device);
+		}
+		fake.close();
+	}
+
+	@Test
+	public void cachedDeviceShouldBeRestoredAndConfirmed() throws Exception
+	{
+		device = givenDevice("cache-confirmed", fake.getPort());
+		givenCachedDevice(device);
+		DeviceRegistry registry = new DeviceRegistry(1, TimeUnit.MINUTES);
+
+		CompletableFuture<Void> confirmation = new DeviceCache(cacheFile).restore(registry);
+		// Restored before the confirmation
+		assertTrue("Cached device not restored", registry.getSnapshot().getByKey(device.getKey()).isPresent());
+
+		confirmation.get(10, TimeUnit.SECONDS);
+		assertFalse("Device not confirmed", registry.getSnapshot().getByKey(device.getKey()).get().isProbable());
+	}
+
+	@Test
+	public void unreachableCachedDeviceShouldBeRemoved() throws Exception
+	{
+		device = givenDevice("cache-unreachable", fake.getPort());
+		givenCachedDevice(device);
+		fake.close();
+		DeviceRegistry registry = new DeviceRegistry(1, TimeUnit.MINUTES);
+
+		new DeviceCache(cacheFile).restore(registry).get(10, TimeUnit.SECONDS);
+
+		assertFalse("Unreachable device kept", registry.getSnapshot().getByKey(device.getKey()).isPresent());
+	}
+
+	@Test
+	public void expiredDeviceShouldNotBeRestored() throws Exception
+	{
+		Files.write(cacheFile, ("[{\"key\": \"cache-expired\", \"name\": \"TV\", \"inet4Addresses\": [\"127.0.0.1\"], "
+						+ "\"port\": 7000, \"lastSeen\": 0}]").getBytes(StandardCharsets.UTF_8));
+		DeviceRegistry registry = new DeviceRegistry(1, TimeUnit.MINUTES);
+
+		new DeviceCache(cacheFile).restore(registry).get(10, TimeUnit.SECONDS);
+
+		assertTrue("Expired device restored", registry.getSnapshot().getDevices().isEmpty());
+	}
+
+	@Test
+	public void corruptCacheShouldBeIgnored() throws Exception
+	{
+		Files.write(cacheFile, "{ not a device list".getBytes(StandardCharsets.UTF_8));
+		DeviceRegistry registry = new DeviceRegistry(1, TimeUnit.MINUTES);
+
+		new DeviceCache(cacheFile).restore(registry).get(10, TimeUnit.SECONDS);
+
+		assertTrue("Device restored from corrupt cache", registry.getSnapshot().getDevices().isEmpty());
+	}
+
+	// ***** GIVEN *****
+
+	private static DeviceInfo givenDevice(String key, int port) throws IOException
+	{
+		return new DeviceInfo("TV", key, "TV", Collections.singletonList((Inet4Address) InetAddress.getByName("127.0.0.1")),
+						Collections.emptyList(), port, DeviceCapabilities.NONE).confirmed();
+	}
+
+	/**
+	 * Let a cache see the device on the network and wait until it is saved.
+	 */
+	private void givenCachedDevice(DeviceInfo cached) throws Exception
+	{
+		DeviceRegistry registry = new DeviceRegistry(1, TimeUnit.MINUTES);
+		new DeviceCache(cacheFile).restore(registry).get(10, TimeUnit.SECONDS);
+		registry.register(cached);
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+		while (!Files.exists(cacheFile) && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertTrue("Device not saved", Files.exists(cacheFile));
+	}
+}
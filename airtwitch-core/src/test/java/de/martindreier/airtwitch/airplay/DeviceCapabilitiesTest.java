@@ -0,0 +1,59 @@
+/**
+ * DeviceCapabilitiesTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeviceCapabilities}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceCapabilitiesTest
+{
+	@Test
+	public void featuresShouldCombineBothHalves()
+	{
+		assertEquals("Wrong features", 0x0000001E5A7FFFF7L, DeviceCapabilities.parseFeatures("0x5A7FFFF7,0x1E"));
+		assertEquals("Wrong single value", 0x77L, DeviceCapabilities.parseFeatures("0x77"));
+		assertEquals("Malformed value not ignored", 0, DeviceCapabilities.parseFeatures("invalid"));
+	}
+
+	@Test
+	public void txtRecordShouldBeDecoded()
+	{
+		Map<String, String> properties = new HashMap<>();
+		properties.put("features", "0x211");
+		properties.put("srcvers", "220.68");
+
+		DeviceCapabilities capabilities = DeviceCapabilities.fromTxtRecord(properties);
+		assertTrue("Video missing", capabilities.has(Capability.VIDEO));
+		assertTrue("HLS missing", capabilities.has(Capability.HTTP_LIVE_STREAMS));
+		assertTrue("Audio missing", capabilities.has(Capability.AUDIO));
+		assertFalse("Unexpected photo support", capabilities.has(Capability.PHOTO));
+		assertEquals("Wrong version", "220.68", capabilities.getSourceVersion().get());
+		assertFalse("Announced capabilities marked as probed", capabilities.isProbed());
+	}
+
+	@Test
+	public void serverInfoShouldAddFeatures()
+	{
+		DeviceCapabilities capabilities = DeviceCapabilities.fromTxtRecord(Collections.singletonMap("features", "0x1"))
+						.withServerInfo(Collections.singletonMap("features", (Object) 0x4000000000L));
+
+		assertTrue("Announced feature lost", capabilities.has(Capability.VIDEO));
+		assertTrue("Reported feature missing", capabilities.has(Capability.UNIFIED_MEDIA_CONTROL));
+		assertTrue("Server info not recorded", capabilities.has(Capability.SERVER_INFO));
+		assertTrue("Not marked as probed", capabilities.isProbed());
+	}
+}
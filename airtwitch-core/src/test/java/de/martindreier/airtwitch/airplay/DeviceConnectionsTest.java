@@ -0,0 +1,124 @@
+/**
+ * DeviceConnectionsTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.test.FakeAirPlayDevice;
+
+/**
+ * Tests for {@link DeviceConnections} against a local fake device.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceConnectionsTest
+{
+	private FakeAirPlayDevice	fake;
+	private DeviceInfo				device;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		fake = new FakeAirPlayDevice();
+		device = new DeviceInfo("TV", "connections-test", "TV",
+						Collections.singletonList((Inet4Address) InetAddress.getByName("127.0.0.1")), Collections.emptyList(),
+						fake.getPort(), DeviceCapabilities.NONE);
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		DeviceConnections.getInstance().close(device);
+		fake.close();
+	}
+
+	@Test
+	public void streamsOfDeviceShouldShareOneConnection() throws AirTwitchException
+	{
+		StreamControl first = device.createStream(URI.create("http://localhost/first.m3u8"));
+		StreamControl second = device.createStream(URI.create("http://localhost/second.m3u8"));
+
+		first.play();
+		second.play();
+		first.stop();
+
+		assertEquals("Connection not shared", 1, fake.getConnections());
+		ConnectionStatistics statistics = DeviceConnections.getInstance().getStatistics(device).get();
+		assertEquals("Wrong number of connections", 1, statistics.getConnections());
+		assertEquals("Wrong number of requests", 3, statistics.getRequests());
+	}
+
+	@Test
+	public void closedConnectionShouldBeOpenedAgain() throws AirTwitchException
+	{
+		StreamControl stream = device.createStream(URI.create("http://localhost/stream.m3u8"));
+		stream.play();
+
+		DeviceConnections.getInstance().close(device);
+		assertFalse("Statistics of closed connection kept",
+						DeviceConnections.getInstance().getStatistics(device).isPresent());
+		stream.stop();
+
+		assertEquals("Connection not opened again", 2, fake.getConnections());
+		assertEquals("Statistics not reset", 1, DeviceConnections.getInstance().getStatistics(device).get().getRequests());
+	}
+
+	@Test
+	public void closeShouldNotWaitForPendingCommands() throws Exception
+	{
+		ExecutorService commands = DeviceConnections.getInstance().getCommandExecutor(device);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(1);
+		commands.execute(() -> {
+			try
+			{
+				release.await(5, TimeUnit.SECONDS);
+				finished.countDown();
+			}
+			catch (InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		// ***** WHEN *****
+		long start = System.nanoTime();
+		DeviceConnections.getInstance().close(device);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// ***** THEN *****
+		assertTrue("Close waited for pending command: " + elapsed + " ms", elapsed < 1000);
+		release.countDown();
+		assertTrue("Pending command not finished", finished.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void preferredAddressShouldBeAddressOfDevice() throws AirTwitchException, IOException
+	{
+		InetAddress address = InetAddress.getByName("127.0.0.1");
+		assertEquals("Wrong address before connecting", address,
+						DeviceConnections.getInstance().getPreferredAddress(device).get());
+
+		device.createStream(URI.create("http://localhost/stream.m3u8")).stop();
+
+		assertEquals("Wrong address after connecting", address,
+						DeviceConnections.getInstance().getPreferredAddress(device).get());
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * DeviceGroupTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import de.martindreier.airtwitch.test.FakeAirPlayDevice;
+
+/**
+ * Tests for the synchronized start of {@link DeviceGroup} against local fake
+ * devices.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceGroupTest
+{
+	private static final URI								CONTENT	= URI.create("http://localhost/stream.m3u8");
+
+	private final List<FakeAirPlayDevice>	fakes		= new ArrayList<>();
+	private final List<DeviceInfo>				devices	= new ArrayList<>();
+
+	@After
+	public void tearDown() throws IOException
+	{
+		for (DeviceInfo device : devices)
+		{
+			DeviceConnections.getInstance().close(device);
+		}
+		for (FakeAirPlayDevice fake : fakes)
+		{
+			fake.close();
+		}
+	}
+
+	@Test
+	public void membersShouldStartAtSharedPosition() throws Exception
+	{
+		DeviceGroup group = new DeviceGroup(Arrays.asList(givenDevice(0), givenDevice(0)));
+
+		// ***** WHEN *****
+		group.play(CONTENT, 42.5).get(5, TimeUnit.SECONDS);
+
+		// ***** THEN *****
+		for (FakeAirPlayDevice fake : fakes)
+		{
+			assertEquals("Wrong start position", 42.5, startPosition(fake), 0.001);
+		}
+	}
+
+	@Test
+	public void membersShouldBeReleasedTogether() throws Exception
+	{
+		// The slow member takes a while to answer the query opening its connection
+		DeviceGroup group = new DeviceGroup(Arrays.asList(givenDevice(300), givenDevice(0)));
+
+		// ***** WHEN *****
+		group.play(CONTENT, 42.5).get(5, TimeUnit.SECONDS);
+
+		// ***** THEN *****
+		long slow = arrival(fakes.get(0), "/play");
+		long fast = arrival(fakes.get(1), "/play");
+		long apart = TimeUnit.NANOSECONDS.toMillis(Math.abs(slow - fast));
+		assertTrue("Play commands " + apart + " ms apart", apart < 150);
+	}
+
+	@Test
+	public void addedMemberShouldJoinAtGroupPosition() throws Exception
+	{
+		DeviceGroup group = new DeviceGroup(Collections.singletonList(givenDevice(0)));
+		group.play(CONTENT, 42.5).get(5, TimeUnit.SECONDS);
+		fakes.get(0).setPlaybackInfo(100, 1);
+		DeviceInfo joining = givenDevice(0);
+
+		// ***** WHEN *****
+		group.add(joining).get(5, TimeUnit.SECONDS);
+
+		// ***** THEN *****
+		double position = startPosition(fakes.get(1));
+		assertTrue("Wrong start position " + position, position >= 100 && position < 101);
+		assertEquals("Wrong members", devices, group.getMembers());
+	}
+
+	@Test
+	public void skewShouldBeDifferenceOfPositions() throws Exception
+	{
+		DeviceGroup group = new DeviceGroup(Arrays.asList(givenDevice(0), givenDevice(0), givenDevice(0)));
+		group.play(CONTENT, 42.5).get(5, TimeUnit.SECONDS);
+		fakes.get(0).setPlaybackInfo(10, 1);
+		fakes.get(1).setPlaybackInfo(10.5, 1);
+
+		// ***** WHEN *****
+		GroupSkew skew = group.measureSkew().get(5, TimeUnit.SECONDS);
+
+		// ***** THEN *****
+		assertEquals("Wrong skew", 500, skew.getSkewMillis(), 100);
+		assertEquals("Stopped member not unavailable", Collections.singletonList(devices.get(2)), skew.getUnavailable());
+	}
+
+	// ***** GIVEN *****
+
+	private DeviceInfo givenDevice(long delayMillis) throws IOException
+	{
+		FakeAirPlayDevice fake = new FakeAirPlayDevice(delayMillis, true, Integer.MAX_VALUE);
+		fakes.add(fake);
+		String name = "TV" + fakes.size();
+		DeviceInfo device = new DeviceInfo(name, "group-test-" + fake.getPort(), name,
+						Collections.singletonList((Inet4Address) InetAddress.getByName("127.0.0.1")), Collections.emptyList(),
+						fake.getPort(), DeviceCapabilities.NONE);
+		devices.add(device);
+		return device;
+	}
+
+	// ***** THEN *****
+
+	/**
+	 * Find the start position sent with the play command.
+	 */
+	private static double startPosition(FakeAirPlayDevice fake)
+	{
+		String body = fake.getBodies().get(fake.getPaths().indexOf("/play"));
+		for (String line : body.split("\n"))
+		{
+			if (line.startsWith("Start-Position-Seconds: "))
+			{
+				return Double.parseDouble(line.substring("Start-Position-Seconds: ".length()));
+			}
+		}
+		return 0;
+	}
+
+	private static long arrival(FakeAirPlayDevice fake, String path)
+	{
+		return fake.getArrivals().get(fake.getPaths().indexOf(path));
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * DeviceHealthMonitorTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import de.martindreier.airtwitch.airplay.DeviceHealth.Status;
+
+/**
+ * Tests for the probe intervals of {@link DeviceHealthMonitor}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceHealthMonitorTest
+{
+	/**
+	 * Minimum probe interval in milliseconds.
+	 */
+	private static final long					MIN_INTERVAL	= 5000;
+
+	/**
+	 * Monitor under test. Never started.
+	 */
+	private final DeviceHealthMonitor	monitor				= new DeviceHealthMonitor(new DeviceRegistry(1, TimeUnit.MINUTES),
+					MIN_INTERVAL);
+
+	@After
+	public void tearDown()
+	{
+		monitor.close();
+	}
+
+	@Test
+	public void healthyDeviceShouldBeProbedLessOften()
+	{
+		assertEquals("Interval not doubled", 2 * MIN_INTERVAL,
+						monitor.nextInterval(Status.UNKNOWN, Status.HEALTHY, MIN_INTERVAL));
+		assertEquals("Interval above maximum", 60_000, monitor.nextInterval(Status.HEALTHY, Status.HEALTHY, 40_000));
+	}
+
+	@Test
+	public void unreachableDeviceShouldBeProbedLessOften()
+	{
+		assertEquals("Interval not doubled", 4 * MIN_INTERVAL,
+						monitor.nextInterval(Status.UNREACHABLE, Status.UNREACHABLE, 2 * MIN_INTERVAL));
+		assertEquals("Interval above maximum", 60_000,
+						monitor.nextInterval(Status.UNREACHABLE, Status.UNREACHABLE, 40_000));
+	}
+
+	@Test
+	public void newlyUnreachableDeviceShouldBeProbedAtMinimumInterval()
+	{
+		assertEquals("Interval of healthy device kept", MIN_INTERVAL,
+						monitor.nextInterval(Status.DEGRADED, Status.UNREACHABLE, 60_000));
+	}
+
+	@Test
+	public void degradedDeviceShouldBeProbedAtMinimumInterval()
+	{
+		assertEquals("Interval of healthy device kept", MIN_INTERVAL,
+						monitor.nextInterval(Status.HEALTHY, Status.DEGRADED, 60_000));
+	}
+}
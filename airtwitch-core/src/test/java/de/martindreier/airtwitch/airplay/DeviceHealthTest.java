@@ -0,0 +1,55 @@
+/**
+ * DeviceHealthTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeviceHealth}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceHealthTest
+{
+	/**
+	 * Start time of the tests.
+	 */
+	private static final long	NOW	= 1_500_000_000_000L;
+
+	@Test
+	public void rttShouldBeAveraged()
+	{
+		DeviceHealth health = DeviceHealth.UNPROBED.succeeded(10, NOW).succeeded(30, NOW + 1000);
+
+		assertEquals("Wrong status", DeviceHealth.Status.HEALTHY, health.getStatus());
+		assertEquals("Wrong average", 15, health.getRttMillis().getAsDouble(), 0.001);
+	}
+
+	@Test
+	public void failuresShouldDegradeAndThenMarkUnreachable()
+	{
+		DeviceHealth health = DeviceHealth.UNPROBED.succeeded(10, NOW).failed(NOW + 1000);
+		assertEquals("Not degraded", DeviceHealth.Status.DEGRADED, health.getStatus());
+
+		health = health.failed(NOW + 2000).failed(NOW + 3000);
+		assertEquals("Not unreachable", DeviceHealth.Status.UNREACHABLE, health.getStatus());
+
+		health = health.succeeded(10, NOW + 4000);
+		assertEquals("Error rate forgotten", DeviceHealth.Status.DEGRADED, health.getStatus());
+	}
+
+	@Test
+	public void errorsShouldWorsenScore()
+	{
+		DeviceHealth reliable = DeviceHealth.UNPROBED.succeeded(20, NOW).succeeded(20, NOW + 1000);
+		DeviceHealth flaky = DeviceHealth.UNPROBED.succeeded(10, NOW).failed(NOW + 1000).succeeded(10, NOW + 2000);
+
+		assertTrue("Flaky device ranked better", reliable.getScore() < flaky.getScore());
+	}
+}
@@ -0,0 +1,228 @@
+/**
+ * DeviceRegistryTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.jmdns.ServiceInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeviceRegistry}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class DeviceRegistryTest
+{
+	/**
+	 * Start time of the tests.
+	 */
+	private static final long			NOW			= 1_500_000_000_000L;
+
+	/**
+	 * Object under test.
+	 */
+	private DeviceRegistry				registry;
+
+	/**
+	 * Events received from the registry.
+	 */
+	private List<DeviceEvent>			events	= new ArrayList<>();
+
+	@Before
+	public void setup()
+	{
+		registry = new DeviceRegistry(1, TimeUnit.MINUTES);
+		registry.addListener(events::add);
+	}
+
+	@Test
+	public void newDeviceShouldBeAdded()
+	{
+		registry.register(givenDevice("Living Room", 7000), NOW);
+
+		assertEquals("Wrong event", DeviceEvent.Type.ADDED, events.get(0).getType());
+		assertTrue("Device not indexed by name", registry.getSnapshot().getByName("Living Room").isPresent());
+	}
+
+	@Test
+	public void unchangedDeviceShouldOnlyBeRefreshed()
+	{
+		DeviceInfo first = givenDevice("Living Room", 7000);
+		registry.register(first, NOW);
+		registry.register(givenDevice("Living Room", 7000), NOW + 1000);
+
+		assertEquals("Unexpected event", 1, events.size());
+		assertSame("Known instance replaced", first, registry.getSnapshot().getDevices().get(0));
+		assertEquals("Last seen not refreshed", NOW + 1000,
+						(long) registry.getLastSeen(first.getKey()).get());
+	}
+
+	@Test
+	public void changedEndpointShouldBeUpdate()
+	{
+		registry.register(givenDevice("Living Room", 7000), NOW);
+		registry.register(givenDevice("Living Room", 7100), NOW);
+
+		assertEquals("Wrong event", DeviceEvent.Type.UPDATED, events.get(1).getType());
+		assertEquals("Wrong port", 7100, registry.getSnapshot().getDevices().get(0).getPort());
+	}
+
+	@Test
+	public void snapshotShouldNotChange()
+	{
+		DeviceInfo device = givenDevice("Living Room", 7000);
+		registry.register(device, NOW);
+		DeviceRegistry.Snapshot snapshot = registry.getSnapshot();
+
+		registry.remove(device.getKey());
+
+		assertEquals("Snapshot changed", 1, snapshot.size());
+		assertEquals("Device not removed", 0, registry.getSnapshot().size());
+		assertEquals("Wrong event", DeviceEvent.Type.REMOVED, events.get(1).getType());
+	}
+
+	@Test
+	public void unseenDevicesShouldExpire()
+	{
+		registry.register(givenDevice("Living Room", 7000), NOW);
+		registry.register(givenDevice("Bar", 7000), NOW + TimeUnit.SECONDS.toMillis(50));
+
+		registry.expire(NOW + TimeUnit.SECONDS.toMillis(70));
+
+		assertFalse("Old device not expired", registry.getSnapshot().getByName("Living Room").isPresent());
+		assertTrue("Recent device expired", registry.getSnapshot().getByName("Bar").isPresent());
+		assertEquals("Wrong event", DeviceEvent.Type.EXPIRED, events.get(2).getType());
+	}
+
+	@Test
+	public void touchedDeviceShouldNotExpire()
+	{
+		DeviceInfo device = givenDevice("Living Room", 7000);
+		registry.register(device, NOW);
+		assertTrue("Known device not touched", registry.touch(device.getKey(), NOW + TimeUnit.SECONDS.toMillis(50)));
+
+		registry.expire(NOW + TimeUnit.SECONDS.toMillis(70));
+
+		assertTrue("Touched device expired", registry.getSnapshot().getByName("Living Room").isPresent());
+		assertEquals("Unexpected event", 1, events.size());
+		assertFalse("Unknown device touched", registry.touch("unknown", NOW));
+	}
+
+	@Test
+	public void refreshShouldKeepSnapshot()
+	{
+		DeviceInfo device = givenDevice("Living Room", 7000);
+		registry.register(device, NOW);
+		DeviceRegistry.Snapshot snapshot = registry.getSnapshot();
+
+		registry.register(givenDevice("Living Room", 7000), NOW + 1000);
+		registry.touch(device.getKey(), NOW + 2000);
+
+		assertSame("Snapshot built for unchanged device", snapshot, registry.getSnapshot());
+		assertEquals("Last seen not refreshed", NOW + 2000, (long) registry.getLastSeen(device.getKey()).get());
+	}
+
+	@Test
+	public void seenDeviceShouldReplaceCachedDevice()
+	{
+		DeviceInfo cached = givenCachedDevice("Living Room", 7000);
+		registry.register(cached, NOW);
+		registry.register(givenDevice("Living Room", 7000), NOW);
+
+		assertFalse("Device still probable", registry.getSnapshot().getDevices().get(0).isProbable());
+		assertFalse("Confirmed device removed", registry.removeUnconfirmed(cached.getKey()).isPresent());
+	}
+
+	@Test
+	public void unconfirmedDeviceShouldBeRemoved()
+	{
+		DeviceInfo cached = givenCachedDevice("Living Room", 7000);
+		registry.register(cached, NOW);
+
+		assertTrue("Device not removed", registry.removeUnconfirmed(cached.getKey()).isPresent());
+		assertEquals("Wrong event", DeviceEvent.Type.REMOVED, events.get(1).getType());
+	}
+
+	@Test
+	public void goodbyeOnOneInterfaceShouldKeepDevice() throws UnknownHostException
+	{
+		registry.register("eth0", givenDevice("Living Room", 7000, "192.168.1.20"), NOW);
+		registry.register("wlan0", givenDevice("Living Room", 7000, "192.168.2.20"), NOW);
+		String key = registry.getSnapshot().getDevices().get(0).getKey();
+		assertEquals("Addresses not combined", 2, registry.getSnapshot().getDevices().get(0).getAddresses().size());
+
+		registry.remove("eth0", key);
+
+		DeviceInfo device = registry.getSnapshot().getByKey(key).get();
+		assertEquals("Addresses of the interface not dropped", Arrays.asList(InetAddress.getByName("192.168.2.20")),
+						device.getAddresses());
+		assertEquals("Wrong event", DeviceEvent.Type.UPDATED, events.get(events.size() - 1).getType());
+
+		registry.remove("wlan0", key);
+
+		assertFalse("Device seen on no interface kept", registry.getSnapshot().getByKey(key).isPresent());
+		assertEquals("Wrong event", DeviceEvent.Type.REMOVED, events.get(events.size() - 1).getType());
+	}
+
+	@Test
+	public void newAddressOnInterfaceShouldReplaceOldAddress() throws UnknownHostException
+	{
+		registry.register("eth0", givenDevice("Living Room", 7000, "192.168.1.20"), NOW);
+		registry.register("eth0", givenDevice("Living Room", 7000, "192.168.1.21"), NOW);
+
+		assertEquals("Outdated address kept", Arrays.asList(InetAddress.getByName("192.168.1.21")),
+						registry.getSnapshot().getDevices().get(0).getAddresses());
+	}
+
+	@Test
+	public void goodbyeShouldRemoveDeviceConfirmedWithoutInterface() throws UnknownHostException
+	{
+		DeviceInfo device = givenDevice("Living Room", 7000, "192.168.1.20");
+		registry.register(device, NOW);
+
+		registry.remove("eth0", device.getKey());
+
+		assertFalse("Device not removed", registry.getSnapshot().getByKey(device.getKey()).isPresent());
+	}
+
+	// ***** GIVEN *****
+
+	/**
+	 * A confirmed device with one address.
+	 */
+	protected DeviceInfo givenDevice(String name, int port, String address) throws UnknownHostException
+	{
+		DeviceInfo device = givenDevice(name, port);
+		return new DeviceInfo(name, device.getKey(), device.getQualifiedName(),
+						Collections.singletonList((Inet4Address) InetAddress.getByName(address)), Collections.emptyList(), port,
+						DeviceCapabilities.NONE).confirmed();
+	}
+
+	protected DeviceInfo givenCachedDevice(String name, int port)
+	{
+		DeviceInfo device = givenDevice(name, port);
+		return new DeviceInfo(name, device.getKey(), device.getQualifiedName(), device.getInet4Addresses(),
+						device.getInet6Addresses(), port, DeviceCapabilities.NONE);
+	}
+
+	protected DeviceInfo givenDevice(String name, int port)
+	{
+		return new DeviceInfo(ServiceInfo.create(AirPlayServiceDiscovery.AIRPLAY_SERVICE_TYPE, name, port, ""));
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * PlaybackInfoTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Tests for {@link PlaybackInfo} and the parsing of device responses.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class PlaybackInfoTest
+{
+	/**
+	 * Property list header including the external DTD, which must not be loaded.
+	 */
+	private static final String	PLIST_HEADER	= "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+					+ "<!DOCTYPE plist PUBLIC \"-//Apple//DTD PLIST 1.0//EN\" \"http://www.apple.com/DTDs/PropertyList-1.0.dtd\">\n"
+					+ "<plist version=\"1.0\">";
+
+	@Test
+	public void playingStreamShouldBeDetected() throws AirTwitchException
+	{
+		PlaybackInfo info = givenPlaybackInfo(12.5, 1.0, true, false, true);
+
+		assertEquals("Wrong state", PlaybackState.PLAYING, info.getState());
+		assertEquals("Wrong position", 12.5, info.getPosition(), 0.001);
+	}
+
+	@Test
+	public void emptyBufferShouldBeStalled() throws AirTwitchException
+	{
+		assertEquals("Wrong state", PlaybackState.STALLED, givenPlaybackInfo(12.5, 1.0, true, true, false).getState());
+	}
+
+	@Test
+	public void loadingStreamShouldBeDetected() throws AirTwitchException
+	{
+		assertEquals("Wrong state", PlaybackState.LOADING, givenPlaybackInfo(0, 0, false, true, false).getState());
+	}
+
+	@Test
+	public void emptyInfoShouldBeStopped() throws AirTwitchException
+	{
+		PlaybackInfo info = PlaybackInfo.parse(bytes(PLIST_HEADER + "<dict/></plist>"));
+
+		assertEquals("Wrong state", PlaybackState.STOPPED, info.getState());
+	}
+
+	@Test
+	public void messagesShouldBeSplitAtContentLength()
+	{
+		HttpMessageBuffer buffer = new HttpMessageBuffer();
+		buffer.append(ByteBuffer.wrap(bytes("HTTP/1.1 101 Switching Protocols\r\nUpgrade: PTTH/1.0\r\n\r\nPOST /event HTTP/1.1\r\n")));
+
+		assertEquals("Wrong status", 101, buffer.next().getStatus());
+		assertNull("Incomplete message returned", buffer.next());
+
+		buffer.append(ByteBuffer.wrap(bytes("Content-Length: 4\r\n\r\nbody")));
+		HttpMessageBuffer.Message event = buffer.next();
+		assertEquals("Wrong request line", "POST /event HTTP/1.1", event.getStartLine());
+		assertEquals("Wrong body", "body", new String(event.getBody(), StandardCharsets.ISO_8859_1));
+	}
+
+	// ***** GIVEN *****
+
+	protected PlaybackInfo givenPlaybackInfo(double position, double rate, boolean readyToPlay, boolean bufferEmpty,
+					boolean likelyToKeepUp) throws AirTwitchException
+	{
+		String plist = String.format(
+						"%s<dict><key>duration</key><real>0.0</real><key>position</key><real>%s</real><key>rate</key><real>%s</real>"
+										+ "<key>readyToPlay</key><%s/><key>playbackBufferEmpty</key><%s/>"
+										+ "<key>playbackLikelyToKeepUp</key><%s/></dict></plist>",
+						PLIST_HEADER, position, rate, readyToPlay, bufferEmpty, likelyToKeepUp);
+		return PlaybackInfo.parse(bytes(plist));
+	}
+
+	private static byte[] bytes(String text)
+	{
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * RacingSocketFactoryTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.http.HttpHost;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RacingSocketFactory}. The device has two loopback addresses,
+ * of which only <code>127.0.0.1</code> accepts connections.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class RacingSocketFactoryTest
+{
+	private ServerSocket				server;
+	private InetAddress					listening;
+	private InetAddress					refusing;
+	private RacingSocketFactory	factory;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		listening = InetAddress.getByName("127.0.0.1");
+		refusing = InetAddress.getByName("127.0.0.2");
+		server = new ServerSocket(0, 50, listening);
+		DeviceInfo device = new DeviceInfo("TV", "racing-test", "TV",
+						Arrays.asList((Inet4Address) refusing, (Inet4Address) listening), Collections.emptyList(),
+						server.getLocalPort(), DeviceCapabilities.NONE);
+		factory = new RacingSocketFactory(device);
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		server.close();
+	}
+
+	@Test
+	public void unavailableAddressShouldBeSkipped() throws IOException
+	{
+		assertEquals("Wrong address before connecting", refusing, factory.getPreferredAddress().get());
+
+		try (Socket socket = connect())
+		{
+			assertEquals("Wrong address connected", listening, socket.getInetAddress());
+		}
+
+		assertEquals("Winner not remembered", listening, factory.getPreferredAddress().get());
+	}
+
+	@Test
+	public void failedRaceShouldForgetWinner() throws IOException
+	{
+		connect().close();
+		server.close();
+
+		try (Socket socket = connect())
+		{
+			fail("Connected without a listening address");
+		}
+		catch (IOException exception)
+		{
+			// Expected
+		}
+
+		assertEquals("Winner of failed race kept", refusing, factory.getPreferredAddress().get());
+	}
+
+	@Test
+	public void deviceWithoutAddressShouldHaveNoPreferredAddress()
+	{
+		DeviceInfo device = new DeviceInfo("TV", "racing-test", "TV", Collections.emptyList(), Collections.emptyList(),
+						server.getLocalPort(), DeviceCapabilities.NONE);
+
+		assertFalse("Address of device without address",
+						new RacingSocketFactory(device).getPreferredAddress().isPresent());
+		try
+		{
+			device.getUri();
+			fail("URI of device without address");
+		}
+		catch (URISyntaxException exception)
+		{
+			// Expected
+		}
+	}
+
+	// ***** WHEN *****
+
+	private Socket connect() throws IOException
+	{
+		return factory.connectSocket(2000, factory.createSocket(null), new HttpHost(listening, server.getLocalPort()),
+						new InetSocketAddress(listening, server.getLocalPort()), null, null);
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * ServiceResolverTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.jmdns.JmDNS;
+import javax.jmdns.ServiceInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ServiceResolver} with a mocked JmDNS instance.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class ServiceResolverTest
+{
+	private static final String				TYPE			= "_airplay._tcp.local.";
+
+	private final JmDNS								jmdns			= mock(JmDNS.class);
+	private final List<ServiceInfo>		resolved	= new CopyOnWriteArrayList<>();
+	private final List<OptionalLong>	delays		= new CopyOnWriteArrayList<>();
+	private ServiceResolver						resolver;
+
+	@Before
+	public void setUp()
+	{
+		// Record the resolution as the service listener does
+		resolver = new ServiceResolver(info -> {
+			delays.add(resolver.resolved(info));
+			resolved.add(info);
+		});
+	}
+
+	@Test
+	public void serviceShouldBeResolvedOnlyOnce() throws Exception
+	{
+		ServiceInfo info = givenService("TV");
+		CountDownLatch announced = new CountDownLatch(1);
+		when(jmdns.getServiceInfo(eq(TYPE), eq("TV"), anyLong())).thenAnswer(invocation -> {
+			announced.await(5, TimeUnit.SECONDS);
+			return info;
+		});
+
+		resolver.resolve(jmdns, TYPE, "TV");
+		resolver.resolve(jmdns, TYPE, "tv");
+		announced.countDown();
+
+		verify(jmdns, timeout(5000)).getServiceInfo(TYPE, "TV", 1000);
+		awaitResolved(1);
+		assertTrue("Announcement not recorded", delays.get(0).isPresent());
+	}
+
+	@Test
+	public void timedOutResolutionShouldBeRetriedWithLongerTimeout() throws Exception
+	{
+		ServiceInfo info = givenService("TV");
+		when(jmdns.getServiceInfo(eq(TYPE), eq("TV"), anyLong())).thenReturn(null, null, info);
+
+		resolver.resolve(jmdns, TYPE, "TV");
+
+		awaitResolved(1);
+		verify(jmdns).getServiceInfo(TYPE, "TV", 1000);
+		verify(jmdns).getServiceInfo(TYPE, "TV", 2000);
+		verify(jmdns).getServiceInfo(TYPE, "TV", 3000);
+	}
+
+	@Test
+	public void unresolvableServiceShouldBeGivenUp() throws Exception
+	{
+		when(jmdns.getServiceInfo(eq(TYPE), eq("TV"), anyLong())).thenReturn(null);
+
+		resolver.resolve(jmdns, TYPE, "TV");
+		verify(jmdns, timeout(5000)).getServiceInfo(TYPE, "TV", 3000);
+		// Wait for the failure to be recorded, then announce again
+		Thread.sleep(100);
+		resolver.resolve(jmdns, TYPE, "TV");
+
+		verify(jmdns, timeout(5000).times(2)).getServiceInfo(TYPE, "TV", 3000);
+		assertTrue("Unresolvable service reported", resolved.isEmpty());
+	}
+
+	@Test
+	public void refreshShouldNotReportDelay()
+	{
+		assertFalse("Delay of a service which was not announced", resolver.resolved(givenService("TV")).isPresent());
+	}
+
+	// ***** GIVEN *****
+
+	private static ServiceInfo givenService(String name)
+	{
+		ServiceInfo info = mock(ServiceInfo.class);
+		when(info.getName()).thenReturn(name);
+		when(info.getQualifiedName()).thenReturn(name + "." + TYPE);
+		return info;
+	}
+
+	// ***** THEN *****
+
+	/**
+	 * Wait until the expected number of services was resolved, and no more.
+	 */
+	private void awaitResolved(int expected) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+		while (resolved.size() < expected && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		// Give duplicate resolutions a chance to show up
+		Thread.sleep(100);
+		assertEquals("Wrong number of resolved services", expected, resolved.size());
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * StreamControlTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.airplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.StreamControl.Command;
+import de.martindreier.airtwitch.test.FakeAirPlayDevice;
+
+/**
+ * Tests for the asynchronous commands of {@link StreamControl} against a local
+ * fake device.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class StreamControlTest
+{
+	private FakeAirPlayDevice	fake;
+	private DeviceInfo				device;
+
+	@After
+	public void tearDown() throws IOException
+	{
+		DeviceConnections.getInstance().close(device);
+		fake.close();
+	}
+
+	@Test
+	public void batchShouldBeSentInOrder() throws Exception
+	{
+		StreamControl stream = givenStream(new FakeAirPlayDevice());
+
+		stream.sendAsync(Arrays.asList(Command.PLAY, Command.STOP), 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+
+		assertEquals("Wrong requests", Arrays.asList("/play", "/stop"), fake.getPaths());
+	}
+
+	@Test
+	public void silentDeviceShouldTimeOut() throws Exception
+	{
+		StreamControl stream = givenStream(new FakeAirPlayDevice(0, false, Integer.MAX_VALUE));
+
+		try
+		{
+			stream.stopAsync(200, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+			fail("Command did not time out");
+		}
+		catch (ExecutionException exception)
+		{
+			assertTrue("Wrong failure: " + exception.getCause(), exception.getCause() instanceof AirTwitchException);
+			assertTrue("Wrong failure: " + exception.getCause().getMessage(),
+							exception.getCause().getMessage().contains("timed out"));
+		}
+	}
+
+	@Test
+	public void commandsOfStreamsShouldNotOverlap() throws Exception
+	{
+		StreamControl first = givenStream(new FakeAirPlayDevice(100, true, Integer.MAX_VALUE));
+		StreamControl second = device.createStream(URI.create("http://localhost/second.m3u8"));
+
+		CompletableFuture.allOf(first.playAsync(), second.playAsync(), first.stopAsync()).get(5, TimeUnit.SECONDS);
+
+		assertEquals("Commands sent at the same time", 1, fake.getMaxActive());
+		assertEquals("Wrong requests", Arrays.asList("/play", "/play", "/stop"), fake.getPaths());
+	}
+
+	@Test
+	public void cancelledBatchShouldSkipRemainingCommands() throws Exception
+	{
+		StreamControl stream = givenStream(new FakeAirPlayDevice(300, true, Integer.MAX_VALUE));
+
+		CompletableFuture<Void> batch = stream.sendAsync(Arrays.asList(Command.PLAY, Command.STOP), 5, TimeUnit.SECONDS);
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+		while (fake.getRequests() == 0 && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		batch.cancel(false);
+		// Commands run in order, so the batch is done once this one completed
+		device.createStream(URI.create("http://localhost/other.m3u8")).playAsync().get(5, TimeUnit.SECONDS);
+
+		assertEquals("Wrong requests", Arrays.asList("/play", "/play"), fake.getPaths());
+	}
+
+	// ***** GIVEN *****
+
+	/**
+	 * A stream on a device served by the fake device.
+	 */
+	private StreamControl givenStream(FakeAirPlayDevice fakeDevice) throws AirTwitchException, IOException
+	{
+		fake = fakeDevice;
+		device = new DeviceInfo("TV", "stream-control-test", "TV",
+						Collections.singletonList((Inet4Address) InetAddress.getByName("127.0.0.1")), Collections.emptyList(),
+						fake.getPort(), DeviceCapabilities.NONE);
+		return device.createStream(URI.create("http://localhost/stream.m3u8"));
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * HlsRelayTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.sun.net.httpserver.HttpServer;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.twitch.Channel;
+
+/**
+ * Tests for {@link HlsRelay}. A local server stands in for Twitch, the channel
+ * hands out master playlists pointing at it.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class HlsRelayTest
+{
+	private static final String					MEDIA_PLAYLIST	= "#EXTM3U\n#EXT-X-MEDIA-SEQUENCE:7\n#EXTINF:2.0,\nsegment7.ts\n";
+
+	private final Channel								channel					= mock(Channel.class);
+	private final SegmentCache					cache						= new SegmentCache(4 * SegmentCache.SLAB_SIZE);
+	/**
+	 * Responses of the local server by path, 403 for unknown paths.
+	 */
+	private final Map<String, byte[]>		responses				= new ConcurrentHashMap<>();
+	private final Map<String, Integer>	requests				= new ConcurrentHashMap<>();
+	private HttpServer									server;
+	private UpstreamClient							upstream;
+
+	@Before
+	public void setUp() throws IOException, AirTwitchException
+	{
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			requests.merge(path, 1, Integer::sum);
+			byte[] body = responses.get(path);
+			if (body == null)
+			{
+				exchange.sendResponseHeaders(403, -1);
+			}
+			else
+			{
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody())
+				{
+					out.write(body);
+				}
+			}
+			exchange.close();
+		});
+		server.start();
+		upstream = new UpstreamClient(4);
+		when(channel.getId()).thenReturn("42");
+		when(channel.getName()).thenReturn("test");
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		upstream.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void playlistsShouldPointAtRelay() throws Exception
+	{
+		givenResponse("/720p30.m3u8", MEDIA_PLAYLIST);
+		String master = masterPlaylist("720p30", "/720p30.m3u8");
+		when(channel.getMasterPlaylist()).thenReturn(master);
+		HlsRelay relay = new HlsRelay(channel, VariantPolicy.UNLIMITED, upstream, cache, 60_000, 10);
+
+		// ***** WHEN *****
+		String relayedMaster = get(relay, HlsRelay.MASTER);
+		String relayedMedia = get(relay, "0.m3u8");
+
+		// ***** THEN *****
+		assertTrue("Variant not relayed: " + relayedMaster, relayedMaster.contains("\n0.m3u8\n"));
+		assertFalse("Upstream URI leaked: " + relayedMaster, relayedMaster.contains("720p30.m3u8"));
+		assertTrue("Segment not relayed: " + relayedMedia, relayedMedia.contains("\n0/7.ts\n"));
+		assertNull("Unknown variant served", relay.get("1.m3u8").get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void segmentShouldBeFetchedOnce() throws Exception
+	{
+		givenResponse("/720p30.m3u8", MEDIA_PLAYLIST);
+		givenResponse("/segment7.ts", "segment");
+		when(channel.getMasterPlaylist()).thenReturn(masterPlaylist("720p30", "/720p30.m3u8"));
+		HlsRelay relay = new HlsRelay(channel, VariantPolicy.UNLIMITED, upstream, cache, 60_000, 10);
+		get(relay, HlsRelay.MASTER);
+		get(relay, "0.m3u8");
+
+		// ***** WHEN *****
+		SegmentCache.Segment first = relay.getSegment("0/7.ts").get(5, TimeUnit.SECONDS);
+		SegmentCache.Segment second = relay.getSegment("0/7.ts").get(5, TimeUnit.SECONDS);
+
+		// ***** THEN *****
+		assertEquals("Wrong size", "segment".length(), first.getSize());
+		assertEquals("Segment fetched again", Integer.valueOf(1), requests.get("/segment7.ts"));
+		assertEquals("Cache miss not recorded", 1, cache.getMisses());
+		assertEquals("Cache hit not recorded", 1, cache.getHits());
+		first.release();
+		second.release();
+	}
+
+	@Test
+	public void rejectedMediaPlaylistShouldRefreshTokenAndMatchVariantByName() throws Exception
+	{
+		// The old URIs are rejected, the new master playlist only has the second
+		// variant, now at the first position
+		givenResponse("/new/720p30.m3u8", MEDIA_PLAYLIST);
+		when(channel.getMasterPlaylist()).thenReturn(
+						masterPlaylist("chunked", "/old/chunked.m3u8") + masterVariant("720p30", "/old/720p30.m3u8"),
+						masterPlaylist("720p30", "/new/720p30.m3u8"));
+		HlsRelay relay = new HlsRelay(channel, VariantPolicy.UNLIMITED, upstream, cache, 60_000, 10);
+		get(relay, HlsRelay.MASTER);
+
+		// ***** WHEN *****
+		String relayedMedia = get(relay, "1.m3u8");
+
+		// ***** THEN *****
+		assertTrue("Wrong variant after refresh: " + relayedMedia, relayedMedia.contains("\n1/7.ts\n"));
+		verify(channel, times(2)).requestChannelToken();
+		assertNull("Old URI of the first variant requested", requests.get("/old/chunked.m3u8"));
+	}
+
+	@Test
+	public void masterRequestShouldNotBlockMediaPlaylists() throws Exception
+	{
+		givenResponse("/720p30.m3u8", MEDIA_PLAYLIST);
+		CountDownLatch refreshing = new CountDownLatch(1);
+		CountDownLatch answer = new CountDownLatch(1);
+		AtomicInteger masterRequests = new AtomicInteger();
+		when(channel.getMasterPlaylist()).thenAnswer(invocation -> {
+			if (masterRequests.incrementAndGet() > 1)
+			{
+				refreshing.countDown();
+				answer.await(5, TimeUnit.SECONDS);
+			}
+			return masterPlaylist("720p30", "/720p30.m3u8");
+		});
+		// Master playlist is requested again each time
+		HlsRelay relay = new HlsRelay(channel, VariantPolicy.UNLIMITED, upstream, cache, 0, 10);
+		get(relay, HlsRelay.MASTER);
+		CompletableFuture<byte[]> refresh = relay.get(HlsRelay.MASTER);
+		assertTrue("Master playlist not requested again", refreshing.await(5, TimeUnit.SECONDS));
+
+		// ***** WHEN *****
+		String relayedMedia = get(relay, "0.m3u8");
+
+		// ***** THEN *****
+		assertTrue("Media playlist not served: " + relayedMedia, relayedMedia.contains("\n0/7.ts\n"));
+		assertFalse("Master playlist request finished early", refresh.isDone());
+		answer.countDown();
+		refresh.get(5, TimeUnit.SECONDS);
+	}
+
+	// ***** GIVEN *****
+
+	private void givenResponse(String path, String content)
+	{
+		responses.put(path, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String masterPlaylist(String name, String path)
+	{
+		return "#EXTM3U\n" + masterVariant(name, path);
+	}
+
+	private String masterVariant(String name, String path)
+	{
+		return String.format(
+						"#EXT-X-STREAM-INF:PROGRAM-ID=1,BANDWIDTH=2500000,RESOLUTION=1280x720,VIDEO=\"%s\"\nhttp://127.0.0.1:%d%s\n",
+						name, server.getAddress().getPort(), path);
+	}
+
+	// ***** WHEN *****
+
+	private static String get(HlsRelay relay, String path) throws Exception
+	{
+		return new String(relay.get(path).get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8);
+	}
+}
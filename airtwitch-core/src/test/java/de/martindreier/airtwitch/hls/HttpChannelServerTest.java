@@ -0,0 +1,219 @@
+/**
+ * HttpChannelServerTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Tests for {@link HttpChannelServer}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class HttpChannelServerTest
+{
+	private final ExecutorService	executor	= Executors.newSingleThreadExecutor();
+	private final SegmentCache		cache			= new SegmentCache(8 * SegmentCache.SLAB_SIZE);
+	private byte[]								content;
+	private HttpChannelServer			server;
+
+	@Before
+	public void setUp() throws IOException, AirTwitchException
+	{
+		content = new byte[SegmentCache.SLAB_SIZE * 3 + 7];
+		for (int index = 0; index < content.length; index++)
+		{
+			content[index] = (byte) (index * 17);
+		}
+		cache.put(new SegmentCache.Key("42", "source", 1), Channels.newChannel(new ByteArrayInputStream(content)))
+						.release();
+		server = new HttpChannelServer(0, this::handle, executor);
+	}
+
+	@After
+	public void tearDown()
+	{
+		server.close();
+		executor.shutdown();
+	}
+
+	@Test
+	public void segmentShouldBeServedOnKeptAliveConnection() throws IOException
+	{
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort()))
+		{
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			sendRequest(socket.getOutputStream(), "/segment.ts", "");
+			String header = readHeader(in);
+			assertTrue("Wrong status: " + header, header.startsWith("HTTP/1.1 200 "));
+			assertTrue("Wrong content type: " + header, header.contains("Content-Type: video/MP2T\r\n"));
+			assertArrayEquals("Wrong content", content, readBody(in, header));
+
+			sendRequest(socket.getOutputStream(), "/missing.ts", "");
+			header = readHeader(in);
+			assertTrue("Second request not answered on the same connection: " + header,
+							header.startsWith("HTTP/1.1 404 "));
+		}
+		assertEquals("Segment reference not released", 0, usedBytesWithoutCache());
+	}
+
+	@Test
+	public void connectionShouldBeClosedOnRequest() throws IOException
+	{
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort()))
+		{
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			sendRequest(socket.getOutputStream(), "/playlist.m3u8", "Connection: close\r\n");
+			String header = readHeader(in);
+			assertTrue("Connection not closed: " + header, header.contains("Connection: close\r\n"));
+			assertEquals("Wrong content", "#EXTM3U", new String(readBody(in, header), StandardCharsets.UTF_8));
+			assertEquals("Connection still open", -1, in.read());
+		}
+	}
+
+	@Test
+	public void failingHandlerShouldBeAnswered() throws IOException
+	{
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort()))
+		{
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			sendRequest(socket.getOutputStream(), "/fail", "");
+			assertTrue("Failure not answered", readHeader(in).startsWith("HTTP/1.1 500 "));
+		}
+	}
+
+	@Test
+	public void idleConnectionShouldBeClosed() throws IOException
+	{
+		givenIdleTimeout(200);
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			// Start a request, but never finish it
+			socket.getOutputStream().write("GET /segment.ts HTTP/1.1\r\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertEquals("Stalled connection still open", -1, socket.getInputStream().read());
+		}
+	}
+
+	@Test
+	public void slowHandlerShouldNotBeTimedOut() throws IOException
+	{
+		givenIdleTimeout(200);
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			sendRequest(socket.getOutputStream(), "/slow", "");
+			assertTrue("Slow request not answered", readHeader(in).startsWith("HTTP/1.1 200 "));
+		}
+	}
+
+	// ***** GIVEN *****
+
+	private void givenIdleTimeout(long millis) throws IOException
+	{
+		server.close();
+		server = new HttpChannelServer(0, this::handle, executor, millis, TimeUnit.MILLISECONDS);
+	}
+
+	private void handle(HttpChannelServer.Exchange exchange)
+	{
+		switch (exchange.getPath())
+		{
+			case "/segment.ts":
+				exchange.respond("video/MP2T", cache.get(new SegmentCache.Key("42", "source", 1)));
+				break;
+			case "/playlist.m3u8":
+				exchange.respond(200, "application/vnd.apple.mpegurl", "#EXTM3U".getBytes(StandardCharsets.UTF_8));
+				break;
+			case "/fail":
+				throw new IllegalStateException("Handler failed");
+			case "/slow":
+				try
+				{
+					Thread.sleep(600);
+				}
+				catch (InterruptedException exception)
+				{
+					Thread.currentThread().interrupt();
+				}
+				exchange.respond(200, null, null);
+				break;
+			default:
+				exchange.respond(404, null, null);
+		}
+	}
+
+	// ***** WHEN *****
+
+	private static void sendRequest(OutputStream out, String path, String headers) throws IOException
+	{
+		out.write(String.format("GET %s HTTP/1.1\r\nHost: localhost\r\n%s\r\n", path, headers)
+						.getBytes(StandardCharsets.ISO_8859_1));
+		out.flush();
+	}
+
+	// ***** THEN *****
+
+	private static String readHeader(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		while (!header.toString("ISO-8859-1").endsWith("\r\n\r\n"))
+		{
+			int read = in.read();
+			if (read < 0)
+			{
+				throw new IOException("Connection closed in header");
+			}
+			header.write(read);
+		}
+		return header.toString("ISO-8859-1");
+	}
+
+	private static byte[] readBody(DataInputStream in, String header)
+	{
+		int start = header.indexOf("Content-Length: ") + "Content-Length: ".length();
+		byte[] body = new byte[Integer.parseInt(header.substring(start, header.indexOf("\r\n", start)))];
+		try
+		{
+			in.readFully(body);
+		}
+		catch (IOException exception)
+		{
+			throw new AssertionError("Body incomplete", exception);
+		}
+		return body;
+	}
+
+	/**
+	 * Drop the segment from the cache; if the server released its reference, the
+	 * slabs return to the pool.
+	 */
+	private long usedBytesWithoutCache()
+	{
+		cache.clear();
+		return cache.getUsedBytes();
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * MasterPlaylistRewriterTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Tests for {@link MasterPlaylistRewriter}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class MasterPlaylistRewriterTest
+{
+	@Test
+	public void shouldKeepAllowedVariantsOnly() throws AirTwitchException
+	{
+		String rewritten = MasterPlaylistRewriter.rewrite(givenMasterPlaylist(), new VariantPolicy(4_000_000, 720));
+
+		assertFalse("Source variant kept", rewritten.contains("chunked.m3u8"));
+		assertFalse("Source rendition kept", rewritten.contains("GROUP-ID=\"chunked\""));
+		assertTrue("720p variant missing", rewritten.contains("720p30.m3u8"));
+		assertTrue("720p rendition missing", rewritten.contains("GROUP-ID=\"720p30\""));
+		assertFalse("Audio only variant kept", rewritten.contains("audio_only.m3u8"));
+		assertTrue("Twitch tag missing", rewritten.contains("#EXT-X-TWITCH-INFO"));
+	}
+
+	@Test
+	public void shouldKeepLowestVariantIfNoneAllowed() throws AirTwitchException
+	{
+		String rewritten = MasterPlaylistRewriter.rewrite(givenMasterPlaylist(), new VariantPolicy(1000, 0));
+
+		assertTrue("Lowest variant missing", rewritten.contains("720p30.m3u8"));
+		assertFalse("Source variant kept", rewritten.contains("chunked.m3u8"));
+	}
+
+	@Test
+	public void deviceModelShouldLimitHeight()
+	{
+		assertEquals("Apple TV 3", 1080, VariantPolicy.getMaxHeight("AppleTV3,2"));
+		assertEquals("Apple TV 2", 720, VariantPolicy.getMaxHeight("AppleTV2,1"));
+		assertEquals("Unknown model", 0, VariantPolicy.getMaxHeight("Roku"));
+	}
+
+	// ***** GIVEN *****
+
+	protected String givenMasterPlaylist()
+	{
+		return "#EXTM3U\n#EXT-X-TWITCH-INFO:NODE=\"video-edge\",SERVER-TIME=\"1500000000.00\"\n"
+						+ "#EXT-X-MEDIA:TYPE=VIDEO,GROUP-ID=\"chunked\",NAME=\"1080p60 (source)\",AUTOSELECT=YES,DEFAULT=YES\n"
+						+ "#EXT-X-STREAM-INF:PROGRAM-ID=1,BANDWIDTH=6000000,RESOLUTION=1920x1080,CODECS=\"avc1.64002A,mp4a.40.2\",VIDEO=\"chunked\",FRAME-RATE=60.000\n"
+						+ "https://video.example.com/chunked.m3u8\n"
+						+ "#EXT-X-MEDIA:TYPE=VIDEO,GROUP-ID=\"720p30\",NAME=\"720p\",AUTOSELECT=YES,DEFAULT=YES\n"
+						+ "#EXT-X-STREAM-INF:PROGRAM-ID=1,BANDWIDTH=2500000,RESOLUTION=1280x720,CODECS=\"avc1.4D401F,mp4a.40.2\",VIDEO=\"720p30\"\n"
+						+ "https://video.example.com/720p30.m3u8\n"
+						+ "#EXT-X-MEDIA:TYPE=VIDEO,GROUP-ID=\"audio_only\",NAME=\"audio_only\",AUTOSELECT=NO,DEFAULT=NO\n"
+						+ "#EXT-X-STREAM-INF:PROGRAM-ID=1,BANDWIDTH=160000,CODECS=\"mp4a.40.2\",VIDEO=\"audio_only\"\n"
+						+ "https://video.example.com/audio_only.m3u8\n";
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * SegmentCacheTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Tests for {@link SegmentCache}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class SegmentCacheTest
+{
+	@Test
+	public void segmentShouldBeWrittenUnchanged() throws IOException, AirTwitchException
+	{
+		SegmentCache cache = new SegmentCache(4 * SegmentCache.SLAB_SIZE);
+		byte[] content = givenContent(SegmentCache.SLAB_SIZE * 2 + 100);
+		cache.put(key(1), Channels.newChannel(new ByteArrayInputStream(content))).release();
+
+		assertNull("Unknown segment found", cache.get(key(2)));
+		SegmentCache.Segment segment = cache.get(key(1));
+		assertNotNull("Segment not cached", segment);
+		assertEquals("Wrong size", content.length, segment.getSize());
+		assertArrayEquals("Wrong content", content, writtenContent(segment));
+		segment.release();
+		assertEquals("Wrong memory in use", 3 * SegmentCache.SLAB_SIZE, cache.getUsedBytes());
+	}
+
+	@Test
+	public void segmentShouldBeWrittenToGatheringChannel() throws IOException, AirTwitchException
+	{
+		SegmentCache cache = new SegmentCache(4 * SegmentCache.SLAB_SIZE);
+		byte[] content = givenContent(SegmentCache.SLAB_SIZE * 3);
+		SegmentCache.Segment segment = cache.put(key(1), Channels.newChannel(new ByteArrayInputStream(content)));
+		Path file = Files.createTempFile("segment", ".ts");
+		try
+		{
+			try (FileChannel target = FileChannel.open(file, StandardOpenOption.WRITE))
+			{
+				segment.writeTo(target);
+			}
+			assertArrayEquals("Wrong content", content, Files.readAllBytes(file));
+			assertArrayEquals("Segment changed by writing", content, writtenContent(segment));
+		}
+		finally
+		{
+			segment.release();
+			Files.delete(file);
+		}
+		assertEquals("Wrong memory in use", 3 * SegmentCache.SLAB_SIZE, cache.getUsedBytes());
+	}
+
+	@Test
+	public void hitRatioShouldCountRecordedRequests()
+	{
+		SegmentCache cache = new SegmentCache(SegmentCache.SLAB_SIZE);
+		assertEquals("Wrong hit ratio without requests", 0, cache.getHitRatio(), 0.001);
+
+		// One device starts the transfer, two more wait for it, one finds it cached
+		cache.recordMiss();
+		cache.recordHit();
+		cache.recordHit();
+		cache.recordHit();
+
+		assertEquals("Wrong hit ratio", 0.75, cache.getHitRatio(), 0.001);
+		assertEquals("Wrong misses", 1, cache.getMisses());
+	}
+
+	@Test
+	public void leastRecentlyUsedSegmentShouldBeDropped() throws IOException, AirTwitchException
+	{
+		SegmentCache cache = new SegmentCache(2 * SegmentCache.SLAB_SIZE);
+		putSegment(cache, 1);
+		putSegment(cache, 2);
+		cache.get(key(1)).release();
+
+		putSegment(cache, 3);
+
+		assertNotNull("Recently used segment dropped", cache.get(key(1)));
+		assertNull("Least recently used segment kept", cache.get(key(2)));
+		assertNotNull("New segment missing", cache.get(key(3)));
+	}
+
+	@Test
+	public void referencedSegmentShouldKeepItsSlabs() throws IOException, AirTwitchException
+	{
+		SegmentCache cache = new SegmentCache(SegmentCache.SLAB_SIZE);
+		byte[] content = putSegment(cache, 1);
+		SegmentCache.Segment segment = cache.get(key(1));
+
+		try
+		{
+			putSegment(cache, 2);
+			fail("Slab of a referenced segment reused");
+		}
+		catch (AirTwitchException expected)
+		{
+			// The device still holds the only slab
+		}
+		assertNull("Dropped segment still cached", cache.get(key(1)));
+		assertArrayEquals("Content of referenced segment changed", content, writtenContent(segment));
+
+		segment.release();
+		putSegment(cache, 2);
+		assertNotNull("Slab not returned to the pool", cache.get(key(2)));
+	}
+
+	// ***** GIVEN *****
+
+	private static SegmentCache.Key key(long sequence)
+	{
+		return new SegmentCache.Key("42", "720p30", sequence);
+	}
+
+	private static byte[] givenContent(int size)
+	{
+		byte[] content = new byte[size];
+		for (int index = 0; index < size; index++)
+		{
+			content[index] = (byte) (index * 31);
+		}
+		return content;
+	}
+
+	// ***** WHEN *****
+
+	/**
+	 * Store a segment of half a slab.
+	 */
+	private static byte[] putSegment(SegmentCache cache, long sequence) throws IOException, AirTwitchException
+	{
+		byte[] content = givenContent(SegmentCache.SLAB_SIZE / 2 + (int) sequence);
+		cache.put(key(sequence), Channels.newChannel(new ByteArrayInputStream(content))).release();
+		return content;
+	}
+
+	// ***** THEN *****
+
+	/**
+	 * Read a segment back by writing it to a stream.
+	 */
+	private static byte[] writtenContent(SegmentCache.Segment segment) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		segment.writeTo(Channels.newChannel(out));
+		return out.toByteArray();
+	}
+}
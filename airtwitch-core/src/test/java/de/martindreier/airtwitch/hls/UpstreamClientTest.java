@@ -0,0 +1,141 @@
+/**
+ * UpstreamClientTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.hls;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.sun.net.httpserver.HttpServer;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Tests for {@link UpstreamClient} against a local server.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class UpstreamClientTest
+{
+	private HttpServer			server;
+	private UpstreamClient	client;
+
+	@Before
+	public void setUp() throws IOException, AirTwitchException
+	{
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", exchange -> {
+			byte[] body = "#EXTM3U".getBytes(StandardCharsets.UTF_8);
+			if (exchange.getRequestURI().getPath().equals("/playlist.m3u8"))
+			{
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody())
+				{
+					out.write(body);
+				}
+			}
+			else
+			{
+				exchange.sendResponseHeaders(404, -1);
+			}
+			exchange.close();
+		});
+		server.start();
+		client = new UpstreamClient(2);
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		client.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void responseShouldCarryStatusAndBody() throws Exception
+	{
+		UpstreamClient.Response found = client.fetch(uri("/playlist.m3u8")).get(5, TimeUnit.SECONDS);
+		UpstreamClient.Response missing = client.fetch(uri("/missing.m3u8")).get(5, TimeUnit.SECONDS);
+
+		assertTrue("Found resource not successful", found.isSuccess());
+		assertArrayEquals("Wrong body", "#EXTM3U".getBytes(StandardCharsets.UTF_8), found.getBody());
+		assertFalse("Missing resource successful", missing.isSuccess());
+		assertEquals("Wrong status", 404, missing.getStatus());
+	}
+
+	@Test
+	public void failingBodyHandlerShouldFailTransfer() throws InterruptedException, TimeoutException
+	{
+		CompletableFuture<Object> transfer = client.fetch(uri("/playlist.m3u8"), (status, body) -> {
+			throw new AirTwitchException("Body rejected");
+		});
+
+		try
+		{
+			transfer.get(5, TimeUnit.SECONDS);
+			fail("Transfer completed");
+		}
+		catch (ExecutionException exception)
+		{
+			assertTrue("Wrong failure: " + exception.getCause(), exception.getCause() instanceof AirTwitchException);
+		}
+	}
+
+	@Test
+	public void lateValueShouldBeDiscarded() throws InterruptedException, TimeoutException
+	{
+		CompletableFuture<String> source = new CompletableFuture<>();
+		List<String> discarded = new CopyOnWriteArrayList<>();
+
+		CompletableFuture<String> limited = client.withDeadline(source, 50, discarded::add);
+
+		try
+		{
+			limited.get(5, TimeUnit.SECONDS);
+			fail("Deadline not enforced");
+		}
+		catch (ExecutionException exception)
+		{
+			assertTrue("Wrong failure: " + exception.getCause(), exception.getCause() instanceof AirTwitchException);
+		}
+		source.complete("late");
+		assertEquals("Late value not discarded", 1, discarded.size());
+	}
+
+	@Test
+	public void valueInTimeShouldNotBeDiscarded() throws Exception
+	{
+		CompletableFuture<String> source = new CompletableFuture<>();
+		List<String> discarded = new CopyOnWriteArrayList<>();
+
+		CompletableFuture<String> limited = client.withDeadline(source, 5000, discarded::add);
+		source.complete("value");
+
+		assertEquals("Wrong value", "value", limited.get(5, TimeUnit.SECONDS));
+		assertTrue("Value in time discarded", discarded.isEmpty());
+	}
+
+	private URI uri(String path)
+	{
+		return URI.create(String.format("http://127.0.0.1:%d%s", server.getAddress().getPort(), path));
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * CachingDnsResolverTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.conn.DnsResolver;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CachingDnsResolver}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class CachingDnsResolverTest
+{
+	/**
+	 * Time to live used in the tests, in milliseconds.
+	 */
+	private static final long		TTL_MILLIS	= 200;
+
+	/**
+	 * Number of lookups of the delegate.
+	 */
+	private final AtomicInteger	lookups			= new AtomicInteger();
+
+	@Test
+	public void addressesShouldBeCachedForTtl() throws Exception
+	{
+		CachingDnsResolver resolver = new CachingDnsResolver(givenResolver(1), TimeUnit.SECONDS.toMillis(10),
+						TimeUnit.MILLISECONDS);
+
+		InetAddress[] first = resolver.resolve("twitch.tv");
+		InetAddress[] second = resolver.resolve("twitch.tv");
+
+		assertArrayEquals("Wrong addresses", first, second);
+		assertEquals("Cached addresses resolved again", 1, lookups.get());
+	}
+
+	@Test
+	public void cachedAddressesShouldNotBeModifiable() throws Exception
+	{
+		CachingDnsResolver resolver = new CachingDnsResolver(givenResolver(1), TimeUnit.SECONDS.toMillis(10),
+						TimeUnit.MILLISECONDS);
+		InetAddress expected = resolver.resolve("twitch.tv")[0];
+
+		resolver.resolve("twitch.tv")[0] = null;
+
+		assertEquals("Cache modified by caller", expected, resolver.resolve("twitch.tv")[0]);
+	}
+
+	@Test
+	public void usedHostShouldBeRefreshedBeforeExpiry() throws Exception
+	{
+		CachingDnsResolver resolver = new CachingDnsResolver(givenResolver(Integer.MAX_VALUE), TTL_MILLIS,
+						TimeUnit.MILLISECONDS);
+		resolver.resolve("twitch.tv");
+
+		Thread.sleep(TTL_MILLIS * 3 / 2);
+		int lookupsBefore = lookups.get();
+		resolver.resolve("twitch.tv");
+
+		assertTrue("Host not refreshed in the background", lookupsBefore > 1);
+		assertEquals("Request waited for a lookup", lookupsBefore, lookups.get());
+	}
+
+	@Test
+	public void failedRefreshShouldKeepPreviousAddresses() throws Exception
+	{
+		CachingDnsResolver resolver = new CachingDnsResolver(givenResolver(1), TTL_MILLIS, TimeUnit.MILLISECONDS);
+		InetAddress[] addresses = resolver.resolve("twitch.tv");
+
+		Thread.sleep(TTL_MILLIS * 3 / 2);
+
+		assertArrayEquals("Previous addresses dropped", addresses, resolver.resolve("twitch.tv"));
+	}
+
+	@Test
+	public void prefetchShouldFillCache() throws Exception
+	{
+		CachingDnsResolver resolver = new CachingDnsResolver(givenResolver(1), TimeUnit.SECONDS.toMillis(10),
+						TimeUnit.MILLISECONDS);
+
+		resolver.prefetch("twitch.tv");
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+		while (lookups.get() == 0 && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		resolver.resolve("twitch.tv");
+
+		assertEquals("Prefetched host resolved again", 1, lookups.get());
+	}
+
+	// ***** GIVEN *****
+
+	/**
+	 * A resolver counting its lookups, which fails after the given number of
+	 * successful lookups.
+	 */
+	private DnsResolver givenResolver(int successfulLookups)
+	{
+		return host -> {
+			if (lookups.incrementAndGet() > successfulLookups)
+			{
+				throw new UnknownHostException(host);
+			}
+			return new InetAddress[] { InetAddress.getByAddress(host, new byte[] { 10, 0, 0, 1 }) };
+		};
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * ConnectionWarmerTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for {@link ConnectionWarmer} against a local server. The two targets
+ * are told apart by their host name.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class ConnectionWarmerTest
+{
+	/**
+	 * Idle threshold used in the tests, in milliseconds.
+	 */
+	private static final long		IDLE_MILLIS	= 200;
+
+	private final AtomicInteger	apiRequests		= new AtomicInteger();
+	private final AtomicInteger	usherRequests	= new AtomicInteger();
+	private HttpServer					server;
+	private CloseableHttpClient	client;
+	private ConnectionWarmer		warmer;
+	private URI									api;
+	private URI									usher;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", exchange -> {
+			(exchange.getRequestURI().getPath().equals("/api") ? apiRequests : usherRequests).incrementAndGet();
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.start();
+		api = URI.create(String.format("http://localhost:%d/api", server.getAddress().getPort()));
+		usher = URI.create(String.format("http://127.0.0.1:%d/usher", server.getAddress().getPort()));
+		client = HttpClients.createDefault();
+		warmer = new ConnectionWarmer(client, Arrays.asList(api, usher), IDLE_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		warmer.close();
+		client.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void startShouldWarmUpEachTarget() throws InterruptedException
+	{
+		warmer.start();
+
+		awaitRequests(apiRequests, 1);
+		awaitRequests(usherRequests, 1);
+	}
+
+	@Test
+	public void idleClientShouldNotBeWarmedUp() throws InterruptedException
+	{
+		warmer.start();
+		awaitRequests(usherRequests, 1);
+
+		Thread.sleep(IDLE_MILLIS * 3);
+
+		assertEquals("Idle client warmed up", 1, apiRequests.get());
+		assertEquals("Idle client warmed up", 1, usherRequests.get());
+	}
+
+	@Test
+	public void requestAfterIdlePeriodShouldWarmUpOtherTargets() throws InterruptedException
+	{
+		warmer.start();
+		awaitRequests(usherRequests, 1);
+		Thread.sleep(IDLE_MILLIS * 2);
+
+		warmer.touch(api);
+
+		awaitRequests(usherRequests, 2);
+		assertEquals("Target of the request warmed up", 1, apiRequests.get());
+	}
+
+	@Test
+	public void requestWithoutIdlePeriodShouldNotWarmUp() throws InterruptedException
+	{
+		warmer.start();
+		awaitRequests(usherRequests, 1);
+
+		warmer.touch(api);
+		Thread.sleep(IDLE_MILLIS);
+
+		assertEquals("Busy client warmed up", 1, usherRequests.get());
+	}
+
+	// ***** THEN *****
+
+	/**
+	 * Wait until a counter reaches the expected number of requests.
+	 */
+	private static void awaitRequests(AtomicInteger counter, int expected) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+		while (counter.get() < expected && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertEquals("Wrong number of warm-up requests", expected, counter.get());
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * HttpArchiveTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import de.martindreier.airtwitch.test.HttpTestClient;
+import de.martindreier.airtwitch.test.TestHttpResponse;
+
+/**
+ * Tests for recording to and replaying from HTTP archives.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class HttpArchiveTest
+{
+	@Rule
+	public TemporaryFolder	folder			= new TemporaryFolder();
+
+	/**
+	 * Archive file.
+	 */
+	private Path						archiveFile;
+
+	/**
+	 * HTTP client providing the recorded responses.
+	 */
+	private HttpTestClient	httpClient	= new HttpTestClient();
+
+	/**
+	 * Counter for responses, to distinguish repeated requests.
+	 */
+	private int							responseCounter;
+
+	@Before
+	public void setup() throws IOException
+	{
+		archiveFile = folder.getRoot().toPath().resolve("test.archive");
+		httpClient.registerHandler("/kraken/.*", request -> {
+			TestHttpResponse response = new TestHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+			response.setEntity(new StringEntity("response " + (++responseCounter), ContentType.APPLICATION_JSON));
+			return response;
+		});
+	}
+
+	@Test
+	public void recordedResponsesShouldBeReplayedInOrder() throws IOException
+	{
+		givenRecordedRequests("https://api.twitch.tv/kraken/channels/1234?p=1",
+						"https://api.twitch.tv/kraken/channels/1234?p=2");
+
+		try (HttpArchiveReader reader = new HttpArchiveReader(archiveFile);
+						CloseableHttpClient replay = new ReplayHttpClient(reader, 0))
+		{
+			assertEquals("Wrong number of records", 2, reader.getRecordCount());
+			thenResponseShouldBe(replay, "https://api.twitch.tv/kraken/channels/1234?p=7", "response 1");
+			thenResponseShouldBe(replay, "https://api.twitch.tv/kraken/channels/1234?p=8", "response 2");
+			// Last recorded response is repeated
+			thenResponseShouldBe(replay, "https://api.twitch.tv/kraken/channels/1234?p=9", "response 2");
+		}
+	}
+
+	@Test
+	public void recordingShouldAppendToExistingArchive() throws IOException
+	{
+		givenRecordedRequests("https://api.twitch.tv/kraken/channels/1");
+		givenRecordedRequests("https://api.twitch.tv/kraken/channels/2");
+
+		try (HttpArchiveReader reader = new HttpArchiveReader(archiveFile))
+		{
+			assertEquals("Recording sessions not appended", 2, reader.getRecordCount());
+		}
+	}
+
+	@Test
+	public void unknownRequestShouldNotBeFound() throws IOException
+	{
+		givenRecordedRequests("https://api.twitch.tv/kraken/channels/1");
+
+		try (HttpArchiveReader reader = new HttpArchiveReader(archiveFile);
+						CloseableHttpClient replay = new ReplayHttpClient(reader, 0);
+						CloseableHttpResponse response = replay.execute(new HttpPost("http://10.0.0.1:7000/play")))
+		{
+			assertEquals("Unknown request answered", 404, response.getStatusLine().getStatusCode());
+		}
+	}
+
+	@Test
+	public void recordedResponsesShouldStillBeReadable() throws IOException
+	{
+		try (HttpArchiveWriter writer = new HttpArchiveWriter(archiveFile);
+						CloseableHttpClient recording = new RecordingHttpClient(httpClient, writer);
+						CloseableHttpResponse response = recording.execute(new HttpGet("https://api.twitch.tv/kraken/x")))
+		{
+			assertTrue("Response body not passed through",
+							EntityUtils.toString(response.getEntity()).startsWith("response"));
+		}
+	}
+
+	@Test
+	public void closedArchiveShouldNotBeReplayed() throws IOException
+	{
+		givenRecordedRequests("https://api.twitch.tv/kraken/channels/1");
+		HttpArchiveReader reader = new HttpArchiveReader(archiveFile);
+		CloseableHttpClient replay = new ReplayHttpClient(reader, 0);
+		thenResponseShouldBe(replay, "https://api.twitch.tv/kraken/channels/1", "response 1");
+
+		reader.close();
+
+		try (CloseableHttpResponse response = replay.execute(new HttpGet("https://api.twitch.tv/kraken/channels/1")))
+		{
+			fail("Closed archive replayed");
+		}
+		catch (IOException exception)
+		{
+			assertTrue("Wrong failure: " + exception.getMessage(), exception.getMessage().contains("closed"));
+		}
+	}
+
+	// ***** GIVEN *****
+
+	protected void givenRecordedRequests(String... uris) throws IOException
+	{
+		try (HttpArchiveWriter writer = new HttpArchiveWriter(archiveFile))
+		{
+			CloseableHttpClient recording = new RecordingHttpClient(httpClient, writer);
+			for (String uri : uris)
+			{
+				try (CloseableHttpResponse response = recording.execute(new HttpGet(uri)))
+				{
+					EntityUtils.consume(response.getEntity());
+				}
+			}
+		}
+	}
+
+	// ***** THEN *****
+
+	protected void thenResponseShouldBe(CloseableHttpClient client, String uri, String expected) throws IOException
+	{
+		try (CloseableHttpResponse response = client.execute(new HttpGet(uri)))
+		{
+			assertEquals("Wrong status", 200, response.getStatusLine().getStatusCode());
+			assertEquals("Wrong response body", expected, EntityUtils.toString(response.getEntity()));
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * AudioOnlyPlaybackTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.Test;
+import de.martindreier.airtwitch.airplay.Capability;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * Tests for the data savings and the receiver ranking of
+ * {@link AudioOnlyPlayback}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class AudioOnlyPlaybackTest
+{
+	@Test
+	public void savedBytesShouldBeBandwidthDifferencePerHour()
+	{
+		AudioOnlyPlayback playback = givenPlayback(160_000, Optional.of(stream("160p30", 232_000)));
+
+		// 72 kbit/s are 9000 bytes per second
+		assertEquals("Wrong savings", 9000L * 3600, playback.getSavedBytesPerHour());
+	}
+
+	@Test
+	public void unknownBandwidthShouldSaveNothing()
+	{
+		assertEquals("Savings without video stream", 0, givenPlayback(160_000, Optional.empty()).getSavedBytesPerHour());
+		assertEquals("Savings without audio bandwidth", 0,
+						givenPlayback(0, Optional.of(stream("160p30", 232_000))).getSavedBytesPerHour());
+	}
+
+	@Test
+	public void videoBelowAudioBandwidthShouldSaveNothing()
+	{
+		assertEquals("Negative savings", 0,
+						givenPlayback(160_000, Optional.of(stream("160p30", 100_000))).getSavedBytesPerHour());
+	}
+
+	@Test
+	public void devicesWithMoreAudioCapabilitiesShouldComeFirst()
+	{
+		DeviceInfo video = givenDevice("video", EnumSet.noneOf(Capability.class));
+		DeviceInfo speaker = givenDevice("speaker", EnumSet.of(Capability.AUDIO, Capability.AUDIO_REDUNDANT));
+		DeviceInfo receiver = givenDevice("receiver",
+						EnumSet.of(Capability.AUDIO, Capability.AUDIO_REDUNDANT, Capability.AUDIO_FORMATS));
+		DeviceInfo television = givenDevice("television", EnumSet.of(Capability.AUDIO));
+
+		assertEquals("Wrong ranking", Arrays.asList(receiver, speaker, television, video),
+						AudioOnlyPlayback.rankDevices(Arrays.asList(video, speaker, receiver, television)));
+	}
+
+	// ***** GIVEN *****
+
+	private static AudioOnlyPlayback givenPlayback(long audioBandwidth, Optional<LiveStream> lowestVideo)
+	{
+		return new AudioOnlyPlayback(null, stream(LiveStream.AUDIO_ONLY, audioBandwidth), lowestVideo);
+	}
+
+	private static DeviceInfo givenDevice(String key, Set<Capability> capabilities)
+	{
+		DeviceInfo device = mock(DeviceInfo.class);
+		when(device.getKey()).thenReturn(key);
+		when(device.getName()).thenReturn(key);
+		when(device.hasCapability(any(Capability.class)))
+						.thenAnswer(invocation -> capabilities.contains(invocation.getArgument(0)));
+		return device;
+	}
+
+	private static LiveStream stream(String title, long bandwidth)
+	{
+		return new LiveStream(title, URI.create("https://example.com/" + title + ".m3u8"), bandwidth);
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * ChannelZapperTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.airplay.StreamControl;
+import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * Tests for the warm sessions of {@link ChannelZapper}. Channels and device
+ * are mocks, the stream control counts the queries of the device.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class ChannelZapperTest
+{
+	private final DeviceInfo		device		= mock(DeviceInfo.class);
+	private final StreamControl	control		= mock(StreamControl.class);
+	private final List<Channel>	channels	= new ArrayList<>();
+	private ChannelZapper				zapper;
+
+	@Before
+	public void setUp() throws AirTwitchException
+	{
+		when(device.getName()).thenReturn("TV");
+		when(device.createStream(any(URI.class))).thenReturn(control);
+		for (int index = 0; index < 3; index++)
+		{
+			channels.add(givenChannel(index));
+		}
+	}
+
+	@After
+	public void tearDown()
+	{
+		if (zapper != null)
+		{
+			zapper.close();
+		}
+	}
+
+	@Test
+	public void preparedSessionShouldOpenDeviceConnection() throws AirTwitchException
+	{
+		givenZapper(TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(1));
+
+		// ***** WHEN *****
+		zapper.setLineup(channels);
+
+		// ***** THEN *****
+		// First and last channel are the neighbours of the start position
+		verify(control, timeout(5000).times(2)).getPlaybackInfo();
+	}
+
+	@Test
+	public void channelShouldNotBePreparedTwiceAtOnce() throws Exception
+	{
+		givenZapper(TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(1));
+		CountDownLatch release = new CountDownLatch(1);
+		Channel slow = channels.get(0);
+		when(slow.getLiveStreams()).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return Collections.singletonList(stream(0));
+		});
+
+		// ***** WHEN *****
+		zapper.setLineup(channels);
+		zapper.addFavourite(slow);
+		zapper.removeFavourite(slow);
+		release.countDown();
+
+		// ***** THEN *****
+		verify(control, timeout(5000).times(2)).getPlaybackInfo();
+		verify(slow, times(1)).requestChannelToken();
+	}
+
+	@Test
+	public void expiredSessionShouldBePreparedAgain() throws AirTwitchException
+	{
+		givenZapper(100, 50);
+
+		// ***** WHEN *****
+		zapper.setLineup(channels.subList(0, 1));
+
+		// ***** THEN *****
+		verify(channels.get(0), timeout(5000).atLeast(2)).requestChannelToken();
+	}
+
+	@Test
+	public void warmSessionShouldOnlyPlay() throws AirTwitchException
+	{
+		givenZapper(TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(1));
+		zapper.setLineup(channels.subList(0, 2));
+		verify(control, timeout(5000).times(2)).getPlaybackInfo();
+
+		// ***** WHEN *****
+		ZapResult result = zapper.next();
+
+		// ***** THEN *****
+		assertTrue("Session not warm", result.isWarm());
+		assertEquals("Wrong channel", channels.get(0), result.getChannel());
+		verify(device, times(2)).createStream(any(URI.class));
+		verify(control).play();
+	}
+
+	@Test
+	public void timerShouldKeepDeviceConnectionOpen() throws AirTwitchException
+	{
+		givenZapper(TimeUnit.MINUTES.toMillis(5), 50);
+
+		// ***** WHEN *****
+		zapper.setLineup(channels.subList(0, 1));
+
+		// ***** THEN *****
+		verify(control, timeout(5000).atLeast(3)).getPlaybackInfo();
+		verify(channels.get(0), times(1)).requestChannelToken();
+	}
+
+	// ***** GIVEN *****
+
+	private void givenZapper(long maxSessionAgeMillis, long refreshMillis)
+	{
+		zapper = new ChannelZapper(device, "720p60", maxSessionAgeMillis, refreshMillis);
+	}
+
+	private static Channel givenChannel(int index) throws AirTwitchException
+	{
+		Channel channel = mock(Channel.class);
+		when(channel.getId()).thenReturn(String.valueOf(index));
+		when(channel.getName()).thenReturn("channel" + index);
+		List<LiveStream> streams = Collections.singletonList(stream(index));
+		when(channel.getLiveStreams()).thenReturn(streams);
+		return channel;
+	}
+
+	private static LiveStream stream(int index)
+	{
+		return new LiveStream("720p60", URI.create("https://example.com/" + index + "/720p60.m3u8"), 3_000_000);
+	}
+}
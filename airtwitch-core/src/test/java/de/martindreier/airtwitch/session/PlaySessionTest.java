@@ -0,0 +1,180 @@
+/**
+ * PlaySessionTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.DeviceHealthMonitor;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.airplay.DeviceRegistry;
+import de.martindreier.airtwitch.airplay.PlaybackInfo;
+import de.martindreier.airtwitch.airplay.PlaybackState;
+import de.martindreier.airtwitch.airplay.StreamControl;
+import de.martindreier.airtwitch.session.PlaySession.State;
+import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * Tests for the recovery of {@link PlaySession}. The device drops and comes
+ * back through the device registry; the health monitor is not involved.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class PlaySessionTest
+{
+	/**
+	 * Delay before the first retry in milliseconds.
+	 */
+	private static final long						RETRY_MILLIS	= 100;
+
+	private static final AtomicInteger	sessions			= new AtomicInteger();
+
+	private final DeviceRegistry				registry			= DeviceRegistry.getInstance();
+	private final DeviceHealthMonitor		healthMonitor	= mock(DeviceHealthMonitor.class);
+	private final Channel								channel				= mock(Channel.class);
+	private final StreamControl					control				= mock(StreamControl.class);
+	private final DeviceInfo						device				= mock(DeviceInfo.class);
+	private final List<State>						states				= new CopyOnWriteArrayList<>();
+	/**
+	 * Times of the attempts to play on the device, monotonic milliseconds.
+	 */
+	private final List<Long>						attempts			= new CopyOnWriteArrayList<>();
+	private String											key;
+	private PlaySession									session;
+
+	@Before
+	public void setUp() throws AirTwitchException
+	{
+		key = "play-session-test-" + sessions.incrementAndGet();
+		when(device.getKey()).thenReturn(key);
+		when(device.getName()).thenReturn("TV");
+		when(device.getPort()).thenReturn(7000);
+		when(device.createStream(any(URI.class))).thenAnswer(invocation -> {
+			attempts.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+			return control;
+		});
+		PlaybackInfo playing = playbackInfo(PlaybackState.PLAYING);
+		when(control.getPlaybackInfo()).thenReturn(playing);
+		when(channel.getName()).thenReturn("channel");
+		LiveStream stream = new LiveStream("720p60", URI.create("https://example.com/720p60.m3u8"), 3_000_000);
+		when(channel.getLiveStreams()).thenReturn(Collections.singletonList(stream));
+		registry.register(device);
+	}
+
+	@After
+	public void tearDown()
+	{
+		if (session != null)
+		{
+			session.close();
+		}
+		registry.remove(key);
+	}
+
+	@Test
+	public void deviceNotBackWithinBudgetShouldFailSession() throws Exception
+	{
+		givenSession(300);
+
+		registry.remove(key);
+		awaitState(State.FAILED);
+		registry.register(device);
+		Thread.sleep(RETRY_MILLIS * 2);
+
+		assertEquals("Wrong states", State.FAILED, session.getState());
+		assertEquals("Played again after giving up", 1, attempts.size());
+		verify(healthMonitor).removeListener(any());
+	}
+
+	@Test
+	public void failedRecoveryShouldBeRetriedWithGrowingDelay() throws Exception
+	{
+		givenSession(1000);
+		doThrow(new AirTwitchException("Connection refused")).when(control).play();
+
+		registry.remove(key);
+		registry.register(device);
+		awaitState(State.FAILED);
+
+		// First play, then retries after 0, 100, 300 and 700 ms; the next retry
+		// would end after the budget
+		assertEquals("Wrong number of attempts: " + attempts, 5, attempts.size());
+		long first = attempts.get(2) - attempts.get(1);
+		long second = attempts.get(3) - attempts.get(2);
+		long third = attempts.get(4) - attempts.get(3);
+		assertTrue("Delay did not grow: " + attempts, first >= RETRY_MILLIS && second > first && third > second);
+	}
+
+	@Test
+	public void answeringDeviceWithoutPlaybackShouldRecover() throws Exception
+	{
+		givenSession(TimeUnit.MINUTES.toMillis(1));
+		PlaybackInfo stopped = playbackInfo(PlaybackState.STOPPED);
+		when(control.getPlaybackInfo()).thenReturn(stopped);
+
+		// Seen under a new address
+		registry.register(device);
+		awaitRecoveries(1);
+
+		assertEquals("Wrong state", State.PLAYING, session.getState());
+		verify(device, times(2)).createStream(any(URI.class));
+	}
+
+	// ***** GIVEN *****
+
+	private void givenSession(long budgetMillis) throws AirTwitchException
+	{
+		session = new PlaySession(key, channel, "720p60", registry, healthMonitor, budgetMillis, RETRY_MILLIS);
+		session.addListener(changed -> states.add(changed.getState()));
+		session.start();
+	}
+
+	private static PlaybackInfo playbackInfo(PlaybackState state)
+	{
+		PlaybackInfo info = mock(PlaybackInfo.class);
+		when(info.getState()).thenReturn(state);
+		return info;
+	}
+
+	// ***** THEN *****
+
+	private void awaitState(State expected) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+		while (!states.contains(expected) && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertTrue("State not reached: " + states, states.contains(expected));
+	}
+
+	private void awaitRecoveries(int expected) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+		while (session.getRecoveries() < expected && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertEquals("Wrong number of recoveries", expected, session.getRecoveries());
+	}
+}
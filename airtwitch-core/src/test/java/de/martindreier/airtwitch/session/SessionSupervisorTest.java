@@ -0,0 +1,286 @@
+/**
+ * SessionSupervisorTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.airplay.PlaybackInfo;
+import de.martindreier.airtwitch.airplay.PlaybackState;
+import de.martindreier.airtwitch.airplay.StreamControl;
+import de.martindreier.airtwitch.session.SupervisorEvent.Action;
+import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveStream;
+
+/**
+ * Tests for the decisions of {@link SessionSupervisor}. The progress checks
+ * are run directly with a test clock instead of the supervision schedule.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class SessionSupervisorTest
+{
+	/**
+	 * Interval between two progress checks in milliseconds.
+	 */
+	private static final long				CHECK_MILLIS	= 2000;
+
+	private final List<SupervisorEvent>	events				= new ArrayList<>();
+	private final StreamControl				control				= mock(StreamControl.class);
+	private final StreamControl				backupControl	= mock(StreamControl.class);
+	private final Channel							channel				= mock(Channel.class);
+	private DeviceInfo								device;
+	private DeviceInfo								backup;
+	private SessionSupervisor					supervisor;
+
+	/**
+	 * Current time of the test clock in milliseconds.
+	 */
+	private long											time					= TimeUnit.HOURS.toMillis(1);
+
+	/**
+	 * Playback position reported by the device in seconds.
+	 */
+	private double										position;
+
+	@Before
+	public void setUp() throws AirTwitchException
+	{
+		device = givenDevice("TV", control);
+		backup = givenDevice("Backup", backupControl);
+	}
+
+	@After
+	public void tearDown()
+	{
+		if (supervisor != null)
+		{
+			supervisor.close();
+		}
+	}
+
+	@Test
+	public void stallShouldStepDownVariant() throws AirTwitchException
+	{
+		givenSupervisor("1080p60");
+
+		whenStalledFor(TimeUnit.SECONDS.toMillis(30));
+
+		assertEquals("Wrong actions", Arrays.asList(Action.START, Action.DOWNGRADE), actions());
+		assertEquals("Wrong variant", "720p60", supervisor.getStream().getTitle());
+	}
+
+	@Test
+	public void loadingStreamShouldNotCountAsStall() throws AirTwitchException
+	{
+		givenSupervisor("1080p60");
+
+		whenStalledFor(TimeUnit.SECONDS.toMillis(14));
+
+		assertEquals("Stall during startup", Arrays.asList(Action.START), actions());
+	}
+
+	@Test
+	public void stallOnLowestVariantShouldRetry() throws AirTwitchException
+	{
+		givenSupervisor("480p");
+
+		whenStalledFor(TimeUnit.SECONDS.toMillis(30));
+
+		assertEquals("Wrong actions", Arrays.asList(Action.START, Action.RETRY), actions());
+		assertEquals("Wrong variant", "480p", supervisor.getStream().getTitle());
+	}
+
+	@Test
+	public void stablePlaybackShouldStepUpVariant() throws AirTwitchException
+	{
+		givenSupervisor("480p");
+
+		whenPlayingFor(TimeUnit.SECONDS.toMillis(62));
+
+		assertEquals("Wrong actions", Arrays.asList(Action.START, Action.UPGRADE), actions());
+		assertEquals("Wrong variant", "720p60", supervisor.getStream().getTitle());
+	}
+
+	@Test
+	public void pausedPlaybackShouldNotStall() throws AirTwitchException
+	{
+		givenSupervisor("1080p60");
+		PlaybackInfo paused = givenPlaybackInfo(PlaybackState.PAUSED, 0);
+		when(control.getPlaybackInfo()).thenReturn(paused);
+
+		whenChecksRunFor(TimeUnit.MINUTES.toMillis(1));
+
+		assertEquals("Paused playback treated as stall", Arrays.asList(Action.START), actions());
+	}
+
+	@Test
+	public void failedStepUpShouldDoubleWaitForNextStepUp() throws AirTwitchException
+	{
+		givenSupervisor("480p");
+		whenPlayingFor(TimeUnit.SECONDS.toMillis(62));
+		whenStalledFor(TimeUnit.SECONDS.toMillis(30));
+		assertEquals("Wrong actions", Arrays.asList(Action.START, Action.UPGRADE, Action.DOWNGRADE), actions());
+
+		whenPlayingFor(TimeUnit.SECONDS.toMillis(100));
+		assertEquals("Stepped up without backoff", 3, events.size());
+
+		whenPlayingFor(TimeUnit.SECONDS.toMillis(30));
+		assertEquals("Wrong actions", Arrays.asList(Action.START, Action.UPGRADE, Action.DOWNGRADE, Action.UPGRADE),
+						actions());
+	}
+
+	@Test
+	public void repeatedStallsShouldMoveToBackupDevice() throws AirTwitchException
+	{
+		givenSupervisor("1080p60");
+		supervisor.setBackupDevice(backup);
+
+		whenStalledFor(TimeUnit.SECONDS.toMillis(90));
+
+		assertEquals("Wrong actions", Arrays.asList(Action.START, Action.DOWNGRADE, Action.DOWNGRADE, Action.FAILOVER),
+						actions());
+		assertSame("Playback not moved", backup, supervisor.getDevice());
+		assertFalse("Backup still available", supervisor.getBackupDevice().isPresent());
+		verify(control).stopAsync();
+		verify(backupControl).play();
+	}
+
+	@Test
+	public void unreachableDeviceShouldMoveToBackupDevice() throws AirTwitchException
+	{
+		givenSupervisor("1080p60");
+		supervisor.setBackupDevice(backup);
+		when(control.getPlaybackInfo()).thenThrow(new AirTwitchException("Connection refused"));
+
+		whenChecksRunFor(3 * CHECK_MILLIS);
+
+		assertEquals("Wrong actions", Arrays.asList(Action.START, Action.FAILOVER), actions());
+		assertSame("Playback not moved", backup, supervisor.getDevice());
+	}
+
+	@Test
+	public void unreachableDeviceWithoutBackupShouldBeCheckedLessOften() throws AirTwitchException
+	{
+		givenSupervisor("1080p60");
+		when(control.getPlaybackInfo()).thenThrow(new AirTwitchException("Connection refused"));
+
+		whenChecksRunFor(TimeUnit.MINUTES.toMillis(1));
+
+		assertEquals("Unreachable device played again", Arrays.asList(Action.START), actions());
+		verify(channel, times(1)).requestChannelToken();
+		// Checks after 2, 4, 6, 8, 12, 20 and 36 seconds
+		verify(control, times(7)).getPlaybackInfo();
+	}
+
+	// ***** GIVEN *****
+
+	/**
+	 * A started supervisor for a channel with three video variants and an audio
+	 * only variant.
+	 */
+	private void givenSupervisor(String preferredStream) throws AirTwitchException
+	{
+		when(channel.getName()).thenReturn("channel");
+		when(channel.getLiveStreams()).thenReturn(Arrays.asList(givenStream("480p", 1_000_000),
+						givenStream("1080p60", 6_000_000), givenStream("audio_only", 100_000),
+						givenStream("720p60", 3_000_000)));
+		supervisor = new SessionSupervisor(channel, device, preferredStream, () -> time);
+		supervisor.addListener(events::add);
+		supervisor.begin();
+	}
+
+	private static LiveStream givenStream(String title, long bandwidth)
+	{
+		return new LiveStream(title, URI.create("https://example.com/" + title + ".m3u8"), bandwidth);
+	}
+
+	private static DeviceInfo givenDevice(String name, StreamControl control) throws AirTwitchException
+	{
+		DeviceInfo device = mock(DeviceInfo.class);
+		when(device.getName()).thenReturn(name);
+		when(device.getKey()).thenReturn(name);
+		when(device.createStream(any(URI.class))).thenReturn(control);
+		PlaybackInfo loading = givenPlaybackInfo(PlaybackState.LOADING, 0);
+		when(control.getPlaybackInfo()).thenReturn(loading);
+		return device;
+	}
+
+	private static PlaybackInfo givenPlaybackInfo(PlaybackState state, double position)
+	{
+		PlaybackInfo info = mock(PlaybackInfo.class);
+		when(info.getState()).thenReturn(state);
+		when(info.getPosition()).thenReturn(position);
+		when(info.getRate()).thenReturn(state == PlaybackState.PLAYING ? 1.0 : 0.0);
+		return info;
+	}
+
+	// ***** WHEN *****
+
+	/**
+	 * Run progress checks while the device plays without progress.
+	 */
+	private void whenStalledFor(long millis) throws AirTwitchException
+	{
+		PlaybackInfo stalled = givenPlaybackInfo(PlaybackState.STALLED, position);
+		when(control.getPlaybackInfo()).thenReturn(stalled);
+		whenChecksRunFor(millis);
+	}
+
+	/**
+	 * Run progress checks while the device plays in real time.
+	 */
+	private void whenPlayingFor(long millis) throws AirTwitchException
+	{
+		for (long elapsed = 0; elapsed < millis; elapsed += CHECK_MILLIS)
+		{
+			position += CHECK_MILLIS / 1000.0;
+			PlaybackInfo playing = givenPlaybackInfo(PlaybackState.PLAYING, position);
+			when(control.getPlaybackInfo()).thenReturn(playing);
+			time += CHECK_MILLIS;
+			supervisor.evaluate(time);
+		}
+	}
+
+	/**
+	 * Run progress checks with the current playback information.
+	 */
+	private void whenChecksRunFor(long millis)
+	{
+		for (long elapsed = 0; elapsed < millis; elapsed += CHECK_MILLIS)
+		{
+			time += CHECK_MILLIS;
+			supervisor.evaluate(time);
+		}
+	}
+
+	// ***** THEN *****
+
+	/**
+	 * Actions reported by the supervisor so far.
+	 */
+	private List<Action> actions()
+	{
+		return events.stream().map(SupervisorEvent::getAction).collect(Collectors.toList());
+	}
+}
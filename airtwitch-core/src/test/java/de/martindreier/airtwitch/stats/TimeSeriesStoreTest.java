@@ -0,0 +1,129 @@
+/**
+ * TimeSeriesStoreTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import de.martindreier.airtwitch.twitch.StreamStatistics;
+
+/**
+ * Tests for {@link TimeSeriesStore}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class TimeSeriesStoreTest
+{
+	/**
+	 * Start time of the test samples.
+	 */
+	private static final long	START		= 1_500_000_000_000L;
+
+	/**
+	 * One minute in milliseconds.
+	 */
+	private static final long	MINUTE	= 60_000L;
+
+	/**
+	 * Object under test.
+	 */
+	private TimeSeriesStore		store;
+
+	@Before
+	public void setup()
+	{
+		store = new TimeSeriesStore(4, 2);
+	}
+
+	@Test
+	public void samplesShouldBeReadBackUnchanged()
+	{
+		givenSamples("channel", 10);
+
+		List<StreamSample> samples = store.range("channel", START, START + 10 * MINUTE);
+		assertEquals("Wrong number of samples", 10, samples.size());
+		for (int index = 0; index < samples.size(); index++)
+		{
+			StreamStatistics statistics = samples.get(index).getStatistics();
+			assertEquals("Wrong timestamp", START + index * MINUTE, samples.get(index).getTimestamp());
+			assertEquals("Wrong viewers", 1000 + index * 10, statistics.getViewers());
+			assertEquals("Wrong frame rate", 59.94, statistics.getAverageFps(), 0.001);
+			assertEquals("Wrong video height", 1080, statistics.getVideoHeight());
+			assertEquals("Wrong delay", 0, statistics.getDelay());
+		}
+	}
+
+	@Test
+	public void rangeShouldBeLimited()
+	{
+		givenSamples("channel", 10);
+
+		assertEquals("Wrong number of samples in range", 3,
+						store.range("channel", START + 2 * MINUTE, START + 5 * MINUTE).size());
+	}
+
+	@Test
+	public void samplesShouldBeDownsampled()
+	{
+		givenSamples("channel", 10);
+
+		List<StreamAggregate> aggregates = store.downsample("channel", START, START + 10 * MINUTE, 5 * MINUTE);
+		assertEquals("Wrong number of buckets", 2, aggregates.size());
+		assertEquals("Wrong sample count", 5, aggregates.get(0).getCount());
+		assertEquals("Wrong minimum", 1000, aggregates.get(0).getMinViewers());
+		assertEquals("Wrong maximum", 1040, aggregates.get(0).getMaxViewers());
+		assertEquals("Wrong average", 1070, aggregates.get(1).getAverageViewers(), 0.001);
+	}
+
+	@Test
+	public void trendShouldBeViewersPerHour()
+	{
+		givenSamples("channel", 10);
+
+		assertEquals("Wrong trend", 600, store.viewerTrend("channel", START, START + 10 * MINUTE), 0.001);
+	}
+
+	@Test
+	public void oldestBlocksShouldBeReused()
+	{
+		// Far more samples than fit into the two blocks per series
+		givenSamples("channel", 1000);
+
+		List<StreamSample> samples = store.range("channel", START, START + 1000 * MINUTE);
+		assertTrue("Old samples not dropped", samples.size() < 1000);
+		assertEquals("Newest sample missing", START + 999 * MINUTE, samples.get(samples.size() - 1).getTimestamp());
+	}
+
+	@Test
+	public void blocksShouldBeSharedBetweenSeries()
+	{
+		givenSamples("first", 1000, START);
+		givenSamples("second", 1000, START + 1000 * MINUTE);
+		givenSamples("third", 1000, START + 2000 * MINUTE);
+
+		assertTrue("Oldest series not evicted", store.range("first", START, START + 1000 * MINUTE).isEmpty());
+		assertTrue("Newer series evicted", !store.range("second", START, START + 2000 * MINUTE).isEmpty());
+		assertEquals("Store grew", 4 * TimeSeriesStore.BLOCK_SIZE, store.getCapacityBytes());
+	}
+
+	// ***** GIVEN *****
+
+	protected void givenSamples(String key, int count)
+	{
+		givenSamples(key, count, START);
+	}
+
+	protected void givenSamples(String key, int count, long start)
+	{
+		for (int index = 0; index < count; index++)
+		{
+			store.append(key, new StreamSample(start + index * MINUTE, new StreamStatistics(1000 + index * 10, 59.94, 1080, 0)));
+		}
+	}
+}
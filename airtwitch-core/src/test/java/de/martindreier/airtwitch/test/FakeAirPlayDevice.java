@@ -0,0 +1,272 @@
+/**
+ * FakeAirPlayDevice.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local AirPlay device for testing, listening on a random port of the
+ * loopback address. Every request is answered with an empty
+ * <code>200 OK</code> on a keep-alive connection, except for
+ * <code>/playback-info</code> once a playback state was set. The device can
+ * delay its answers, never answer, or drop connections after a number of
+ * requests.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class FakeAirPlayDevice implements Closeable
+{
+	private final ServerSocket		server;
+	private final ExecutorService	threads			= Executors.newCachedThreadPool();
+	private final long						delayMillis;
+	private final boolean					answer;
+	private final int							requestsPerConnection;
+	private final AtomicInteger		connections	= new AtomicInteger();
+	private final AtomicInteger		requests		= new AtomicInteger();
+	private final AtomicInteger		active			= new AtomicInteger();
+	private final AtomicInteger		maxActive		= new AtomicInteger();
+	private final List<String>		paths				= Collections.synchronizedList(new ArrayList<>());
+	private final List<String>		bodies			= Collections.synchronizedList(new ArrayList<>());
+	private final List<Long>			arrivals		= Collections.synchronizedList(new ArrayList<>());
+	private volatile byte[]				playbackInfo	= new byte[0];
+
+	/**
+	 * Create a device answering every request right away.
+	 *
+	 * @throws IOException
+	 *           The server socket could not be opened.
+	 */
+	public FakeAirPlayDevice() throws IOException
+	{
+		this(0, true, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create a device.
+	 *
+	 * @param delayMillis
+	 *          Delay before each answer.
+	 * @param answer
+	 *          <code>false</code> to never answer.
+	 * @param requestsPerConnection
+	 *          Number of requests answered before a connection is dropped without
+	 *          answer.
+	 * @throws IOException
+	 *           The server socket could not be opened.
+	 */
+	public FakeAirPlayDevice(long delayMillis, boolean answer, int requestsPerConnection) throws IOException
+	{
+		this.delayMillis = delayMillis;
+		this.answer = answer;
+		this.requestsPerConnection = requestsPerConnection;
+		server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		threads.execute(this::accept);
+	}
+
+	/**
+	 * @return Port of the device.
+	 */
+	public int getPort()
+	{
+		return server.getLocalPort();
+	}
+
+	/**
+	 * @return Number of accepted connections.
+	 */
+	public int getConnections()
+	{
+		return connections.get();
+	}
+
+	/**
+	 * @return Number of received requests, including unanswered ones.
+	 */
+	public int getRequests()
+	{
+		return requests.get();
+	}
+
+	/**
+	 * @return Highest number of requests processed at the same time.
+	 */
+	public int getMaxActive()
+	{
+		return maxActive.get();
+	}
+
+	/**
+	 * @return Paths of the received requests, in order of arrival.
+	 */
+	public List<String> getPaths()
+	{
+		synchronized (paths)
+		{
+			return new ArrayList<>(paths);
+		}
+	}
+
+	/**
+	 * @return Bodies of the received requests, in order of arrival.
+	 */
+	public List<String> getBodies()
+	{
+		synchronized (bodies)
+		{
+			return new ArrayList<>(bodies);
+		}
+	}
+
+	/**
+	 * @return Arrival times of the received requests from
+	 *         {@link System#nanoTime()}, in order of arrival.
+	 */
+	public List<Long> getArrivals()
+	{
+		synchronized (arrivals)
+		{
+			return new ArrayList<>(arrivals);
+		}
+	}
+
+	/**
+	 * Set the playback state returned for <code>/playback-info</code>.
+	 *
+	 * @param position
+	 *          Playback position in seconds.
+	 * @param rate
+	 *          Playback rate, <code>0</code> if paused.
+	 */
+	public void setPlaybackInfo(double position, double rate)
+	{
+		playbackInfo = String.format(Locale.ROOT, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<plist version=\"1.0\">"
+						+ "<dict><key>duration</key><real>0.0</real><key>position</key><real>%s</real>"
+						+ "<key>rate</key><real>%s</real><key>readyToPlay</key><true/><key>playbackBufferEmpty</key><false/>"
+						+ "<key>playbackLikelyToKeepUp</key><true/></dict></plist>", position, rate)
+						.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Stop the device and drop all connections.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		server.close();
+		threads.shutdownNow();
+	}
+
+	private void accept()
+	{
+		try
+		{
+			while (true)
+			{
+				Socket socket = server.accept();
+				connections.incrementAndGet();
+				threads.execute(() -> serve(socket));
+			}
+		}
+		catch (IOException exception)
+		{
+			// Closed
+		}
+	}
+
+	private void serve(Socket socket)
+	{
+		try (Socket connection = socket)
+		{
+			DataInputStream in = new DataInputStream(connection.getInputStream());
+			OutputStream out = connection.getOutputStream();
+			for (int served = 0;; served++)
+			{
+				String header = readHeader(in);
+				if (header == null || served == requestsPerConnection)
+				{
+					return;
+				}
+				long arrival = System.nanoTime();
+				byte[] body = new byte[contentLength(header)];
+				in.readFully(body);
+				String path = header.split(" ", 3)[1];
+				synchronized (this)
+				{
+					paths.add(path);
+					bodies.add(new String(body, StandardCharsets.UTF_8));
+					arrivals.add(arrival);
+				}
+				requests.incrementAndGet();
+				maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+				Thread.sleep(delayMillis);
+				active.decrementAndGet();
+				if (!answer)
+				{
+					Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+				}
+				byte[] answerBody = path.equals("/playback-info") ? playbackInfo : new byte[0];
+				out.write(String.format("HTTP/1.1 200 OK\r\nContent-Length: %d\r\n\r\n", answerBody.length)
+								.getBytes(StandardCharsets.ISO_8859_1));
+				out.write(answerBody);
+				out.flush();
+			}
+		}
+		catch (IOException | InterruptedException exception)
+		{
+			// Connection closed
+		}
+	}
+
+	/**
+	 * Read a request header.
+	 *
+	 * @return The header, or <code>null</code> if the connection was closed.
+	 */
+	private static String readHeader(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		while (!header.toString("ISO-8859-1").endsWith("\r\n\r\n"))
+		{
+			int read = in.read();
+			if (read < 0)
+			{
+				return null;
+			}
+			header.write(read);
+		}
+		return header.toString("ISO-8859-1");
+	}
+
+	private static int contentLength(String header)
+	{
+		for (String line : header.split("\r\n"))
+		{
+			if (line.toLowerCase().startsWith("content-length:"))
+			{
+				return Integer.parseInt(line.substring("content-length:".length()).trim());
+			}
+		}
+		return 0;
+	}
+}
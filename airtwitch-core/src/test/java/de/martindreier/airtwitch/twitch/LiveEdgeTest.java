@@ -0,0 +1,75 @@
+/**
+ * LiveEdgeTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.twitch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.time.OffsetDateTime;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Tests for {@link LiveEdge}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class LiveEdgeTest
+{
+	@Test
+	public void startShouldKeepMarginToLiveEdge() throws AirTwitchException
+	{
+		LiveEdge edge = LiveEdge.parse(givenPlaylist(6, false), 3);
+
+		assertEquals("Wrong window", 12, edge.getWindowSeconds(), 0.001);
+		assertEquals("Wrong start position", 9, edge.getStartPosition(), 0.001);
+		assertEquals("Wrong latency saved", 9, edge.getLatencySavedSeconds(), 0.001);
+	}
+
+	@Test
+	public void marginShouldBeAtLeastOneSegment() throws AirTwitchException
+	{
+		assertEquals("Default margin", 9, LiveEdge.parse(givenPlaylist(6, false), -1).getStartPosition(), 0.001);
+		assertEquals("Margin too small", 10, LiveEdge.parse(givenPlaylist(6, false), 0.5).getStartPosition(), 0.001);
+	}
+
+	@Test
+	public void completePlaylistShouldStartAtBeginning() throws AirTwitchException
+	{
+		LiveEdge edge = LiveEdge.parse(givenPlaylist(6, true), 3);
+
+		assertFalse("Complete playlist is live", edge.isLive());
+		assertEquals("Wrong start position", 0, edge.getStartPosition(), 0.001);
+	}
+
+	@Test
+	public void windowStartShouldFollowProgramDateTime() throws AirTwitchException
+	{
+		String playlist = givenPlaylist(3, false).replace("#EXTINF:2.000,live\nhttps://video.example.com/segment1.ts",
+						"#EXT-X-PROGRAM-DATE-TIME:2026-10-19T08:00:10.000Z\n#EXTINF:2.000,live\nhttps://video.example.com/segment1.ts");
+
+		assertEquals("Wrong window start", OffsetDateTime.parse("2026-10-19T08:00:08.000Z").toInstant().toEpochMilli(),
+						LiveEdge.parse(playlist, 3).getWindowStartMillis().getAsLong());
+		assertFalse("Window start without date", LiveEdge.parse(givenPlaylist(3, false), 3).getWindowStartMillis().isPresent());
+	}
+
+	// ***** GIVEN *****
+
+	protected String givenPlaylist(int segments, boolean complete)
+	{
+		StringBuilder playlist = new StringBuilder(
+						"#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:2\n#EXT-X-MEDIA-SEQUENCE:100\n#EXT-X-TWITCH-ELAPSED-SECS:42.0\n");
+		for (int index = 0; index < segments; index++)
+		{
+			playlist.append("#EXTINF:2.000,live\nhttps://video.example.com/segment").append(index).append(".ts\n");
+		}
+		if (complete)
+		{
+			playlist.append("#EXT-X-ENDLIST\n");
+		}
+		return playlist.toString();
+	}
+}
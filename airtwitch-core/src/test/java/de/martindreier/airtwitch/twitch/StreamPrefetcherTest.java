@@ -0,0 +1,68 @@
+/**
+ * StreamPrefetcherTest.java
+ * Created: 19.10.2026
+ * (c) 2026 Martin Dreier
+ */
+package de.martindreier.airtwitch.twitch;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import de.martindreier.airtwitch.AirTwitchException;
+
+/**
+ * Tests for {@link StreamPrefetcher}.
+ *
+ * @author Martin Dreier <martin@martindreier.de>
+ *
+ */
+public class StreamPrefetcherTest
+{
+	/**
+	 * Object under test.
+	 */
+	private final StreamPrefetcher	prefetcher	= new StreamPrefetcher(1);
+
+	@After
+	public void teardown()
+	{
+		prefetcher.close();
+	}
+
+	@Test
+	public void channelFromNewSearchShouldUsePreparedStreams() throws AirTwitchException
+	{
+		Channel searched = givenChannel("42");
+		prefetcher.prefetch(Collections.singletonList(searched));
+		verify(searched, timeout(5000)).getLiveStreams();
+
+		Channel searchedAgain = givenChannel("42");
+		prefetcher.prefetch(Collections.singletonList(searchedAgain));
+		List<LiveStream> streams = prefetcher.getLiveStreams(searchedAgain);
+
+		assertEquals("Wrong streams", "source", streams.get(0).getTitle());
+		verify(searched, timeout(5000).times(1)).getLiveStreams();
+		verify(searchedAgain, never()).getLiveStreams();
+	}
+
+	// ***** GIVEN *****
+
+	private static Channel givenChannel(String id) throws AirTwitchException
+	{
+		Channel channel = mock(Channel.class);
+		when(channel.getId()).thenReturn(id);
+		when(channel.getName()).thenReturn("channel" + id);
+		when(channel.isLive()).thenReturn(true);
+		when(channel.getLiveStreams())
+						.thenReturn(Collections.singletonList(new LiveStream("source", URI.create("https://example.com/" + id))));
+		return channel;
+	}
+}
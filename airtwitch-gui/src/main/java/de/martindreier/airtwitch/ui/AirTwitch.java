@@ -5,6 +5,8 @@
  */
 package de.martindreier.airtwitch.ui;
 
+import de.martindreier.airtwitch.airplay.DeviceConnections;
+import de.martindreier.airtwitch.http.HttpTransport;
 import de.martindreier.airtwitch.ui.internal.Devices;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -54,6 +56,12 @@ public class AirTwitch extends Application
 		{
 			controller.shutdown();
 		}
+
+		// Close device connections
+		DeviceConnections.getInstance().closeAll();
+
+		// Close recorded or replayed HTTP archives
+		HttpTransport.close();
 	}
 
 	/**
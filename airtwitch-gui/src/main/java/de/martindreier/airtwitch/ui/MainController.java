@@ -9,9 +9,13 @@ import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import de.martindreier.airtwitch.AirTwitchException;
+import de.martindreier.airtwitch.airplay.DeviceHealth;
+import de.martindreier.airtwitch.airplay.DeviceHealthMonitor;
 import de.martindreier.airtwitch.airplay.DeviceInfo;
 import de.martindreier.airtwitch.airplay.StreamControl;
+import de.martindreier.airtwitch.session.LatencyMeter;
 import de.martindreier.airtwitch.twitch.Channel;
+import de.martindreier.airtwitch.twitch.LiveEdge;
 import de.martindreier.airtwitch.twitch.LiveStream;
 import de.martindreier.airtwitch.ui.internal.Devices;
 import de.martindreier.airtwitch.ui.internal.ErrorDialog;
@@ -25,6 +29,7 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
 
 /**
@@ -81,6 +86,18 @@ public class MainController
 	@FXML
 	private Button												stop;
 
+	/**
+	 * Delay of the playing stream behind live.
+	 */
+	@FXML
+	private Label													latency;
+
+	/**
+	 * Latency meter of the playing stream, <code>null</code> if no stream is
+	 * playing.
+	 */
+	private LatencyMeter									latencyMeter;
+
 	/**
 	 * Background processing thread.
 	 */
@@ -110,7 +127,10 @@ public class MainController
 		}
 
 		// Set cell factories for lists
-		deviceList.setCellFactory(MappingCellFactory.create(DeviceInfo::getName));
+		// Unreachable devices stay selectable, the connection races all addresses
+		deviceList.setCellFactory(MappingCellFactory.create(this::formatDeviceName));
+		// Update the health shown in the device list after each probe
+		DeviceHealthMonitor.getInstance().addListener(device -> Platform.runLater(deviceList::refresh));
 		channelList.setCellFactory(MappingCellFactory.create(this::formatChannelName, Channel::isLive));
 		streamList.setCellFactory(MappingCellFactory.create(LiveStream::getTitle));
 
@@ -120,6 +140,29 @@ public class MainController
 		Platform.runLater(() -> streamName.requestFocus());
 	}
 
+	/**
+	 * Format the device name with its health.
+	 *
+	 * @param device
+	 *          The device.
+	 * @return Display name of the device.
+	 */
+	private String formatDeviceName(DeviceInfo device)
+	{
+		DeviceHealth health = DeviceHealthMonitor.getInstance().getHealth(device);
+		switch (health.getStatus())
+		{
+			case HEALTHY:
+				return String.format("%s (%.0f ms)", device.getName(), health.getRttMillis().orElse(0));
+			case DEGRADED:
+				return String.format("%s (unstable, %.0f ms)", device.getName(), health.getRttMillis().orElse(0));
+			case UNREACHABLE:
+				return String.format("%s (unreachable)", device.getName());
+			default:
+				return device.getName();
+		}
+	}
+
 	/**
 	 * Format the channel name with live status and stream description.
 	 *
@@ -227,46 +270,89 @@ public class MainController
 	{
 		LiveStream selectedStream = streamList.getSelectionModel().getSelectedItem();
 		DeviceInfo delectedDevice = deviceList.getSelectionModel().getSelectedItem();
+		Channel selectedChannel = channelList.getSelectionModel().getSelectedItem();
 		if (selectedStream != null && delectedDevice != null)
 		{
 			background.submit(() -> {
 				try
 				{
 					StreamControl stream = delectedDevice.createStream(selectedStream.getStreamUri());
-					stream.play();
-					Platform.runLater(() -> {
-						streamControl.set(stream);
-					});
+					if (LiveEdge.isEnabled() && selectedChannel != null)
+					{
+						try
+						{
+							stream.setStartPosition(selectedChannel.getLiveEdge(selectedStream).getStartPosition());
+						}
+						catch (AirTwitchException exception)
+						{
+							// Start at the default position of the device
+						}
+					}
+					// Do not block the background thread while the device answers
+					stream.playAsync().whenComplete((result, exception) -> Platform.runLater(() -> {
+						if (exception == null)
+						{
+							streamControl.set(stream);
+							if (selectedChannel != null)
+							{
+								startLatencyMeter(selectedChannel, selectedStream, stream);
+							}
+						}
+						else
+						{
+							ErrorDialog.showError("Could not start playback", exception);
+						}
+					}));
 				}
 				catch (AirTwitchException exception)
 				{
-					ErrorDialog.showError("Could not start playback", exception);
+					Platform.runLater(() -> ErrorDialog.showError("Could not start playback", exception));
 				}
 			});
 		}
 	}
 
+	/**
+	 * Show the delay of a playing stream behind live.
+	 */
+	private void startLatencyMeter(Channel channel, LiveStream stream, StreamControl control)
+	{
+		stopLatencyMeter();
+		latencyMeter = new LatencyMeter(channel, stream, control);
+		latencyMeter.addListener(meter -> Platform.runLater(() -> latency.setText(
+						String.format("%.1f s behind live", meter.getLatencySeconds().orElse(Double.NaN)))));
+		latencyMeter.start();
+	}
+
+	/**
+	 * Stop showing the delay behind live.
+	 */
+	private void stopLatencyMeter()
+	{
+		if (latencyMeter != null)
+		{
+			latencyMeter.close();
+			latencyMeter = null;
+		}
+		latency.setText("");
+	}
+
 	/**
 	 * Stop playback of currently playing stream.
 	 */
 	public void stop()
 	{
+		stopLatencyMeter();
 		StreamControl stream = streamControl.get();
 		if (stream != null)
 		{
-			background.submit(() -> {
-				try
-				{
-					stream.stop();
-				}
-				catch (AirTwitchException exception)
+			stream.stopAsync().whenComplete((result, exception) -> Platform.runLater(() -> {
+				if (exception != null)
 				{
 					ErrorDialog.showError("Could not stop playback", exception);
 				}
-				Platform.runLater(() -> {
-					streamControl.set(null);
-				});
-			});
+				streamControl.set(null);
+			}));
 		}
 	}
 
@@ -6,12 +6,19 @@
 package de.martindreier.airtwitch.ui.internal;
 
 import java.io.IOException;
+import java.util.Comparator;
+import java.util.function.Consumer;
 import de.martindreier.airtwitch.AirTwitchException;
 import de.martindreier.airtwitch.airplay.AirPlayServiceDiscovery;
+import de.martindreier.airtwitch.airplay.DeviceEvent;
+import de.martindreier.airtwitch.airplay.DeviceHealthMonitor;
 import de.martindreier.airtwitch.airplay.DeviceInfo;
+import de.martindreier.airtwitch.airplay.DeviceRegistry;
+import javafx.application.Platform;
 import javafx.beans.property.ListProperty;
 import javafx.beans.property.SimpleListProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 
 /**
  * Device handler.
@@ -36,6 +43,35 @@ public class Devices
 	 */
 	private AirPlayServiceDiscovery		serviceDiscovery;
 
+	/**
+	 * Applies registry changes to the device list on the FX application thread.
+	 */
+	private final Consumer<DeviceEvent>	registryListener	= event -> Platform.runLater(() -> {
+		switch (event.getType())
+		{
+			case ADDED:
+				devices.add(event.getDevice());
+				break;
+			case UPDATED:
+				int index = devices.indexOf(event.getDevice());
+				if (index >= 0)
+				{
+					devices.set(index, event.getDevice());
+				}
+				break;
+			case REMOVED:
+			case EXPIRED:
+				devices.remove(event.getDevice());
+				break;
+		}
+		sortByHealth();
+	});
+
+	/**
+	 * Keeps the device list ordered by health.
+	 */
+	private final Consumer<DeviceInfo>	healthListener		= device -> Platform.runLater(this::sortByHealth);
+
 	private Devices()
 	{
 		// To make instance inaccessible
@@ -59,9 +95,12 @@ public class Devices
 		if (serviceDiscovery == null)
 		{
 			serviceDiscovery = new AirPlayServiceDiscovery();
+			devices.setAll(DeviceRegistry.getInstance().getSnapshot().getDevices());
+			DeviceRegistry.getInstance().addListener(registryListener);
+			DeviceHealthMonitor.getInstance().addListener(healthListener);
 			try
 			{
-				serviceDiscovery.registerListener(device -> devices.add(device));
+				serviceDiscovery.start();
 			}
 			catch (AirTwitchException exception)
 			{
@@ -77,6 +116,8 @@ public class Devices
 	{
 		if (serviceDiscovery != null)
 		{
+			DeviceRegistry.getInstance().removeListener(registryListener);
+			DeviceHealthMonitor.getInstance().removeListener(healthListener);
 			try
 			{
 				serviceDiscovery.close();
@@ -89,6 +130,23 @@ public class Devices
 		}
 	}
 
+	/**
+	 * Sort the device list by health, best first. Sorting keeps the selection.
+	 */
+	private void sortByHealth()
+	{
+		Comparator<DeviceInfo> ranking = DeviceHealthMonitor.getInstance().getRanking();
+		ObservableList<DeviceInfo> list = devices.get();
+		for (int index = 1; index < list.size(); index++)
+		{
+			if (ranking.compare(list.get(index - 1), list.get(index)) > 0)
+			{
+				FXCollections.sort(list, ranking);
+				return;
+			}
+		}
+	}
+
 	/**
 	 * Get the list of discovered devices.
 	 *
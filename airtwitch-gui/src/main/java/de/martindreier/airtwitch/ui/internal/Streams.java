@@ -10,6 +10,7 @@ import java.util.function.Consumer;
 import de.martindreier.airtwitch.AirTwitchException;
 import de.martindreier.airtwitch.twitch.Channel;
 import de.martindreier.airtwitch.twitch.LiveStream;
+import de.martindreier.airtwitch.twitch.StreamPrefetcher;
 import de.martindreier.airtwitch.twitch.Twitch;
 import javafx.application.Platform;
 import javafx.beans.property.ListProperty;
@@ -39,6 +40,11 @@ public class Streams
 	 */
 	private Twitch										twitchClient;
 
+	/**
+	 * Speculative stream resolution for the search results.
+	 */
+	private StreamPrefetcher					prefetcher	= new StreamPrefetcher();
+
 	/**
 	 * Create a new instance of the stream data model. Initializes the Twitch
 	 * client.
@@ -49,6 +55,7 @@ public class Streams
 	public Streams() throws AirTwitchException
 	{
 		twitchClient = new Twitch();
+		twitchClient.warmUp();
 	}
 
 	/**
@@ -85,8 +92,7 @@ public class Streams
 		{
 			try
 			{
-				selectedChannel.requestChannelToken();
-				final List<LiveStream> liveStreams = selectedChannel.getLiveStreams();
+				final List<LiveStream> liveStreams = prefetcher.getLiveStreams(selectedChannel);
 				Platform.runLater(() -> {
 					streams.setAll(liveStreams);
 				});
@@ -114,6 +120,7 @@ public class Streams
 		try
 		{
 			List<Channel> channels = twitchClient.searchChannels(searchTerm);
+			prefetcher.prefetch(channels);
 			Platform.runLater(() -> {
 				this.channels.clear();
 				this.streams.clear();